@@ -0,0 +1,118 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Resources;
+
+/**
+ * Synthetic payloads for the benchmarks, scaled up from the recorded Conqueso server responses used by the tests.
+ */
+final class BenchmarkFixtures {
+    
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final TypeReference<List<Map<String, Object>>> RESPONSE_TYPE = 
+            new TypeReference<List<Map<String, Object>>>() { };
+    
+    private static final PropertyType[] PROPERTY_TYPES = { PropertyType.STRING, PropertyType.INT, 
+        PropertyType.BOOLEAN, PropertyType.STRING_LIST };
+    
+    private BenchmarkFixtures() {
+    }
+    
+    /**
+     * @return the instances response JSON with the given number of instances, repeating the recorded instances
+     * with unique IP addresses
+     */
+    static String instancesJson(int count) throws IOException {
+        List<Map<String, Object>> recorded = readResponse("instances-response.json");
+        List<Map<String, Object>> instances = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> instance = Maps.newLinkedHashMap(recorded.get(i % recorded.size()));
+            String ip = String.format("10.%d.%d.%d", (i >> 16) & 0xff, (i >> 8) & 0xff, i & 0xff);
+            instance.put("ip", ip);
+            
+            @SuppressWarnings("unchecked")
+            Map<String, Object> metadata = Maps.newLinkedHashMap((Map<String, Object>)instance.get("metadata"));
+            metadata.put("local-ipv4", ip);
+            instance.put("metadata", metadata);
+            instances.add(instance);
+        }
+        return OBJECT_MAPPER.writeValueAsString(instances);
+    }
+    
+    /**
+     * @return the roles response JSON with the given number of roles, repeating the recorded roles with unique names
+     */
+    static String rolesJson(int count) throws IOException {
+        List<Map<String, Object>> recorded = readResponse("roles-response.json");
+        List<Map<String, Object>> roles = Lists.newArrayListWithCapacity(count);
+        for (int i = 0; i < count; i++) {
+            Map<String, Object> role = Maps.newLinkedHashMap(recorded.get(i % recorded.size()));
+            role.put("name", role.get("name") + "-" + i);
+            roles.add(role);
+        }
+        return OBJECT_MAPPER.writeValueAsString(roles);
+    }
+    
+    /**
+     * @return the instance metadata of the first recorded instance
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, String> instanceMetadata() throws IOException {
+        return (Map<String, String>)readResponse("instances-response.json").get(0).get("metadata");
+    }
+    
+    /**
+     * @return property definitions of a mix of types, with descriptions on every other property
+     */
+    static Set<PropertyDefinition> propertyDefinitions(int count) {
+        ImmutableSet.Builder<PropertyDefinition> builder = ImmutableSet.builder();
+        for (int i = 0; i < count; i++) {
+            builder.add(new PropertyDefinition("benchmark.property" + i, PROPERTY_TYPES[i % PROPERTY_TYPES.length], 
+                    "value" + i, i % 2 == 0 ? "Description of benchmark.property" + i : null));
+        }
+        return builder.build();
+    }
+    
+    /**
+     * @return Java properties file text with the given number of properties, as returned by the Conqueso server
+     */
+    static String propertiesText(int count) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            builder.append("benchmark.property").append(i).append('=').append("value").append(i).append('\n');
+        }
+        return builder.toString();
+    }
+    
+    private static List<Map<String, Object>> readResponse(String resourceName) throws IOException {
+        String json = Resources.toString(Resources.getResource(BenchmarkFixtures.class, resourceName), 
+                Charsets.UTF_8);
+        return OBJECT_MAPPER.readValue(json, RESPONSE_TYPE);
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+/**
+ * Parsing of the properties returned by {@link ConquesoClient#getLatestProperties()}, read from a local file to 
+ * exclude network time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class LatestPropertiesBenchmark {
+    
+    @Param({ "100", "10000", "100000" })
+    public int propertyCount;
+    
+    private File propertiesFile;
+    private ConquesoClient client;
+    
+    @Setup
+    public void setUp() throws IOException {
+        propertiesFile = File.createTempFile("conqueso-benchmark", ".properties");
+        Files.write(BenchmarkFixtures.propertiesText(propertyCount), propertiesFile, Charsets.UTF_8);
+        client = new ConquesoClient(propertiesFile.toURI().toURL());
+    }
+    
+    @TearDown
+    public void tearDown() {
+        propertiesFile.delete();
+    }
+    
+    @Benchmark
+    public Properties getLatestProperties() {
+        return client.getLatestProperties();
+    }
+}
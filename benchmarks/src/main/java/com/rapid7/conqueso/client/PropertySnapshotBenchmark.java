@@ -0,0 +1,133 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Maps;
+import com.netflix.config.ConcurrentMapConfiguration;
+import com.rapid7.conqueso.client.snapshot.PropertySnapshot;
+
+/**
+ * Typed reads of property values from a {@link PropertySnapshot}, compared with reads through Archaius' 
+ * {@link ConcurrentMapConfiguration}, from several threads at once. Run with <code>-prof gc</code> to confirm the 
+ * snapshot reads allocate nothing. Also compares finding the properties under a key prefix in the snapshot with 
+ * scanning the {@link Properties} returned by {@link ConquesoClient#getLatestProperties()}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Threads(4)
+public class PropertySnapshotBenchmark {
+    
+    @Param({ "100", "30000" })
+    public int propertyCount;
+    
+    private PropertySnapshot snapshot;
+    private ConcurrentMapConfiguration configuration;
+    private Properties latestProperties;
+    private String intKey;
+    private String longKey;
+    private String booleanKey;
+    private String prefix;
+    
+    @Setup
+    public void setUp() {
+        Map<String, String> properties = Maps.newHashMap();
+        for (int i = 0; i < propertyCount; i++) {
+            properties.put("conqueso.benchmark.int" + i, String.valueOf(i));
+            properties.put("conqueso.benchmark.long" + i, String.valueOf(Integer.MAX_VALUE + (long)i));
+            properties.put("conqueso.benchmark.boolean" + i, String.valueOf(i % 2 == 0));
+        }
+        snapshot = new PropertySnapshot(1, properties);
+        configuration = new ConcurrentMapConfiguration();
+        latestProperties = new Properties();
+        for (Map.Entry<String, String> property : properties.entrySet()) {
+            configuration.setProperty(property.getKey(), property.getValue());
+            latestProperties.setProperty(property.getKey(), property.getValue());
+        }
+        
+        int middle = propertyCount / 2;
+        intKey = "conqueso.benchmark.int" + middle;
+        longKey = "conqueso.benchmark.long" + middle;
+        booleanKey = "conqueso.benchmark.boolean" + middle;
+        prefix = "conqueso.benchmark.int" + (propertyCount / 10);
+    }
+    
+    @Benchmark
+    public int snapshotGetInt() {
+        return snapshot.getInt(intKey, 0);
+    }
+    
+    @Benchmark
+    public long snapshotGetLong() {
+        return snapshot.getLong(longKey, 0);
+    }
+    
+    @Benchmark
+    public boolean snapshotGetBoolean() {
+        return snapshot.getBoolean(booleanKey, false);
+    }
+    
+    @Benchmark
+    public int configurationGetInt() {
+        return configuration.getInt(intKey, 0);
+    }
+    
+    @Benchmark
+    public long configurationGetLong() {
+        return configuration.getLong(longKey, 0);
+    }
+    
+    @Benchmark
+    public boolean configurationGetBoolean() {
+        return configuration.getBoolean(booleanKey, false);
+    }
+    
+    @Benchmark
+    public int snapshotPropertiesWithPrefix() {
+        return snapshot.getPropertiesWithPrefix(prefix).size();
+    }
+    
+    @Benchmark
+    public int propertiesScanWithPrefix() {
+        Map<String, String> results = Maps.newHashMap();
+        for (String key : latestProperties.stringPropertyNames()) {
+            if (key.startsWith(prefix)) {
+                results.put(key, latestProperties.getProperty(key));
+            }
+        }
+        return results.size();
+    }
+}
@@ -0,0 +1,172 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.Maps;
+import com.rapid7.conqueso.client.snapshot.CompactPropertyStore;
+import com.rapid7.conqueso.client.snapshot.HeapPropertyStore;
+import com.rapid7.conqueso.client.snapshot.PropertyStore;
+
+/**
+ * Memory footprint and read costs of the {@link HeapPropertyStore} and {@link CompactPropertyStore} holding the 
+ * properties of a very large role. The <code>retainedHeap</code> benchmark reports the heap retained by a store as
+ * its <code>retainedBytes</code> counter, measured with full collections, so its time isn't meaningful. The 
+ * <code>changesSince</code> benchmark diffs the store with one of a later poll changing a handful of properties, as 
+ * done to notify the change listeners. Run with <code>-prof gc</code> to compare the allocation and collection 
+ * costs of building, reading and diffing the stores.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgs = { "-Xmx2g" })
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class PropertyStoreBenchmark {
+    
+    public enum StoreType {
+        HEAP(HeapPropertyStore.FACTORY),
+        COMPACT(CompactPropertyStore.FACTORY);
+        
+        private final PropertyStore.Factory factory;
+        
+        private StoreType(PropertyStore.Factory factory) {
+            this.factory = factory;
+        }
+    }
+    
+    @Param({ "HEAP", "COMPACT" })
+    public StoreType storeType;
+    
+    @Param({ "200000" })
+    public int propertyCount;
+    
+    @Param({ "10" })
+    public int changedCount;
+    
+    private Map<String, String> properties;
+    private PropertyStore store;
+    private PropertyStore changedStore;
+    private String intKey;
+    private String stringKey;
+    private String prefix;
+    
+    @Setup
+    public void setUp() {
+        properties = createProperties();
+        store = storeType.factory.create(properties);
+        
+        Map<String, String> changed = createProperties();
+        for (int i = 0; i < changedCount; i++) {
+            int tenant = (int)((long)i * propertyCount / changedCount) & ~1;
+            changed.put("tenant." + tenant + ".connection.limit", String.valueOf(tenant + 1));
+        }
+        changedStore = storeType.factory.create(changed);
+        
+        int middle = propertyCount / 2;
+        intKey = "tenant." + middle + ".connection.limit";
+        stringKey = "tenant." + middle + ".connection.url";
+        prefix = "tenant." + (propertyCount / 10) + ".";
+    }
+    
+    private Map<String, String> createProperties() {
+        Map<String, String> results = Maps.newHashMapWithExpectedSize(propertyCount);
+        for (int i = 0; i < propertyCount; i += 2) {
+            results.put("tenant." + i + ".connection.limit", String.valueOf(i));
+            results.put("tenant." + i + ".connection.url", "jdbc:postgresql://db" + i + ".example.com/tenant");
+        }
+        return results;
+    }
+    
+    @Benchmark
+    public int getInt() {
+        return store.getInt(intKey, 0);
+    }
+    
+    @Benchmark
+    public String getString() {
+        return store.getString(stringKey, null);
+    }
+    
+    @Benchmark
+    public int propertiesWithPrefix() {
+        return store.getPropertiesWithPrefix(prefix).size();
+    }
+    
+    @Benchmark
+    public boolean matchesUnchanged() {
+        return store.matches(properties);
+    }
+    
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int changesSince() {
+        return changedStore.changesSince(store).size();
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public PropertyStore build() {
+        return storeType.factory.create(properties);
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public PropertyStore retainedHeap(RetainedHeap heap) {
+        // Build from newly created properties, so the heap store's strings aren't shared with the benchmark's
+        long before = heap.getUsedHeap();
+        PropertyStore built = storeType.factory.create(createProperties());
+        heap.retainedBytes = heap.getUsedHeap() - before;
+        return built;
+    }
+    
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedHeap {
+        
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        
+        public long retainedBytes;
+        
+        long getUsedHeap() {
+            // Collect twice, so garbage surviving the first collection in finalizers is also freed
+            memory.gc();
+            memory.gc();
+            return memory.getHeapMemoryUsage().getUsed();
+        }
+    }
+}
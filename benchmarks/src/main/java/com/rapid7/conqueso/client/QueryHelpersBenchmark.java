@@ -0,0 +1,63 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import java.text.ParseException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The small per-call helpers used when querying the Conqueso server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class QueryHelpersBenchmark {
+    
+    private final Map<String, String> metadataQuery = ImmutableMap.of(
+            "availability-zone", "us-east-1c", 
+            "instance-type", "m1.small",
+            "ami-id", "ami-133cb31d",
+            "team name", "platform & tools");
+    
+    private final String conquesoDate = "2014-02-05T17:05:39.000Z";
+    
+    @Benchmark
+    public String buildMetadataQueryString() {
+        return ConquesoClient.buildMetadataQueryString(metadataQuery);
+    }
+    
+    @Benchmark
+    public Date parseConquesoDate() throws ParseException {
+        return ConquesoClient.parseConquesoDate(conquesoDate);
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.type.TypeReference;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.rapid7.conqueso.client.metrics.Endpoint;
+
+/**
+ * Parsing of the instance and role lists returned by the Conqueso server query APIs, from in-memory responses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class QueryParsingBenchmark {
+    
+    private static final TypeReference<List<InstanceInfo>> INSTANCES_TYPE = 
+            new TypeReference<List<InstanceInfo>>() { };
+    private static final TypeReference<List<RoleInfo>> ROLES_TYPE = new TypeReference<List<RoleInfo>>() { };
+    
+    @Param({ "100", "10000", "100000" })
+    public int count;
+    
+    private ConquesoClient client;
+    
+    @Setup
+    public void setUp() throws IOException {
+        final Map<String, String> responses = ImmutableMap.of(
+                "/api/instances", BenchmarkFixtures.instancesJson(count),
+                "/api/roles", BenchmarkFixtures.rolesJson(count));
+        
+        client = new ConquesoClient(new URL("http://localhost:8080/api/roles/benchmark/properties")) {
+            @Override
+            String readStringFromUrl(Endpoint endpoint, String relativeUrl, String errorMessage) {
+                return responses.get(relativeUrl);
+            }
+        };
+    }
+    
+    @Benchmark
+    public List<InstanceInfo> readInstances() {
+        return client.readObjectFromJson(Endpoint.INSTANCES, INSTANCES_TYPE, "/api/instances", "Failed to read instances");
+    }
+    
+    @Benchmark
+    public List<RoleInfo> readRoles() {
+        return client.readObjectFromJson(Endpoint.ROLES, ROLES_TYPE, "/api/roles", "Failed to read roles");
+    }
+}
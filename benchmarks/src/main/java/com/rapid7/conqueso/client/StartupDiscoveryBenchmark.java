@@ -0,0 +1,190 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.rapid7.conqueso.client.property.AnnotationScanPropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.CompositePropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.CustomPropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.IndexedPropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.IntrospectorPropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.JsonFilePropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.PropertyFileOverridePropertyDefinitionsProvider;
+
+/**
+ * Cold start time of each property definitions provider, and of the complete discovery performed by the 
+ * {@link ConquesoClient.Initializer}, against a {@link SyntheticClasspath}. Every invocation loads the configuration
+ * classes from a new class loader, so class loading, static initialization and introspection are measured as they
+ * happen on startup. Run with <code>-prof gc</code> to also measure the allocation of each provider.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(5)
+@Warmup(iterations = 0)
+@Measurement(iterations = 5)
+public class StartupDiscoveryBenchmark {
+    
+    private static final String DELIMITER = ",";
+    private static final List<String> SCAN_PACKAGES = ImmutableList.of(SyntheticClasspath.PACKAGE_NAME);
+    
+    @Param({ "10", "100", "1000" })
+    public int classCount;
+    
+    @Param({ "10", "50" })
+    public int fieldCount;
+    
+    private SyntheticClasspath classpath;
+    private File scanCacheDirectory;
+    private List<PropertyDefinition> classDefinitions;
+    
+    private ClassLoader classLoader;
+    private ClassLoader originalContextClassLoader;
+    
+    @Setup(Level.Trial)
+    public void setUpClasspath() throws IOException {
+        // The files define or override as many properties as the configuration classes
+        classpath = new SyntheticClasspath(classCount, fieldCount, classCount * fieldCount);
+        scanCacheDirectory = Files.createTempDir();
+        
+        System.setProperty(JsonFilePropertyDefinitionsProvider.JSON_FILE_SYSTEM_PROPERTY, 
+                classpath.getJsonFile().toURI().toString());
+        System.setProperty(PropertyFileOverridePropertyDefinitionsProvider.PROPERTIES_OVERRIDE_FILE_SYSTEM_PROPERTY, 
+                classpath.getOverrideFile().toURI().toString());
+        
+        Map<String, PropertyDefinition> definitions = Maps.newHashMap();
+        new IntrospectorPropertyDefinitionsProvider(loadConfigClasses(classpath.newClassLoader()), DELIMITER)
+            .addPropertyDefinitions(definitions);
+        classDefinitions = Lists.newArrayList(definitions.values());
+    }
+    
+    @TearDown(Level.Trial)
+    public void tearDownClasspath() {
+        System.clearProperty(JsonFilePropertyDefinitionsProvider.JSON_FILE_SYSTEM_PROPERTY);
+        System.clearProperty(PropertyFileOverridePropertyDefinitionsProvider.PROPERTIES_OVERRIDE_FILE_SYSTEM_PROPERTY);
+        classpath.delete();
+        for (File cacheFile : scanCacheDirectory.listFiles()) {
+            cacheFile.delete();
+        }
+        scanCacheDirectory.delete();
+    }
+    
+    @Setup(Level.Invocation)
+    public void setUpClassLoader() {
+        classLoader = classpath.newClassLoader();
+        // The classpath scan and the default index provider find the classes through the context class loader
+        originalContextClassLoader = Thread.currentThread().getContextClassLoader();
+        Thread.currentThread().setContextClassLoader(classLoader);
+    }
+    
+    @TearDown(Level.Invocation)
+    public void tearDownClassLoader() {
+        Thread.currentThread().setContextClassLoader(originalContextClassLoader);
+    }
+    
+    @Benchmark
+    public Map<String, PropertyDefinition> annotationScan() {
+        return addPropertyDefinitions(new AnnotationScanPropertyDefinitionsProvider(ConquesoConfig.class, 
+                SCAN_PACKAGES, DELIMITER));
+    }
+    
+    /**
+     * Only the first invocation of each fork scans the classpath, later invocations read the scan cache.
+     */
+    @Benchmark
+    public Map<String, PropertyDefinition> annotationScanWithCache() {
+        return addPropertyDefinitions(new AnnotationScanPropertyDefinitionsProvider(ConquesoConfig.class, 
+                SCAN_PACKAGES, DELIMITER, scanCacheDirectory));
+    }
+    
+    @Benchmark
+    public Map<String, PropertyDefinition> configurationIndex() {
+        return addPropertyDefinitions(new IndexedPropertyDefinitionsProvider(ConquesoConfig.class, 
+                SCAN_PACKAGES, DELIMITER, classLoader));
+    }
+    
+    @Benchmark
+    public Map<String, PropertyDefinition> introspection() {
+        return addPropertyDefinitions(new IntrospectorPropertyDefinitionsProvider(loadConfigClasses(classLoader), 
+                DELIMITER));
+    }
+    
+    @Benchmark
+    public Map<String, PropertyDefinition> jsonFile() {
+        return addPropertyDefinitions(new JsonFilePropertyDefinitionsProvider());
+    }
+    
+    @Benchmark
+    public Map<String, PropertyDefinition> overrideFile() {
+        return addPropertyDefinitions(new CompositePropertyDefinitionsProvider(
+                new CustomPropertyDefinitionsProvider(classDefinitions), 
+                new PropertyFileOverridePropertyDefinitionsProvider()));
+    }
+    
+    @Benchmark
+    public Map<String, PropertyDefinition> initializerWithScan() {
+        return ConquesoClient.initializer().withConfigurationScan(SyntheticClasspath.PACKAGE_NAME)
+                .getPropertyDefinitions();
+    }
+    
+    @Benchmark
+    public Map<String, PropertyDefinition> initializerWithIndex() {
+        return ConquesoClient.initializer().withConfigurationIndex(SyntheticClasspath.PACKAGE_NAME)
+                .getPropertyDefinitions();
+    }
+    
+    private static Map<String, PropertyDefinition> addPropertyDefinitions(PropertyDefinitionsProvider provider) {
+        Map<String, PropertyDefinition> definitions = Maps.newHashMap();
+        provider.addPropertyDefinitions(definitions);
+        return definitions;
+    }
+    
+    private List<Class<?>> loadConfigClasses(ClassLoader loader) {
+        List<Class<?>> classes = Lists.newArrayListWithCapacity(classpath.getClassNames().size());
+        try {
+            for (String className : classpath.getClassNames()) {
+                classes.add(Class.forName(className, true, loader));
+            }
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+        return Collections.unmodifiableList(classes);
+    }
+}
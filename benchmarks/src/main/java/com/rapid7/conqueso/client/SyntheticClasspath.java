@@ -0,0 +1,201 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.codehaus.jackson.map.ObjectMapper;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.rapid7.conqueso.client.index.ConquesoConfigIndexProcessor;
+
+/**
+ * Synthetic application classpath for the property discovery benchmarks. Generates and compiles a package of
+ * configuration classes marked with {@link ConquesoConfig}, each with a number of static Archaius property fields,
+ * along with the compile-time index of the classes, a JSON property definitions file and an override properties
+ * file.
+ */
+final class SyntheticClasspath {
+    
+    static final String PACKAGE_NAME = "com.rapid7.conqueso.benchmark.generated";
+    
+    private static final String[][] PROPERTY_TYPES = {
+        { "DynamicStringProperty", "getStringProperty", "\"value%d\"", "STRING" },
+        { "DynamicIntProperty", "getIntProperty", "%d", "INT" },
+        { "DynamicBooleanProperty", "getBooleanProperty", "%d %% 2 == 0", "BOOLEAN" },
+        { "DynamicLongProperty", "getLongProperty", "%dL", "LONG" }
+    };
+    
+    private final File directory;
+    private final File classesDirectory;
+    private final ImmutableList<String> classNames;
+    private final File jsonFile;
+    private final File overrideFile;
+    
+    /**
+     * Generate the classpath in a new temporary directory.
+     * @param classCount the number of configuration classes
+     * @param fieldCount the number of property fields on each class
+     * @param fileDefinitionCount the number of definitions in the JSON file, and overrides in the override file
+     */
+    SyntheticClasspath(int classCount, int fieldCount, int fileDefinitionCount) throws IOException {
+        this.directory = Files.createTempDir();
+        this.classesDirectory = new File(directory, "classes");
+        this.classNames = compileConfigClasses(classCount, fieldCount);
+        this.jsonFile = writeJsonFile(fileDefinitionCount);
+        this.overrideFile = writeOverrideFile(classCount, fieldCount, fileDefinitionCount);
+    }
+    
+    /**
+     * @return a new class loader for the generated classes, so they're loaded and initialized again
+     */
+    ClassLoader newClassLoader() {
+        try {
+            return new URLClassLoader(new URL[] { classesDirectory.toURI().toURL() }, 
+                    SyntheticClasspath.class.getClassLoader());
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    List<String> getClassNames() {
+        return classNames;
+    }
+    
+    File getJsonFile() {
+        return jsonFile;
+    }
+    
+    File getOverrideFile() {
+        return overrideFile;
+    }
+    
+    void delete() {
+        delete(directory);
+    }
+    
+    private ImmutableList<String> compileConfigClasses(int classCount, int fieldCount) throws IOException {
+        File sourceDirectory = new File(directory, "src/" + PACKAGE_NAME.replace('.', '/'));
+        checkState(sourceDirectory.mkdirs() && classesDirectory.mkdirs(), "Failed to create %s", directory);
+        
+        ImmutableList.Builder<String> names = ImmutableList.builder();
+        List<File> sourceFiles = Lists.newArrayListWithCapacity(classCount);
+        for (int i = 0; i < classCount; i++) {
+            String simpleName = "Config" + i;
+            File sourceFile = new File(sourceDirectory, simpleName + ".java");
+            Files.write(generateConfigClass(simpleName, i, fieldCount), sourceFile, Charsets.UTF_8);
+            sourceFiles.add(sourceFile);
+            names.add(PACKAGE_NAME + "." + simpleName);
+        }
+        
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        checkState(compiler != null, "Benchmarks must be run with a JDK to compile the configuration classes");
+        StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, Charsets.UTF_8);
+        try {
+            Iterable<? extends JavaFileObject> compilationUnits = fileManager.getJavaFileObjectsFromFiles(sourceFiles);
+            List<String> options = ImmutableList.of("-d", classesDirectory.getPath(), 
+                    "-classpath", System.getProperty("java.class.path"), "-nowarn");
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, null, options, null, 
+                    compilationUnits);
+            // Also writes the compile-time index of the configuration classes
+            task.setProcessors(Collections.singletonList(new ConquesoConfigIndexProcessor()));
+            checkState(task.call(), "Failed to compile configuration classes in %s", directory);
+        } finally {
+            fileManager.close();
+        }
+        return names.build();
+    }
+    
+    private static String generateConfigClass(String simpleName, int classIndex, int fieldCount) {
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(PACKAGE_NAME).append(";\n\n")
+            .append("import com.netflix.config.*;\n")
+            .append("import com.rapid7.conqueso.client.*;\n\n")
+            .append("@ConquesoConfig\n")
+            .append("public class ").append(simpleName).append(" {\n");
+        for (int i = 0; i < fieldCount; i++) {
+            String[] type = PROPERTY_TYPES[i % PROPERTY_TYPES.length];
+            if (i % 2 == 0) {
+                source.append("    @ConquesoDescription(\"Property ").append(i).append(" of ").append(simpleName)
+                    .append("\")\n");
+            }
+            source.append("    public static final ").append(type[0]).append(" PROPERTY").append(i)
+                .append(" = DynamicPropertyFactory.getInstance().").append(type[1]).append("(\"")
+                .append(propertyName(classIndex, i)).append("\", ").append(String.format(type[2], i))
+                .append(");\n");
+        }
+        return source.append("}\n").toString();
+    }
+    
+    private static String propertyName(int classIndex, int fieldIndex) {
+        return "config" + classIndex + ".property" + fieldIndex;
+    }
+    
+    private File writeJsonFile(int definitionCount) throws IOException {
+        List<Map<String, String>> definitions = Lists.newArrayListWithCapacity(definitionCount);
+        for (int i = 0; i < definitionCount; i++) {
+            String[] type = PROPERTY_TYPES[i % PROPERTY_TYPES.length];
+            Map<String, String> definition = Maps.newLinkedHashMap();
+            definition.put("name", "json.property" + i);
+            definition.put("type", type[3]);
+            definition.put("value", String.valueOf(i));
+            definition.put("description", "JSON property " + i);
+            definitions.add(definition);
+        }
+        File file = new File(directory, "definitions.json");
+        new ObjectMapper().writeValue(file, definitions);
+        return file;
+    }
+    
+    private File writeOverrideFile(int classCount, int fieldCount, int overrideCount) throws IOException {
+        StringBuilder properties = new StringBuilder();
+        for (int i = 0; i < overrideCount; i++) {
+            int classIndex = i % classCount;
+            int fieldIndex = (i / classCount) % fieldCount;
+            properties.append(propertyName(classIndex, fieldIndex)).append('=').append(i).append('\n');
+        }
+        File file = new File(directory, "override.properties");
+        Files.write(properties, file, Charsets.UTF_8);
+        return file;
+    }
+    
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
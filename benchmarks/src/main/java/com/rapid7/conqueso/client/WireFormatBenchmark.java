@@ -0,0 +1,99 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.jackson.map.DeserializationConfig;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Comparison of the {@link WireFormat}s for instance lists. The <code>payloadSize</code> benchmark reports the 
+ * encoded size of the payload as its <code>encodedBytes</code> counter, so its time isn't meaningful. The 
+ * <code>decode</code> and <code>encode</code> benchmarks measure the cost of reading and writing the payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+public class WireFormatBenchmark {
+    
+    private static final TypeReference<List<InstanceInfo>> INSTANCES_TYPE = 
+            new TypeReference<List<InstanceInfo>>() { };
+    
+    @Param({ "JSON", "SMILE" })
+    public WireFormat format;
+    
+    @Param({ "100", "10000", "100000" })
+    public int instanceCount;
+    
+    private ObjectMapper mapper;
+    private List<InstanceInfo> instances;
+    private byte[] encoded;
+    
+    @Setup
+    public void setUp() throws IOException {
+        mapper = new ObjectMapper(format.createJsonFactory());
+        mapper.disable(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES);
+        
+        instances = new ObjectMapper().readValue(BenchmarkFixtures.instancesJson(instanceCount), INSTANCES_TYPE);
+        encoded = mapper.writeValueAsBytes(instances);
+    }
+    
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    public byte[] payloadSize(PayloadSize size) {
+        // A single measured iteration, so the counter reports the size rather than its sum over iterations
+        size.encodedBytes = encoded.length;
+        return encoded;
+    }
+    
+    @Benchmark
+    public List<InstanceInfo> decode() throws IOException {
+        return mapper.readValue(encoded, INSTANCES_TYPE);
+    }
+    
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(instances);
+    }
+    
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PayloadSize {
+        
+        public long encodedBytes;
+    }
+}
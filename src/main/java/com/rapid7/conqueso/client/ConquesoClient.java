@@ -17,27 +17,45 @@ package com.rapid7.conqueso.client;
 
 import static com.google.common.base.Preconditions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.lang.annotation.Annotation;
 import java.net.HttpURLConnection;
+import java.net.InetAddress;
 import java.net.MalformedURLException;
+import java.net.NetworkInterface;
+import java.net.SocketException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.Enumeration;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonGenerator;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
@@ -48,25 +66,56 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
+import com.google.common.base.Supplier;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
-import com.google.common.io.CharStreams;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingOutputStream;
 import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.netflix.config.DynamicListProperty;
 import com.netflix.config.sources.URLConfigurationSource;
+import com.rapid7.conqueso.client.change.PropertyChangeDispatcher;
+import com.rapid7.conqueso.client.change.PropertyChangeListener;
+import com.rapid7.conqueso.client.change.PropertySubscription;
+import com.rapid7.conqueso.client.event.HttpRequestEvent;
+import com.rapid7.conqueso.client.event.ParseEvent;
+import com.rapid7.conqueso.client.event.RegistrationEvent;
+import com.rapid7.conqueso.client.index.ConquesoConfigIndexProcessor;
 import com.rapid7.conqueso.client.metadata.CompositeInstanceMetadataProvider;
 import com.rapid7.conqueso.client.metadata.CustomInstanceMetadataProvider;
 import com.rapid7.conqueso.client.metadata.EC2InstanceMetadataProvider;
 import com.rapid7.conqueso.client.metadata.SystemPropertiesInstanceMetadataProvider;
+import com.rapid7.conqueso.client.metrics.ConquesoMetricsListener;
+import com.rapid7.conqueso.client.metrics.Endpoint;
+import com.rapid7.conqueso.client.metrics.EndpointMetrics;
+import com.rapid7.conqueso.client.metrics.HistogramMetricsListener;
+import com.rapid7.conqueso.client.metrics.Outcome;
 import com.rapid7.conqueso.client.property.AnnotationScanPropertyDefinitionsProvider;
 import com.rapid7.conqueso.client.property.CompositePropertyDefinitionsProvider;
 import com.rapid7.conqueso.client.property.CustomPropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.IndexedPropertyDefinitionsProvider;
 import com.rapid7.conqueso.client.property.IntrospectorPropertyDefinitionsProvider;
 import com.rapid7.conqueso.client.property.JsonFilePropertyDefinitionsProvider;
 import com.rapid7.conqueso.client.property.PropertyFileOverridePropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.ReloadablePropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.resilience.CircuitBreaker;
+import com.rapid7.conqueso.client.resilience.CircuitBreakerPolicy;
+import com.rapid7.conqueso.client.resilience.CircuitOpenException;
+import com.rapid7.conqueso.client.resilience.CircuitState;
+import com.rapid7.conqueso.client.snapshot.CompactPropertyStore;
+import com.rapid7.conqueso.client.snapshot.HeapPropertyStore;
+import com.rapid7.conqueso.client.snapshot.PropertyGroup;
+import com.rapid7.conqueso.client.snapshot.PropertySnapshot;
+import com.rapid7.conqueso.client.snapshot.PropertyStore;
 
 /**
  * Class used to populate the Conqueso server with information about a client application instance, as
@@ -96,11 +145,50 @@ public class ConquesoClient {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(ConquesoClient.class);
     
+    private static final int DEBUG_LOG_MAX_CHARS = 4096;
+    
     public static final String CONQUESO_SERVER_DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'"; 
+    
+    public static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    public static final long DEFAULT_READ_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    
+    private static final Pattern ROLE_PROPERTIES_PATH = Pattern.compile("/api/roles/([^/]+)/properties/?");
+    
+    // Number of query responses kept to serve while an endpoint's circuit breaker is open
+    private static final int RESPONSE_CACHE_SIZE = 64;
         
     private final URL conquesoUrl;
     private final ObjectMapper objectMapper;
     
+    private volatile WireFormat wireFormat = WireFormat.JSON;
+    private volatile ObjectMapper wireObjectMapper;
+    
+    private volatile ImmutableMap<String, PropertyDefinition> propertyDefinitions = ImmutableMap.of();
+    private volatile Map<String, String> instanceMetadata = Collections.emptyMap();
+    private boolean registered = false;
+    private boolean compressRegistration = false;
+    private boolean fingerprintRegistration = false;
+    private PropertyDefinitionsReloader propertyDefinitionsReloader = null;
+    private ScheduledExecutorService propertyFileWatcher = null;
+    
+    private final HistogramMetricsListener metrics = new HistogramMetricsListener();
+    private ImmutableList<ConquesoMetricsListener> metricsListeners = ImmutableList.of();
+    
+    private StartupProfile startupProfile = StartupProfile.empty();
+    
+    private volatile int connectTimeoutMillis = (int)DEFAULT_CONNECT_TIMEOUT_MILLIS;
+    private volatile int readTimeoutMillis = (int)DEFAULT_READ_TIMEOUT_MILLIS;
+    private volatile ImmutableMap<Endpoint, CircuitBreaker> circuitBreakers;
+    private final Cache<String, ResponseBody> responseCache = CacheBuilder.newBuilder()
+            .maximumSize(RESPONSE_CACHE_SIZE).build();
+    
+    private final PropertyChangeDispatcher changeDispatcher = new PropertyChangeDispatcher();
+    private volatile PropertySnapshot propertySnapshot = PropertySnapshot.EMPTY;
+    private final Object snapshotLock = new Object();
+    private PropertyStore.Factory propertyStoreFactory = HeapPropertyStore.FACTORY;
+    
     /**
      * Utility method to parse the date values returned from the Conqueso server
      * @param conquesoDateValue date value from the Conqueso server
@@ -135,9 +223,27 @@ public class ConquesoClient {
         
         private List<String> scanPackages = null;
         private Class<? extends Annotation> markerAnnotation = null;
+        private boolean useConfigurationIndex = false;
+        private File scanCacheDirectory = null;
         
         private String collectionDelimiter;
         
+        private boolean compressRegistration = false;
+        private boolean fingerprintRegistration = false;
+        
+        private WireFormat wireFormat = null;
+        
+        private long propertyFileWatchIntervalMillis = 0;
+        private final List<PropertyDefinitionsListener> propertyDefinitionsListeners = Lists.newArrayList();
+        
+        private final List<ConquesoMetricsListener> metricsListeners = Lists.newArrayList();
+        
+        private long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
+        private long readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
+        private CircuitBreakerPolicy circuitBreakerPolicy = null;
+        
+        private PropertyStore.Factory propertyStoreFactory = null;
+        
         /**
          * Initialize the Conqueso Client. This will establish a connection to the server to send
          * the instance's metadata and property definitions.
@@ -145,23 +251,74 @@ public class ConquesoClient {
          * @return the initialized ConquesoClient
          * @throws ConquesoCommunicationException if there was an issue communicating with the Conqueso server
          */
-        public ConquesoClient initialize() {            
-            URL url = getConquesoUrl();       
+        public ConquesoClient initialize() {
+            StartupProfiler profiler = StartupProfiler.startProfile();
+            try {
+                ConquesoClient client = initializeClient();
+                client.startupProfile = profiler.toProfile();
+                LOGGER.info("Conqueso Client initialized in {}", client.startupProfile);
+                return client;
+            } finally {
+                profiler.stop();
+            }
+        }
+        
+        private ConquesoClient initializeClient() {
+            StartupProfiler phase = StartupProfiler.start("conquesoUrl");
+            URL url = getConquesoUrl();
+            phase.stop();
             
+            phase = StartupProfiler.start("instanceMetadata");
             Map<String, String> instanceMetadata = getInstanceMetadata();
+            phase.stop();
             
-            Set<PropertyDefinition> propertyDefs = getPropertyDefinitions();
+            phase = StartupProfiler.start("propertyDefinitions");
+            ImmutableMap<String, PropertyDefinition> propertyDefs = getPropertyDefinitions();
+            phase.stop();
             
             ConquesoClient client = new ConquesoClient(url);
+            client.propertyDefinitions = propertyDefs;
+            client.instanceMetadata = instanceMetadata;
+            client.compressRegistration = compressRegistration;
+            client.fingerprintRegistration = fingerprintRegistration;
+            client.metricsListeners = ImmutableList.copyOf(metricsListeners);
+            client.useRequestTimeouts(connectTimeoutMillis, readTimeoutMillis);
+            if (circuitBreakerPolicy != null) {
+                client.useCircuitBreakerPolicy(circuitBreakerPolicy);
+            }
+            if (propertyStoreFactory != null) {
+                client.propertyStoreFactory = propertyStoreFactory;
+            }
+            if (wireFormat != null && wireFormat.isAvailable()) {
+                client.useWireFormat(wireFormat);
+            } else if (wireFormat != null) {
+                LOGGER.warn("{} isn't available, communicating with the Conqueso Server using JSON", wireFormat);
+            }
             
             // Handle not running against a Conqueso server
-            if (url.getProtocol().equals("http") || url.getProtocol().equals("https")) {
+            boolean register = url.getProtocol().equals("http") || url.getProtocol().equals("https");
+            if (register) {
                 LOGGER.info("Initializing connection with Conqueso Server: " + url.toExternalForm());
-                client.postInitialInstanceInfo(instanceMetadata, propertyDefs);   
+                phase = StartupProfiler.start("registration");
+                client.postInitialInstanceInfo(instanceMetadata, ImmutableSet.copyOf(propertyDefs.values()), 
+                        compressRegistration, fingerprintRegistration);
+                client.registered = true;
+                phase.stop();
             } else {
                 LOGGER.warn("Skipping posting of instance info to " + url.toExternalForm());
             }
             
+            if (propertyFileWatchIntervalMillis > 0) {
+                if (propertyDefinitionsProvider instanceof ReloadablePropertyDefinitionsProvider) {
+                    client.watchPropertyDefinitions(client.new PropertyDefinitionsReloader(
+                            (ReloadablePropertyDefinitionsProvider)propertyDefinitionsProvider, 
+                            ImmutableList.copyOf(propertyDefinitionsListeners)), propertyFileWatchIntervalMillis);
+                } else {
+                    LOGGER.warn("Property definitions provider {} can't be reloaded, skipping property file watch", 
+                            propertyDefinitionsProvider);
+                }
+            }
+            
             return client;
         }
         
@@ -269,6 +426,48 @@ public class ConquesoClient {
             return this;
         }
         
+        /**
+         * Configure the reading of configuration classes with the {@link ConquesoConfig} annotation from the 
+         * compile-time index generated by the {@link ConquesoConfigIndexProcessor}. This behaves like 
+         * {@link #withConfigurationScan(String...)}, but avoids scanning the classpath at startup. All configuration
+         * classes must have been compiled with the conqueso-client-java jar on the compile classpath.
+         * @param scanPackages the Java packages containing the indexed configuration classes
+         */
+        public Initializer withConfigurationIndex(String...scanPackages) {
+            return withConfigurationIndex(ConquesoConfig.class, scanPackages);
+        }
+        
+        /**
+         * Configure the reading of configuration classes with a marker annotation from the compile-time index 
+         * generated by the {@link ConquesoConfigIndexProcessor}. This behaves like 
+         * {@link #withConfigurationScan(Class, String...)}, but avoids scanning the classpath at startup. Custom 
+         * marker annotations must be passed to the processor with the 
+         * {@value ConquesoConfigIndexProcessor#MARKER_ANNOTATIONS_OPTION} compiler option.
+         * @param markerAnnotation the annotation used to mark classes containing Archaius properties
+         * @param scanPackages the Java packages containing the indexed configuration classes
+         */
+        public Initializer withConfigurationIndex(Class<? extends Annotation> markerAnnotation, 
+                String...scanPackages) {
+            withConfigurationScan(markerAnnotation, scanPackages);
+            this.useConfigurationIndex = true;
+            return this;
+        }
+        
+        /**
+         * Cache the results of the configuration scan in the given directory. The classpath scan will be skipped
+         * on restart for jars and classes directories that haven't changed since the results were cached. The
+         * cache directory can also be specified using the 
+         * {@value AnnotationScanPropertyDefinitionsProvider#SCAN_CACHE_DIR_SYSTEM_PROPERTY} system property.
+         * 
+         * @param scanCacheDirectory the directory used to store the configuration scan results
+         * @return the initializer for method chaining
+         */
+        public Initializer withConfigurationScanCache(File scanCacheDirectory) {
+            checkState(this.scanCacheDirectory == null, "Configuration scan cache already configured");
+            this.scanCacheDirectory = checkNotNull(scanCacheDirectory, "scanCacheDirectory");
+            return this;
+        }
+        
         /**
          * Specify the configuration classes used in your app containing the Archaius dynamic properties.
          * The classes will be scanned to discover the static Archaius dynamic property fields, and the 
@@ -299,6 +498,139 @@ public class ConquesoClient {
             return this;
         }
         
+        /**
+         * Compress the instance metadata and property definitions sent to the Conqueso server on initialization
+         * using gzip Content-Encoding. Only enable this if the Conqueso server accepts gzip request bodies.
+         * 
+         * @return the initializer for method chaining
+         */
+        public Initializer withCompressedRegistration() {
+            this.compressRegistration = true;
+            return this;
+        }
+        
+        /**
+         * Register with the Conqueso server by first sending only the instance metadata and a hash of the property
+         * definitions. The full property definitions are only sent if the server responds with 409 Conflict, 
+         * indicating it doesn't know the definitions for the hash. This avoids every instance of a role uploading
+         * the same definitions, but requires a Conqueso server supporting the <code>propertiesHash</code> field.
+         * 
+         * @return the initializer for method chaining
+         */
+        public Initializer withDefinitionFingerprinting() {
+            this.fingerprintRegistration = true;
+            return this;
+        }
+        
+        /**
+         * Exchange data with the Conqueso server using the compact binary {@link WireFormat#SMILE} encoding, when
+         * the optional <code>jackson-smile</code> artifact is on the classpath. The registration is sent as Smile,
+         * falling back to JSON if the server responds with 415 Unsupported Media Type, and queries accept either
+         * Smile or JSON responses.
+         * 
+         * @return the initializer for method chaining
+         */
+        public Initializer withBinaryWireFormat() {
+            checkState(this.wireFormat == null, "Wire format already configured");
+            this.wireFormat = WireFormat.SMILE;
+            return this;
+        }
+        
+        /**
+         * Watch the local property definition and override files for changes, checking their size and modification
+         * time at the given interval. When they change, only the changed files are read again, the property 
+         * definitions returned by {@link ConquesoClient#getPropertyDefinitions()} are updated, any 
+         * {@link PropertyDefinitionsListener}s are notified, and the instance info is transmitted to the Conqueso 
+         * server again. The watch is stopped by {@link ConquesoClient#shutdown()}.
+         * <p>
+         * The watch requires the property definitions provider to implement 
+         * {@link ReloadablePropertyDefinitionsProvider}, as the default provider does.
+         * 
+         * @param interval the interval between checks for changed files
+         * @param unit the unit of the interval
+         * @return the initializer for method chaining
+         */
+        public Initializer withPropertyFileWatch(long interval, TimeUnit unit) {
+            checkState(this.propertyFileWatchIntervalMillis == 0, "Property file watch already configured");
+            checkArgument(interval > 0, "interval");
+            this.propertyFileWatchIntervalMillis = Math.max(1, checkNotNull(unit, "unit").toMillis(interval));
+            return this;
+        }
+        
+        /**
+         * Add a listener notified when the property definitions change while watching the property files with
+         * {@link #withPropertyFileWatch(long, TimeUnit)}.
+         * 
+         * @param listener the listener to notify of changed property definitions
+         * @return the initializer for method chaining
+         */
+        public Initializer withPropertyDefinitionsListener(PropertyDefinitionsListener listener) {
+            propertyDefinitionsListeners.add(checkNotNull(listener, "listener"));
+            return this;
+        }
+        
+        /**
+         * Add a listener notified of every request made to the Conqueso server, to export the client's metrics to
+         * another metrics system. The client also records its requests in histograms, available through 
+         * {@link ConquesoClient#getMetrics()}.
+         * 
+         * @param listener the listener to notify of requests
+         * @return the initializer for method chaining
+         */
+        public Initializer withMetricsListener(ConquesoMetricsListener listener) {
+            metricsListeners.add(checkNotNull(listener, "listener"));
+            return this;
+        }
+        
+        /**
+         * Set the timeouts of the requests to the Conqueso server, so a slow server fails requests rather than 
+         * blocking the calling threads indefinitely. By default, connecting times out after 5 seconds and reading 
+         * the response after 30 seconds.
+         * 
+         * @param connectTimeout the maximum time to wait to connect to the server
+         * @param readTimeout the maximum time to wait for data while reading the response
+         * @param unit the unit of the timeouts
+         * @return the initializer for method chaining
+         */
+        public Initializer withRequestTimeouts(long connectTimeout, long readTimeout, TimeUnit unit) {
+            checkArgument(connectTimeout > 0, "connectTimeout");
+            checkArgument(readTimeout > 0, "readTimeout");
+            checkNotNull(unit, "unit");
+            this.connectTimeoutMillis = Math.max(1, unit.toMillis(connectTimeout));
+            this.readTimeoutMillis = Math.max(1, unit.toMillis(readTimeout));
+            return this;
+        }
+        
+        /**
+         * Configure the circuit breakers protecting the client from a failing or slow Conqueso server, replacing 
+         * the {@link CircuitBreakerPolicy#DEFAULT default policy}. Each endpoint has its own circuit breaker - while 
+         * it's open, queries of the endpoint are answered from the latest cached response if available, and 
+         * otherwise fail fast with a {@link CircuitOpenException}. Use {@link CircuitBreakerPolicy#DISABLED} to 
+         * send every request.
+         * 
+         * @param policy the circuit breaker policy
+         * @return the initializer for method chaining
+         */
+        public Initializer withCircuitBreaker(CircuitBreakerPolicy policy) {
+            checkState(this.circuitBreakerPolicy == null, "Circuit breaker already configured");
+            this.circuitBreakerPolicy = checkNotNull(policy, "policy");
+            return this;
+        }
+        
+        /**
+         * Configure the store holding the values of the {@link #getPropertySnapshot() property snapshots}, replacing
+         * the default {@link HeapPropertyStore}. Use {@link CompactPropertyStore#FACTORY} for roles with very large
+         * numbers of properties, to hold each snapshot in a single byte array at the cost of slower reads.
+         * 
+         * @param factory the factory of the property stores
+         * @return the initializer for method chaining
+         */
+        public Initializer withPropertyStore(PropertyStore.Factory factory) {
+            checkState(this.propertyStoreFactory == null, "Property store already configured");
+            this.propertyStoreFactory = checkNotNull(factory, "factory");
+            return this;
+        }
+        
         /**
          * Create the default {@link InstanceMetadataProvider} to use for a ConquesoClient. This provider
          * can be composed with additional custom providers using the {@link CompositeInstanceMetadataProvider} class,
@@ -322,7 +654,12 @@ public class ConquesoClient {
             
             String delimiter = Objects.firstNonNull(collectionDelimiter, DynamicListProperty.DEFAULT_DELIMITER);
             
-            if (markerAnnotation != null) {
+            if (markerAnnotation != null && useConfigurationIndex) {
+                providers.add(new IndexedPropertyDefinitionsProvider(markerAnnotation, scanPackages, delimiter));
+            } else if (markerAnnotation != null && scanCacheDirectory != null) {
+                providers.add(new AnnotationScanPropertyDefinitionsProvider(markerAnnotation, scanPackages, 
+                        delimiter, scanCacheDirectory));
+            } else if (markerAnnotation != null) {
                 providers.add(new AnnotationScanPropertyDefinitionsProvider(markerAnnotation, scanPackages, 
                         delimiter));                
             }
@@ -363,7 +700,8 @@ public class ConquesoClient {
             return instanceMetadataProvider.getInstanceMetadata();
         }
         
-        private Set<PropertyDefinition> getPropertyDefinitions() {
+        @VisibleForTesting
+        ImmutableMap<String, PropertyDefinition> getPropertyDefinitions() {
             if (propertyDefinitionsProvider == null) {
                 if (markerAnnotation == null && configurationClasses == null) {
                     LOGGER.warn("No configuration classes or configuration scan have been configured");
@@ -377,8 +715,176 @@ public class ConquesoClient {
             
             LOGGER.info("{} Archaius property definitions detected", definitions.size());
             
-            return ImmutableSet.copyOf(definitions.values());
+            return ImmutableMap.copyOf(definitions);
+        }
+    }
+    
+    /**
+     * Retrieve the property definitions of this instance, as transmitted to the Conqueso server. If the property 
+     * files are being watched, this reflects the latest changes to the files.
+     * @return the current property definitions
+     */
+    public ImmutableSet<PropertyDefinition> getPropertyDefinitions() {
+        return ImmutableSet.copyOf(propertyDefinitions.values());
+    }
+    
+    /**
+     * Retrieve the metadata of this instance, as transmitted to the Conqueso server. This reflects any updates made
+     * with {@link #updateInstanceMetadata(Map)} or {@link #deferInstanceMetadata(Map)}.
+     * @return the current instance metadata
+     */
+    public Map<String, String> getInstanceMetadata() {
+        return Collections.unmodifiableMap(instanceMetadata);
+    }
+    
+    /**
+     * Add or replace entries of the metadata of this instance, transmitting the updated metadata to the Conqueso 
+     * server if it differs from the current metadata. The Conqueso server only accepts complete instance info, so 
+     * the whole registration is sent again - with {@link Initializer#withDefinitionFingerprinting()}, this only 
+     * includes the hash of the property definitions.
+     * @param metadata the metadata entries to add or replace
+     * @throws ConquesoCommunicationException if there's an error communicating with the Conqueso Server. The 
+     * metadata is still updated, to be transmitted with the next registration.
+     */
+    public synchronized void updateInstanceMetadata(Map<String, String> metadata) {
+        if (mergeInstanceMetadata(metadata) && registered) {
+            postInitialInstanceInfo(instanceMetadata, ImmutableSet.copyOf(propertyDefinitions.values()), 
+                    compressRegistration, fingerprintRegistration);
+        }
+    }
+    
+    /**
+     * Add or replace entries of the metadata of this instance without transmitting them to the Conqueso server. 
+     * The updated metadata is transmitted with the next registration, such as after the property definitions are
+     * reloaded or the metadata is updated with {@link #updateInstanceMetadata(Map)}.
+     * @param metadata the metadata entries to add or replace
+     */
+    public synchronized void deferInstanceMetadata(Map<String, String> metadata) {
+        mergeInstanceMetadata(metadata);
+    }
+    
+    /**
+     * @return true if the instance registers with a hash of its property definitions, enabled with
+     * {@link Initializer#withDefinitionFingerprinting()}
+     */
+    public synchronized boolean isDefinitionFingerprinting() {
+        return fingerprintRegistration;
+    }
+    
+    /**
+     * @return true if the metadata differed from the current metadata
+     */
+    private boolean mergeInstanceMetadata(Map<String, String> metadata) {
+        checkNotNull(metadata, "metadata");
+        Map<String, String> updated = Maps.newHashMap(instanceMetadata);
+        updated.putAll(metadata);
+        if (updated.equals(instanceMetadata)) {
+            return false;
         }
+        instanceMetadata = updated;
+        return true;
+    }
+    
+    /**
+     * Stop watching the property files for changes, if enabled with 
+     * {@link Initializer#withPropertyFileWatch(long, TimeUnit)}.
+     */
+    public synchronized void shutdown() {
+        if (propertyFileWatcher != null) {
+            propertyFileWatcher.shutdownNow();
+            propertyFileWatcher = null;
+        }
+    }
+    
+    /**
+     * Retrieve a snapshot of the metrics recorded for the requests made to the Conqueso server by this client,
+     * including the latency, response size and parse time histograms of each endpoint.
+     * @return the metrics of each endpoint
+     */
+    public ImmutableMap<Endpoint, EndpointMetrics> getMetrics() {
+        return metrics.getSnapshot();
+    }
+    
+    /**
+     * Retrieve the time spent in each phase of this client's initialization, such as reading the instance metadata,
+     * discovering the property definitions and registering with the Conqueso server.
+     * @return the startup profile of this client
+     */
+    public StartupProfile getStartupProfile() {
+        return startupProfile;
+    }
+    
+    /**
+     * Retrieve the state of the circuit breaker protecting the given endpoint of the Conqueso server.
+     * @param endpoint the endpoint
+     * @return the state of the endpoint's circuit breaker
+     */
+    public CircuitState getCircuitState(Endpoint endpoint) {
+        return circuitBreakers.get(checkNotNull(endpoint, "endpoint")).getState();
+    }
+    
+    /**
+     * Retrieve the latest snapshot of the properties polled from the Conqueso server. A new snapshot is published 
+     * each time a call to {@link #getLatestProperties()}, such as a poll of a 
+     * {@link com.rapid7.conqueso.client.polling.ConquesoPolledConfigurationSource}, returns changed properties.
+     * Reading the snapshot and its values takes no locks, so it can be read freely from request threads.
+     * @return the latest property snapshot, or {@link PropertySnapshot#EMPTY} if the properties haven't been polled
+     */
+    public PropertySnapshot getPropertySnapshot() {
+        return propertySnapshot;
+    }
+    
+    /**
+     * Retrieve the properties with keys starting with the given prefix from the latest property snapshot, without 
+     * polling the Conqueso server. The properties are found by a binary search of the snapshot's sorted keys, and 
+     * returned as a view of the snapshot rather than a copy.
+     * @param prefix the key prefix, such as <code>tenant.42.</code>
+     * @return the matching property values, keyed by property key in sorted order
+     * @see PropertySnapshot#getPropertiesWithPrefix(String)
+     */
+    public SortedMap<String, String> getPropertiesWithPrefix(String prefix) {
+        return propertySnapshot.getPropertiesWithPrefix(prefix);
+    }
+    
+    /**
+     * Create a group of related properties, read together from the latest property snapshot so the group's 
+     * properties are always consistent with each other.
+     * @param keys the keys of the properties in the group
+     * @return the property group
+     */
+    public PropertyGroup getPropertyGroup(String...keys) {
+        return new PropertyGroup(new Supplier<PropertySnapshot>() {
+            @Override
+            public PropertySnapshot get() {
+                return propertySnapshot;
+            }
+        }, keys);
+    }
+    
+    /**
+     * Subscribe to changes of the property with the given key. The changes are found by comparing the properties 
+     * returned by each call to {@link #getLatestProperties()}, such as each poll of a 
+     * {@link com.rapid7.conqueso.client.polling.ConquesoPolledConfigurationSource}, with the previous call. Only the
+     * listeners subscribed to the changed keys, or their prefixes, are notified.
+     * @param key the key of the property
+     * @param listener the listener to notify of changes
+     * @param executor the executor to notify the listener on
+     * @return the subscription, to cancel when no longer needed
+     */
+    public PropertySubscription subscribe(String key, PropertyChangeListener listener, Executor executor) {
+        return changeDispatcher.subscribe(key, listener, executor);
+    }
+    
+    /**
+     * Subscribe to changes of the properties with keys starting with the given prefix, as with 
+     * {@link #subscribe(String, PropertyChangeListener, Executor)}.
+     * @param prefix the key prefix of the properties
+     * @param listener the listener to notify of changes, once for each changed property
+     * @param executor the executor to notify the listener on
+     * @return the subscription, to cancel when no longer needed
+     */
+    public PropertySubscription subscribePrefix(String prefix, PropertyChangeListener listener, Executor executor) {
+        return changeDispatcher.subscribePrefix(prefix, listener, executor);
     }
     
     /**
@@ -388,23 +894,50 @@ public class ConquesoClient {
      * @throws ConquesoCommunicationException if there's an error communicating with the Conqueso Server.
      */
     public Properties getLatestProperties() {
-        InputStream input = null;
+        ResponseBody response;
         try {
-            input = conquesoUrl.openStream();
-            Properties properties = new Properties();
-            properties.load(input);
-            return properties;
+            response = get(Endpoint.LATEST_PROPERTIES, conquesoUrl, null);
         } catch (IOException e) {
             throw new ConquesoCommunicationException("Failed to retrieve latest properties from Conqueso server: " +
                     conquesoUrl.toExternalForm(), e);
-        } finally {
-            if (input != null) {
-                try {
-                    input.close();
-                } catch (IOException e) {
-                    throw new ConquesoCommunicationException(
-                            "Failed to retrieve latest properties from Conqueso server", e);
-                }
+        }
+        
+        long parseStart = System.nanoTime();
+        ParseEvent event = ParseEvent.start(Endpoint.LATEST_PROPERTIES.name());
+        Properties properties = new Properties();
+        try {
+            properties.load(new ByteArrayInputStream(response.bytes));
+        } catch (IOException e) {
+            recordParse(Endpoint.LATEST_PROPERTIES, Outcome.PARSE_ERROR, parseStart, event, response.bytes.length);
+            throw new ConquesoCommunicationException("Failed to retrieve latest properties from Conqueso server: " +
+                    conquesoUrl.toExternalForm(), e);
+        } catch (IllegalArgumentException e) {
+            recordParse(Endpoint.LATEST_PROPERTIES, Outcome.PARSE_ERROR, parseStart, event, response.bytes.length);
+            throw e;
+        }
+        recordParse(Endpoint.LATEST_PROPERTIES, Outcome.SUCCESS, parseStart, event, response.bytes.length);
+        Map<String, String> latestProperties = Maps.fromProperties(properties);
+        publishSnapshot(latestProperties);
+        return properties;
+    }
+    
+    /**
+     * Publish a new property snapshot if the latest properties differ from the current snapshot, then notify the
+     * change listeners so they read the new snapshot. The listeners are notified of the changes between the 
+     * snapshots' stores, so no further copy of the properties is held for them, and the compact store only decodes
+     * the properties that changed. The first snapshot is the baseline for later changes, so isn't dispatched.
+     */
+    private void publishSnapshot(Map<String, String> latestProperties) {
+        synchronized (snapshotLock) {
+            PropertySnapshot current = propertySnapshot;
+            if (current.getVersion() != 0 && current.matches(latestProperties)) {
+                return;
+            }
+            PropertySnapshot latest = new PropertySnapshot(current.getVersion() + 1, 
+                    propertyStoreFactory.create(latestProperties));
+            propertySnapshot = latest;
+            if (current.getVersion() != 0) {
+                changeDispatcher.dispatch(latest.getStore().changesSince(current.getStore()));
             }
         }
     }
@@ -422,7 +955,7 @@ public class ConquesoClient {
         String errorMessage = String.format("Failed to retrieve %s property from Conqueso server: %s",
                 key, conquesoUrl.toExternalForm());
         
-        return readStringFromUrl("properties/" + key, errorMessage);
+        return readStringFromUrl(Endpoint.PROPERTY, "properties/" + key, errorMessage);
     }
     
     /**
@@ -436,7 +969,7 @@ public class ConquesoClient {
         String errorMessage = String.format("Failed to retrieve roles from Conqueso server: %s",
                 conquesoUrl.toExternalForm());
         
-        return ImmutableList.copyOf(readObjectFromJson(typeReference, "/api/roles", errorMessage));
+        return ImmutableList.copyOf(readObjectFromJson(Endpoint.ROLES, typeReference, "/api/roles", errorMessage));
     }
     
     /**
@@ -500,7 +1033,8 @@ public class ConquesoClient {
         String errorMessage = String.format("Failed to retrieve instances from Conqueso server: %s",
                 conquesoUrl.toExternalForm());
         
-        return ImmutableList.copyOf(readObjectFromJson(typeReference, relativeUrl, errorMessage));
+        return ImmutableList.copyOf(readObjectFromJson(Endpoint.INSTANCES, typeReference, relativeUrl, 
+                errorMessage));
     }
     
     /**
@@ -513,6 +1047,45 @@ public class ConquesoClient {
         return getRoleInstancesWithMetadataImpl(roleName, Collections.<String, String>emptyMap());
     }
     
+    /**
+     * Retrieve the information the Conqueso Server holds about this instance, such as the poll interval it expects.
+     * The instance is found among the instances of its role by the IP addresses of the local network interfaces, 
+     * as the server identifies instances by the address they connect from.
+     * @return the information about this instance, or null if it isn't registered with the server, or the server 
+     * URL doesn't name a role
+     * @throws ConquesoCommunicationException if there's an error communicating with the Conqueso Server.
+     */
+    public InstanceInfo getInstanceInfo() {
+        Matcher matcher = ROLE_PROPERTIES_PATH.matcher(conquesoUrl.getPath());
+        if (!matcher.matches()) {
+            return null;
+        }
+        
+        Set<String> localAddresses = getLocalAddresses();
+        for (InstanceInfo instance : getRoleInstances(matcher.group(1))) {
+            if (localAddresses.contains(instance.getIpAddress())) {
+                return instance;
+            }
+        }
+        return null;
+    }
+    
+    private static Set<String> getLocalAddresses() {
+        Set<String> addresses = Sets.newHashSet();
+        try {
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            while (interfaces != null && interfaces.hasMoreElements()) {
+                Enumeration<InetAddress> interfaceAddresses = interfaces.nextElement().getInetAddresses();
+                while (interfaceAddresses.hasMoreElements()) {
+                    addresses.add(interfaceAddresses.nextElement().getHostAddress());
+                }
+            }
+        } catch (SocketException e) {
+            LOGGER.warn("Failed to list the local network addresses", e);
+        }
+        return addresses;
+    }
+    
     /**
      * Retrieve information about all online instances of a particular role matching the given metadata query from 
      * the Conqueso Server.
@@ -576,7 +1149,8 @@ public class ConquesoClient {
         String errorMessage = String.format("Failed to retrieve %s instances from Conqueso server: %s",
                 roleName, conquesoUrl.toExternalForm());
         
-        return ImmutableList.copyOf(readObjectFromJson(typeReference, relativeUrl, errorMessage));
+        return ImmutableList.copyOf(readObjectFromJson(Endpoint.ROLE_INSTANCES, typeReference, relativeUrl, 
+                errorMessage));
     }
         
     private static ImmutableMap<String, String> toMap(String...pairs) {
@@ -590,7 +1164,8 @@ public class ConquesoClient {
         return builder.build();
     }
     
-    private static String buildMetadataQueryString(Map<String, String> metadataQuery) {
+    @VisibleForTesting
+    static String buildMetadataQueryString(Map<String, String> metadataQuery) {
         try {
             StringBuilder sb = new StringBuilder("?");
             for (Map.Entry<String, String> entry : metadataQuery.entrySet()) {
@@ -612,22 +1187,118 @@ public class ConquesoClient {
         this.conquesoUrl = conquesoUrl;
         this.objectMapper = new ObjectMapper();
         this.objectMapper.disable(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES);
+        useCircuitBreakerPolicy(CircuitBreakerPolicy.DEFAULT);
         // Prevent construction outside of Initializer
     }
     
+    @VisibleForTesting
+    void useRequestTimeouts(long connectTimeoutMillis, long readTimeoutMillis) {
+        this.connectTimeoutMillis = (int)Math.min(connectTimeoutMillis, Integer.MAX_VALUE);
+        this.readTimeoutMillis = (int)Math.min(readTimeoutMillis, Integer.MAX_VALUE);
+    }
+    
+    @VisibleForTesting
+    void useCircuitBreakerPolicy(CircuitBreakerPolicy policy) {
+        ImmutableMap.Builder<Endpoint, CircuitBreaker> builder = ImmutableMap.builder();
+        for (Endpoint endpoint : Endpoint.values()) {
+            builder.put(endpoint, new CircuitBreaker(endpoint.name(), policy));
+        }
+        this.circuitBreakers = builder.build();
+    }
+    
+    /**
+     * Exchange data with the Conqueso server using the given encoding.
+     */
+    @VisibleForTesting
+    void useWireFormat(WireFormat wireFormat) {
+        ObjectMapper mapper = new ObjectMapper(wireFormat.createJsonFactory());
+        mapper.disable(DeserializationConfig.Feature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.wireObjectMapper = mapper;
+        this.wireFormat = wireFormat;
+    }
+    
+    private synchronized void watchPropertyDefinitions(PropertyDefinitionsReloader reloader, long intervalMillis) {
+        this.propertyDefinitionsReloader = reloader;
+        this.propertyFileWatcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("conqueso-property-file-watch-%d").setDaemon(true).build());
+        propertyFileWatcher.scheduleWithFixedDelay(reloader, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Check the watched property files for changes immediately, rather than waiting for the next scheduled check.
+     * @return the change to the property definitions, empty if they haven't changed
+     */
+    @VisibleForTesting
+    synchronized PropertyDefinitionsChange reloadPropertyDefinitions() {
+        checkState(propertyDefinitionsReloader != null, "Property files not watched");
+        return propertyDefinitionsReloader.reload();
+    }
+    
     private void postInitialInstanceInfo(Map<String, String> instanceMetadata,
-            Set<PropertyDefinition> combinedPropertyDefinitions) {
+            Set<PropertyDefinition> combinedPropertyDefinitions, boolean compress, boolean fingerprint) {
         
+        RegistrationEvent event = RegistrationEvent.start(combinedPropertyDefinitions.size(), fingerprint, compress);
         try {
-            String json = toJson(instanceMetadata, combinedPropertyDefinitions);
-            LOGGER.debug("Transmitting instance info to Conqueso Server:");
-            LOGGER.debug(json);
-            post(json);
+            if (fingerprint) {
+                StartupProfiler phase = StartupProfiler.start("fingerprint");
+                String propertiesHash = computePropertiesHash(combinedPropertyDefinitions);
+                phase.stop();
+                LOGGER.debug("Transmitting instance info to Conqueso Server with properties hash {}", propertiesHash);
+                int status = post(new InstanceRegistration(instanceMetadata, propertiesHash), compress);
+                if (status != HttpURLConnection.HTTP_CONFLICT) {
+                    checkPostStatus(status);
+                    event.end(true);
+                    return;
+                }
+                
+                LOGGER.info("Properties hash {} unknown to Conqueso Server, transmitting property definitions", 
+                        propertiesHash);
+                postInstanceInfo(new FingerprintedInstanceInfo(instanceMetadata, combinedPropertyDefinitions, 
+                        propertiesHash), compress);
+            } else {
+                postInstanceInfo(new InitialInstanceInfo(instanceMetadata, combinedPropertyDefinitions), compress);
+            }
+            event.end(true);
         } catch (Exception e) {
+            event.end(false);
             throw new ConquesoCommunicationException("Failed to send instance info to Conqueso Server: " +
                     conquesoUrl.toExternalForm(), e);
         }
     }
+    
+    private void postInstanceInfo(InitialInstanceInfo info, boolean compress) throws IOException {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Transmitting instance info to Conqueso Server:");
+            LOGGER.debug(toTruncatedJson(info, DEBUG_LOG_MAX_CHARS));
+        }
+        checkPostStatus(post(info, compress));
+    }
+    
+    /**
+     * Compute a stable hash of the given property definitions, independent of their iteration order. Each 
+     * definition's fields are hashed in name order, separated by a zero character which can't appear in the 
+     * property name.
+     * @return the SHA-256 hash of the definitions as a hex string
+     */
+    @VisibleForTesting
+    static String computePropertiesHash(Collection<PropertyDefinition> propertyDefinitions) {
+        List<PropertyDefinition> sortedDefinitions = Lists.newArrayList(propertyDefinitions);
+        Collections.sort(sortedDefinitions, new Comparator<PropertyDefinition>() {
+            @Override
+            public int compare(PropertyDefinition o1, PropertyDefinition o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+        
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (PropertyDefinition definition : sortedDefinitions) {
+            hasher.putString(definition.getName(), Charsets.UTF_8).putByte((byte)0)
+                .putString(definition.getType().name(), Charsets.UTF_8).putByte((byte)0)
+                .putString(definition.getValue(), Charsets.UTF_8).putByte((byte)0)
+                .putString(definition.getDescription(), Charsets.UTF_8).putByte((byte)0);
+        }
+        return hasher.hash().toString();
+    }
         
     @VisibleForTesting
     String toJson(Map<String, String> instanceMetadata,
@@ -636,50 +1307,445 @@ public class ConquesoClient {
         return objectMapper.writeValueAsString(info);
     }
     
-    private void post(String message) throws IOException {
-        HttpURLConnection connection = (HttpURLConnection)conquesoUrl.openConnection();
-        connection.setDoOutput(true);
-        connection.setRequestProperty(HttpHeaders.CONTENT_TYPE, "application/json");
-        connection.setRequestMethod("POST");
+    @VisibleForTesting
+    String toTruncatedJson(Object value, int maxChars) throws IOException {
+        TruncatingWriter writer = new TruncatingWriter(maxChars);
+        objectMapper.writeValue(writer, value);
+        return writer.toString();
+    }
+    
+    /**
+     * POST the given message to the Conqueso server, in JSON unless another wire format is in use.
+     * @return the HTTP response status code
+     */
+    private int post(Object message, boolean compress) throws IOException {
+        WireFormat format = wireFormat;
+        if (format == WireFormat.JSON) {
+            return post(message, compress, WireFormat.JSON, objectMapper);
+        }
+        
+        int status = post(message, compress, format, wireObjectMapper);
+        if (status == HttpURLConnection.HTTP_UNSUPPORTED_TYPE) {
+            LOGGER.warn("Conqueso Server doesn't accept {}, falling back to JSON", format);
+            wireFormat = WireFormat.JSON;
+            status = post(message, compress, WireFormat.JSON, objectMapper);
+        }
+        return status;
+    }
+    
+    private int post(Object message, boolean compress, WireFormat format, ObjectMapper mapper) throws IOException {
+        CircuitBreaker breaker = circuitBreakers.get(Endpoint.REGISTRATION);
+        if (!breaker.tryAcquire()) {
+            recordRequest(Endpoint.REGISTRATION, Outcome.REJECTED, System.nanoTime(), 0, 0);
+            throw new CircuitOpenException(Endpoint.REGISTRATION, breaker.getRemainingOpenMillis());
+        }
         
-        Writer writer = null;
+        long start = System.nanoTime();
+        HttpRequestEvent event = HttpRequestEvent.start("POST", Endpoint.REGISTRATION.name(), 
+                Endpoint.REGISTRATION.getUrlTemplate());
+        StartupProfiler phase = StartupProfiler.start("post");
+        StartupProfiler sendPhase = StartupProfiler.start("send");
+        HttpURLConnection connection = null;
+        CountingOutputStream requestBody = null;
+        boolean outcomeRecorded = false;
         try {
-            writer = new OutputStreamWriter(connection.getOutputStream(), Charsets.UTF_8);
-            writer.write(message);
+            connection = (HttpURLConnection)openConnection(conquesoUrl);
+            connection.setDoOutput(true);
+            // Stream the body rather than letting the connection buffer all of it to compute the Content-Length
+            connection.setChunkedStreamingMode(0);
+            connection.setRequestProperty(HttpHeaders.CONTENT_TYPE, format.getContentType());
+            if (compress) {
+                connection.setRequestProperty(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            connection.setRequestMethod("POST");
+            
+            requestBody = new CountingOutputStream(connection.getOutputStream());
+            OutputStream output = requestBody;
+            try {
+                if (compress) {
+                    output = new GZIPOutputStream(output);
+                }
+                JsonGenerator generator = mapper.getJsonFactory().createJsonGenerator(output, JsonEncoding.UTF8);
+                mapper.writeValue(generator, message);
+                // Also closes the underlying stream, finishing the gzip stream if compressing
+                generator.close();
+            } finally {
+                output.close();
+            }
+            sendPhase.stop();
+            
+            // Need to read the response to send data
+            StartupProfiler responsePhase = StartupProfiler.start("response");
+            int status = connection.getResponseCode();
+            InputStream response = status < HttpURLConnection.HTTP_BAD_REQUEST ? 
+                    connection.getInputStream() : connection.getErrorStream();
+            long responseBytes = 0;
+            if (response != null) {
+                try {
+                    responseBytes = ByteStreams.toByteArray(response).length;
+                } finally {
+                    response.close();
+                }
+            }
+            responsePhase.stop();
+            event.end(status, requestBody.getCount(), responseBytes);
+            recordCircuitOutcome(breaker, connection, status, start);
+            outcomeRecorded = true;
+            recordRequest(Endpoint.REGISTRATION, status < HttpURLConnection.HTTP_BAD_REQUEST ? 
+                    Outcome.SUCCESS : Outcome.HTTP_ERROR, start, requestBody.getCount(), responseBytes);
+            return status;
+        } catch (IOException e) {
+            int status = getResponseStatus(connection);
+            long requestBytes = requestBody == null ? 0 : requestBody.getCount();
+            event.end(status, requestBytes, 0);
+            recordCircuitOutcome(breaker, connection, status, start);
+            outcomeRecorded = true;
+            recordRequest(Endpoint.REGISTRATION, getFailureOutcome(status), start, requestBytes, 0);
+            throw e;
         } finally {
-            if (writer != null) {
-                writer.close();
+            if (!outcomeRecorded) {
+                recordUnexpectedFailure(Endpoint.REGISTRATION, breaker, event, start, 
+                        requestBody == null ? 0 : requestBody.getCount());
             }
-            // Need to call this to send data
-            connection.getInputStream().close();
+            phase.stop();
+        }
+    }
+    
+    private void checkPostStatus(int status) throws IOException {
+        if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+            throw new IOException("Server returned HTTP response code: " + status + " for URL: " + 
+                    conquesoUrl.toExternalForm());
+        }
+    }
+    
+    @VisibleForTesting
+    String readStringFromUrl(Endpoint endpoint, String relativeUrl, String errorMessage) {
+        try {
+            return new String(get(endpoint, new URL(conquesoUrl, relativeUrl), null).bytes, Charsets.UTF_8);
+        } catch (IOException e) {
+            throw new ConquesoCommunicationException(errorMessage, e);
         }
     }
     
     @VisibleForTesting
-    String readStringFromUrl(String relativeUrl, String errorMessage) {
-        InputStream input = null;
+    <T> T readObjectFromJson(Endpoint endpoint, TypeReference<T> objectType, String relativeUrl, 
+            String errorMessage) {
         try {
-            URL propertyUrl = new URL(conquesoUrl, relativeUrl);
-            input = propertyUrl.openStream();
-            return CharStreams.toString(new InputStreamReader(input, Charsets.UTF_8));
+            if (wireFormat != WireFormat.JSON) {
+                return readObjectFromUrl(endpoint, objectType, relativeUrl, wireFormat);
+            }
+            String json = readStringFromUrl(endpoint, relativeUrl, errorMessage);
+            
+            long parseStart = System.nanoTime();
+            ParseEvent event = ParseEvent.start(endpoint.name());
+            try {
+                T result = objectMapper.readValue(json, objectType);
+                recordParse(endpoint, Outcome.SUCCESS, parseStart, event, -1);
+                return result;
+            } catch (IOException e) {
+                recordParse(endpoint, Outcome.PARSE_ERROR, parseStart, event, -1);
+                throw e;
+            }
         } catch (IOException e) {
             throw new ConquesoCommunicationException(errorMessage, e);
+        }
+    }
+    
+    /**
+     * Read an object from the Conqueso server, accepting either the given format or JSON and parsing the response 
+     * according to its Content-Type.
+     */
+    private <T> T readObjectFromUrl(Endpoint endpoint, TypeReference<T> objectType, String relativeUrl, 
+            WireFormat format) throws IOException {
+        ResponseBody response = get(endpoint, new URL(conquesoUrl, relativeUrl), format.getContentType() + ", " + 
+                WireFormat.JSON.getContentType() + ";q=0.5");
+        ObjectMapper mapper = WireFormat.forContentType(response.contentType) == format ? 
+                wireObjectMapper : objectMapper;
+        
+        long parseStart = System.nanoTime();
+        ParseEvent event = ParseEvent.start(endpoint.name());
+        try {
+            T result = mapper.readValue(response.bytes, objectType);
+            recordParse(endpoint, Outcome.SUCCESS, parseStart, event, response.bytes.length);
+            return result;
+        } catch (IOException e) {
+            recordParse(endpoint, Outcome.PARSE_ERROR, parseStart, event, response.bytes.length);
+            throw e;
+        }
+    }
+    
+    /**
+     * Read the whole response body of a GET request to the Conqueso server, reporting the request to the metrics
+     * listeners. The body is read before it's parsed, so the parse time is reported separately from the latency.
+     * While the endpoint's circuit breaker is open, the request isn't sent and the latest response to the same 
+     * request is returned instead.
+     * @param accept the value of the Accept header to send, or null to send none
+     * @throws CircuitOpenException if the endpoint's circuit breaker is open and no response is cached
+     */
+    private ResponseBody get(Endpoint endpoint, URL url, String accept) throws IOException {
+        String cacheKey = accept == null ? url.toExternalForm() : url.toExternalForm() + " " + accept;
+        CircuitBreaker breaker = circuitBreakers.get(endpoint);
+        if (!breaker.tryAcquire()) {
+            return getCachedResponse(endpoint, cacheKey, breaker);
+        }
+        
+        long start = System.nanoTime();
+        HttpRequestEvent event = HttpRequestEvent.start("GET", endpoint.name(), endpoint.getUrlTemplate());
+        URLConnection connection = null;
+        boolean outcomeRecorded = false;
+        try {
+            connection = openConnection(url);
+            if (accept != null) {
+                connection.setRequestProperty(HttpHeaders.ACCEPT, accept);
+            }
+            byte[] bytes;
+            InputStream input = connection.getInputStream();
+            try {
+                bytes = ByteStreams.toByteArray(input);
+            } finally {
+                input.close();
+            }
+            event.end(getResponseStatus(connection), 0, bytes.length);
+            breaker.recordSuccess(System.nanoTime() - start);
+            outcomeRecorded = true;
+            recordRequest(endpoint, Outcome.SUCCESS, start, 0, bytes.length);
+            ResponseBody response = new ResponseBody(bytes, connection.getContentType());
+            responseCache.put(cacheKey, response);
+            return response;
+        } catch (IOException e) {
+            int status = getResponseStatus(connection);
+            event.end(status, 0, 0);
+            recordCircuitOutcome(breaker, connection, status, start);
+            outcomeRecorded = true;
+            recordRequest(endpoint, getFailureOutcome(status), start, 0, 0);
+            throw e;
         } finally {
-            if (input != null) {
+            if (!outcomeRecorded) {
+                recordUnexpectedFailure(endpoint, breaker, event, start, 0);
+            }
+        }
+    }
+    
+    /**
+     * Report a request that failed with an unexpected exception, such as a RuntimeException while serializing the 
+     * request. The failure is recorded with the circuit breaker so a half-open circuit's probe permit is released,
+     * rather than leaking and leaving the circuit rejecting every request.
+     */
+    private void recordUnexpectedFailure(Endpoint endpoint, CircuitBreaker breaker, HttpRequestEvent event, 
+            long start, long requestBytes) {
+        event.end(-1, requestBytes, 0);
+        breaker.recordFailure();
+        recordRequest(endpoint, Outcome.COMMUNICATION_ERROR, start, requestBytes, 0);
+    }
+    
+    private ResponseBody getCachedResponse(Endpoint endpoint, String cacheKey, CircuitBreaker breaker) {
+        recordRequest(endpoint, Outcome.REJECTED, System.nanoTime(), 0, 0);
+        ResponseBody response = responseCache.getIfPresent(cacheKey);
+        if (response == null) {
+            throw new CircuitOpenException(endpoint, breaker.getRemainingOpenMillis());
+        }
+        LOGGER.debug("Circuit breaker for {} open, using cached response", endpoint);
+        return response;
+    }
+    
+    private URLConnection openConnection(URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        return connection;
+    }
+    
+    /**
+     * Report the outcome of a request to its circuit breaker. Client errors are a healthy response from the server, 
+     * while requests rejected by an overloaded server open the circuit for at least the time requested.
+     */
+    private static void recordCircuitOutcome(CircuitBreaker breaker, URLConnection connection, int status, 
+            long startNanos) {
+        if (status == HttpURLConnection.HTTP_UNAVAILABLE || status == HTTP_TOO_MANY_REQUESTS) {
+            breaker.recordOverloaded(getRetryAfterNanos(connection));
+        } else if (status < 0 || status >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+            breaker.recordFailure();
+        } else {
+            breaker.recordSuccess(System.nanoTime() - startNanos);
+        }
+    }
+    
+    /**
+     * @return the time requested by the response's Retry-After header, either in seconds or as an HTTP date, or 
+     * -1 if not given
+     */
+    @VisibleForTesting
+    static long getRetryAfterNanos(URLConnection connection) {
+        String retryAfter = connection.getHeaderField(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null) {
+            return -1;
+        }
+        try {
+            return TimeUnit.SECONDS.toNanos(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            long retryDate = connection.getHeaderFieldDate(HttpHeaders.RETRY_AFTER, -1);
+            return retryDate < 0 ? -1 : 
+                TimeUnit.MILLISECONDS.toNanos(Math.max(0, retryDate - System.currentTimeMillis()));
+        }
+    }
+    
+    /**
+     * @return the HTTP response status, or -1 if no HTTP response was received
+     */
+    private static int getResponseStatus(URLConnection connection) {
+        if (connection instanceof HttpURLConnection) {
+            try {
+                return ((HttpURLConnection)connection).getResponseCode();
+            } catch (IOException e) {
+                // No response was received
+            }
+        }
+        return -1;
+    }
+    
+    private static Outcome getFailureOutcome(int status) {
+        return status >= HttpURLConnection.HTTP_BAD_REQUEST ? Outcome.HTTP_ERROR : Outcome.COMMUNICATION_ERROR;
+    }
+    
+    private void recordRequest(Endpoint endpoint, Outcome outcome, long startNanos, long requestBytes, 
+            long responseBytes) {
+        long latencyNanos = System.nanoTime() - startNanos;
+        metrics.requestCompleted(endpoint, outcome, latencyNanos, requestBytes, responseBytes);
+        for (ConquesoMetricsListener listener : metricsListeners) {
+            try {
+                listener.requestCompleted(endpoint, outcome, latencyNanos, requestBytes, responseBytes);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Metrics listener " + listener + " failed", e);
+            }
+        }
+    }
+    
+    private void recordParse(Endpoint endpoint, Outcome outcome, long startNanos, ParseEvent event, long bytes) {
+        long parseNanos = System.nanoTime() - startNanos;
+        event.end(bytes, outcome == Outcome.SUCCESS);
+        metrics.responseParsed(endpoint, outcome, parseNanos);
+        for (ConquesoMetricsListener listener : metricsListeners) {
+            try {
+                listener.responseParsed(endpoint, outcome, parseNanos);
+            } catch (RuntimeException e) {
+                LOGGER.warn("Metrics listener " + listener + " failed", e);
+            }
+        }
+    }
+    
+    /**
+     * Task adding the property definitions again when the provider has been modified, then notifying listeners and
+     * transmitting the changed definitions to the Conqueso server. The Conqueso server only accepts complete 
+     * instance info, so the whole registration is sent again rather than just the changed definitions.
+     */
+    private class PropertyDefinitionsReloader implements Runnable {
+        private final ReloadablePropertyDefinitionsProvider provider;
+        private final ImmutableList<PropertyDefinitionsListener> listeners;
+        private boolean registrationPending = false;
+        
+        PropertyDefinitionsReloader(ReloadablePropertyDefinitionsProvider provider, 
+                ImmutableList<PropertyDefinitionsListener> listeners) {
+            this.provider = provider;
+            this.listeners = listeners;
+            // Start tracking the provider's sources, to compare against on the first scheduled check
+            provider.isModified();
+        }
+        
+        @Override
+        public void run() {
+            try {
+                reloadPropertyDefinitions();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Failed to reload property definitions", e);
+            }
+        }
+        
+        PropertyDefinitionsChange reload() {
+            PropertyDefinitionsChange change = PropertyDefinitionsChange.between(
+                    ImmutableMap.<String, PropertyDefinition>of(), ImmutableMap.<String, PropertyDefinition>of());
+            
+            if (provider.isModified()) {
+                Map<String, PropertyDefinition> definitions = Maps.newHashMap();
+                provider.addPropertyDefinitions(definitions);
+                
+                ImmutableMap<String, PropertyDefinition> previousDefinitions = propertyDefinitions;
+                propertyDefinitions = ImmutableMap.copyOf(definitions);
+                change = PropertyDefinitionsChange.between(previousDefinitions, propertyDefinitions);
+                
+                if (!change.isEmpty()) {
+                    LOGGER.info("Property definitions reloaded: {} added, {} changed, {} removed", new Object[] {
+                            change.getAdded().size(), change.getChanged().size(), change.getRemoved().size() });
+                    registrationPending = registered;
+                    notifyListeners(change);
+                }
+            }
+            
+            // Retried on the next check if transmitting the previous change failed
+            if (registrationPending) {
+                postInitialInstanceInfo(instanceMetadata, ImmutableSet.copyOf(propertyDefinitions.values()), 
+                        compressRegistration, fingerprintRegistration);
+                registrationPending = false;
+            }
+            return change;
+        }
+        
+        private void notifyListeners(PropertyDefinitionsChange change) {
+            for (PropertyDefinitionsListener listener : listeners) {
                 try {
-                    input.close();
-                } catch (IOException e) {
-                    throw new ConquesoCommunicationException(errorMessage, e);
+                    listener.propertyDefinitionsChanged(change);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Property definitions listener " + listener + " failed", e);
                 }
             }
         }
     }
     
-    private <T> T readObjectFromJson(TypeReference<T> objectType, String relativeUrl, String errorMessage) {
-        try {
-            return objectMapper.readValue(readStringFromUrl(relativeUrl, errorMessage), objectType);
-        } catch (IOException e) {
-            throw new ConquesoCommunicationException(errorMessage, e);
+    /**
+     * The body and Content-Type of a response from the Conqueso server.
+     */
+    private static class ResponseBody {
+        private final byte[] bytes;
+        private final String contentType;
+        
+        ResponseBody(byte[] bytes, String contentType) {
+            this.bytes = bytes;
+            this.contentType = contentType;
+        }
+    }
+    
+    /**
+     * Writer keeping only the first maxChars characters written, used to log large payloads without
+     * buffering all of them.
+     */
+    private static class TruncatingWriter extends Writer {
+        private final StringBuilder buffer;
+        private final int maxChars;
+        private long discarded = 0;
+        
+        TruncatingWriter(int maxChars) {
+            this.maxChars = maxChars;
+            this.buffer = new StringBuilder(Math.min(maxChars, 1024));
+        }
+        
+        @Override
+        public void write(char[] chars, int offset, int length) {
+            int kept = Math.max(0, Math.min(length, maxChars - buffer.length()));
+            buffer.append(chars, offset, kept);
+            discarded += length - kept;
+        }
+        
+        @Override
+        public void flush() {
+        }
+        
+        @Override
+        public void close() {
+        }
+        
+        @Override
+        public String toString() {
+            return discarded == 0 ? buffer.toString() : 
+                buffer.toString() + "... (" + discarded + " more characters)";
         }
     }
     
@@ -700,5 +1766,45 @@ public class ConquesoClient {
             return properties;
         }
     }
+    
+    /**
+     * Instance info sent with only the hash of the property definitions, used when the Conqueso server may already
+     * know the definitions from another instance of the role.
+     */
+    static class InstanceRegistration {
+        private final Map<String, String> instanceMetadata;
+        private final String propertiesHash;
+        
+        public InstanceRegistration(Map<String, String> instanceMetadata, String propertiesHash) {
+            this.instanceMetadata = checkNotNull(instanceMetadata, "instanceMetadata");
+            this.propertiesHash = checkNotNull(propertiesHash, "propertiesHash");
+        }
+        
+        public Map<String, String> getInstanceMetadata() {
+            return instanceMetadata;
+        }
+        
+        public String getPropertiesHash() {
+            return propertiesHash;
+        }
+    }
+    
+    /**
+     * Instance info sent with both the property definitions and their hash, so the Conqueso server can record
+     * the hash for later instances.
+     */
+    static class FingerprintedInstanceInfo extends InitialInstanceInfo {
+        private final String propertiesHash;
+        
+        public FingerprintedInstanceInfo(Map<String, String> instanceMetadata, 
+                Set<PropertyDefinition> properties, String propertiesHash) {
+            super(instanceMetadata, properties);
+            this.propertiesHash = checkNotNull(propertiesHash, "propertiesHash");
+        }
+        
+        public String getPropertiesHash() {
+            return propertiesHash;
+        }
+    }
 
 }
@@ -0,0 +1,92 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import java.util.Map;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.MapDifference;
+import com.google.common.collect.Maps;
+
+/**
+ * Data object describing the differences between two sets of property definitions, keyed by property name.
+ */
+public class PropertyDefinitionsChange {
+    
+    private final ImmutableSet<PropertyDefinition> added;
+    private final ImmutableSet<PropertyDefinition> changed;
+    private final ImmutableSet<PropertyDefinition> removed;
+    
+    /**
+     * Compute the change from the previous to the current property definitions.
+     * @param previous the previous property definitions, keyed by name
+     * @param current the current property definitions, keyed by name
+     * @return the change between the definitions
+     */
+    public static PropertyDefinitionsChange between(Map<String, PropertyDefinition> previous, 
+            Map<String, PropertyDefinition> current) {
+        MapDifference<String, PropertyDefinition> difference = Maps.difference(previous, current);
+        
+        ImmutableSet.Builder<PropertyDefinition> changed = ImmutableSet.builder();
+        for (MapDifference.ValueDifference<PropertyDefinition> valueDifference : 
+                difference.entriesDiffering().values()) {
+            changed.add(valueDifference.rightValue());
+        }
+        
+        return new PropertyDefinitionsChange(ImmutableSet.copyOf(difference.entriesOnlyOnRight().values()), 
+                changed.build(), ImmutableSet.copyOf(difference.entriesOnlyOnLeft().values()));
+    }
+    
+    private PropertyDefinitionsChange(ImmutableSet<PropertyDefinition> added, 
+            ImmutableSet<PropertyDefinition> changed, ImmutableSet<PropertyDefinition> removed) {
+        this.added = added;
+        this.changed = changed;
+        this.removed = removed;
+    }
+
+    /**
+     * @return the definitions of properties that weren't previously defined
+     */
+    public ImmutableSet<PropertyDefinition> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return the new definitions of properties whose type, value or description has changed
+     */
+    public ImmutableSet<PropertyDefinition> getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return the previous definitions of properties that are no longer defined
+     */
+    public ImmutableSet<PropertyDefinition> getRemoved() {
+        return removed;
+    }
+    
+    /**
+     * @return true if the property definitions haven't changed
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyDefinitionsChange [added=" + added + ", changed=" + changed + ", removed=" + removed + "]";
+    }
+}
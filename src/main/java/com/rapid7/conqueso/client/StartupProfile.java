@@ -0,0 +1,189 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * The time spent in each phase of a {@link ConquesoClient}'s initialization, such as reading the instance metadata, 
+ * discovering the property definitions and registering with the Conqueso server. Phases contain the timings of 
+ * their own sub-phases, such as each child provider of a composite provider:
+ * <pre>
+ * StartupProfile profile = client.getStartupProfile();
+ * long scanMillis = profile.getPhase("propertyDefinitions", "AnnotationScanPropertyDefinitionsProvider", "scan")
+ *     .getDuration(TimeUnit.MILLISECONDS);
+ * </pre>
+ * The top-level phases are:
+ * <ul>
+ * <li><code>conquesoUrl</code> - resolving the URL of the Conqueso server</li>
+ * <li><code>instanceMetadata</code> - reading the instance metadata, with a phase per child provider</li>
+ * <li><code>propertyDefinitions</code> - discovering the property definitions, with a phase per child provider</li>
+ * <li><code>registration</code> - registering the instance with the Conqueso server, with a phase per request</li>
+ * </ul>
+ * Phases that run concurrently, such as the child providers of a composite instance metadata provider, may add up to 
+ * more than the time of their parent phase.
+ */
+public final class StartupProfile {
+    
+    private final long totalNanos;
+    private final ImmutableList<Phase> phases;
+    
+    StartupProfile(long totalNanos, List<Phase> phases) {
+        this.totalNanos = totalNanos;
+        this.phases = ImmutableList.copyOf(phases);
+    }
+    
+    /**
+     * @return the profile of a client that wasn't created by an initializer
+     */
+    static StartupProfile empty() {
+        return new StartupProfile(0, ImmutableList.<Phase>of());
+    }
+    
+    /**
+     * @return the total time of the initialization in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+    
+    /**
+     * @param unit the unit of the returned time
+     * @return the total time of the initialization, truncated to the given unit
+     */
+    public long getTotal(TimeUnit unit) {
+        return unit.convert(totalNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * @return the top-level phases, in the order they were started
+     */
+    public ImmutableList<Phase> getPhases() {
+        return phases;
+    }
+    
+    /**
+     * Find a phase by the names of it and its parent phases. Where more than one phase has the same name, such as
+     * repeated requests, the first is returned.
+     * @param path the names of the top-level phase, followed by the names of its sub-phases
+     * @return the phase, or null if it wasn't recorded
+     */
+    public Phase getPhase(String...path) {
+        checkArgument(path.length > 0, "path");
+        return findPhase(phases, path, 0);
+    }
+    
+    private static Phase findPhase(List<Phase> phases, String[] path, int depth) {
+        for (Phase phase : phases) {
+            if (phase.getName().equals(path[depth])) {
+                return depth == path.length - 1 ? phase : findPhase(phase.getPhases(), path, depth + 1);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * @return the profile as a single line summary, such as 
+     * <code>412.3ms [conquesoUrl 0.1ms, instanceMetadata 120.5ms [...], ...]</code>
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendMillis(sb, totalNanos);
+        appendPhases(sb, phases);
+        return sb.toString();
+    }
+    
+    private static void appendPhases(StringBuilder sb, List<Phase> phases) {
+        if (phases.isEmpty()) {
+            return;
+        }
+        sb.append(" [");
+        for (int i = 0; i < phases.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            Phase phase = phases.get(i);
+            sb.append(phase.getName()).append(' ');
+            appendMillis(sb, phase.getDurationNanos());
+            appendPhases(sb, phase.getPhases());
+        }
+        sb.append(']');
+    }
+    
+    private static void appendMillis(StringBuilder sb, long nanos) {
+        sb.append(String.format(Locale.ROOT, "%.1fms", nanos / 1e6));
+    }
+    
+    /**
+     * The time spent in a single phase of the initialization.
+     */
+    public static final class Phase {
+        private final String name;
+        private final long durationNanos;
+        private final ImmutableList<Phase> phases;
+        
+        Phase(String name, long durationNanos, List<Phase> phases) {
+            this.name = name;
+            this.durationNanos = durationNanos;
+            this.phases = ImmutableList.copyOf(phases);
+        }
+        
+        public String getName() {
+            return name;
+        }
+        
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+        
+        /**
+         * @param unit the unit of the returned time
+         * @return the time spent in the phase, truncated to the given unit
+         */
+        public long getDuration(TimeUnit unit) {
+            return unit.convert(durationNanos, TimeUnit.NANOSECONDS);
+        }
+        
+        /**
+         * @return the sub-phases, in the order they were started
+         */
+        public ImmutableList<Phase> getPhases() {
+            return phases;
+        }
+        
+        /**
+         * Find a sub-phase by the names of it and its parent sub-phases.
+         * @param path the names of the sub-phase and its parents, starting with a direct sub-phase of this phase
+         * @return the sub-phase, or null if it wasn't recorded
+         */
+        public Phase getPhase(String...path) {
+            checkArgument(path.length > 0, "path");
+            return findPhase(phases, path, 0);
+        }
+
+        @Override
+        public String toString() {
+            return "Phase [name=" + name + ", durationNanos=" + durationNanos + ", phases=" + phases + "]";
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.List;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * Records the timing of the phases of the {@link ConquesoClient.Initializer}, building the 
+ * {@link StartupProfile} of the client. Each phase is started as a child of the current phase of the calling
+ * thread, and becomes the current phase until it's stopped:
+ * <pre>
+ * StartupProfiler phase = StartupProfiler.start("scan");
+ * try {
+ *     ...
+ * } finally {
+ *     phase.stop();
+ * }
+ * </pre>
+ * Work handed to other threads is recorded by starting its phase with the parent phase captured from the calling 
+ * thread using {@link #current()}. Phases started while no client is initializing aren't recorded.
+ */
+public final class StartupProfiler {
+    
+    private static final ThreadLocal<StartupProfiler> CURRENT = new ThreadLocal<StartupProfiler>();
+    
+    private static final StartupProfiler DISABLED = new StartupProfiler(null, null, null);
+    
+    private final String name;
+    private final StartupProfiler parent;
+    private final StartupProfiler previous;
+    private final List<StartupProfiler> children = Lists.newArrayList();
+    private final long startNanos;
+    private volatile long durationNanos = -1;
+    
+    private StartupProfiler(String name, StartupProfiler parent, StartupProfiler previous) {
+        this.name = name;
+        this.parent = parent;
+        this.previous = previous;
+        this.startNanos = System.nanoTime();
+    }
+    
+    /**
+     * Start recording a phase as a child of the current phase of the calling thread.
+     * @param name the name of the phase
+     * @return the started phase, to be stopped when the phase completes
+     */
+    public static StartupProfiler start(String name) {
+        return start(current(), name);
+    }
+    
+    /**
+     * Start recording a phase as a child of the given phase, typically captured from another thread.
+     * @param parent the parent phase
+     * @param name the name of the phase
+     * @return the started phase, to be stopped when the phase completes
+     */
+    public static StartupProfiler start(StartupProfiler parent, String name) {
+        checkNotNull(name, "name");
+        if (parent == null || parent == DISABLED) {
+            return DISABLED;
+        }
+        StartupProfiler phase = new StartupProfiler(name, parent, CURRENT.get());
+        synchronized (parent.children) {
+            parent.children.add(phase);
+        }
+        CURRENT.set(phase);
+        return phase;
+    }
+    
+    /**
+     * @return the current phase of the calling thread, to start the phases of work handed to other threads
+     */
+    public static StartupProfiler current() {
+        StartupProfiler current = CURRENT.get();
+        return current == null ? DISABLED : current;
+    }
+    
+    /**
+     * @return the name of the phase recording the work of the given component, such as a child provider
+     */
+    public static String nameOf(Object component) {
+        Class<?> componentClass = component.getClass();
+        return componentClass.getSimpleName().isEmpty() ? componentClass.getName() : componentClass.getSimpleName();
+    }
+    
+    /**
+     * Start recording the phases of a client's initialization on the calling thread.
+     */
+    @VisibleForTesting
+    static StartupProfiler startProfile() {
+        StartupProfiler root = new StartupProfiler("startup", null, CURRENT.get());
+        CURRENT.set(root);
+        return root;
+    }
+    
+    /**
+     * Stop recording the phase, restoring the calling thread's previous phase. Sub-phases left running on the 
+     * calling thread, such as by an exception, are also stopped.
+     */
+    public void stop() {
+        if (this == DISABLED || durationNanos >= 0) {
+            return;
+        }
+        StartupProfiler current = CURRENT.get();
+        while (current != null && current != this && current.isWithin(this)) {
+            current.stop();
+            current = current.previous;
+        }
+        durationNanos = System.nanoTime() - startNanos;
+        if (current == this) {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+    
+    private boolean isWithin(StartupProfiler phase) {
+        for (StartupProfiler ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            if (ancestor == phase) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Stop recording, building the profile of the phases recorded. Phases that haven't been stopped are recorded 
+     * as lasting until now.
+     * @return the recorded startup profile
+     */
+    StartupProfile toProfile() {
+        stop();
+        return new StartupProfile(getDurationNanos(), toPhases());
+    }
+    
+    private ImmutableList<StartupProfile.Phase> toPhases() {
+        ImmutableList.Builder<StartupProfile.Phase> phases = ImmutableList.builder();
+        synchronized (children) {
+            for (StartupProfiler child : children) {
+                phases.add(new StartupProfile.Phase(child.name, child.getDurationNanos(), child.toPhases()));
+            }
+        }
+        return phases.build();
+    }
+    
+    private long getDurationNanos() {
+        long duration = durationNanos;
+        return duration >= 0 ? duration : System.nanoTime() - startNanos;
+    }
+    
+    @Override
+    public String toString() {
+        return "StartupProfiler [name=" + name + ", parent=" + (parent == null ? null : parent.name) + "]";
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import static com.google.common.base.Preconditions.*;
+
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.smile.SmileFactory;
+
+/**
+ * The encodings used to exchange data with the Conqueso server. JSON is always available. The binary Smile 
+ * encoding is more compact and faster to parse, but requires the optional <code>jackson-smile</code> artifact,
+ * matching the version of Jackson used by Archaius, on the classpath.
+ */
+public enum WireFormat {
+    
+    JSON("application/json"),
+    
+    SMILE("application/x-jackson-smile");
+    
+    private static final boolean SMILE_AVAILABLE = isClassAvailable("org.codehaus.jackson.smile.SmileFactory");
+    
+    private final String contentType;
+    
+    private WireFormat(String contentType) {
+        this.contentType = contentType;
+    }
+    
+    /**
+     * @return the MIME type of the encoding
+     */
+    public String getContentType() {
+        return contentType;
+    }
+    
+    /**
+     * @return true if the libraries needed for the encoding are on the classpath
+     */
+    public boolean isAvailable() {
+        return this == JSON || SMILE_AVAILABLE;
+    }
+    
+    /**
+     * Create a new Jackson factory for reading and writing the encoding.
+     * @return the factory
+     * @throws IllegalStateException if the encoding isn't available
+     */
+    public JsonFactory createJsonFactory() {
+        checkState(isAvailable(), "%s isn't available, add jackson-smile to the classpath", this);
+        return this == JSON ? new JsonFactory() : SmileFactories.create();
+    }
+    
+    /**
+     * Find the encoding for a Content-Type header value, ignoring any parameters.
+     * @param contentType the Content-Type header value, may be null
+     * @return the matching encoding, or null if not recognized
+     */
+    public static WireFormat forContentType(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int parametersStart = contentType.indexOf(';');
+        String mimeType = (parametersStart < 0 ? contentType : contentType.substring(0, parametersStart)).trim();
+        for (WireFormat format : values()) {
+            if (format.contentType.equalsIgnoreCase(mimeType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+    
+    private static boolean isClassAvailable(String className) {
+        try {
+            Class.forName(className, false, WireFormat.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+    
+    /**
+     * Holds the references to the Smile classes, so they're only loaded when the encoding is available.
+     */
+    private static class SmileFactories {
+        static JsonFactory create() {
+            return new SmileFactory();
+        }
+    }
+}
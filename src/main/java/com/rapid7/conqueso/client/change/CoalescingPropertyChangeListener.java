@@ -0,0 +1,257 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.change;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * Property change listener coalescing bursts of changes into batches, so a listener performing an expensive 
+ * reconfiguration runs it once for a bulk edit of many properties, rather than once for each property.
+ * <p>
+ * Changes are collected until none have arrived for the debounce window, then delivered to the 
+ * {@link PropertyChangeBatchListener} as a single batch. So properties changing more often than the debounce window
+ * are still delivered, a batch is also delivered once the maximum delay has passed since its first change, by 
+ * default {@value #DEFAULT_MAX_DELAY_WINDOWS} debounce windows. Successive changes to the same property within a 
+ * batch are merged into one change from its earlier value to its latest value, and dropped if the property 
+ * returned to its earlier value.
+ * <p>
+ * Batches are delivered one at a time on the given executor. While the batch listener is busy, batches are queued 
+ * up to the queue capacity - once full, the oldest queued batch is merged into the following batch, dropping the 
+ * intermediate values of its properties but never their latest values. A slow listener therefore sees fewer, 
+ * larger batches, and the memory held is bounded by the queue capacity and the number of distinct properties.
+ * <p>
+ * Subscribe the listener with a direct executor, as it only records the changes:
+ * <pre>
+ * client.subscribePrefix("pool.", new CoalescingPropertyChangeListener(batchListener, executor, 
+ *         500, TimeUnit.MILLISECONDS, scheduler), MoreExecutors.sameThreadExecutor());
+ * </pre>
+ */
+public class CoalescingPropertyChangeListener implements PropertyChangeListener {
+    
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+    
+    public static final int DEFAULT_MAX_DELAY_WINDOWS = 10;
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingPropertyChangeListener.class);
+    
+    private final PropertyChangeBatchListener listener;
+    private final Executor executor;
+    private final long debounceWindowNanos;
+    private final long maxDelayNanos;
+    private final int queueCapacity;
+    private final ScheduledExecutorService scheduler;
+    
+    private Map<String, PropertyChange> pending = Maps.newLinkedHashMap();
+    private long firstChangeNanos = 0;
+    private long lastChangeNanos = 0;
+    private boolean flushScheduled = false;
+    private final Deque<Map<String, PropertyChange>> queue = new ArrayDeque<Map<String, PropertyChange>>();
+    private boolean delivering = false;
+    private long mergedBatchCount = 0;
+    
+    /**
+     * Create a listener with the default queue capacity and maximum delay.
+     * @param listener the listener to deliver the batches of changes to
+     * @param executor the executor to deliver the batches on
+     * @param debounceWindow the time without changes after which the collected changes are delivered
+     * @param unit the unit of the debounce window
+     * @param scheduler the scheduler timing the debounce window
+     */
+    public CoalescingPropertyChangeListener(PropertyChangeBatchListener listener, Executor executor, 
+            long debounceWindow, TimeUnit unit, ScheduledExecutorService scheduler) {
+        this(listener, executor, debounceWindow, unit, DEFAULT_QUEUE_CAPACITY, scheduler);
+    }
+    
+    /**
+     * Create a listener with the default maximum delay.
+     * @param listener the listener to deliver the batches of changes to
+     * @param executor the executor to deliver the batches on
+     * @param debounceWindow the time without changes after which the collected changes are delivered
+     * @param unit the unit of the debounce window
+     * @param queueCapacity the number of batches queued while the listener is busy, before merging them
+     * @param scheduler the scheduler timing the debounce window
+     */
+    public CoalescingPropertyChangeListener(PropertyChangeBatchListener listener, Executor executor, 
+            long debounceWindow, TimeUnit unit, int queueCapacity, ScheduledExecutorService scheduler) {
+        this(listener, executor, debounceWindow, getDefaultMaxDelay(debounceWindow), unit, queueCapacity, scheduler);
+    }
+    
+    /**
+     * @param listener the listener to deliver the batches of changes to
+     * @param executor the executor to deliver the batches on
+     * @param debounceWindow the time without changes after which the collected changes are delivered
+     * @param maxDelay the time after the first change of a batch after which it's delivered, even if changes are 
+     * still arriving
+     * @param unit the unit of the debounce window and maximum delay
+     * @param queueCapacity the number of batches queued while the listener is busy, before merging them
+     * @param scheduler the scheduler timing the debounce window
+     */
+    public CoalescingPropertyChangeListener(PropertyChangeBatchListener listener, Executor executor, 
+            long debounceWindow, long maxDelay, TimeUnit unit, int queueCapacity, 
+            ScheduledExecutorService scheduler) {
+        checkArgument(debounceWindow >= 0, "debounceWindow");
+        checkArgument(maxDelay >= debounceWindow, "maxDelay");
+        checkArgument(queueCapacity > 0, "queueCapacity");
+        this.listener = checkNotNull(listener, "listener");
+        this.executor = checkNotNull(executor, "executor");
+        this.debounceWindowNanos = unit.toNanos(debounceWindow);
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.queueCapacity = queueCapacity;
+        this.scheduler = checkNotNull(scheduler, "scheduler");
+    }
+
+    private static long getDefaultMaxDelay(long debounceWindow) {
+        return debounceWindow > Long.MAX_VALUE / DEFAULT_MAX_DELAY_WINDOWS ? 
+                Long.MAX_VALUE : debounceWindow * DEFAULT_MAX_DELAY_WINDOWS;
+    }
+
+    @Override
+    public synchronized void propertyChanged(PropertyChange change) {
+        merge(pending, change);
+        lastChangeNanos = System.nanoTime();
+        if (!flushScheduled) {
+            firstChangeNanos = lastChangeNanos;
+            flushScheduled = true;
+            scheduleFlush(debounceWindowNanos);
+        }
+    }
+    
+    /**
+     * @return the number of batches currently queued for delivery
+     */
+    public synchronized int getQueuedBatchCount() {
+        return queue.size();
+    }
+    
+    /**
+     * @return the number of queued batches merged into their following batch, as the queue was full
+     */
+    public synchronized long getMergedBatchCount() {
+        return mergedBatchCount;
+    }
+    
+    private void scheduleFlush(long delayNanos) {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            }, delayNanos, TimeUnit.NANOSECONDS);
+        } catch (RejectedExecutionException e) {
+            flushScheduled = false;
+            LOGGER.warn("Scheduler rejected delivering property changes to " + listener, e);
+        }
+    }
+    
+    private synchronized void flush() {
+        // Changes arriving during the window extend it up to the maximum delay, rather than rescheduling the flush 
+        // for each change
+        long now = System.nanoTime();
+        long remainingNanos = Math.min(debounceWindowNanos - (now - lastChangeNanos), 
+                maxDelayNanos - (now - firstChangeNanos));
+        if (remainingNanos > 0) {
+            scheduleFlush(remainingNanos);
+            return;
+        }
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+        
+        queue.addLast(pending);
+        pending = Maps.newLinkedHashMap();
+        while (queue.size() > queueCapacity) {
+            Map<String, PropertyChange> oldest = queue.removeFirst();
+            for (PropertyChange change : queue.removeFirst().values()) {
+                merge(oldest, change);
+            }
+            queue.addFirst(oldest);
+            mergedBatchCount++;
+        }
+        
+        if (!delivering) {
+            delivering = true;
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                delivering = false;
+                LOGGER.warn("Executor rejected delivering property changes to " + listener, e);
+            }
+        }
+    }
+    
+    private void deliver() {
+        while (true) {
+            Map<String, PropertyChange> batch;
+            synchronized (this) {
+                batch = queue.pollFirst();
+                if (batch == null) {
+                    delivering = false;
+                    return;
+                }
+            }
+            if (batch.isEmpty()) {
+                continue;
+            }
+            try {
+                listener.propertiesChanged(ImmutableList.copyOf(batch.values()));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Property change batch listener " + listener + " failed", e);
+            }
+        }
+    }
+    
+    /**
+     * Merge a change into a batch, combining it with an earlier change of the same property.
+     */
+    private static void merge(Map<String, PropertyChange> batch, PropertyChange change) {
+        PropertyChange earlier = batch.get(change.getKey());
+        if (earlier == null) {
+            batch.put(change.getKey(), change);
+        } else if (Objects.equal(earlier.getPreviousValue(), change.getValue())) {
+            batch.remove(change.getKey());
+        } else {
+            batch.put(change.getKey(), new PropertyChange(change.getKey(), earlier.getPreviousValue(), 
+                    change.getValue()));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CoalescingPropertyChangeListener [listener=" + listener + "]";
+    }
+}
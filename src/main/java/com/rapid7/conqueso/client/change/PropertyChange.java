@@ -0,0 +1,123 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.change;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Map;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Data object describing the change of a single property's value between two polls of the Conqueso server.
+ */
+public class PropertyChange {
+    
+    private final String key;
+    private final String previousValue;
+    private final String value;
+    
+    /**
+     * Compute the changes from the previous to the current property values.
+     * @param previous the previous property values, keyed by property key
+     * @param current the current property values, keyed by property key
+     * @return the changes of the properties added, changed or removed
+     */
+    public static ImmutableList<PropertyChange> between(Map<String, String> previous, Map<String, String> current) {
+        ImmutableList.Builder<PropertyChange> changes = ImmutableList.builder();
+        for (Map.Entry<String, String> entry : current.entrySet()) {
+            String previousValue = previous.get(entry.getKey());
+            if (!entry.getValue().equals(previousValue)) {
+                changes.add(new PropertyChange(entry.getKey(), previousValue, entry.getValue()));
+            }
+        }
+        for (Map.Entry<String, String> entry : previous.entrySet()) {
+            if (!current.containsKey(entry.getKey())) {
+                changes.add(new PropertyChange(entry.getKey(), entry.getValue(), null));
+            }
+        }
+        return changes.build();
+    }
+    
+    /**
+     * @param key the property key
+     * @param previousValue the previous value, or null if the property was added
+     * @param value the new value, or null if the property was removed
+     */
+    public PropertyChange(String key, String previousValue, String value) {
+        this.key = checkNotNull(key, "key");
+        checkArgument(previousValue != null || value != null, "previousValue or value");
+        this.previousValue = previousValue;
+        this.value = value;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return the previous value of the property, or null if it was added
+     */
+    public String getPreviousValue() {
+        return previousValue;
+    }
+
+    /**
+     * @return the new value of the property, or null if it was removed
+     */
+    public String getValue() {
+        return value;
+    }
+    
+    /**
+     * @return true if the property wasn't previously set
+     */
+    public boolean isAdded() {
+        return previousValue == null;
+    }
+    
+    /**
+     * @return true if the property is no longer set
+     */
+    public boolean isRemoved() {
+        return value == null;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(key, previousValue, value);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof PropertyChange)) {
+            return false;
+        }
+        PropertyChange other = (PropertyChange) obj;
+        return Objects.equal(key, other.key) &&
+                Objects.equal(previousValue, other.previousValue) &&
+                Objects.equal(value, other.value);
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyChange [key=" + key + ", previousValue=" + previousValue + ", value=" + value + "]";
+    }
+}
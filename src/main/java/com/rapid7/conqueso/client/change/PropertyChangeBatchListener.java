@@ -0,0 +1,33 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.change;
+
+import java.util.List;
+
+/**
+ * Interface for receiving notification of batches of property changes, as delivered by a 
+ * {@link CoalescingPropertyChangeListener}.
+ */
+public interface PropertyChangeBatchListener {
+    
+    /**
+     * Called with the net changes of the properties changed since the previous batch. Each property appears at 
+     * most once, changing from its value before the batch to its latest value.
+     * @param changes the changes of the batch, in the order the properties first changed
+     */
+    void propertiesChanged(List<PropertyChange> changes);
+
+}
@@ -0,0 +1,213 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.change;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+import com.google.common.primitives.Ints;
+
+/**
+ * Dispatcher notifying subscribed listeners of changes of the property values. 
+ * <p>
+ * Subscriptions are indexed by their exact key, and by prefix within an index of the distinct prefix lengths 
+ * subscribed. The listeners of a changed property are found with one lookup of its key, plus one lookup for each 
+ * distinct prefix length no longer than the key, so the cost of dispatching scales with the number of changed 
+ * properties rather than the number of subscriptions.
+ * <p>
+ * Each listener is notified on the executor given with its subscription. Failures of a listener are logged, 
+ * without affecting the notification of other listeners.
+ */
+public class PropertyChangeDispatcher {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(PropertyChangeDispatcher.class);
+    
+    private final ConcurrentMap<String, List<Subscription>> keySubscriptions = 
+            new ConcurrentHashMap<String, List<Subscription>>();
+    private final ConcurrentMap<String, List<Subscription>> prefixSubscriptions = 
+            new ConcurrentHashMap<String, List<Subscription>>();
+    
+    // Guarded by the key and prefix subscription maps, which are only modified together
+    private final Multiset<Integer> prefixLengthCounts = HashMultiset.create();
+    private volatile int[] prefixLengths = new int[0];
+    
+    /**
+     * Subscribe to changes of the property with the given key.
+     * @param key the key of the property
+     * @param listener the listener to notify of changes
+     * @param executor the executor to notify the listener on
+     * @return the subscription, to cancel when no longer needed
+     */
+    public PropertySubscription subscribe(String key, PropertyChangeListener listener, Executor executor) {
+        return addSubscription(keySubscriptions, checkNotNull(key, "key"), listener, executor);
+    }
+    
+    /**
+     * Subscribe to changes of the properties with keys starting with the given prefix.
+     * @param prefix the key prefix of the properties - an empty prefix matches all properties
+     * @param listener the listener to notify of changes, once for each changed property
+     * @param executor the executor to notify the listener on
+     * @return the subscription, to cancel when no longer needed
+     */
+    public PropertySubscription subscribePrefix(String prefix, PropertyChangeListener listener, Executor executor) {
+        return addSubscription(prefixSubscriptions, checkNotNull(prefix, "prefix"), listener, executor);
+    }
+    
+    /**
+     * Notify the subscribed listeners of the changes of the properties, such as computed from the stores of 
+     * successive property snapshots.
+     * @param changes the changes of the properties added, changed or removed
+     */
+    public synchronized void dispatch(List<PropertyChange> changes) {
+        for (PropertyChange change : checkNotNull(changes, "changes")) {
+            dispatch(change);
+        }
+    }
+    
+    private void dispatch(PropertyChange change) {
+        String key = change.getKey();
+        deliver(keySubscriptions.get(key), change);
+        
+        for (int prefixLength : prefixLengths) {
+            if (prefixLength > key.length()) {
+                break;
+            }
+            deliver(prefixSubscriptions.get(key.substring(0, prefixLength)), change);
+        }
+    }
+    
+    private static void deliver(List<Subscription> subscriptions, PropertyChange change) {
+        if (subscriptions == null) {
+            return;
+        }
+        for (Subscription subscription : subscriptions) {
+            subscription.deliver(change);
+        }
+    }
+    
+    private PropertySubscription addSubscription(ConcurrentMap<String, List<Subscription>> index, String key,
+            PropertyChangeListener listener, Executor executor) {
+        Subscription subscription = new Subscription(index, key, listener, executor);
+        synchronized (prefixLengthCounts) {
+            List<Subscription> subscriptions = index.get(key);
+            if (subscriptions == null) {
+                subscriptions = new CopyOnWriteArrayList<Subscription>();
+                index.put(key, subscriptions);
+                if (index == prefixSubscriptions) {
+                    updatePrefixLengths(key.length(), 1);
+                }
+            }
+            subscriptions.add(subscription);
+        }
+        return subscription;
+    }
+    
+    private void removeSubscription(Subscription subscription) {
+        synchronized (prefixLengthCounts) {
+            List<Subscription> subscriptions = subscription.index.get(subscription.key);
+            if (subscriptions == null || !subscriptions.remove(subscription) || !subscriptions.isEmpty()) {
+                return;
+            }
+            subscription.index.remove(subscription.key);
+            if (subscription.index == prefixSubscriptions) {
+                updatePrefixLengths(subscription.key.length(), -1);
+            }
+        }
+    }
+    
+    private void updatePrefixLengths(int prefixLength, int delta) {
+        int count = prefixLengthCounts.count(prefixLength);
+        prefixLengthCounts.setCount(prefixLength, count + delta);
+        if (count == 0 || count + delta == 0) {
+            int[] lengths = Ints.toArray(prefixLengthCounts.elementSet());
+            Arrays.sort(lengths);
+            prefixLengths = lengths;
+        }
+    }
+    
+    /**
+     * @return the number of active subscriptions, to exact keys and to prefixes
+     */
+    public int getSubscriptionCount() {
+        int count = 0;
+        for (List<Subscription> subscriptions : keySubscriptions.values()) {
+            count += subscriptions.size();
+        }
+        for (List<Subscription> subscriptions : prefixSubscriptions.values()) {
+            count += subscriptions.size();
+        }
+        return count;
+    }
+    
+    private class Subscription implements PropertySubscription {
+        private final ConcurrentMap<String, List<Subscription>> index;
+        private final String key;
+        private final PropertyChangeListener listener;
+        private final Executor executor;
+        private volatile boolean cancelled = false;
+        
+        Subscription(ConcurrentMap<String, List<Subscription>> index, String key, PropertyChangeListener listener,
+                Executor executor) {
+            this.index = index;
+            this.key = key;
+            this.listener = checkNotNull(listener, "listener");
+            this.executor = checkNotNull(executor, "executor");
+        }
+        
+        void deliver(final PropertyChange change) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (cancelled) {
+                            return;
+                        }
+                        try {
+                            listener.propertyChanged(change);
+                        } catch (RuntimeException e) {
+                            LOGGER.warn("Property change listener " + listener + " failed", e);
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Executor rejected notifying property change listener " + listener + " of " + change, e);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            removeSubscription(this);
+        }
+
+        @Override
+        public String toString() {
+            return "Subscription [key=" + key + ", listener=" + listener + "]";
+        }
+    }
+}
@@ -0,0 +1,22 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Provides subscriptions to changes of individual properties, or of properties sharing a key prefix, polled from 
+ * the Conqueso server. The {@link com.rapid7.conqueso.client.change.PropertyChangeDispatcher} indexes the 
+ * subscriptions by key and prefix, so only the listeners of the changed properties are notified.
+ */
+package com.rapid7.conqueso.client.change;
@@ -0,0 +1,48 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.event;
+
+/**
+ * Event recording the discovery of the configuration classes marked with an annotation, by scanning the classpath or
+ * reading the configuration index. Emitted to Flight Recorder as <code>com.rapid7.conqueso.ClasspathScan</code> on 
+ * Java 11 and later.
+ */
+public final class ClasspathScanEvent {
+    
+    private static final ClasspathScanEvent DISABLED = new ClasspathScanEvent();
+    
+    private ClasspathScanEvent() {
+    }
+    
+    /**
+     * Start timing the discovery of configuration classes.
+     * @param markerAnnotation the name of the marker annotation
+     * @param scanPackages the packages searched, separated by commas
+     * @param method how the classes are found - <code>scan</code>, <code>cached scan</code> or <code>index</code>
+     * @return the started event, to end when the classes have been found
+     */
+    public static ClasspathScanEvent start(String markerAnnotation, String scanPackages, String method) {
+        return DISABLED;
+    }
+    
+    /**
+     * End the discovery.
+     * @param classCount the number of configuration classes found
+     */
+    public void end(int classCount) {
+        // Only recorded on Java 11 and later
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.event;
+
+/**
+ * Event recording a lookup from the Amazon EC2 Instance Metadata Service, emitted to Flight Recorder as 
+ * <code>com.rapid7.conqueso.EC2MetadataLookup</code> on Java 11 and later.
+ */
+public final class EC2MetadataLookupEvent {
+    
+    private static final EC2MetadataLookupEvent DISABLED = new EC2MetadataLookupEvent();
+    
+    private EC2MetadataLookupEvent() {
+    }
+    
+    /**
+     * Start timing a metadata lookup.
+     * @param resourcePath the path of the metadata resource
+     * @return the started event, to end when the lookup completes
+     */
+    public static EC2MetadataLookupEvent start(String resourcePath) {
+        return DISABLED;
+    }
+    
+    /**
+     * End the lookup.
+     * @param status the HTTP response status, or -1 if no response was received
+     * @param found whether the metadata was found
+     */
+    public void end(int status, boolean found) {
+        // Only recorded on Java 11 and later
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.event;
+
+/**
+ * Event recording an HTTP request made to the Conqueso server, emitted to Flight Recorder as
+ * <code>com.rapid7.conqueso.HttpRequest</code> on Java 11 and later.
+ */
+public final class HttpRequestEvent {
+    
+    private static final HttpRequestEvent DISABLED = new HttpRequestEvent();
+    
+    private HttpRequestEvent() {
+    }
+    
+    /**
+     * Start timing an HTTP request.
+     * @param method the HTTP method
+     * @param endpoint the name of the endpoint requested
+     * @param urlTemplate the path of the endpoint, with placeholders for its variable parts
+     * @return the started event, to end when the response has been read
+     */
+    public static HttpRequestEvent start(String method, String endpoint, String urlTemplate) {
+        return DISABLED;
+    }
+    
+    /**
+     * End the request.
+     * @param status the HTTP response status, or -1 if no response was received
+     * @param requestBytes the size of the request body transmitted
+     * @param responseBytes the size of the response body read
+     */
+    public void end(int status, long requestBytes, long responseBytes) {
+        // Only recorded on Java 11 and later
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.event;
+
+/**
+ * Event recording the introspection of configuration classes for their Archaius property fields, emitted to Flight 
+ * Recorder as <code>com.rapid7.conqueso.Introspection</code> on Java 11 and later.
+ */
+public final class IntrospectionEvent {
+    
+    private static final IntrospectionEvent DISABLED = new IntrospectionEvent();
+    
+    private IntrospectionEvent() {
+    }
+    
+    /**
+     * Start timing the introspection.
+     * @param classCount the number of configuration classes to introspect
+     * @param parallelism the number of classes introspected in parallel
+     * @return the started event, to end when the classes have been introspected
+     */
+    public static IntrospectionEvent start(int classCount, int parallelism) {
+        return DISABLED;
+    }
+    
+    /**
+     * End the introspection.
+     * @param propertyCount the number of property definitions read from the classes
+     */
+    public void end(int propertyCount) {
+        // Only recorded on Java 11 and later
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.event;
+
+/**
+ * Event recording the parsing of a Conqueso server response or a property definitions file, emitted to Flight 
+ * Recorder as <code>com.rapid7.conqueso.Parse</code> on Java 11 and later.
+ */
+public final class ParseEvent {
+    
+    private static final ParseEvent DISABLED = new ParseEvent();
+    
+    private ParseEvent() {
+    }
+    
+    /**
+     * Start timing a parse.
+     * @param source the endpoint name or file URL parsed
+     * @return the started event, to end when parsing is complete
+     */
+    public static ParseEvent start(String source) {
+        return DISABLED;
+    }
+    
+    /**
+     * End the parse.
+     * @param bytes the size of the parsed data, or -1 if unknown
+     * @param success whether the data was parsed successfully
+     */
+    public void end(long bytes, boolean success) {
+        // Only recorded on Java 11 and later
+    }
+}
@@ -0,0 +1,32 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Provides the events recording the operations of the Conqueso client - HTTP requests, response and file parsing, 
+ * configuration class discovery, introspection, EC2 metadata lookups and registration - for Java Flight Recorder.
+ * <p>
+ * The library is packaged as a multi-release jar. On Java 11 and later the event classes are replaced by versions
+ * emitting Flight Recorder events in the <i>Conqueso</i> category, which are only created while a recording 
+ * enables them. On earlier runtimes these no-op versions are used, so recording an event costs a method call.
+ * <p>
+ * Each event is started before the operation and ended after it, for example:
+ * <pre>
+ * HttpRequestEvent event = HttpRequestEvent.start("GET", "ROLES", "/api/roles");
+ * ...
+ * event.end(status, requestBytes, responseBytes);
+ * </pre>
+ */
+package com.rapid7.conqueso.client.event;
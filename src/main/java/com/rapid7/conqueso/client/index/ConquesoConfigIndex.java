@@ -0,0 +1,283 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.index;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Index of configuration classes and their Archaius property fields, generated at compile time by the
+ * {@link ConquesoConfigIndexProcessor} and stored in the {@value #INDEX_RESOURCE} resource of each jar.
+ * <p>
+ * The index is stored as a Java properties file with three kinds of entries:
+ * <pre>
+ * class.com.example.AppConfig=com.rapid7.conqueso.client.ConquesoConfig
+ * order.com.example.AppConfig=STRING1,INT1
+ * field.com.example.AppConfig#STRING1=This is the string1 property
+ * </pre>
+ * Class entries map the binary class name to a comma-separated list of the marker annotations found on the class.
+ * Order entries list the static Archaius property fields of the class in declaration order, as the entries of a
+ * properties file are unordered. Field entries map each of those fields to its <code>@ConquesoDescription</code>
+ * value, or an empty string when no description is present. The entries are written in a fixed order without a 
+ * timestamp, so the same classes always generate the same index.
+ * <p>
+ * This class only depends on the JDK, as it is used by the annotation processor inside the compiler.
+ */
+public final class ConquesoConfigIndex {
+
+    /** Location of the index resource within a jar or classes directory. */
+    public static final String INDEX_RESOURCE = "META-INF/conqueso/config-index.properties";
+
+    private static final String CLASS_KEY_PREFIX = "class.";
+    private static final String ORDER_KEY_PREFIX = "order.";
+    private static final String FIELD_KEY_PREFIX = "field.";
+    private static final char FIELD_SEPARATOR = '#';
+    private static final String MARKER_SEPARATOR = ",";
+
+    private final Map<String, Set<String>> classMarkers = new TreeMap<String, Set<String>>();
+    private final Map<String, Map<String, String>> classFields = new TreeMap<String, Map<String, String>>();
+
+    /**
+     * Load and merge all index resources visible to the given class loader.
+     * @param classLoader the class loader used to find the index resources
+     * @return the merged index, empty if no index resources were found
+     * @throws IOException if there's an issue reading an index resource
+     */
+    public static ConquesoConfigIndex load(ClassLoader classLoader) throws IOException {
+        ConquesoConfigIndex index = new ConquesoConfigIndex();
+        Enumeration<URL> resources = classLoader.getResources(INDEX_RESOURCE);
+        while (resources.hasMoreElements()) {
+            URL resource = resources.nextElement();
+            InputStream input = resource.openStream();
+            try {
+                index.read(input);
+            } finally {
+                input.close();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Record a configuration class marked with the given annotations.
+     * @param className the binary name of the configuration class
+     * @param markerAnnotations the fully qualified names of the marker annotations on the class
+     */
+    public void addClass(String className, Collection<String> markerAnnotations) {
+        Set<String> markers = classMarkers.get(className);
+        if (markers == null) {
+            markers = new LinkedHashSet<String>();
+            classMarkers.put(className, markers);
+            classFields.put(className, new LinkedHashMap<String, String>());
+        }
+        markers.addAll(markerAnnotations);
+    }
+
+    /**
+     * Record a static Archaius property field of a previously added configuration class.
+     * @param className the binary name of the configuration class
+     * @param fieldName the name of the static property field
+     * @param description the <code>@ConquesoDescription</code> value, or null if not present
+     */
+    public void addField(String className, String fieldName, String description) {
+        Map<String, String> fields = classFields.get(className);
+        if (fields == null) {
+            throw new IllegalArgumentException("Class not present in index: " + className);
+        }
+        fields.put(fieldName, description == null ? "" : description);
+    }
+
+    /**
+     * Retrieve the names of the indexed classes marked with the given annotation.
+     * @param markerAnnotation the fully qualified name of the marker annotation
+     * @return the binary names of the matching classes, in sorted order
+     */
+    public List<String> getClassNames(String markerAnnotation) {
+        List<String> results = new ArrayList<String>();
+        for (Map.Entry<String, Set<String>> entry : classMarkers.entrySet()) {
+            if (entry.getValue().contains(markerAnnotation)) {
+                results.add(entry.getKey());
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Retrieve the indexed static property fields of a configuration class.
+     * @param className the binary name of the configuration class
+     * @return map of field name to description (empty string if no description), in the order added
+     */
+    public Map<String, String> getFields(String className) {
+        Map<String, String> fields = classFields.get(className);
+        return fields == null ? Collections.<String, String>emptyMap() : Collections.unmodifiableMap(fields);
+    }
+
+    public boolean isEmpty() {
+        return classMarkers.isEmpty();
+    }
+
+    /**
+     * Read index entries from the given stream, merging them into this index.
+     * @param input the stream to read in properties file format
+     * @throws IOException if there's an issue reading the stream
+     */
+    public void read(InputStream input) throws IOException {
+        Properties properties = new Properties();
+        properties.load(input);
+
+        // Add all classes before their fields, as the properties are unordered
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(CLASS_KEY_PREFIX)) {
+                String className = key.substring(CLASS_KEY_PREFIX.length());
+                List<String> markers = new ArrayList<String>();
+                for (String marker : properties.getProperty(key).split(MARKER_SEPARATOR)) {
+                    if (marker.trim().length() > 0) {
+                        markers.add(marker.trim());
+                    }
+                }
+                addClass(className, markers);
+            }
+        }
+
+        // Add the fields of each class in declaration order, followed by any fields missing from the order entry
+        for (String key : properties.stringPropertyNames()) {
+            if (key.startsWith(ORDER_KEY_PREFIX)) {
+                String className = key.substring(ORDER_KEY_PREFIX.length());
+                for (String fieldName : properties.getProperty(key).split(MARKER_SEPARATOR)) {
+                    String description = properties.getProperty(FIELD_KEY_PREFIX + className + FIELD_SEPARATOR + 
+                            fieldName.trim());
+                    if (description != null) {
+                        addField(className, fieldName.trim(), description);
+                    }
+                }
+            }
+        }
+        for (String key : new TreeSet<String>(properties.stringPropertyNames())) {
+            if (key.startsWith(FIELD_KEY_PREFIX)) {
+                String qualifiedField = key.substring(FIELD_KEY_PREFIX.length());
+                int separator = qualifiedField.lastIndexOf(FIELD_SEPARATOR);
+                if (separator < 0) {
+                    throw new IOException("Malformed field entry in Conqueso config index: " + key);
+                }
+                String className = qualifiedField.substring(0, separator);
+                String fieldName = qualifiedField.substring(separator + 1);
+                if (!getFields(className).containsKey(fieldName)) {
+                    addField(className, fieldName, properties.getProperty(key));
+                }
+            }
+        }
+    }
+
+    /**
+     * Write this index to the given stream in properties file format.
+     * @param output the stream to write to
+     * @throws IOException if there's an issue writing the stream
+     */
+    public void write(OutputStream output) throws IOException {
+        // Written directly rather than with Properties.store, which adds a timestamp and writes in hash order
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, "ISO-8859-1"));
+        writer.write("#Generated by " + ConquesoConfigIndexProcessor.class.getName() + "\n");
+        for (Map.Entry<String, Set<String>> entry : classMarkers.entrySet()) {
+            String className = entry.getKey();
+            Map<String, String> fields = classFields.get(className);
+            writeEntry(writer, CLASS_KEY_PREFIX + className, join(entry.getValue()));
+            if (!fields.isEmpty()) {
+                writeEntry(writer, ORDER_KEY_PREFIX + className, join(fields.keySet()));
+            }
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                writeEntry(writer, FIELD_KEY_PREFIX + className + FIELD_SEPARATOR + field.getKey(), field.getValue());
+            }
+        }
+        writer.flush();
+    }
+    
+    private static String join(Collection<String> values) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0) {
+                joined.append(MARKER_SEPARATOR);
+            }
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+    
+    private static void writeEntry(Writer writer, String key, String value) throws IOException {
+        writer.write(escape(key, true));
+        writer.write('=');
+        writer.write(escape(value, false));
+        writer.write('\n');
+    }
+    
+    /**
+     * Escape a key or value as {@link Properties#store(OutputStream, String)} does, so it's read back unchanged by 
+     * {@link Properties#load(InputStream)}.
+     */
+    private static String escape(String string, boolean key) {
+        StringBuilder escaped = new StringBuilder(string.length());
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            switch (c) {
+            case ' ':
+                escaped.append(i == 0 || key ? "\\ " : " ");
+                break;
+            case '\t':
+                escaped.append("\\t");
+                break;
+            case '\n':
+                escaped.append("\\n");
+                break;
+            case '\r':
+                escaped.append("\\r");
+                break;
+            case '\f':
+                escaped.append("\\f");
+                break;
+            case '=':
+            case ':':
+            case '#':
+            case '!':
+            case '\\':
+                escaped.append('\\').append(c);
+                break;
+            default:
+                if (c < 0x20 || c > 0x7e) {
+                    escaped.append(String.format("\\u%04X", (int) c));
+                } else {
+                    escaped.append(c);
+                }
+            }
+        }
+        return escaped.toString();
+    }
+}
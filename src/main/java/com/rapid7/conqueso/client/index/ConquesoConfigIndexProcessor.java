@@ -0,0 +1,196 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.index;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Annotation processor that records configuration classes and their static Archaius property fields at compile time,
+ * writing a {@link ConquesoConfigIndex} to the {@value ConquesoConfigIndex#INDEX_RESOURCE} resource. The index
+ * can be read at runtime by the
+ * {@link com.rapid7.conqueso.client.property.IndexedPropertyDefinitionsProvider} to avoid scanning the classpath.
+ * <p>
+ * Classes marked with <code>@ConquesoConfig</code> are always indexed. Additional marker annotations can be indexed
+ * by passing a comma-separated list of annotation names with the
+ * <code>-Aconqueso.index.markerAnnotations=com.example.Configuration</code> compiler option.
+ * <p>
+ * The processor is registered as a service in the conqueso-client-java jar, so it runs automatically when the jar is
+ * on the compile classpath. The index only covers the classes compiled in a single compiler invocation, so
+ * incremental builds that compile a subset of the configuration classes should perform a full rebuild.
+ */
+public class ConquesoConfigIndexProcessor extends AbstractProcessor {
+
+    /** Compiler option listing additional marker annotations to index. */
+    public static final String MARKER_ANNOTATIONS_OPTION = "conqueso.index.markerAnnotations";
+
+    static final String CONQUESO_CONFIG_ANNOTATION = "com.rapid7.conqueso.client.ConquesoConfig";
+    static final String CONQUESO_DESCRIPTION_ANNOTATION = "com.rapid7.conqueso.client.ConquesoDescription";
+    static final String ARCHAIUS_PROPERTY_CLASS = "com.netflix.config.Property";
+
+    private final ConquesoConfigIndex index = new ConquesoConfigIndex();
+
+    private Set<String> markerAnnotations;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment processingEnv) {
+        super.init(processingEnv);
+
+        markerAnnotations = new LinkedHashSet<String>();
+        markerAnnotations.add(CONQUESO_CONFIG_ANNOTATION);
+
+        String additionalMarkers = processingEnv.getOptions().get(MARKER_ANNOTATIONS_OPTION);
+        if (additionalMarkers != null) {
+            for (String marker : additionalMarkers.split(",")) {
+                if (marker.trim().length() > 0) {
+                    markerAnnotations.add(marker.trim());
+                }
+            }
+        }
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.unmodifiableSet(markerAnnotations);
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(MARKER_ANNOTATIONS_OPTION);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (roundEnv.processingOver()) {
+            writeIndex();
+            return false;
+        }
+
+        TypeMirror propertyType = findPropertyType();
+
+        for (TypeElement annotation : annotations) {
+            String markerName = annotation.getQualifiedName().toString();
+            for (TypeElement configClass : ElementFilter.typesIn(roundEnv.getElementsAnnotatedWith(annotation))) {
+                addConfigClass(configClass, markerName, propertyType);
+            }
+        }
+
+        // Don't claim the annotations, other processors may be interested in them
+        return false;
+    }
+
+    private void addConfigClass(TypeElement configClass, String markerName, TypeMirror propertyType) {
+        String className = processingEnv.getElementUtils().getBinaryName(configClass).toString();
+        index.addClass(className, Collections.singleton(markerName));
+
+        List<VariableElement> propertyFields = findStaticFieldsOfType(configClass, propertyType);
+        if (propertyFields.isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "No Archaius properties found as static fields on class " + className, configClass);
+        }
+
+        for (VariableElement field : propertyFields) {
+            index.addField(className, field.getSimpleName().toString(), getDescription(field));
+        }
+    }
+
+    private List<VariableElement> findStaticFieldsOfType(TypeElement configClass, TypeMirror propertyType) {
+        Types types = processingEnv.getTypeUtils();
+        List<VariableElement> results = new ArrayList<VariableElement>();
+        for (VariableElement field : ElementFilter.fieldsIn(configClass.getEnclosedElements())) {
+            if (field.getKind() == ElementKind.FIELD && field.getModifiers().contains(Modifier.STATIC) &&
+                    propertyType != null && types.isAssignable(types.erasure(field.asType()), propertyType)) {
+                results.add(field);
+            }
+        }
+        return results;
+    }
+
+    private TypeMirror findPropertyType() {
+        TypeElement propertyElement = processingEnv.getElementUtils().getTypeElement(ARCHAIUS_PROPERTY_CLASS);
+        if (propertyElement == null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    ARCHAIUS_PROPERTY_CLASS + " not found on the compile classpath, no property fields indexed");
+            return null;
+        }
+        return processingEnv.getTypeUtils().erasure(propertyElement.asType());
+    }
+
+    private static String getDescription(VariableElement field) {
+        for (AnnotationMirror annotation : field.getAnnotationMirrors()) {
+            Element annotationType = annotation.getAnnotationType().asElement();
+            if (((TypeElement)annotationType).getQualifiedName().contentEquals(CONQUESO_DESCRIPTION_ANNOTATION)) {
+                for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry :
+                        annotation.getElementValues().entrySet()) {
+                    if (entry.getKey().getSimpleName().contentEquals("value")) {
+                        return String.valueOf(entry.getValue().getValue());
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private void writeIndex() {
+        if (index.isEmpty()) {
+            return;
+        }
+
+        try {
+            FileObject resource = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+                    ConquesoConfigIndex.INDEX_RESOURCE);
+            OutputStream output = resource.openOutputStream();
+            try {
+                index.write(output);
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to write Conqueso config index: " + e.getMessage());
+        }
+    }
+}
@@ -15,13 +15,31 @@
  */
 package com.rapid7.conqueso.client.metadata;
 
+import static com.google.common.base.Preconditions.*;
+
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.rapid7.conqueso.client.CacheableInstanceMetadataProvider;
 import com.rapid7.conqueso.client.InstanceMetadataProvider;
+import com.rapid7.conqueso.client.StartupProfiler;
 
 /**
  * Instance metadata provider that combines the results of multiple metadata providers together.
@@ -29,28 +47,110 @@ import com.rapid7.conqueso.client.InstanceMetadataProvider;
  * The CompositeInstanceMetadataProvider is constructed with a list of {@link InstanceMetadataProvider}
  * instances. The resulting instance metadata map provided by the composite will merge the maps from each provider,
  * with the later providers' keys taking precedence for conflicts.
+ * <p>
+ * The child providers are queried concurrently, each with its own timeout measured from when its query was 
+ * submitted. Providers that don't return their metadata within their timeout are skipped with a logged warning, as 
+ * are providers returning null. The metadata from {@link CacheableInstanceMetadataProvider}s is retrieved once and 
+ * reused for later queries.
  */
 public class CompositeInstanceMetadataProvider implements InstanceMetadataProvider {
     
+    public static final long DEFAULT_PROVIDER_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompositeInstanceMetadataProvider.class);
+    
+    // Shared by all composites - idle threads are released after a minute
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setDaemon(true).setNameFormat("conqueso-metadata-%d").build());
+    
     private final ImmutableList<InstanceMetadataProvider> childProviders;
+    private final long providerTimeoutMillis;
+    private final ConcurrentMap<Integer, Map<String, String>> cachedMetadata = Maps.newConcurrentMap();
     
     public CompositeInstanceMetadataProvider(InstanceMetadataProvider...providers) {
         this(Arrays.asList(providers));
     }
     
     public CompositeInstanceMetadataProvider(List<InstanceMetadataProvider> providers) {
+        this(providers, DEFAULT_PROVIDER_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * @param providers the child providers, with later providers' keys taking precedence
+     * @param providerTimeoutMillis the maximum time to wait for each provider's metadata, from when the provider
+     * was queried
+     */
+    public CompositeInstanceMetadataProvider(List<InstanceMetadataProvider> providers, long providerTimeoutMillis) {
+        checkArgument(providerTimeoutMillis > 0, "providerTimeoutMillis");
         this.childProviders = ImmutableList.copyOf(providers);
+        this.providerTimeoutMillis = providerTimeoutMillis;
     }
 
     @Override
     public Map<String, String> getInstanceMetadata() {
-        Map<String, String> results = Maps.newHashMap();
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(providerTimeoutMillis);
         
-        for (InstanceMetadataProvider childProvider : childProviders) {
-            results.putAll(childProvider.getInstanceMetadata());
+        StartupProfiler phase = StartupProfiler.current();
+        List<Future<Map<String, String>>> futures = Lists.newArrayListWithCapacity(childProviders.size());
+        long[] deadlines = new long[childProviders.size()];
+        for (int i = 0; i < childProviders.size(); i++) {
+            if (cachedMetadata.containsKey(i)) {
+                futures.add(null);
+            } else {
+                futures.add(EXECUTOR.submit(createTask(childProviders.get(i), phase)));
+                deadlines[i] = System.nanoTime() + timeoutNanos;
+            }
+        }
+        
+        // Merge in declaration order, regardless of the order the providers complete
+        Map<String, String> results = Maps.newHashMap();
+        for (int i = 0; i < childProviders.size(); i++) {
+            Map<String, String> childMetadata = futures.get(i) == null ? cachedMetadata.get(i) :
+                getChildMetadata(i, futures.get(i), deadlines[i]);
+            if (childMetadata != null) {
+                results.putAll(childMetadata);
+            }
         }
         
         return results;
     }
+    
+    private static Callable<Map<String, String>> createTask(final InstanceMetadataProvider provider, 
+            final StartupProfiler parentPhase) {
+        return new Callable<Map<String, String>>() {
+            @Override
+            public Map<String, String> call() {
+                StartupProfiler phase = StartupProfiler.start(parentPhase, StartupProfiler.nameOf(provider));
+                try {
+                    return provider.getInstanceMetadata();
+                } finally {
+                    phase.stop();
+                }
+            }
+        };
+    }
+    
+    private Map<String, String> getChildMetadata(int index, Future<Map<String, String>> future, long deadline) {
+        InstanceMetadataProvider provider = childProviders.get(index);
+        try {
+            Map<String, String> childMetadata = future.get(Math.max(0, deadline - System.nanoTime()), 
+                    TimeUnit.NANOSECONDS);
+            // Providers returning null are queried again rather than cached, as with uncached providers
+            if (childMetadata != null && provider instanceof CacheableInstanceMetadataProvider) {
+                cachedMetadata.put(index, childMetadata);
+            }
+            return childMetadata;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            LOGGER.warn("Skipping instance metadata from {}, not retrieved within {}ms", 
+                    provider.getClass().getName(), providerTimeoutMillis);
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while retrieving instance metadata", e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        }
+    }
 
 }
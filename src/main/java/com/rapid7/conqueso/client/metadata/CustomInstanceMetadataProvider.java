@@ -18,12 +18,12 @@ package com.rapid7.conqueso.client.metadata;
 import java.util.Map;
 
 import com.google.common.collect.ImmutableMap;
-import com.rapid7.conqueso.client.InstanceMetadataProvider;
+import com.rapid7.conqueso.client.CacheableInstanceMetadataProvider;
 
 /**
  * Provider to add static custom metadata to the instance metadata reported to the Conqueso server.
  */
-public class CustomInstanceMetadataProvider implements InstanceMetadataProvider {
+public class CustomInstanceMetadataProvider implements CacheableInstanceMetadataProvider {
     
     private final ImmutableMap<String, String> instanceMetadata;
 
@@ -35,7 +35,8 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSet.Builder;
 import com.google.common.io.CharStreams;
-import com.rapid7.conqueso.client.InstanceMetadataProvider;
+import com.rapid7.conqueso.client.CacheableInstanceMetadataProvider;
+import com.rapid7.conqueso.client.event.EC2MetadataLookupEvent;
 
 /**
  * Provider that will incorporate instance metadata obtained from the Amazon EC2 Instance Metadata Service.
@@ -46,7 +47,7 @@ import com.rapid7.conqueso.client.InstanceMetadataProvider;
  * More information about Amazon EC2 Metadata
  * @see <a href="http://docs.aws.amazon.com/AWSEC2/latest/UserGuide/AESDG-chapter-instancedata.html">Amazon EC2 User Guide >> Instance Metadata</a>
  */
-public class EC2InstanceMetadataProvider implements InstanceMetadataProvider {
+public class EC2InstanceMetadataProvider implements CacheableInstanceMetadataProvider {
     
     /** Default endpoint for the Amazon EC2 Instance Metadata Service. */
     private static final String EC2_METADATA_SERVICE_URL = "http://169.254.169.254";
@@ -125,8 +126,16 @@ public class EC2InstanceMetadataProvider implements InstanceMetadataProvider {
     }
     
     private String readResource(String resourcePath) throws IOException {
-        HttpURLConnection connection = openConnection(resourcePath);
-        return readResponse(connection);
+        EC2MetadataLookupEvent event = EC2MetadataLookupEvent.start(resourcePath);
+        try {
+            HttpURLConnection connection = openConnection(resourcePath);
+            String response = readResponse(connection);
+            event.end(connection.getResponseCode(), response != null);
+            return response;
+        } catch (IOException e) {
+            event.end(-1, false);
+            throw e;
+        }
     }
     
     @VisibleForTesting
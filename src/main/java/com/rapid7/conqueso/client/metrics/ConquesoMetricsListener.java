@@ -0,0 +1,50 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.metrics;
+
+/**
+ * Listener notified of every request made to the Conqueso server by a 
+ * {@link com.rapid7.conqueso.client.ConquesoClient}, used to export the client's metrics to another metrics system. 
+ * Listeners are configured with 
+ * {@link com.rapid7.conqueso.client.ConquesoClient.Initializer#withMetricsListener(ConquesoMetricsListener)}.
+ * <p>
+ * Listeners are called synchronously on the thread making the request, possibly from multiple threads at once, so
+ * implementations must be thread-safe and should return quickly.
+ */
+public interface ConquesoMetricsListener {
+    
+    /**
+     * Called when a request to the Conqueso server completes, after the whole response body has been read.
+     * @param endpoint the endpoint requested
+     * @param outcome the outcome of the request - {@link Outcome#SUCCESS}, {@link Outcome#HTTP_ERROR}, 
+     * {@link Outcome#COMMUNICATION_ERROR} or {@link Outcome#REJECTED}
+     * @param latencyNanos the time from opening the connection to reading the end of the response body, or 0 for 
+     * requests rejected without being sent
+     * @param requestBytes the size of the request body as transmitted, after any compression
+     * @param responseBytes the size of the response body read
+     */
+    void requestCompleted(Endpoint endpoint, Outcome outcome, long latencyNanos, long requestBytes, 
+            long responseBytes);
+    
+    /**
+     * Called when the response of a successful request has been parsed. Not called for endpoints whose response 
+     * isn't parsed, such as {@link Endpoint#PROPERTY} and {@link Endpoint#REGISTRATION}.
+     * @param endpoint the endpoint requested
+     * @param outcome the outcome of parsing - {@link Outcome#SUCCESS} or {@link Outcome#PARSE_ERROR}
+     * @param parseNanos the time taken to parse the response body
+     */
+    void responseParsed(Endpoint endpoint, Outcome outcome, long parseNanos);
+}
@@ -0,0 +1,57 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.metrics;
+
+/**
+ * The Conqueso server endpoints requested by the {@link com.rapid7.conqueso.client.ConquesoClient}, identifying the
+ * requests reported to a {@link ConquesoMetricsListener}.
+ */
+public enum Endpoint {
+    
+    /** Query of all roles */
+    ROLES("/api/roles"),
+    
+    /** Query of the online instances */
+    INSTANCES("/api/instances"),
+    
+    /** Query of the online instances of a role */
+    ROLE_INSTANCES("/api/roles/{role}/instances"),
+    
+    /** Query of an individual property value */
+    PROPERTY("/api/roles/{role}/properties/{key}"),
+    
+    /** Query of all the latest property values of the instance's role */
+    LATEST_PROPERTIES("/api/roles/{role}/properties"),
+    
+    /** Transmission of the instance metadata and property definitions */
+    REGISTRATION("/api/roles/{role}/properties");
+    
+    private final String urlTemplate;
+    
+    private Endpoint(String urlTemplate) {
+        this.urlTemplate = urlTemplate;
+    }
+    
+    /**
+     * Get the path of the endpoint, with placeholders for its variable parts and excluding any metadata query. The
+     * paths of the properties and registration endpoints assume the Conqueso URL has the standard
+     * <code>/api/roles/{role}/properties</code> form.
+     * @return the path template
+     */
+    public String getUrlTemplate() {
+        return urlTemplate;
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.metrics;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Immutable snapshot of the metrics recorded by the {@link HistogramMetricsListener} for the requests to a single
+ * {@link Endpoint} of the Conqueso server.
+ */
+public final class EndpointMetrics {
+    
+    private final Endpoint endpoint;
+    private final long[] outcomeCounts;
+    private final long parseErrorCount;
+    private final long requestBytes;
+    private final HistogramSnapshot latency;
+    private final HistogramSnapshot responseSize;
+    private final HistogramSnapshot parseTime;
+    
+    EndpointMetrics(Endpoint endpoint, long[] outcomeCounts, long parseErrorCount, long requestBytes, 
+            HistogramSnapshot latency, HistogramSnapshot responseSize, HistogramSnapshot parseTime) {
+        this.endpoint = endpoint;
+        this.outcomeCounts = outcomeCounts;
+        this.parseErrorCount = parseErrorCount;
+        this.requestBytes = requestBytes;
+        this.latency = latency;
+        this.responseSize = responseSize;
+        this.parseTime = parseTime;
+    }
+    
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+    
+    /**
+     * @return the number of completed requests, whatever their outcome
+     */
+    public long getRequestCount() {
+        long count = 0;
+        for (long outcomeCount : outcomeCounts) {
+            count += outcomeCount;
+        }
+        return count;
+    }
+    
+    /**
+     * @param outcome the request outcome - {@link Outcome#SUCCESS}, {@link Outcome#HTTP_ERROR}, 
+     * {@link Outcome#COMMUNICATION_ERROR} or {@link Outcome#REJECTED}
+     * @return the number of completed requests with the given outcome
+     */
+    public long getRequestCount(Outcome outcome) {
+        return outcomeCounts[checkNotNull(outcome, "outcome").ordinal()];
+    }
+    
+    /**
+     * @return the number of responses that failed to parse
+     */
+    public long getParseErrorCount() {
+        return parseErrorCount;
+    }
+    
+    /**
+     * @return the total size in bytes of the request bodies transmitted, after any compression
+     */
+    public long getRequestBytes() {
+        return requestBytes;
+    }
+    
+    /**
+     * @return the total size in bytes of the response bodies read
+     */
+    public long getResponseBytes() {
+        return responseSize.getTotal();
+    }
+    
+    /**
+     * @return the histogram of request latencies in nanoseconds, from opening the connection to reading the end of
+     * the response, excluding rejected requests
+     */
+    public HistogramSnapshot getLatency() {
+        return latency;
+    }
+    
+    /**
+     * @return the histogram of response body sizes in bytes
+     */
+    public HistogramSnapshot getResponseSize() {
+        return responseSize;
+    }
+    
+    /**
+     * @return the histogram of response parse times in nanoseconds
+     */
+    public HistogramSnapshot getParseTime() {
+        return parseTime;
+    }
+    
+    @Override
+    public String toString() {
+        return "EndpointMetrics [endpoint=" + endpoint + ", requestCount=" + getRequestCount() + 
+                ", successCount=" + getRequestCount(Outcome.SUCCESS) + ", parseErrorCount=" + parseErrorCount + 
+                ", requestBytes=" + requestBytes + ", responseBytes=" + getResponseBytes() + 
+                ", latency=" + latency + ", parseTime=" + parseTime + "]";
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.metrics;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Implementation of ConquesoMetricsListener recording the latency, response size and parse time of the requests
+ * to each {@link Endpoint} in lock-free histograms, along with counts of each {@link Outcome}. Every 
+ * {@link com.rapid7.conqueso.client.ConquesoClient} records its requests with one of these listeners, available 
+ * through {@link com.rapid7.conqueso.client.ConquesoClient#getMetrics()}.
+ * <p>
+ * Recording a request only updates a few atomic counters without allocating, so the listener is cheap enough to 
+ * always be enabled. The histograms of an endpoint are only allocated when it's first requested.
+ */
+public class HistogramMetricsListener implements ConquesoMetricsListener {
+    
+    private static final Endpoint[] ENDPOINTS = Endpoint.values();
+    private static final int OUTCOME_COUNT = Outcome.values().length;
+    
+    // Never recorded to, giving the snapshot of endpoints that haven't been requested
+    private static final EndpointRecorder EMPTY_RECORDER = new EndpointRecorder();
+    
+    private final AtomicReferenceArray<EndpointRecorder> recorders = 
+            new AtomicReferenceArray<EndpointRecorder>(ENDPOINTS.length);
+    
+    @Override
+    public void requestCompleted(Endpoint endpoint, Outcome outcome, long latencyNanos, long requestBytes,
+            long responseBytes) {
+        EndpointRecorder recorder = getRecorder(endpoint);
+        recorder.outcomeCounts.incrementAndGet(outcome.ordinal());
+        if (outcome == Outcome.REJECTED) {
+            // Not sent, so would only skew the latency and size histograms
+            return;
+        }
+        recorder.requestBytes.addAndGet(requestBytes);
+        recorder.latency.record(latencyNanos);
+        recorder.responseSize.record(responseBytes);
+    }
+    
+    @Override
+    public void responseParsed(Endpoint endpoint, Outcome outcome, long parseNanos) {
+        EndpointRecorder recorder = getRecorder(endpoint);
+        if (outcome != Outcome.SUCCESS) {
+            recorder.parseErrorCount.incrementAndGet();
+        }
+        recorder.parseTime.record(parseNanos);
+    }
+    
+    /**
+     * Take a snapshot of the metrics recorded for every endpoint, including endpoints that haven't been requested.
+     * @return the metrics of each endpoint, in the order of the {@link Endpoint} enum
+     */
+    public ImmutableMap<Endpoint, EndpointMetrics> getSnapshot() {
+        ImmutableMap.Builder<Endpoint, EndpointMetrics> builder = ImmutableMap.builder();
+        for (Endpoint endpoint : ENDPOINTS) {
+            builder.put(endpoint, getSnapshot(endpoint));
+        }
+        return builder.build();
+    }
+    
+    /**
+     * Take a snapshot of the metrics recorded for the given endpoint.
+     * @param endpoint the endpoint
+     * @return the endpoint's metrics
+     */
+    public EndpointMetrics getSnapshot(Endpoint endpoint) {
+        EndpointRecorder recorder = recorders.get(checkNotNull(endpoint, "endpoint").ordinal());
+        return Objects.firstNonNull(recorder, EMPTY_RECORDER).snapshot(endpoint);
+    }
+    
+    private EndpointRecorder getRecorder(Endpoint endpoint) {
+        EndpointRecorder recorder = recorders.get(endpoint.ordinal());
+        if (recorder == null) {
+            recorders.compareAndSet(endpoint.ordinal(), null, new EndpointRecorder());
+            recorder = recorders.get(endpoint.ordinal());
+        }
+        return recorder;
+    }
+    
+    private static class EndpointRecorder {
+        private final AtomicLongArray outcomeCounts = new AtomicLongArray(OUTCOME_COUNT);
+        private final AtomicLong parseErrorCount = new AtomicLong();
+        private final AtomicLong requestBytes = new AtomicLong();
+        private final Histogram latency = new Histogram();
+        private final Histogram responseSize = new Histogram();
+        private final Histogram parseTime = new Histogram();
+        
+        EndpointMetrics snapshot(Endpoint endpoint) {
+            long[] counts = new long[OUTCOME_COUNT];
+            for (int i = 0; i < OUTCOME_COUNT; i++) {
+                counts[i] = outcomeCounts.get(i);
+            }
+            return new EndpointMetrics(endpoint, counts, parseErrorCount.get(), requestBytes.get(), 
+                    latency.snapshot(), responseSize.snapshot(), parseTime.snapshot());
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.metrics;
+
+import static com.google.common.base.Preconditions.*;
+
+/**
+ * Immutable copy of the values recorded in a histogram by the {@link HistogramMetricsListener}. Percentiles are
+ * reported as the highest value of the histogram bucket containing them, within about 3% of the recorded value,
+ * while the count, total, mean, minimum and maximum are exact.
+ */
+public final class HistogramSnapshot {
+    
+    private final long[] bucketCounts;
+    private final long count;
+    private final long total;
+    private final long min;
+    private final long max;
+    
+    HistogramSnapshot(long[] bucketCounts, long total, long min, long max) {
+        this.bucketCounts = bucketCounts;
+        long bucketTotal = 0;
+        for (long bucketCount : bucketCounts) {
+            bucketTotal += bucketCount;
+        }
+        this.count = bucketTotal;
+        this.total = total;
+        this.min = bucketTotal == 0 ? 0 : min;
+        this.max = bucketTotal == 0 ? 0 : max;
+    }
+    
+    /**
+     * @return the number of values recorded
+     */
+    public long getCount() {
+        return count;
+    }
+    
+    /**
+     * @return the sum of the values recorded
+     */
+    public long getTotal() {
+        return total;
+    }
+    
+    /**
+     * @return the smallest value recorded, or zero if no values have been recorded
+     */
+    public long getMin() {
+        return min;
+    }
+    
+    /**
+     * @return the largest value recorded, or zero if no values have been recorded
+     */
+    public long getMax() {
+        return max;
+    }
+    
+    /**
+     * @return the mean of the values recorded, or zero if no values have been recorded
+     */
+    public double getMean() {
+        return count == 0 ? 0 : (double)total / count;
+    }
+    
+    /**
+     * Get the value at the given percentile of the recorded values, for example 99 for the 99th percentile.
+     * @param percentile the percentile, from 0 to 100
+     * @return the value that the given percentage of recorded values are less than or equal to, or zero if no 
+     * values have been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        checkArgument(percentile >= 0 && percentile <= 100, "percentile");
+        if (count == 0) {
+            return 0;
+        }
+        
+        long target = Math.max(1, (long)Math.ceil(percentile / 100 * count));
+        long cumulative = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            cumulative += bucketCounts[i];
+            if (cumulative >= target) {
+                return Math.max(min, Math.min(max, Histogram.bucketHighestValue(i)));
+            }
+        }
+        return max;
+    }
+    
+    @Override
+    public String toString() {
+        return "HistogramSnapshot [count=" + count + ", min=" + min + ", mean=" + getMean() + 
+                ", p50=" + getValueAtPercentile(50) + ", p99=" + getValueAtPercentile(99) + ", max=" + max + "]";
+    }
+}
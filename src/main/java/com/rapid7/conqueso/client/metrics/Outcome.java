@@ -0,0 +1,38 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.metrics;
+
+/**
+ * The outcome of a request to the Conqueso server, or of parsing its response, reported to a 
+ * {@link ConquesoMetricsListener}.
+ */
+public enum Outcome {
+    
+    /** The request or parse succeeded */
+    SUCCESS,
+    
+    /** The server responded with an HTTP error status */
+    HTTP_ERROR,
+    
+    /** The request failed without an HTTP response status, for example failing to connect */
+    COMMUNICATION_ERROR,
+    
+    /** The response couldn't be parsed */
+    PARSE_ERROR,
+    
+    /** The request wasn't sent, as the circuit breaker of the endpoint was open */
+    REJECTED
+}
@@ -0,0 +1,223 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.polling;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.config.FixedDelayPollingScheduler;
+import com.netflix.config.PollListener;
+import com.netflix.config.PollResult;
+import com.rapid7.conqueso.client.ConquesoClient;
+import com.rapid7.conqueso.client.ConquesoCommunicationException;
+
+/**
+ * Polling scheduler adapting the poll interval to how often the properties change. While polls return no changes,
+ * the interval is doubled after each poll up to the maximum interval. As soon as a poll returns a change, the 
+ * interval snaps back to the minimum, so a burst of changes to an active role still propagates quickly while 
+ * quiet roles are polled rarely. As with the {@link ConquesoPollingScheduler}, each instance starts polling at a 
+ * stable phase offset, and each delay is jittered.
+ * <p>
+ * The minimum and maximum intervals default to the <code>conqueso.poll.minInterval</code> and 
+ * <code>conqueso.poll.maxInterval</code> system properties, or else to the 
+ * <code>archaius.fixedDelayPollingScheduler.delayMills</code> system property and 10 minutes. When created with a
+ * {@link ConquesoClient}, the effective interval is reported to the Conqueso server as the 
+ * <code>conqueso.poll.interval</code> instance metadata, so the server doesn't take an instance that has backed 
+ * off for offline. The interval is only reported once it settles at the minimum or maximum rather than at each 
+ * step of the back off, from a separate thread so a slow Conqueso server doesn't hold up polling. Each report 
+ * re-sends the instance's registration, so it's only sent straight away when the client registers with 
+ * {@link ConquesoClient.Initializer#withDefinitionFingerprinting()}, sending just the hash of the property 
+ * definitions. Otherwise the interval is deferred to the client's next registration, rather than uploading the 
+ * property definitions again.
+ */
+public class AdaptivePollingScheduler extends ConquesoPollingScheduler {
+    
+    public static final String MIN_INTERVAL_PROPERTY = "conqueso.poll.minInterval";
+    public static final String MAX_INTERVAL_PROPERTY = "conqueso.poll.maxInterval";
+    
+    public static final long DEFAULT_MAX_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    
+    /**
+     * The instance metadata key of the poll interval, as read by the Conqueso server.
+     */
+    public static final String POLL_INTERVAL_METADATA_KEY = "conqueso.poll.interval";
+    
+    private static final int BACKOFF_MULTIPLIER = 2;
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(AdaptivePollingScheduler.class);
+    
+    private final ConquesoClient client;
+    private final long minIntervalMillis;
+    private final long maxIntervalMillis;
+    
+    private final Executor reportExecutor;
+    private ExecutorService ownedReportExecutor = null;
+    private final AtomicBoolean reportPending = new AtomicBoolean();
+    
+    private volatile long intervalMillis;
+    private volatile long reportedIntervalMillis = 0;
+    private Map<String, Object> lastProperties = null;
+    
+    /**
+     * Create a scheduler with the interval bounds and jitter of the system properties, without reporting the 
+     * effective interval to the Conqueso server.
+     */
+    public AdaptivePollingScheduler() {
+        this(null);
+    }
+    
+    /**
+     * Create a scheduler with the interval bounds and jitter of the system properties.
+     * @param client the client used to report the effective interval, or null to not report it
+     */
+    public AdaptivePollingScheduler(ConquesoClient client) {
+        this(client, Long.getLong(MIN_INTERVAL_PROPERTY, 
+                Long.getLong(FixedDelayPollingScheduler.DELAY_PROPERTY, DEFAULT_INTERVAL_MILLIS)), 
+                Long.getLong(MAX_INTERVAL_PROPERTY, DEFAULT_MAX_INTERVAL_MILLIS), getJitterFromSystemProperty(), 
+                getLocalHostName());
+    }
+    
+    /**
+     * @param client the client used to report the effective interval, or null to not report it
+     * @param minIntervalMillis the poll interval after a change is observed
+     * @param maxIntervalMillis the poll interval backed off to while no changes are observed
+     * @param jitter the proportion of the interval each poll is randomly moved by, from 0 to 1
+     * @param instanceIdentity the identity of the instance, hashed to its phase offset
+     */
+    public AdaptivePollingScheduler(ConquesoClient client, long minIntervalMillis, long maxIntervalMillis, 
+            double jitter, String instanceIdentity) {
+        this(client, minIntervalMillis, maxIntervalMillis, jitter, instanceIdentity, null);
+    }
+    
+    /**
+     * @param reportExecutor the executor reporting the interval, or null for the scheduler to create its own, shut 
+     * down when the scheduler is stopped
+     */
+    @VisibleForTesting
+    AdaptivePollingScheduler(ConquesoClient client, long minIntervalMillis, long maxIntervalMillis, 
+            double jitter, String instanceIdentity, Executor reportExecutor) {
+        super(null, minIntervalMillis, jitter, instanceIdentity);
+        checkArgument(maxIntervalMillis >= minIntervalMillis, "maxIntervalMillis");
+        this.client = client;
+        this.reportExecutor = reportExecutor;
+        this.minIntervalMillis = minIntervalMillis;
+        this.maxIntervalMillis = maxIntervalMillis;
+        this.intervalMillis = minIntervalMillis;
+        addPollListener(new PollListener() {
+            @Override
+            public void handleEvent(EventType eventType, PollResult lastResult, Throwable exception) {
+                if (eventType == EventType.POLL_SUCCESS && lastResult != null) {
+                    pollCompleted(lastResult.getComplete());
+                }
+            }
+        });
+    }
+    
+    /**
+     * @return the current poll interval, between the minimum and maximum intervals
+     */
+    @Override
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+    
+    /**
+     * Adapt the poll interval to the properties returned by a poll, backing off if they're unchanged since the 
+     * last poll and returning to the minimum interval otherwise.
+     */
+    @VisibleForTesting
+    synchronized void pollCompleted(Map<String, Object> properties) {
+        if (lastProperties != null) {
+            if (lastProperties.equals(properties)) {
+                intervalMillis = Math.min(maxIntervalMillis, intervalMillis * BACKOFF_MULTIPLIER);
+            } else {
+                intervalMillis = minIntervalMillis;
+            }
+        }
+        lastProperties = properties;
+        if (client != null && isSettled(intervalMillis) && intervalMillis != reportedIntervalMillis 
+                && reportPending.compareAndSet(false, true)) {
+            Executor executor = reportExecutor;
+            if (executor == null) {
+                if (ownedReportExecutor == null) {
+                    ownedReportExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+                            .setNameFormat("conqueso-poll-interval-%d").setDaemon(true).build());
+                }
+                executor = ownedReportExecutor;
+            }
+            executor.execute(new ReportTask());
+        }
+    }
+    
+    @Override
+    public synchronized void stop() {
+        super.stop();
+        if (ownedReportExecutor != null) {
+            ownedReportExecutor.shutdownNow();
+            ownedReportExecutor = null;
+            reportPending.set(false);
+        }
+    }
+    
+    @VisibleForTesting
+    synchronized boolean isReportExecutorRunning() {
+        return ownedReportExecutor != null;
+    }
+    
+    private boolean isSettled(long interval) {
+        return interval == minIntervalMillis || interval == maxIntervalMillis;
+    }
+    
+    /**
+     * Task reporting the poll interval to the Conqueso server, if it's still settled and not already reported by 
+     * the time the task runs.
+     */
+    private class ReportTask implements Runnable {
+        @Override
+        public void run() {
+            reportPending.set(false);
+            long interval = intervalMillis;
+            if (!isSettled(interval) || interval == reportedIntervalMillis) {
+                return;
+            }
+            LOGGER.debug("Polling Conqueso properties every {}ms", interval);
+            Map<String, String> metadata = ImmutableMap.of(POLL_INTERVAL_METADATA_KEY, String.valueOf(interval));
+            try {
+                if (client.isDefinitionFingerprinting()) {
+                    client.updateInstanceMetadata(metadata);
+                } else {
+                    client.deferInstanceMetadata(metadata);
+                }
+                reportedIntervalMillis = interval;
+            } catch (ConquesoCommunicationException e) {
+                LOGGER.warn("Failed to report the poll interval to the Conqueso server, retrying after the next " 
+                        + "poll", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.polling;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Map;
+import java.util.Properties;
+
+import com.google.common.collect.Maps;
+import com.netflix.config.PollResult;
+import com.netflix.config.PolledConfigurationSource;
+import com.rapid7.conqueso.client.ConquesoClient;
+
+/**
+ * Archaius configuration source polling the latest properties of the instance's role through a 
+ * {@link ConquesoClient}, rather than Archaius reading the Conqueso server URL directly. Polling through the client 
+ * applies its timeouts and circuit breakers, and records the polls in its metrics. For example:
+ * <pre>
+ * ConquesoClient client = ConquesoClient.initializer()
+ *     .withConfigurationScan("com.example.package")
+ *     .initialize();
+ * ConfigurationManager.install(new DynamicConfiguration(new ConquesoPolledConfigurationSource(client), 
+ *     new ConquesoPollingScheduler(client)));
+ * </pre>
+ */
+public class ConquesoPolledConfigurationSource implements PolledConfigurationSource {
+    
+    private final ConquesoClient client;
+    
+    public ConquesoPolledConfigurationSource(ConquesoClient client) {
+        this.client = checkNotNull(client, "client");
+    }
+
+    @Override
+    public PollResult poll(boolean initial, Object checkPoint) {
+        Properties properties = client.getLatestProperties();
+        Map<String, Object> complete = Maps.newHashMapWithExpectedSize(properties.size());
+        for (String key : properties.stringPropertyNames()) {
+            complete.put(key, properties.getProperty(key));
+        }
+        return PollResult.createFull(complete);
+    }
+    
+}
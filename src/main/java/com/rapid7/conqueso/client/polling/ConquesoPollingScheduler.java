@@ -0,0 +1,275 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.polling;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.netflix.config.AbstractPollingScheduler;
+import com.netflix.config.FixedDelayPollingScheduler;
+import com.rapid7.conqueso.client.ConquesoClient;
+import com.rapid7.conqueso.client.ConquesoCommunicationException;
+import com.rapid7.conqueso.client.InstanceInfo;
+
+/**
+ * Archaius polling scheduler spreading the polls of a fleet of instances evenly over the poll interval, rather 
+ * than every instance restarted at the same time polling the Conqueso server in step. 
+ * <p>
+ * The first poll after the initial load is delayed by a phase offset within the poll interval, derived from a 
+ * hash of the instance's identity - by default its host name - so each instance keeps a stable position in the 
+ * interval across restarts. Each following poll is delayed by the poll interval, randomly varied by the jitter 
+ * proportion of the interval either way, so instances that happen to share a phase drift apart.
+ * <p>
+ * The poll interval defaults to the <code>archaius.fixedDelayPollingScheduler.delayMills</code> system property, 
+ * as used by Archaius' {@link FixedDelayPollingScheduler}, and the jitter to the 
+ * <code>conqueso.poll.jitter</code> system property. When created with a {@link ConquesoClient}, a poll interval 
+ * set on the Conqueso server takes precedence:
+ * <ul>
+ * <li>The role's <code>conqueso.poll.serverInterval</code> property, in milliseconds, read from the client's 
+ * property snapshot after each poll, so it costs no further requests.</li>
+ * <li>If enabled with the <code>conqueso.poll.instanceInterval</code> system property, the interval the server 
+ * holds for the instance itself, as returned by {@link InstanceInfo#getPollIntervalMillis()}. Finding the instance 
+ * downloads the information of every instance of the role, so it's only refreshed every 
+ * {@value #SERVER_INTERVAL_REFRESH_POLLS} polls, and it's matched by the instance's local addresses, so isn't 
+ * found for instances behind NAT.</li>
+ * </ul>
+ */
+public class ConquesoPollingScheduler extends AbstractPollingScheduler {
+    
+    public static final String JITTER_PROPERTY = "conqueso.poll.jitter";
+    public static final String INSTANCE_INTERVAL_PROPERTY = "conqueso.poll.instanceInterval";
+    
+    /**
+     * The role property holding the poll interval set on the Conqueso server, in milliseconds.
+     */
+    public static final String SERVER_INTERVAL_PROPERTY = "conqueso.poll.serverInterval";
+    
+    public static final long DEFAULT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    public static final double DEFAULT_JITTER = 0.1;
+    
+    public static final int SERVER_INTERVAL_REFRESH_POLLS = 10;
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConquesoPollingScheduler.class);
+    
+    private final ConquesoClient client;
+    private final long configuredIntervalMillis;
+    private final double jitter;
+    private final String instanceIdentity;
+    private final boolean instanceIntervalRead;
+    private final Random random = new Random();
+    
+    private volatile long roleIntervalMillis = 0;
+    private volatile long instanceIntervalMillis = 0;
+    private ScheduledExecutorService executor = null;
+    
+    /**
+     * Create a scheduler with the poll interval and jitter of the system properties, without reading the poll 
+     * interval from the Conqueso server.
+     */
+    public ConquesoPollingScheduler() {
+        this(null);
+    }
+    
+    /**
+     * Create a scheduler with the poll interval and jitter of the system properties, using the poll interval set 
+     * on the Conqueso server when available. The interval held for the instance itself is only read if enabled 
+     * with the <code>conqueso.poll.instanceInterval</code> system property.
+     * @param client the client used to read the server's poll interval, or null to use the configured interval
+     */
+    public ConquesoPollingScheduler(ConquesoClient client) {
+        this(client, Long.getLong(FixedDelayPollingScheduler.DELAY_PROPERTY, DEFAULT_INTERVAL_MILLIS), 
+                getJitterFromSystemProperty(), getLocalHostName(), Boolean.getBoolean(INSTANCE_INTERVAL_PROPERTY));
+    }
+    
+    /**
+     * Create a scheduler using the role's poll interval set on the Conqueso server when available, without reading
+     * the interval held for the instance itself.
+     * @param client the client used to read the server's poll interval, or null to use the configured interval
+     * @param intervalMillis the poll interval, unless the server sets another
+     * @param jitter the proportion of the interval each poll is randomly moved by, from 0 to 1
+     * @param instanceIdentity the identity of the instance, hashed to its phase offset
+     */
+    public ConquesoPollingScheduler(ConquesoClient client, long intervalMillis, double jitter, 
+            String instanceIdentity) {
+        this(client, intervalMillis, jitter, instanceIdentity, false);
+    }
+    
+    /**
+     * @param client the client used to read the server's poll interval, or null to use the configured interval
+     * @param intervalMillis the poll interval, unless the server sets another
+     * @param jitter the proportion of the interval each poll is randomly moved by, from 0 to 1
+     * @param instanceIdentity the identity of the instance, hashed to its phase offset
+     * @param instanceIntervalRead whether to read the poll interval the server holds for the instance, looking the 
+     * instance up among the instances of its role every {@value #SERVER_INTERVAL_REFRESH_POLLS} polls
+     */
+    public ConquesoPollingScheduler(ConquesoClient client, long intervalMillis, double jitter, 
+            String instanceIdentity, boolean instanceIntervalRead) {
+        checkArgument(intervalMillis > 0, "intervalMillis");
+        checkArgument(jitter >= 0 && jitter <= 1, "jitter");
+        this.client = client;
+        this.configuredIntervalMillis = intervalMillis;
+        this.jitter = jitter;
+        this.instanceIdentity = checkNotNull(instanceIdentity, "instanceIdentity");
+        this.instanceIntervalRead = instanceIntervalRead;
+    }
+    
+    static double getJitterFromSystemProperty() {
+        String jitter = System.getProperty(JITTER_PROPERTY);
+        if (jitter == null || jitter.isEmpty()) {
+            return DEFAULT_JITTER;
+        }
+        try {
+            return Double.parseDouble(jitter);
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Invalid {} system property {}, using {}", new Object[] { JITTER_PROPERTY, jitter, 
+                    DEFAULT_JITTER });
+            return DEFAULT_JITTER;
+        }
+    }
+    
+    static String getLocalHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            LOGGER.warn("Failed to resolve the local host name, polling without a phase offset", e);
+            return "";
+        }
+    }
+
+    @Override
+    protected synchronized void schedule(Runnable pollingRunnable) {
+        checkState(executor == null, "Polling already scheduled");
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("conqueso-poll-%d").setDaemon(true).build());
+        long phaseOffsetMillis = getPhaseOffsetMillis();
+        LOGGER.info("Polling Conqueso properties every {}ms, starting in {}ms", getIntervalMillis(), 
+                phaseOffsetMillis);
+        executor.schedule(new PollTask(pollingRunnable), phaseOffsetMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+    
+    /**
+     * @return the current poll interval, either held by the server for the instance, set for the role, or 
+     * configured
+     */
+    public long getIntervalMillis() {
+        long intervalMillis = instanceIntervalMillis;
+        if (intervalMillis > 0) {
+            return intervalMillis;
+        }
+        intervalMillis = roleIntervalMillis;
+        return intervalMillis > 0 ? intervalMillis : configuredIntervalMillis;
+    }
+    
+    /**
+     * @return the delay of the first poll within the poll interval, derived from the instance's identity
+     */
+    @VisibleForTesting
+    long getPhaseOffsetMillis() {
+        int hash = Hashing.murmur3_32().hashString(instanceIdentity, Charsets.UTF_8).asInt();
+        return (hash & Integer.MAX_VALUE) % getIntervalMillis();
+    }
+    
+    /**
+     * @return the delay until the next poll, the poll interval randomly moved by up to the jitter either way
+     */
+    @VisibleForTesting
+    long getNextDelayMillis() {
+        long intervalMillis = getIntervalMillis();
+        long jitterMillis = Math.round((random.nextDouble() * 2 - 1) * jitter * intervalMillis);
+        return Math.max(1, intervalMillis + jitterMillis);
+    }
+    
+    /**
+     * Read the role's poll interval from the properties of the latest poll, without a request to the server.
+     */
+    @VisibleForTesting
+    void refreshRoleInterval() {
+        long intervalMillis = Math.max(0, client.getPropertySnapshot().getLong(SERVER_INTERVAL_PROPERTY, 0));
+        if (intervalMillis > 0 && intervalMillis != roleIntervalMillis && instanceIntervalMillis <= 0) {
+            LOGGER.info("Polling Conqueso properties every {}ms, as set for the role", intervalMillis);
+        }
+        roleIntervalMillis = intervalMillis;
+    }
+    
+    @VisibleForTesting
+    void refreshInstanceInterval() {
+        try {
+            InstanceInfo instance = client.getInstanceInfo();
+            long intervalMillis = instance == null ? 0 : instance.getPollIntervalMillis();
+            if (intervalMillis > 0 && intervalMillis != getIntervalMillis()) {
+                LOGGER.info("Polling Conqueso properties every {}ms, as set by the Conqueso server", intervalMillis);
+            }
+            instanceIntervalMillis = intervalMillis;
+        } catch (ConquesoCommunicationException e) {
+            LOGGER.warn("Failed to read the poll interval from the Conqueso server, polling every {}ms", 
+                    getIntervalMillis());
+        }
+    }
+    
+    private synchronized void scheduleNext(PollTask task) {
+        if (executor != null) {
+            executor.schedule(task, getNextDelayMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * Task running a poll, then scheduling the next after a jittered delay.
+     */
+    private class PollTask implements Runnable {
+        private final Runnable pollingRunnable;
+        private int pollCount = 0;
+        
+        PollTask(Runnable pollingRunnable) {
+            this.pollingRunnable = pollingRunnable;
+        }
+        
+        @Override
+        public void run() {
+            try {
+                pollingRunnable.run();
+                if (client != null) {
+                    refreshRoleInterval();
+                    if (instanceIntervalRead && pollCount++ % SERVER_INTERVAL_REFRESH_POLLS == 0) {
+                        refreshInstanceInterval();
+                    }
+                }
+            } finally {
+                scheduleNext(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+/**
+ * Provides the Archaius {@link com.netflix.config.PolledConfigurationSource} reading properties through a 
+ * {@link com.rapid7.conqueso.client.ConquesoClient}, and the 
+ * {@link com.rapid7.conqueso.client.polling.ConquesoPollingScheduler} spreading the polls of a fleet of instances 
+ * over the poll interval.
+ */
+package com.rapid7.conqueso.client.polling;
@@ -17,28 +17,63 @@ package com.rapid7.conqueso.client.property;
 
 import static com.google.common.base.Preconditions.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.collect.ForwardingMap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.io.ByteStreams;
 import com.rapid7.conqueso.client.PropertyDefinition;
-import com.rapid7.conqueso.client.PropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.event.ParseEvent;
 
 /**
  * Base class for PropertyDefinitionsProvider implementations that read definitions from files specified by URLs.
+ * The files are read and merged into the target map one at a time, in the order the URLs are specified.
+ * <p>
+ * Files from remote URLs (anything other than <code>file:</code> and <code>jar:</code> URLs) are downloaded 
+ * concurrently by {@link #prefetch()} before any of the files are merged. Each download times out after 
+ * {@value #REMOTE_CONNECT_TIMEOUT_MILLIS}ms connecting or {@value #REMOTE_READ_TIMEOUT_MILLIS}ms waiting for data, 
+ * and the downloads together after {@value #REMOTE_PREFETCH_TIMEOUT_MILLIS}ms, so an unresponsive server can't block 
+ * startup indefinitely.
+ * <p>
+ * Local <code>file:</code> URLs are checked for changes by {@link #isModified()}, comparing their size and 
+ * modification time with those recorded when they were last read. The definitions merged from each local file are
+ * recorded as it's read, so adding the definitions again only re-reads the files that have changed, putting the 
+ * recorded definitions of the others into the target map. Implementations whose merges depend on the existing 
+ * definitions can instead record the contents read from each file, merged again with 
+ * {@link #mergeProperties(Object, Map)}, by overriding {@link #isModelRecorded()}.
+ * <p>
+ * Local files of at least {@value #MEMORY_MAPPED_FILE_MIN_BYTES} bytes are read through a memory mapping, so 
+ * implementations parsing the raw stream incrementally don't need heap space for the file contents.
  */
-public abstract class AbstractUrlBasedPropertyDefinitionsProvider<M> implements PropertyDefinitionsProvider {
+public abstract class AbstractUrlBasedPropertyDefinitionsProvider<M> 
+        implements PrefetchingPropertyDefinitionsProvider, ReloadablePropertyDefinitionsProvider {
     
     public static final char SYSTEM_PROPERTY_SEPARATOR = ',';
+    
+    static final long MEMORY_MAPPED_FILE_MIN_BYTES = 1024 * 1024;
+    
+    static final int REMOTE_CONNECT_TIMEOUT_MILLIS = 5000;
+    static final int REMOTE_READ_TIMEOUT_MILLIS = 30000;
+    static final long REMOTE_PREFETCH_TIMEOUT_MILLIS = 120000;
+    
     private static final Splitter SYSTEM_PROPERTY_SPLITTER = Splitter.on(SYSTEM_PROPERTY_SEPARATOR)
             .omitEmptyStrings().trimResults();
     
@@ -46,6 +81,10 @@ public abstract class AbstractUrlBasedPropertyDefinitionsProvider<M> implements
     
     private final ImmutableList<URL> fileUrls;
     
+    private final ConcurrentMap<URL, byte[]> prefetchedFiles = Maps.newConcurrentMap();
+    
+    private final ConcurrentMap<URL, LocalFileState<M>> localFiles = Maps.newConcurrentMap();
+    
     protected AbstractUrlBasedPropertyDefinitionsProvider(String systemPropertyKey) {
         this(systemPropertyKey, Collections.<URL>emptyList());
     }
@@ -62,39 +101,167 @@ public abstract class AbstractUrlBasedPropertyDefinitionsProvider<M> implements
     protected abstract M readModelFromReader(Reader reader) throws IOException;
     
     protected abstract void mergeProperties(M fileContents, Map<String, PropertyDefinition> targetPropertyDefinitionMap);
+    
+    /**
+     * Read the file contents from the raw file stream. By default the stream is decoded as UTF-8 and passed to
+     * {@link #readModelFromReader(Reader)}.
+     * @param input the file stream, closed by the caller
+     * @return the file contents, or null to skip the file
+     * @throws IOException if there's an issue reading the file
+     */
+    protected M readModelFromStream(InputStream input) throws IOException {
+        return readModelFromReader(new InputStreamReader(input, Charsets.UTF_8));
+    }
+    
+    /**
+     * Read the file from the raw file stream and merge its properties into the target map. By default the whole file
+     * is read with {@link #readModelFromStream(InputStream)} before calling 
+     * {@link #mergeProperties(Object, Map)}. Implementations can override this to merge each property as it is 
+     * parsed.
+     * @param input the file stream, closed by the caller
+     * @param targetPropertyDefinitionMap the map to merge the file's properties into
+     * @throws IOException if there's an issue reading the file
+     */
+    protected void mergePropertiesFromStream(InputStream input, 
+            Map<String, PropertyDefinition> targetPropertyDefinitionMap) throws IOException {
+        M fileContents = readModelFromStream(input);
+        if (fileContents != null) {
+            mergeProperties(fileContents, targetPropertyDefinitionMap);
+        }
+    }
+
+    /**
+     * Whether to record the contents of each local file, as read by {@link #readModelFromStream(InputStream)}, 
+     * rather than the definitions put into the target map. The recorded contents of an unchanged file are merged 
+     * again with {@link #mergeProperties(Object, Map)}, so merges depending on the existing definitions have the
+     * same result as reading the file again. By default the definitions are recorded, which are shared with the 
+     * target map rather than holding another copy of the file.
+     * @return true to record the contents of each local file
+     */
+    protected boolean isModelRecorded() {
+        return false;
+    }
 
+    @Override
+    public void prefetch() {
+        List<URL> remoteUrls = Lists.newArrayList();
+        for (URL targetUrl : getTargetUrls()) {
+            if (isRemote(targetUrl) && !prefetchedFiles.containsKey(targetUrl) && !remoteUrls.contains(targetUrl)) {
+                remoteUrls.add(targetUrl);
+            }
+        }
+        
+        if (remoteUrls.size() == 1) {
+            prefetchedFiles.put(remoteUrls.get(0), readFile(remoteUrls.get(0)));
+        } else if (remoteUrls.size() > 1) {
+            List<Callable<byte[]>> tasks = Lists.newArrayListWithCapacity(remoteUrls.size());
+            for (final URL remoteUrl : remoteUrls) {
+                tasks.add(new Callable<byte[]>() {
+                    @Override
+                    public byte[] call() {
+                        return readFile(remoteUrl);
+                    }
+                });
+            }
+            List<byte[]> results = ConcurrentTasks.invokeAll("conqueso-url-prefetch-%d", tasks.size(), tasks, 
+                    REMOTE_PREFETCH_TIMEOUT_MILLIS);
+            for (int i = 0; i < remoteUrls.size(); i++) {
+                prefetchedFiles.put(remoteUrls.get(i), results.get(i));
+            }
+        }
+    }
+    
+    @Override
+    public boolean isModified() {
+        for (URL targetUrl : getTargetUrls()) {
+            File localFile = ClasspathScanCache.toFile(targetUrl);
+            if (localFile != null) {
+                LocalFileState state = localFiles.get(targetUrl);
+                if (state == null || !state.isCurrent(localFile)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
     @Override
     public void addPropertyDefinitions(Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
-        List<M> propertyFiles = readFiles();
-        for (M fileContents : propertyFiles) {
-            mergeProperties(fileContents, targetPropertyDefinitionMap);    
+        prefetch();
+        for (URL targetUrl : getTargetUrls()) {
+            mergePropertiesFromFile(targetUrl, targetPropertyDefinitionMap);
+        }
+    }
+    
+    private static boolean isRemote(URL fileUrl) {
+        return !"file".equals(fileUrl.getProtocol()) && !"jar".equals(fileUrl.getProtocol());
+    }
+    
+    private static byte[] readFile(URL fileUrl) {
+        try {
+            URLConnection connection = fileUrl.openConnection();
+            connection.setConnectTimeout(REMOTE_CONNECT_TIMEOUT_MILLIS);
+            connection.setReadTimeout(REMOTE_READ_TIMEOUT_MILLIS);
+            InputStream input = connection.getInputStream();
+            try {
+                return ByteStreams.toByteArray(input);
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to read properties from url: " + fileUrl, e);
         }
     }
     
-    private List<M> readFiles() {
+    private List<URL> getTargetUrls() {
         List<URL> targetUrls = fileUrls;
         if (targetUrls.isEmpty()) {
             targetUrls = getTargetUrlsFromSystemProperty();
         }
-        
-        ImmutableList.Builder<M> builder = ImmutableList.builder();
-        for (URL targetUrl : targetUrls) {
-            M properties = readPropertiesFromFile(targetUrl);
-            if (properties != null) {
-                builder.add(properties);
+        return targetUrls;
+    }
+    
+    private void mergePropertiesFromFile(URL fileUrl, Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
+        File localFile = ClasspathScanCache.toFile(fileUrl);
+        LocalFileState<M> state = null;
+        if (localFile != null) {
+            LocalFileState<M> previousState = localFiles.get(fileUrl);
+            if (previousState != null && previousState.isCurrent(localFile)) {
+                mergeRecordedProperties(previousState, targetPropertyDefinitionMap);
+                return;
             }
+            // Record the file's state before reading it, so a change made during the read is seen by the next check
+            state = new LocalFileState<M>(localFile);
         }
         
-        return builder.build();
-    }
-    
-    private M readPropertiesFromFile(URL fileUrl) {
-        Reader input = null;
+        InputStream input = null;
+        ParseEvent event = ParseEvent.start(fileUrl.toExternalForm());
+        long bytes = -1;
         try {
-            input = new InputStreamReader(fileUrl.openStream(), Charsets.UTF_8);
-            M properties = readModelFromReader(input);
-            return properties;
+            byte[] prefetched = prefetchedFiles.remove(fileUrl);
+            if (prefetched != null) {
+                bytes = prefetched.length;
+            } else if (localFile != null) {
+                bytes = localFile.length();
+            }
+            input = prefetched != null ? new ByteArrayInputStream(prefetched) : openFile(fileUrl, localFile);
+            if (state != null && isModelRecorded()) {
+                state.model = readModelFromStream(input);
+                if (state.model != null) {
+                    mergeProperties(state.model, targetPropertyDefinitionMap);
+                }
+                localFiles.put(fileUrl, state);
+            } else if (state != null) {
+                RecordingMap recordingMap = new RecordingMap(targetPropertyDefinitionMap);
+                mergePropertiesFromStream(input, recordingMap);
+                state.definitions = ImmutableList.copyOf(recordingMap.recorded.values());
+                localFiles.put(fileUrl, state);
+            } else {
+                mergePropertiesFromStream(input, targetPropertyDefinitionMap);
+            }
+            event.end(bytes, true);
         } catch (IOException e) {
+            event.end(bytes, false);
             throw new IllegalArgumentException("Failed to read properties from url: " + fileUrl, e);
         } finally {
             if (input != null) {
@@ -107,6 +274,25 @@ public abstract class AbstractUrlBasedPropertyDefinitionsProvider<M> implements
         }
     }
 
+    private void mergeRecordedProperties(LocalFileState<M> state, 
+            Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
+        if (state.model != null) {
+            mergeProperties(state.model, targetPropertyDefinitionMap);
+        } else if (state.definitions != null) {
+            for (PropertyDefinition definition : state.definitions) {
+                targetPropertyDefinitionMap.put(definition.getName(), definition);
+            }
+        }
+    }
+
+    private static InputStream openFile(URL fileUrl, File localFile) throws IOException {
+        if (localFile != null && localFile.length() >= MEMORY_MAPPED_FILE_MIN_BYTES && 
+                localFile.length() <= Integer.MAX_VALUE) {
+            return MappedFileInputStream.map(localFile);
+        }
+        return fileUrl.openStream();
+    }
+
     private List<URL> getTargetUrlsFromSystemProperty() {
         String propertyValue = System.getProperty(systemPropertyKey);
         if (Strings.isNullOrEmpty(propertyValue)) {
@@ -124,5 +310,53 @@ public abstract class AbstractUrlBasedPropertyDefinitionsProvider<M> implements
         
         return builder.build();
     }
-
+    
+    /**
+     * The size and modification time of a local file when it was read, and either the definitions merged from it 
+     * or its contents.
+     */
+    private static class LocalFileState<M> {
+        private final long length;
+        private final long lastModified;
+        private List<PropertyDefinition> definitions;
+        private M model;
+        
+        LocalFileState(File file) {
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+        
+        boolean isCurrent(File file) {
+            return file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+    
+    /**
+     * Map recording the definitions put into the target map while a file is merged. The recorded definitions are 
+     * the same instances as those in the target map, so recording them doesn't hold another copy of the file.
+     */
+    private static class RecordingMap extends ForwardingMap<String, PropertyDefinition> {
+        private final Map<String, PropertyDefinition> delegate;
+        private final Map<String, PropertyDefinition> recorded = Maps.newLinkedHashMap();
+        
+        RecordingMap(Map<String, PropertyDefinition> delegate) {
+            this.delegate = delegate;
+        }
+        
+        @Override
+        protected Map<String, PropertyDefinition> delegate() {
+            return delegate;
+        }
+        
+        @Override
+        public PropertyDefinition put(String key, PropertyDefinition value) {
+            recorded.put(key, value);
+            return delegate.put(key, value);
+        }
+        
+        @Override
+        public void putAll(Map<? extends String, ? extends PropertyDefinition> map) {
+            standardPutAll(map);
+        }
+    }
 }
@@ -17,20 +17,31 @@ package com.rapid7.conqueso.client.property;
 
 import static com.google.common.base.Preconditions.*;
 
+import java.io.File;
 import java.lang.annotation.Annotation;
+import java.net.URL;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
+import org.reflections.ReflectionUtils;
 import org.reflections.Reflections;
 import org.reflections.scanners.TypeAnnotationsScanner;
+import org.reflections.util.ClasspathHelper;
+import org.reflections.util.FilterBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import com.google.common.hash.Hashing;
 import com.netflix.config.DynamicListProperty;
 import com.rapid7.conqueso.client.PropertyDefinition;
-import com.rapid7.conqueso.client.PropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.StartupProfiler;
+import com.rapid7.conqueso.client.event.ClasspathScanEvent;
 
 /**
  * Implementation of PropertyDefinitionsProvider that will find classes in the classpath annotated with
@@ -39,14 +50,24 @@ import com.rapid7.conqueso.client.PropertyDefinitionsProvider;
  * example, specifying the marker annotation ConquesoConfig and the scanPackage "com.foo", this provider
  * will look for classes marked with <code>@ConquesoConfig</code> in the package "com.foo", "com.foo.bar",
  * "com.foo.baz".
+ * <p>
+ * The scan results can optionally be cached on disk by specifying a cache directory, either with the constructor or
+ * with the {@value #SCAN_CACHE_DIR_SYSTEM_PROPERTY} system property. The cached results are stored for each
+ * classpath entry, keyed by a fingerprint of the entry's size and modification time. When restarting with unchanged
+ * jars the scan is skipped entirely, and only the jars or classes directories that have changed are scanned again.
  */
-public class AnnotationScanPropertyDefinitionsProvider implements PropertyDefinitionsProvider {
+public class AnnotationScanPropertyDefinitionsProvider implements PrefetchingPropertyDefinitionsProvider {
+    
+    public static final String SCAN_CACHE_DIR_SYSTEM_PROPERTY = "conqueso.properties.scanCacheDir";
     
     private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationScanPropertyDefinitionsProvider.class);
     
     private final Class<? extends Annotation> markerAnnotation;
     private final ImmutableList<String> scanPackages;
     private final String collectionDelimiter;
+    private final File scanCacheDirectory;
+    
+    private volatile Collection<Class<?>> annotatedClasses;
     
     /**
      * Scan for classes marked with the given marker annotation within the given packages.
@@ -66,15 +87,44 @@ public class AnnotationScanPropertyDefinitionsProvider implements PropertyDefini
      */
     public AnnotationScanPropertyDefinitionsProvider(Class<? extends Annotation> markerAnnotation,
             List<String> scanPackages, String collectionDelimiter) {
+        this(markerAnnotation, scanPackages, collectionDelimiter, getScanCacheDirectoryFromSystemProperty());
+    }
+    
+    /**
+     * Scan for classes marked with the given marker annotation within the given packages, caching the scan results
+     * in the given directory.
+     * @param markerAnnotation the marker annotation to detect on configuration classes.
+     * @param scanPackages the packages to narrow the classpath scan.
+     * @param collectionDelimiter the delimiter to use between collection property values
+     * @param scanCacheDirectory the directory to store the scan results in, or null to always scan the classpath
+     */
+    public AnnotationScanPropertyDefinitionsProvider(Class<? extends Annotation> markerAnnotation,
+            List<String> scanPackages, String collectionDelimiter, File scanCacheDirectory) {
         this.markerAnnotation = checkNotNull(markerAnnotation, "markerAnnotation");
         checkArgument(scanPackages != null && !scanPackages.isEmpty(), "scanPackages");
         this.scanPackages = ImmutableList.copyOf(scanPackages);
         this.collectionDelimiter = checkNotNull(collectionDelimiter, "collectionDelimiter");
+        this.scanCacheDirectory = scanCacheDirectory;
+    }
+    
+    private static File getScanCacheDirectoryFromSystemProperty() {
+        String scanCacheDir = System.getProperty(SCAN_CACHE_DIR_SYSTEM_PROPERTY);
+        return scanCacheDir == null || scanCacheDir.isEmpty() ? null : new File(scanCacheDir);
+    }
+    
+    /**
+     * Scan the classpath for the annotated classes, without initializing them.
+     */
+    @Override
+    public void prefetch() {
+        if (annotatedClasses == null) {
+            annotatedClasses = findAnnotatedClasses();
+        }
     }
     
     @Override
     public void addPropertyDefinitions(Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
-        Collection<Class<?>> annotatedClasses = findAnnotatedClasses();
+        prefetch();
         if (annotatedClasses.isEmpty()) {
             throw new IllegalArgumentException(
                     String.format("No classes marked with %s annotation found in packages %s",
@@ -90,7 +140,18 @@ public class AnnotationScanPropertyDefinitionsProvider implements PropertyDefini
         introspector.addPropertyDefinitions(targetPropertyDefinitionMap);
     }
     
-    private Collection<Class<?>> findAnnotatedClasses() {        
+    private Collection<Class<?>> findAnnotatedClasses() {
+        StartupProfiler phase = StartupProfiler.start("scan");
+        ClasspathScanEvent event = ClasspathScanEvent.start(markerAnnotation.getName(), 
+                Joiner.on(',').join(scanPackages), scanCacheDirectory != null ? "cached scan" : "scan");
+        Collection<Class<?>> results = scanCacheDirectory != null ? 
+                findAnnotatedClassesWithCache() : scanAnnotatedClasses();
+        event.end(results.size());
+        phase.stop();
+        return results;
+    }
+    
+    private Collection<Class<?>> scanAnnotatedClasses() {
         Object[] params = new Object[scanPackages.size() + 1];
         int i = 0;
         for (; i < scanPackages.size(); i++) {
@@ -100,4 +161,23 @@ public class AnnotationScanPropertyDefinitionsProvider implements PropertyDefini
         Reflections reflections = new Reflections(params);
         return reflections.getTypesAnnotatedWith(markerAnnotation);
     }
+    
+    private Collection<Class<?>> findAnnotatedClassesWithCache() {
+        Set<URL> classpathUrls = Sets.newLinkedHashSet();
+        FilterBuilder inputFilter = new FilterBuilder();
+        for (String scanPackage : scanPackages) {
+            classpathUrls.addAll(ClasspathHelper.forPackage(scanPackage));
+            inputFilter.include(FilterBuilder.prefix(scanPackage));
+        }
+        
+        ClasspathScanCache cache = new ClasspathScanCache(new File(scanCacheDirectory, getScanCacheFileName()));
+        Set<String> classNames = cache.findAnnotatedClassNames(classpathUrls, inputFilter, 
+                markerAnnotation.getName());
+        return ReflectionUtils.<Object>forNames(classNames);
+    }
+    
+    private String getScanCacheFileName() {
+        String scanKey = markerAnnotation.getName() + ":" + Joiner.on(',').join(scanPackages);
+        return "scan-" + Hashing.md5().hashString(scanKey, Charsets.UTF_8) + ".properties";
+    }
 }
@@ -0,0 +1,219 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.property;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Properties;
+import java.util.Set;
+
+import org.reflections.Reflections;
+import org.reflections.scanners.TypeAnnotationsScanner;
+import org.reflections.util.ConfigurationBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Predicate;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.io.Files;
+
+/**
+ * On-disk cache of the classes found by a Reflections annotation scan, stored per classpath entry. Each entry is
+ * keyed by a fingerprint of the jar or classes directory (its path, size and modification time), so only the
+ * classpath entries that have changed since the last scan are scanned again.
+ * <p>
+ * The cache is stored as a properties file, mapping each classpath entry URL to its fingerprint and the names of
+ * the annotated classes found in it. The file is replaced atomically, so concurrent JVMs sharing a cache
+ * directory at worst repeat a scan.
+ */
+class ClasspathScanCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClasspathScanCache.class);
+
+    private static final char VALUE_SEPARATOR = '|';
+    private static final char CLASS_SEPARATOR = ',';
+    private static final Joiner CLASS_JOINER = Joiner.on(CLASS_SEPARATOR);
+    private static final Splitter CLASS_SPLITTER = Splitter.on(CLASS_SEPARATOR).omitEmptyStrings();
+
+    private final File cacheFile;
+
+    ClasspathScanCache(File cacheFile) {
+        this.cacheFile = checkNotNull(cacheFile, "cacheFile");
+    }
+
+    /**
+     * Find the names of the classes annotated with the given annotation in the given classpath entries, scanning
+     * only the entries not matching their cached fingerprint.
+     * @param classpathUrls the classpath entries to search
+     * @param inputFilter the filter of the resource names to scan within each entry
+     * @param annotationName the name of the annotation to search for
+     * @return the names of the annotated classes
+     */
+    Set<String> findAnnotatedClassNames(Collection<URL> classpathUrls, Predicate<String> inputFilter,
+            String annotationName) {
+        Properties cached = readCache();
+        Properties updated = new Properties();
+        Set<String> results = Sets.newTreeSet();
+        int scanned = 0;
+
+        for (URL classpathUrl : classpathUrls) {
+            String key = classpathUrl.toExternalForm();
+            String fingerprint = fingerprint(classpathUrl);
+
+            Set<String> classNames = fingerprint == null ? null : getCachedClassNames(cached.getProperty(key),
+                    fingerprint);
+            if (classNames == null) {
+                classNames = scan(classpathUrl, inputFilter, annotationName);
+                scanned++;
+            }
+
+            if (fingerprint != null) {
+                updated.setProperty(key, fingerprint + VALUE_SEPARATOR + CLASS_JOINER.join(classNames));
+            }
+            results.addAll(classNames);
+        }
+
+        LOGGER.info("Scanned {} of {} classpath entries, using cached results from {}",
+                new Object[] { scanned, classpathUrls.size(), cacheFile });
+
+        if (!updated.equals(cached)) {
+            writeCache(updated);
+        }
+
+        return results;
+    }
+
+    private static Set<String> scan(URL classpathUrl, Predicate<String> inputFilter, String annotationName) {
+        Reflections reflections = new Reflections(new ConfigurationBuilder()
+                .setUrls(classpathUrl)
+                .filterInputsBy(inputFilter)
+                .setScanners(new TypeAnnotationsScanner()));
+        return ImmutableSet.copyOf(reflections.getStore().getTypesAnnotatedWith(annotationName));
+    }
+
+    private static Set<String> getCachedClassNames(String cachedValue, String fingerprint) {
+        if (cachedValue == null) {
+            return null;
+        }
+        int separator = cachedValue.indexOf(VALUE_SEPARATOR);
+        if (separator < 0 || !cachedValue.substring(0, separator).equals(fingerprint)) {
+            return null;
+        }
+        return ImmutableSet.copyOf(CLASS_SPLITTER.split(cachedValue.substring(separator + 1)));
+    }
+
+    /**
+     * Compute the fingerprint of a classpath entry. Jars are identified by their size and modification time, and
+     * classes directories by the number, total size and latest modification time of the files within them.
+     * @return the fingerprint, or null if the classpath entry isn't a local file
+     */
+    @VisibleForTesting
+    static String fingerprint(URL classpathUrl) {
+        File file = toFile(classpathUrl);
+        if (file == null || !file.exists()) {
+            return null;
+        }
+
+        if (file.isDirectory()) {
+            long[] totals = new long[3];
+            addDirectoryTotals(file, totals);
+            return String.format("dir:%d:%d:%d", totals[0], totals[1], totals[2]);
+        }
+        return String.format("file:%d:%d", file.length(), file.lastModified());
+    }
+
+    private static void addDirectoryTotals(File directory, long[] totals) {
+        File[] children = directory.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                addDirectoryTotals(child, totals);
+            } else {
+                totals[0]++;
+                totals[1] += child.length();
+                totals[2] = Math.max(totals[2], child.lastModified());
+            }
+        }
+    }
+
+    /**
+     * @return the local file for the given URL, or null if it isn't a <code>file:</code> URL
+     */
+    static File toFile(URL classpathUrl) {
+        if (!"file".equals(classpathUrl.getProtocol())) {
+            return null;
+        }
+        try {
+            return new File(classpathUrl.toURI());
+        } catch (URISyntaxException e) {
+            return new File(classpathUrl.getPath());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private Properties readCache() {
+        Properties properties = new Properties();
+        if (!cacheFile.exists()) {
+            return properties;
+        }
+        try {
+            InputStream input = new FileInputStream(cacheFile);
+            try {
+                properties.load(input);
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to read classpath scan cache " + cacheFile + ", rescanning", e);
+            properties.clear();
+        }
+        return properties;
+    }
+
+    private void writeCache(Properties properties) {
+        try {
+            Files.createParentDirs(cacheFile);
+            File tempFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheFile.getParentFile());
+            OutputStream output = new FileOutputStream(tempFile);
+            try {
+                properties.store(output, "Conqueso classpath scan cache");
+            } finally {
+                output.close();
+            }
+            if (!tempFile.renameTo(cacheFile)) {
+                Files.move(tempFile, cacheFile);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to write classpath scan cache " + cacheFile, e);
+        }
+    }
+}
@@ -15,13 +15,19 @@
  */
 package com.rapid7.conqueso.client.property;
 
+import static com.google.common.base.Preconditions.*;
+
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.rapid7.conqueso.client.PropertyDefinition;
 import com.rapid7.conqueso.client.PropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.StartupProfiler;
 
 /**
  * Property definitions provider that combines the results of multiple property definition providers together.
@@ -29,23 +35,108 @@ import com.rapid7.conqueso.client.PropertyDefinitionsProvider;
  * The CompositePropertyDefinitionsProvider is constructed with a list of {@link PropertyDefinitionsProvider}
  * instances. The resulting property definition map provided by the composite will merge the results from each
  * provider in order specified in the construction.
+ * <p>
+ * Children implementing {@link PrefetchingPropertyDefinitionsProvider} are prefetched concurrently before any
+ * definitions are added, so slow reads such as remote definition files overlap rather than run one after another.
+ * An <code>IllegalStateException</code> is thrown if the prefetching doesn't complete within the timeout.
+ * <p>
+ * The composite is modified when any of its children implementing {@link ReloadablePropertyDefinitionsProvider}
+ * is modified.
  */
-public class CompositePropertyDefinitionsProvider implements PropertyDefinitionsProvider {
+public class CompositePropertyDefinitionsProvider 
+        implements PrefetchingPropertyDefinitionsProvider, ReloadablePropertyDefinitionsProvider {
+    
+    public static final long DEFAULT_PREFETCH_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(2);
     
     private final ImmutableList<PropertyDefinitionsProvider> childProviders;
+    private final long prefetchTimeoutMillis;
     
     public CompositePropertyDefinitionsProvider(PropertyDefinitionsProvider...providers) {
         this(Arrays.asList(providers));
     }
     
     public CompositePropertyDefinitionsProvider(List<PropertyDefinitionsProvider> providers) {
+        this(providers, DEFAULT_PREFETCH_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * @param providers the child providers, merged in order
+     * @param prefetchTimeoutMillis the maximum time to wait for the children to be prefetched
+     */
+    public CompositePropertyDefinitionsProvider(List<PropertyDefinitionsProvider> providers, 
+            long prefetchTimeoutMillis) {
+        checkArgument(prefetchTimeoutMillis > 0, "prefetchTimeoutMillis");
         this.childProviders = ImmutableList.copyOf(providers);
+        this.prefetchTimeoutMillis = prefetchTimeoutMillis;
+    }
+    
+    @Override
+    public void prefetch() {
+        List<PrefetchingPropertyDefinitionsProvider> prefetchingProviders = Lists.newArrayList();
+        for (PropertyDefinitionsProvider provider : childProviders) {
+            if (provider instanceof PrefetchingPropertyDefinitionsProvider) {
+                prefetchingProviders.add((PrefetchingPropertyDefinitionsProvider)provider);
+            }
+        }
+        
+        if (prefetchingProviders.isEmpty()) {
+            return;
+        }
+        
+        final StartupProfiler phase = StartupProfiler.start("prefetch");
+        try {
+            if (prefetchingProviders.size() == 1) {
+                prefetch(prefetchingProviders.get(0), phase);
+            } else {
+                List<Callable<Void>> tasks = Lists.newArrayListWithCapacity(prefetchingProviders.size());
+                for (final PrefetchingPropertyDefinitionsProvider provider : prefetchingProviders) {
+                    tasks.add(new Callable<Void>() {
+                        @Override
+                        public Void call() {
+                            prefetch(provider, phase);
+                            return null;
+                        }
+                    });
+                }
+                ConcurrentTasks.invokeAll("conqueso-prefetch-%d", tasks.size(), tasks, prefetchTimeoutMillis);
+            }
+        } finally {
+            phase.stop();
+        }
+    }
+    
+    private static void prefetch(PrefetchingPropertyDefinitionsProvider provider, StartupProfiler parentPhase) {
+        StartupProfiler phase = StartupProfiler.start(parentPhase, StartupProfiler.nameOf(provider));
+        try {
+            provider.prefetch();
+        } finally {
+            phase.stop();
+        }
+    }
+
+    @Override
+    public boolean isModified() {
+        boolean modified = false;
+        for (PropertyDefinitionsProvider provider : childProviders) {
+            // Check every child, so they all start tracking changes on the first check
+            if (provider instanceof ReloadablePropertyDefinitionsProvider && 
+                    ((ReloadablePropertyDefinitionsProvider)provider).isModified()) {
+                modified = true;
+            }
+        }
+        return modified;
     }
 
     @Override
     public void addPropertyDefinitions(Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
+        prefetch();
         for (PropertyDefinitionsProvider provider : childProviders) {
-            provider.addPropertyDefinitions(targetPropertyDefinitionMap);
+            StartupProfiler phase = StartupProfiler.start(StartupProfiler.nameOf(provider));
+            try {
+                provider.addPropertyDefinitions(targetPropertyDefinitionMap);
+            } finally {
+                phase.stop();
+            }
         }
     }
 
@@ -0,0 +1,74 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.property;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs a batch of tasks concurrently on short-lived daemon threads, returning their results in task order.
+ */
+final class ConcurrentTasks {
+    
+    private ConcurrentTasks() {
+    }
+    
+    /**
+     * Run the given tasks concurrently, waiting for all of them to complete. Exceptions thrown by the tasks are
+     * rethrown from this method, for the first failed task in task order.
+     * @param threadNameFormat the name format of the threads running the tasks, as used by ThreadFactoryBuilder
+     * @param parallelism the maximum number of tasks to run at once
+     * @param tasks the tasks to run
+     * @param timeoutMillis the maximum time to wait for all tasks to complete, or 0 to wait indefinitely
+     * @return the task results in task order
+     * @throws IllegalStateException if the tasks didn't complete within the timeout, or the thread was interrupted
+     */
+    static <T> List<T> invokeAll(String threadNameFormat, int parallelism, List<? extends Callable<T>> tasks, 
+            long timeoutMillis) {
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, tasks.size())),
+                new ThreadFactoryBuilder().setDaemon(true).setNameFormat(threadNameFormat).build());
+        try {
+            List<Future<T>> futures = timeoutMillis > 0 ? 
+                    executor.invokeAll(tasks, timeoutMillis, TimeUnit.MILLISECONDS) : executor.invokeAll(tasks);
+            
+            List<T> results = Lists.newArrayListWithCapacity(futures.size());
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (CancellationException e) {
+            throw new IllegalStateException("Timed out after " + timeoutMillis + "ms waiting for tasks to complete");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for tasks to complete", e);
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } finally {
+            // Tasks blocked on I/O may not respond to interruption, but are on daemon threads
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.property;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.netflix.config.DynamicListProperty;
+import com.rapid7.conqueso.client.PropertyDefinition;
+import com.rapid7.conqueso.client.PropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.StartupProfiler;
+import com.rapid7.conqueso.client.event.ClasspathScanEvent;
+import com.rapid7.conqueso.client.index.ConquesoConfigIndex;
+import com.rapid7.conqueso.client.index.ConquesoConfigIndexProcessor;
+
+/**
+ * Implementation of PropertyDefinitionsProvider that reads the configuration classes marked with a given marker
+ * annotation from the compile-time index generated by the {@link ConquesoConfigIndexProcessor}, rather than
+ * scanning the classpath like the {@link AnnotationScanPropertyDefinitionsProvider}. Only the indexed static
+ * Archaius property fields of the classes are read, using the descriptions recorded in the index.
+ * <p>
+ * As with the annotation scan, the search is scoped within the provided set of scanPackages - including child
+ * packages. An <code>IllegalArgumentException</code> will be thrown if no indexed classes are found.
+ */
+public class IndexedPropertyDefinitionsProvider implements PropertyDefinitionsProvider {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IndexedPropertyDefinitionsProvider.class);
+
+    private final Class<? extends Annotation> markerAnnotation;
+    private final ImmutableList<String> scanPackages;
+    private final String collectionDelimiter;
+    private final ClassLoader classLoader;
+
+    /**
+     * Read the indexed classes marked with the given marker annotation within the given packages.
+     * @param markerAnnotation the marker annotation recorded on configuration classes.
+     * @param scanPackages the packages to narrow the indexed classes.
+     */
+    public IndexedPropertyDefinitionsProvider(Class<? extends Annotation> markerAnnotation,
+            List<String> scanPackages) {
+        this(markerAnnotation, scanPackages, DynamicListProperty.DEFAULT_DELIMITER);
+    }
+
+    /**
+     * Read the indexed classes marked with the given marker annotation within the given packages.
+     * @param markerAnnotation the marker annotation recorded on configuration classes.
+     * @param scanPackages the packages to narrow the indexed classes.
+     * @param collectionDelimiter the delimiter to use between collection property values
+     */
+    public IndexedPropertyDefinitionsProvider(Class<? extends Annotation> markerAnnotation,
+            List<String> scanPackages, String collectionDelimiter) {
+        this(markerAnnotation, scanPackages, collectionDelimiter,
+                Objects.firstNonNull(Thread.currentThread().getContextClassLoader(),
+                        IndexedPropertyDefinitionsProvider.class.getClassLoader()));
+    }
+
+    /**
+     * Read the indexed classes marked with the given marker annotation within the given packages.
+     * @param markerAnnotation the marker annotation recorded on configuration classes.
+     * @param scanPackages the packages to narrow the indexed classes.
+     * @param collectionDelimiter the delimiter to use between collection property values
+     * @param classLoader the class loader used to read the index resources and load the configuration classes
+     */
+    public IndexedPropertyDefinitionsProvider(Class<? extends Annotation> markerAnnotation,
+            List<String> scanPackages, String collectionDelimiter, ClassLoader classLoader) {
+        this.markerAnnotation = checkNotNull(markerAnnotation, "markerAnnotation");
+        checkArgument(scanPackages != null && !scanPackages.isEmpty(), "scanPackages");
+        this.scanPackages = ImmutableList.copyOf(scanPackages);
+        this.collectionDelimiter = checkNotNull(collectionDelimiter, "collectionDelimiter");
+        this.classLoader = checkNotNull(classLoader, "classLoader");
+    }
+
+    @Override
+    public void addPropertyDefinitions(Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
+        StartupProfiler phase = StartupProfiler.start("index");
+        ClasspathScanEvent event = ClasspathScanEvent.start(markerAnnotation.getName(), 
+                Joiner.on(',').join(scanPackages), "index");
+        ConquesoConfigIndex index = loadIndex();
+
+        List<Class<?>> indexedClasses = findIndexedClasses(index);
+        event.end(indexedClasses.size());
+        phase.stop();
+        if (indexedClasses.isEmpty()) {
+            throw new IllegalArgumentException(
+                    String.format("No indexed classes marked with %s annotation found in packages %s",
+                    markerAnnotation.getName(),
+                    scanPackages));
+        }
+
+        LOGGER.info("Discovered {} indexed classes to read for Archaius properties", indexedClasses.size());
+
+        IntrospectorPropertyDefinitionsProvider introspector =
+                new IntrospectorPropertyDefinitionsProvider(indexedClasses, collectionDelimiter);
+
+        for (Class<?> indexedClass : indexedClasses) {
+            introspector.addIndexedPropertyDefinitions(targetPropertyDefinitionMap, indexedClass,
+                    index.getFields(indexedClass.getName()));
+        }
+    }
+
+    private ConquesoConfigIndex loadIndex() {
+        try {
+            return ConquesoConfigIndex.load(classLoader);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Failed to read Conqueso config index " +
+                    ConquesoConfigIndex.INDEX_RESOURCE, e);
+        }
+    }
+
+    private List<Class<?>> findIndexedClasses(ConquesoConfigIndex index) {
+        List<Class<?>> results = Lists.newArrayList();
+        for (String className : index.getClassNames(markerAnnotation.getName())) {
+            if (isInScanPackages(className)) {
+                results.add(loadClass(className));
+            }
+        }
+        return results;
+    }
+
+    private boolean isInScanPackages(String className) {
+        for (String scanPackage : scanPackages) {
+            if (className.startsWith(scanPackage + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Load an indexed class without initializing it - it's only initialized when its field values are first read.
+     */
+    private Class<?> loadClass(String className) {
+        try {
+            return Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("Indexed configuration class not found: " + className, e);
+        }
+    }
+}
@@ -21,18 +21,27 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.jackson.map.util.ClassUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Joiner;
 import com.google.common.base.Objects;
 import com.google.common.base.Strings;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.netflix.config.DynamicListProperty;
 import com.netflix.config.DynamicMapProperty;
 import com.netflix.config.Property;
@@ -40,6 +49,8 @@ import com.rapid7.conqueso.client.ConquesoDescription;
 import com.rapid7.conqueso.client.PropertyDefinition;
 import com.rapid7.conqueso.client.PropertyDefinitionsProvider;
 import com.rapid7.conqueso.client.PropertyType;
+import com.rapid7.conqueso.client.StartupProfiler;
+import com.rapid7.conqueso.client.event.IntrospectionEvent;
 
 /**
  * Implementation of PropertyDefinitionsProvider that will use reflection to discover Archaius properties defined
@@ -47,15 +58,43 @@ import com.rapid7.conqueso.client.PropertyType;
  * this class. This class will not climb through a class hierarchy - pass both super and subclasses in to be
  * read to discover properties if needed. <code>IllegalArgumentException</code>s will be thrown if there are
  * issues reading the Properties from the target classes.
+ * <p>
+ * The definitions read from each class are cached for as long as the class remains loaded, so repeated
+ * introspection of the same class (for example by several providers in the same JVM) only reflects on its fields
+ * once.
+ * <p>
+ * Classes can optionally be introspected in parallel by specifying a parallelism greater than one, either with the
+ * constructor or with the {@value #PARALLELISM_SYSTEM_PROPERTY} system property. The definitions are always merged
+ * in the order of the target classes, so duplicate property names are reported the same way as a sequential read.
+ * Reading the static fields initializes the target classes, so parallel introspection should only be enabled when the
+ * static initializers of the configuration classes don't depend on each other.
  */
 public class IntrospectorPropertyDefinitionsProvider implements PropertyDefinitionsProvider {
     
+    public static final String PARALLELISM_SYSTEM_PROPERTY = "conqueso.properties.introspectionParallelism";
+    
     private static final Logger LOGGER = LoggerFactory.getLogger(IntrospectorPropertyDefinitionsProvider.class);
     
     private static final String MAP_KEY_VALUE_DELIMITER = "=";
     
+    // Prefix of the cache keys of definitions read from the indexed fields of a class, rather than all its fields
+    private static final String INDEXED_CACHE_KEY_PREFIX = "index:";
+    
+    // Weak keys so the cache doesn't hold on to classes (and their ClassLoaders) once unloaded. The cached values
+    // are keyed by collection delimiter, and must not refer back to the class.
+    private static final LoadingCache<Class<?>, ConcurrentMap<String, List<FieldPropertyDefinition>>> 
+            CLASS_DEFINITION_CACHE = CacheBuilder.newBuilder().weakKeys().build(
+                    new CacheLoader<Class<?>, ConcurrentMap<String, List<FieldPropertyDefinition>>>() {
+                        @Override
+                        public ConcurrentMap<String, List<FieldPropertyDefinition>> load(Class<?> key) {
+                            return Maps.newConcurrentMap();
+                        }
+                    });
+    
     private final ImmutableList<Class<?>> targetClasses;
+    private final String collectionDelimiter;
     private final Joiner collectionJoiner;
+    private final int parallelism;
     
     public IntrospectorPropertyDefinitionsProvider(Class<?>...targetClasses) {
         this(Arrays.asList(targetClasses), DynamicListProperty.DEFAULT_DELIMITER);
@@ -66,27 +105,96 @@ public class IntrospectorPropertyDefinitionsProvider implements PropertyDefiniti
     }
     
     public IntrospectorPropertyDefinitionsProvider(Collection<Class<?>> targetClasses, String collectionDelimiter) {
+        this(targetClasses, collectionDelimiter, Integer.getInteger(PARALLELISM_SYSTEM_PROPERTY, 1));
+    }
+    
+    /**
+     * Introspect the given classes, reading up to parallelism classes concurrently.
+     * @param targetClasses the classes to read the Archaius properties from
+     * @param collectionDelimiter the delimiter to use between collection property values
+     * @param parallelism the maximum number of classes to read concurrently, 1 to read sequentially
+     */
+    public IntrospectorPropertyDefinitionsProvider(Collection<Class<?>> targetClasses, String collectionDelimiter,
+            int parallelism) {
         checkArgument(!checkNotNull(targetClasses, "targetClasses").isEmpty(), "targetClasses");
+        checkArgument(parallelism > 0, "parallelism");
         this.targetClasses = ImmutableList.copyOf(targetClasses);
-        collectionJoiner = Joiner.on(checkNotNull(collectionDelimiter, "collectionDelimiter"));
+        this.collectionDelimiter = checkNotNull(collectionDelimiter, "collectionDelimiter");
+        collectionJoiner = Joiner.on(collectionDelimiter);
+        this.parallelism = parallelism;
     }
     
     @Override
     public void addPropertyDefinitions(Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
+        StartupProfiler phase = StartupProfiler.start("introspection");
+        IntrospectionEvent event = IntrospectionEvent.start(targetClasses.size(), parallelism);
+        List<List<FieldPropertyDefinition>> classDefinitions = parallelism > 1 && targetClasses.size() > 1 ?
+                readClassesInParallel() : readClasses();
+        
+        // Merge in the order of the target classes, regardless of the order the classes were read
+        int propertyCount = 0;
+        for (int i = 0; i < targetClasses.size(); i++) {
+            for (FieldPropertyDefinition fieldDefinition : classDefinitions.get(i)) {
+                mergePropertyDefinition(targetPropertyDefinitionMap, targetClasses.get(i).getName(), 
+                        fieldDefinition);
+            }
+            propertyCount += classDefinitions.get(i).size();
+        }
+        event.end(propertyCount);
+        phase.stop();
+    }
+    
+    private List<List<FieldPropertyDefinition>> readClasses() {
+        List<List<FieldPropertyDefinition>> results = Lists.newArrayListWithCapacity(targetClasses.size());
         for (Class<?> targetClass : targetClasses) {
-            addClassPropertyDefinitions(targetPropertyDefinitionMap, targetClass);
+            results.add(getClassPropertyDefinitions(targetClass));
+        }
+        return results;
+    }
+    
+    private List<List<FieldPropertyDefinition>> readClassesInParallel() {
+        List<Callable<List<FieldPropertyDefinition>>> tasks = Lists.newArrayListWithCapacity(targetClasses.size());
+        for (final Class<?> targetClass : targetClasses) {
+            tasks.add(new Callable<List<FieldPropertyDefinition>>() {
+                @Override
+                public List<FieldPropertyDefinition> call() {
+                    return getClassPropertyDefinitions(targetClass);
+                }
+            });
         }
+        return ConcurrentTasks.invokeAll("conqueso-introspector-%d", parallelism, tasks, 0);
     }
     
-    private void addClassPropertyDefinitions(Map<String, PropertyDefinition> targetPropertyDefinitionMap, 
-            Class<?> targetClass) {
+    private List<FieldPropertyDefinition> getClassPropertyDefinitions(Class<?> targetClass) {
+        ConcurrentMap<String, List<FieldPropertyDefinition>> cachedDefinitions = 
+                CLASS_DEFINITION_CACHE.getUnchecked(targetClass);
+        List<FieldPropertyDefinition> definitions = cachedDefinitions.get(collectionDelimiter);
+        if (definitions == null) {
+            definitions = readClassPropertyDefinitions(targetClass);
+            cachedDefinitions.putIfAbsent(collectionDelimiter, definitions);
+        }
+        return definitions;
+    }
+    
+    private List<FieldPropertyDefinition> readClassPropertyDefinitions(Class<?> targetClass) {
         Set<Field> propertyFields = findStaticFieldsOfType(Property.class, targetClass);
         if (propertyFields.isEmpty()) {
             LOGGER.warn("No Archaius properties found as static fields on class " + targetClass.getName());
         }
+        ImmutableList.Builder<FieldPropertyDefinition> builder = ImmutableList.builder();
         for (Field propertyField : propertyFields) {
-            addFieldPropertyDefinition(targetPropertyDefinitionMap, propertyField);
+            FieldPropertyDefinition fieldDefinition = readFieldPropertyDefinition(propertyField, 
+                    getPropertyDescription(propertyField));
+            if (fieldDefinition != null) {
+                builder.add(fieldDefinition);
+            }
         }
+        return builder.build();
+    }
+    
+    @VisibleForTesting
+    static void clearClassDefinitionCache() {
+        CLASS_DEFINITION_CACHE.invalidateAll();
     }
     
     private static Set<Field> findStaticFieldsOfType(Class<?> typeClass, Class<?> targetClass) {
@@ -101,8 +209,58 @@ public class IntrospectorPropertyDefinitionsProvider implements PropertyDefiniti
         return builder.build();
     }
     
-    private void addFieldPropertyDefinition(Map<String, PropertyDefinition> targetPropertyDefinitionMap, 
-            Field propertyField) {
+    /**
+     * Read the Archaius properties from the given indexed static fields of a class and add their definitions to the
+     * target map. Only the indexed fields are reflected on, and the definitions are cached per class as with 
+     * introspection, so reloading an indexed class doesn't read its fields again.
+     * @param targetClass the indexed class, initialized when its fields are first read
+     * @param indexedFields the descriptions of the indexed fields keyed by field name, with empty descriptions for 
+     * fields without one
+     * @return the number of definitions added
+     */
+    int addIndexedPropertyDefinitions(Map<String, PropertyDefinition> targetPropertyDefinitionMap, 
+            Class<?> targetClass, Map<String, String> indexedFields) {
+        ConcurrentMap<String, List<FieldPropertyDefinition>> cachedDefinitions = 
+                CLASS_DEFINITION_CACHE.getUnchecked(targetClass);
+        String cacheKey = INDEXED_CACHE_KEY_PREFIX + collectionDelimiter;
+        List<FieldPropertyDefinition> definitions = cachedDefinitions.get(cacheKey);
+        if (definitions == null) {
+            definitions = readIndexedPropertyDefinitions(targetClass, indexedFields);
+            cachedDefinitions.putIfAbsent(cacheKey, definitions);
+        }
+        
+        for (FieldPropertyDefinition fieldDefinition : definitions) {
+            mergePropertyDefinition(targetPropertyDefinitionMap, targetClass.getName(), fieldDefinition);
+        }
+        return definitions.size();
+    }
+    
+    private List<FieldPropertyDefinition> readIndexedPropertyDefinitions(Class<?> targetClass, 
+            Map<String, String> indexedFields) {
+        if (indexedFields.isEmpty()) {
+            LOGGER.warn("No Archaius properties indexed as static fields on class " + targetClass.getName());
+        }
+        ImmutableList.Builder<FieldPropertyDefinition> builder = ImmutableList.builder();
+        for (Map.Entry<String, String> indexedField : indexedFields.entrySet()) {
+            FieldPropertyDefinition fieldDefinition = readFieldPropertyDefinition(
+                    getField(targetClass, indexedField.getKey()), Strings.emptyToNull(indexedField.getValue()));
+            if (fieldDefinition != null) {
+                builder.add(fieldDefinition);
+            }
+        }
+        return builder.build();
+    }
+    
+    private static Field getField(Class<?> targetClass, String fieldName) {
+        try {
+            return targetClass.getDeclaredField(fieldName);
+        } catch (NoSuchFieldException e) {
+            throw new IllegalArgumentException(String.format("Indexed field %s not found on class %s",
+                    fieldName, targetClass.getName()), e);
+        }
+    }
+    
+    private FieldPropertyDefinition readFieldPropertyDefinition(Field propertyField, String description) {
         // Hack the Java permissions to allow us to access a private field
         ClassUtil.checkAndFixAccess(propertyField);
         try {
@@ -110,34 +268,39 @@ public class IntrospectorPropertyDefinitionsProvider implements PropertyDefiniti
             Property<?> property = (Property<?>)propertyField.get(null);
             // Skip null field values
             if (property == null) {
-                return;
+                return null;
             }
 
-            addPropertyDefinition(targetPropertyDefinitionMap, propertyField, property);            
+            return new FieldPropertyDefinition(propertyField.getName(), 
+                    createPropertyDefinition(propertyField, property, description));
         } catch (IllegalAccessException e) {
             throw new IllegalArgumentException(String.format("Failed to read field %s from class %s", 
                     propertyField.getName(), propertyField.getDeclaringClass().getName()), e);
         }
     }
     
-    private void addPropertyDefinition(Map<String, PropertyDefinition> targetPropertyDefinitionMap,
-            Field propertyField, Property<?> property) {
-        
+    private PropertyDefinition createPropertyDefinition(Field propertyField, Property<?> property, 
+            String description) {
         String propName = getPropertyName(propertyField, property);
+        Object defaultValue = getDefaultValue(property);            
+        PropertyType type = getPropertyType(propertyField, property);
+        
+        return new PropertyDefinition(propName, type, Objects.firstNonNull(defaultValue, "").toString(), 
+                description);
+    }
+    
+    private static void mergePropertyDefinition(Map<String, PropertyDefinition> targetPropertyDefinitionMap,
+            String className, FieldPropertyDefinition fieldDefinition) {
+        String propName = fieldDefinition.definition.getName();
         
         if (targetPropertyDefinitionMap.containsKey(propName)) {
             throw new IllegalArgumentException(String.format("Duplicate property name %s - %s.%s", 
                     propName,
-                    propertyField.getDeclaringClass().getName(),
-                    propertyField.getName()));
+                    className,
+                    fieldDefinition.fieldName));
         }
         
-        Object defaultValue = getDefaultValue(property);            
-        PropertyType type = getPropertyType(propertyField, property);
-        String description = getPropertyDescription(propertyField);
-        
-        targetPropertyDefinitionMap.put(propName, new PropertyDefinition(propName, type, 
-                Objects.firstNonNull(defaultValue, "").toString(), description));
+        targetPropertyDefinitionMap.put(propName, fieldDefinition.definition);
     }
 
     private Object getDefaultValue(Property<?> property) {
@@ -185,4 +348,18 @@ public class IntrospectorPropertyDefinitionsProvider implements PropertyDefiniti
         ConquesoDescription descriptionAnnotation = propertyField.getAnnotation(ConquesoDescription.class);
         return descriptionAnnotation == null ? null : descriptionAnnotation.value();
     }
+    
+    /**
+     * Property definition read from a static field. Only holds the field name rather than the Field itself, so
+     * cached definitions don't keep the declaring class loaded.
+     */
+    private static final class FieldPropertyDefinition {
+        private final String fieldName;
+        private final PropertyDefinition definition;
+        
+        FieldPropertyDefinition(String fieldName, PropertyDefinition definition) {
+            this.fieldName = fieldName;
+            this.definition = definition;
+        }
+    }
 }
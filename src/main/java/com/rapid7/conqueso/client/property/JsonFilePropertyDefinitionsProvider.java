@@ -16,18 +16,29 @@
 package com.rapid7.conqueso.client.property;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
 import java.io.Reader;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonLocation;
+import org.codehaus.jackson.JsonParseException;
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.JsonMappingException;
 import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.map.ObjectReader;
 import org.codehaus.jackson.type.TypeReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.rapid7.conqueso.client.PropertyDefinition;
 import com.rapid7.conqueso.client.PropertyType;
+import com.rapid7.conqueso.client.WireFormat;
 
 /**
  * Implementation of PropertyDefinitionsProvider that will read property definitions from specified JSON files. 
@@ -55,6 +66,12 @@ import com.rapid7.conqueso.client.PropertyType;
  * </pre>
  * The values for the type field defined in the {@link PropertyType} enum. The value field provides the default value
  * for the property (but not necessarily the value returned by the Conqueso server).
+ * <p>
+ * The files are parsed incrementally from the raw bytes, merging each property definition as it is read.
+ * <p>
+ * Files can also be encoded in the binary {@link WireFormat#SMILE Smile} format, usually given a <code>.smile</code>
+ * extension, when the optional <code>jackson-smile</code> artifact is on the classpath. Smile files are recognized 
+ * by the header at the start of their contents, so they can be used from any URL.
  */
 public class JsonFilePropertyDefinitionsProvider extends AbstractUrlBasedPropertyDefinitionsProvider<List<PropertyDefinition>> {
     
@@ -62,6 +79,15 @@ public class JsonFilePropertyDefinitionsProvider extends AbstractUrlBasedPropert
     
     public static final String JSON_FILE_SYSTEM_PROPERTY = "conqueso.properties.jsonUrls";
     
+    // Shared between instances to reuse the deserializers Jackson builds on first use
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON_FACTORY = OBJECT_MAPPER.getJsonFactory();
+    private static final ObjectReader DEFINITION_READER = OBJECT_MAPPER.reader(PropertyDefinition.class);
+    private static final ObjectReader DEFINITION_LIST_READER = OBJECT_MAPPER.reader(
+            new TypeReference<List<PropertyDefinition>>() { });
+    
+    private static final byte[] SMILE_HEADER = { ':', ')', '\n' };
+    
     public JsonFilePropertyDefinitionsProvider() {
         super(JSON_FILE_SYSTEM_PROPERTY);
     }
@@ -76,22 +102,74 @@ public class JsonFilePropertyDefinitionsProvider extends AbstractUrlBasedPropert
 
     @Override
     protected List<PropertyDefinition> readModelFromReader(Reader reader) throws IOException {
-        ObjectMapper parser = new ObjectMapper();
-        List<PropertyDefinition> results = parser.readValue(reader, 
-                new TypeReference<List<PropertyDefinition>>() { });
-        return results;
+        return DEFINITION_LIST_READER.readValue(reader);
+    }
+    
+    @Override
+    protected void mergePropertiesFromStream(InputStream input,
+            Map<String, PropertyDefinition> targetPropertyDefinitionMap) throws IOException {
+        JsonParser parser = createParser(input);
+        try {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new JsonMappingException("Expected an array of property definitions", 
+                        parser.getCurrentLocation());
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                PropertyDefinition definition = DEFINITION_READER.readValue(parser);
+                mergeProperty(definition, targetPropertyDefinitionMap);
+            }
+            if (parser.getCurrentToken() != JsonToken.END_ARRAY) {
+                throw new JsonMappingException("Expected a property definition object", 
+                        parser.getCurrentLocation());
+            }
+        } finally {
+            parser.close();
+        }
     }
 
     @Override
     protected void mergeProperties(List<PropertyDefinition> fileContents,
             Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
         for (PropertyDefinition definition : fileContents) {
-            String propertyName = definition.getName();
-            if (targetPropertyDefinitionMap.containsKey(propertyName)) {
-                LOGGER.info("Overriding property definition for " + propertyName);
+            mergeProperty(definition, targetPropertyDefinitionMap);
+        }
+    }
+    
+    private static JsonParser createParser(InputStream input) throws IOException {
+        PushbackInputStream pushbackInput = new PushbackInputStream(input, SMILE_HEADER.length);
+        byte[] header = new byte[SMILE_HEADER.length];
+        int headerLength = 0;
+        int read = 0;
+        while (headerLength < header.length && 
+                (read = pushbackInput.read(header, headerLength, header.length - headerLength)) >= 0) {
+            headerLength += read;
+        }
+        pushbackInput.unread(header, 0, headerLength);
+        
+        if (headerLength == SMILE_HEADER.length && Arrays.equals(header, SMILE_HEADER)) {
+            if (!WireFormat.SMILE.isAvailable()) {
+                throw new JsonParseException("Smile encoded property definitions require jackson-smile on the " + 
+                        "classpath", JsonLocation.NA);
             }
-            targetPropertyDefinitionMap.put(propertyName, definition);
+            return SmileFiles.FACTORY.createJsonParser(pushbackInput);
         }
-    }    
+        return JSON_FACTORY.createJsonParser(pushbackInput);
+    }
+    
+    private static void mergeProperty(PropertyDefinition definition, 
+            Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
+        String propertyName = definition.getName();
+        if (targetPropertyDefinitionMap.containsKey(propertyName)) {
+            LOGGER.info("Overriding property definition for " + propertyName);
+        }
+        targetPropertyDefinitionMap.put(propertyName, definition);
+    }
+    
+    /**
+     * Holds the Smile factory, only created when a Smile file is read.
+     */
+    private static class SmileFiles {
+        static final JsonFactory FACTORY = WireFormat.SMILE.createJsonFactory();
+    }
     
 }
@@ -0,0 +1,35 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.property;
+
+import com.rapid7.conqueso.client.PropertyDefinitionsProvider;
+
+/**
+ * PropertyDefinitionsProvider that can perform the slow parts of its work, such as reading remote files, ahead of
+ * the call to {@link #addPropertyDefinitions(java.util.Map)}. The {@link CompositePropertyDefinitionsProvider}
+ * prefetches all of its children concurrently, then adds their property definitions in order.
+ */
+public interface PrefetchingPropertyDefinitionsProvider extends PropertyDefinitionsProvider {
+
+    /**
+     * Fetch the data needed to add the provider's property definitions. This may be called from a different thread 
+     * than the following call to addPropertyDefinitions, and calling it again before addPropertyDefinitions should
+     * have no effect. Providers must still work if this method is not called first.
+     * 
+     * @throws IllegalArgumentException if there's an issue fetching the data
+     */
+    void prefetch();
+}
@@ -68,17 +68,29 @@ public class PropertyFileOverridePropertyDefinitionsProvider extends AbstractUrl
     @Override
     protected void mergeProperties(Properties fileContents, Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
         for (String propertyKey : fileContents.stringPropertyNames()) {
-            if (targetPropertyDefinitionMap.containsKey(propertyKey)) {
-                String propertyValue = fileContents.getProperty(propertyKey);
-                
-                PropertyDefinition existingDefinition = targetPropertyDefinitionMap.get(propertyKey);
-                PropertyDefinition mergedDefinition = new PropertyDefinition(propertyKey, 
-                        existingDefinition.getType(), propertyValue, existingDefinition.getDescription());
-                
-                targetPropertyDefinitionMap.put(propertyKey, mergedDefinition);
-            } else {
-                LOGGER.warn("Attempting to merge unknown property name, skipping: " + propertyKey);
-            }
+            mergeOverride(propertyKey, fileContents.getProperty(propertyKey), targetPropertyDefinitionMap);
         } 
     }
+    
+    /**
+     * Record the overrides read from each local file, so those of properties not yet defined when the file was 
+     * read are still merged if a reload defines them.
+     */
+    @Override
+    protected boolean isModelRecorded() {
+        return true;
+    }
+    
+    private static void mergeOverride(String propertyKey, String propertyValue, 
+            Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
+        if (targetPropertyDefinitionMap.containsKey(propertyKey)) {
+            PropertyDefinition existingDefinition = targetPropertyDefinitionMap.get(propertyKey);
+            PropertyDefinition mergedDefinition = new PropertyDefinition(propertyKey, 
+                    existingDefinition.getType(), propertyValue, existingDefinition.getDescription());
+            
+            targetPropertyDefinitionMap.put(propertyKey, mergedDefinition);
+        } else {
+            LOGGER.warn("Attempting to merge unknown property name, skipping: " + propertyKey);
+        }
+    }
 }
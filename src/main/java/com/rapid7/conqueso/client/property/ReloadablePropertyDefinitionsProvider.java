@@ -0,0 +1,35 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.property;
+
+import com.rapid7.conqueso.client.PropertyDefinitionsProvider;
+
+/**
+ * PropertyDefinitionsProvider whose sources, such as local definition files, can change while the application is
+ * running. The {@link com.rapid7.conqueso.client.ConquesoClient} can poll {@link #isModified()} to add the property
+ * definitions again when they change, rather than requiring a restart.
+ */
+public interface ReloadablePropertyDefinitionsProvider extends PropertyDefinitionsProvider {
+
+    /**
+     * Check whether the sources of the provider's property definitions have changed since the definitions were 
+     * last added. Providers may keep more state from the first call on, so that adding the definitions again only 
+     * re-reads the sources that have changed.
+     * 
+     * @return true if the property definitions should be added again
+     */
+    boolean isModified();
+}
@@ -0,0 +1,230 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.resilience;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+
+/**
+ * Circuit breaker protecting the threads calling an endpoint of the Conqueso server from a failing or slow server.
+ * <p>
+ * While {@link CircuitState#CLOSED closed}, the outcomes of the latest requests are tracked, counting failed 
+ * requests, server errors and slow requests as failures. Once the proportion of failures reaches the policy's 
+ * threshold, the circuit opens and requests fail fast without being sent. A <code>503 Service Unavailable</code> or 
+ * <code>429 Too Many Requests</code> response opens the circuit immediately, for at least the time given by its 
+ * <code>Retry-After</code> header.
+ * <p>
+ * Once the open duration has elapsed, the circuit is {@link CircuitState#HALF_OPEN half-open}, letting a limited 
+ * number of probe requests through. The circuit closes when enough probes succeed, or opens again for a jittered, 
+ * exponentially longer duration if any fails.
+ * <p>
+ * Callers must report the outcome of every request allowed by {@link #tryAcquire()}. Instances are thread-safe.
+ */
+public final class CircuitBreaker {
+    
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreaker.class);
+    
+    private final String name;
+    private final CircuitBreakerPolicy policy;
+    private final Ticker ticker;
+    private final Random random;
+    
+    // Ring buffer of the latest request outcomes, true for failures
+    private final boolean[] window;
+    private int windowCount = 0;
+    private int windowIndex = 0;
+    private int windowFailures = 0;
+    
+    private CircuitState state = CircuitState.CLOSED;
+    private long openUntilNanos = 0;
+    private int consecutiveOpens = 0;
+    private int probesInFlight = 0;
+    private int probeSuccesses = 0;
+    
+    /**
+     * @param name the name of the protected endpoint, used in log messages
+     * @param policy the policy configuring the circuit breaker
+     */
+    public CircuitBreaker(String name, CircuitBreakerPolicy policy) {
+        this(name, policy, Ticker.systemTicker(), new Random());
+    }
+    
+    @VisibleForTesting
+    CircuitBreaker(String name, CircuitBreakerPolicy policy, Ticker ticker, Random random) {
+        this.name = checkNotNull(name, "name");
+        this.policy = checkNotNull(policy, "policy");
+        this.ticker = checkNotNull(ticker, "ticker");
+        this.random = checkNotNull(random, "random");
+        this.window = new boolean[policy.getWindowSize()];
+    }
+    
+    /**
+     * Check whether a request may be sent. When the open duration has elapsed, the circuit becomes half-open and
+     * allows the policy's number of probe requests at once.
+     * @return true if the request may be sent, in which case its outcome must be reported
+     */
+    public synchronized boolean tryAcquire() {
+        if (!policy.isEnabled() || state == CircuitState.CLOSED) {
+            return true;
+        }
+        if (state == CircuitState.OPEN) {
+            if (ticker.read() - openUntilNanos < 0) {
+                return false;
+            }
+            LOGGER.info("Circuit breaker for {} half-open, probing the Conqueso server", name);
+            state = CircuitState.HALF_OPEN;
+            probesInFlight = 0;
+            probeSuccesses = 0;
+        }
+        if (probesInFlight >= policy.getProbeRequests() - probeSuccesses) {
+            return false;
+        }
+        probesInFlight++;
+        return true;
+    }
+    
+    /**
+     * Report a request that received a response from the server, other than a server error.
+     * @param latencyNanos the latency of the request, counted as a failure if slow
+     */
+    public synchronized void recordSuccess(long latencyNanos) {
+        recordOutcome(latencyNanos >= policy.getSlowRequestNanos());
+    }
+    
+    /**
+     * Report a request that failed, either without a response or with a server error.
+     */
+    public synchronized void recordFailure() {
+        recordOutcome(true);
+    }
+    
+    /**
+     * Report a request rejected by an overloaded server, with a <code>503 Service Unavailable</code> or 
+     * <code>429 Too Many Requests</code> response. The circuit opens immediately.
+     * @param retryAfterNanos the minimum time to stay open requested by the server, or -1 if not given
+     */
+    public synchronized void recordOverloaded(long retryAfterNanos) {
+        if (!policy.isEnabled()) {
+            return;
+        }
+        if (state == CircuitState.HALF_OPEN) {
+            probesInFlight = Math.max(0, probesInFlight - 1);
+        }
+        if (state != CircuitState.OPEN) {
+            open(retryAfterNanos);
+        }
+    }
+    
+    private void recordOutcome(boolean failure) {
+        if (!policy.isEnabled()) {
+            return;
+        }
+        switch (state) {
+        case CLOSED:
+            addToWindow(failure);
+            if (windowCount >= policy.getMinimumRequests() && 
+                    windowFailures >= policy.getFailureRateThreshold() * windowCount) {
+                open(-1);
+            }
+            break;
+        case HALF_OPEN:
+            probesInFlight = Math.max(0, probesInFlight - 1);
+            if (failure) {
+                open(-1);
+            } else if (++probeSuccesses >= policy.getProbeRequests()) {
+                close();
+            }
+            break;
+        default:
+            // Requests sent before the circuit opened
+            break;
+        }
+    }
+    
+    private void addToWindow(boolean failure) {
+        if (windowCount == window.length) {
+            if (window[windowIndex]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowIndex] = failure;
+        if (failure) {
+            windowFailures++;
+        }
+        windowIndex = (windowIndex + 1) % window.length;
+    }
+    
+    private void open(long retryAfterNanos) {
+        long backoffNanos = policy.getOpenNanos() << Math.min(consecutiveOpens, 30);
+        if (backoffNanos <= 0 || backoffNanos > policy.getMaxOpenNanos()) {
+            backoffNanos = policy.getMaxOpenNanos();
+        }
+        // Jitter between half and all of the backoff, so clients don't all probe the server at once
+        long openNanos = backoffNanos / 2 + (long)(random.nextDouble() * (backoffNanos / 2));
+        openNanos = Math.max(openNanos, Math.min(retryAfterNanos, policy.getMaxOpenNanos()));
+        
+        state = CircuitState.OPEN;
+        openUntilNanos = ticker.read() + openNanos;
+        consecutiveOpens++;
+        LOGGER.warn("Circuit breaker for {} open for {}ms, failing requests to the Conqueso server fast", name, 
+                TimeUnit.NANOSECONDS.toMillis(openNanos));
+    }
+    
+    private void close() {
+        LOGGER.info("Circuit breaker for {} closed", name);
+        state = CircuitState.CLOSED;
+        consecutiveOpens = 0;
+        windowCount = 0;
+        windowIndex = 0;
+        windowFailures = 0;
+    }
+    
+    /**
+     * @return the current state of the circuit breaker
+     */
+    public synchronized CircuitState getState() {
+        if (state == CircuitState.OPEN && ticker.read() - openUntilNanos >= 0) {
+            return CircuitState.HALF_OPEN;
+        }
+        return state;
+    }
+    
+    /**
+     * @return the time until the open circuit allows probe requests, or 0 if it isn't open
+     */
+    public synchronized long getRemainingOpenMillis() {
+        if (state != CircuitState.OPEN) {
+            return 0;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(openUntilNanos - ticker.read()));
+    }
+    
+    @Override
+    public synchronized String toString() {
+        return "CircuitBreaker [name=" + name + ", state=" + state + ", windowCount=" + windowCount + 
+                ", windowFailures=" + windowFailures + ", consecutiveOpens=" + consecutiveOpens + "]";
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.resilience;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The configuration of the {@link CircuitBreaker}s protecting a client from a failing or slow Conqueso server. 
+ * Policies are created using the {@link #builder()} method, starting from the default settings:
+ * <ul>
+ * <li>the circuit opens when half of the last 20 requests failed or were slow, once at least 10 were made</li>
+ * <li>requests taking 5 seconds or more are slow</li>
+ * <li>the circuit is first opened for 1 second, doubling each time it opens again up to 1 minute, or for as long 
+ * as requested by a <code>Retry-After</code> header</li>
+ * <li>3 successful probe requests close the circuit again</li>
+ * </ul>
+ */
+public final class CircuitBreakerPolicy {
+    
+    /** The default policy */
+    public static final CircuitBreakerPolicy DEFAULT = builder().build();
+    
+    /** Policy disabling the circuit breakers, so every request is sent */
+    public static final CircuitBreakerPolicy DISABLED = builder().withFailureRateThreshold(0).build();
+    
+    private final double failureRateThreshold;
+    private final int windowSize;
+    private final int minimumRequests;
+    private final long slowRequestNanos;
+    private final long openNanos;
+    private final long maxOpenNanos;
+    private final int probeRequests;
+    
+    private CircuitBreakerPolicy(Builder builder) {
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.windowSize = builder.windowSize;
+        this.minimumRequests = builder.minimumRequests;
+        this.slowRequestNanos = builder.slowRequestNanos;
+        this.openNanos = builder.openNanos;
+        this.maxOpenNanos = builder.maxOpenNanos;
+        this.probeRequests = builder.probeRequests;
+    }
+    
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    /**
+     * @return whether the circuit breakers are enabled
+     */
+    public boolean isEnabled() {
+        return failureRateThreshold > 0;
+    }
+    
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+    
+    public int getWindowSize() {
+        return windowSize;
+    }
+    
+    public int getMinimumRequests() {
+        return minimumRequests;
+    }
+    
+    public long getSlowRequestNanos() {
+        return slowRequestNanos;
+    }
+    
+    public long getOpenNanos() {
+        return openNanos;
+    }
+    
+    public long getMaxOpenNanos() {
+        return maxOpenNanos;
+    }
+    
+    public int getProbeRequests() {
+        return probeRequests;
+    }
+    
+    @Override
+    public String toString() {
+        return "CircuitBreakerPolicy [failureRateThreshold=" + failureRateThreshold + ", windowSize=" + windowSize + 
+                ", minimumRequests=" + minimumRequests + ", slowRequestNanos=" + slowRequestNanos + 
+                ", openNanos=" + openNanos + ", maxOpenNanos=" + maxOpenNanos + 
+                ", probeRequests=" + probeRequests + "]";
+    }
+    
+    /**
+     * Builder of a {@link CircuitBreakerPolicy}, starting from the default settings.
+     */
+    public static final class Builder {
+        private double failureRateThreshold = 0.5;
+        private int windowSize = 20;
+        private int minimumRequests = 10;
+        private long slowRequestNanos = TimeUnit.SECONDS.toNanos(5);
+        private long openNanos = TimeUnit.SECONDS.toNanos(1);
+        private long maxOpenNanos = TimeUnit.MINUTES.toNanos(1);
+        private int probeRequests = 3;
+        
+        private Builder() {
+        }
+        
+        /**
+         * Set the proportion of failed or slow requests within the window that opens the circuit.
+         * @param failureRateThreshold the proportion from 0 to 1, or 0 to disable the circuit breaker
+         * @return the builder for method chaining
+         */
+        public Builder withFailureRateThreshold(double failureRateThreshold) {
+            checkArgument(failureRateThreshold >= 0 && failureRateThreshold <= 1, "failureRateThreshold");
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+        
+        /**
+         * Set the number of the latest requests the failure rate is calculated from, and the minimum number of 
+         * requests made before the circuit can open.
+         * @param windowSize the number of requests in the window
+         * @param minimumRequests the minimum number of requests in the window to calculate the failure rate
+         * @return the builder for method chaining
+         */
+        public Builder withWindow(int windowSize, int minimumRequests) {
+            checkArgument(windowSize > 0, "windowSize");
+            checkArgument(minimumRequests > 0 && minimumRequests <= windowSize, "minimumRequests");
+            this.windowSize = windowSize;
+            this.minimumRequests = minimumRequests;
+            return this;
+        }
+        
+        /**
+         * Set the latency from which successful requests count towards the failure rate, as the server is 
+         * struggling.
+         * @param duration the latency of a slow request
+         * @param unit the unit of the duration
+         * @return the builder for method chaining
+         */
+        public Builder withSlowRequestThreshold(long duration, TimeUnit unit) {
+            checkArgument(duration > 0, "duration");
+            this.slowRequestNanos = checkNotNull(unit, "unit").toNanos(duration);
+            return this;
+        }
+        
+        /**
+         * Set the time the circuit stays open. The first time the circuit opens, it stays open for the given 
+         * duration, doubling each time the probe requests fail up to the maximum duration. The durations are 
+         * jittered between half and all of their value, so clients don't probe the server in step.
+         * @param duration the initial open duration
+         * @param maxDuration the maximum open duration
+         * @param unit the unit of the durations
+         * @return the builder for method chaining
+         */
+        public Builder withOpenDuration(long duration, long maxDuration, TimeUnit unit) {
+            checkArgument(duration > 0, "duration");
+            checkArgument(maxDuration >= duration, "maxDuration");
+            checkNotNull(unit, "unit");
+            this.openNanos = unit.toNanos(duration);
+            this.maxOpenNanos = unit.toNanos(maxDuration);
+            return this;
+        }
+        
+        /**
+         * Set the number of successful probe requests needed to close the circuit. Only this many requests are 
+         * sent at once while the circuit is half-open.
+         * @param probeRequests the number of probe requests
+         * @return the builder for method chaining
+         */
+        public Builder withProbeRequests(int probeRequests) {
+            checkArgument(probeRequests > 0, "probeRequests");
+            this.probeRequests = probeRequests;
+            return this;
+        }
+        
+        public CircuitBreakerPolicy build() {
+            return new CircuitBreakerPolicy(this);
+        }
+    }
+}
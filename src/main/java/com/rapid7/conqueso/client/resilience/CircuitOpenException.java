@@ -0,0 +1,48 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.resilience;
+
+import com.rapid7.conqueso.client.ConquesoCommunicationException;
+import com.rapid7.conqueso.client.metrics.Endpoint;
+
+/**
+ * Exception thrown without contacting the Conqueso server when the {@link CircuitBreaker} of the requested 
+ * endpoint is open, and no cached response is available.
+ */
+public class CircuitOpenException extends ConquesoCommunicationException {
+    
+    private final Endpoint endpoint;
+    private final long retryAfterMillis;
+
+    public CircuitOpenException(Endpoint endpoint, long retryAfterMillis) {
+        super(String.format("Circuit breaker open for Conqueso server %s endpoint, retry after %dms", 
+                endpoint, retryAfterMillis));
+        this.endpoint = endpoint;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+    
+    public Endpoint getEndpoint() {
+        return endpoint;
+    }
+    
+    /**
+     * @return the time until the circuit breaker allows probe requests
+     */
+    public long getRetryAfterMillis() {
+        return retryAfterMillis;
+    }
+    
+}
@@ -0,0 +1,31 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.resilience;
+
+/**
+ * The state of a {@link CircuitBreaker}.
+ */
+public enum CircuitState {
+    
+    /** Requests are sent, while tracking their failure rate */
+    CLOSED,
+    
+    /** Requests fail fast without being sent, until the open duration has elapsed */
+    OPEN,
+    
+    /** A limited number of probe requests are sent, to decide whether to close or open the circuit again */
+    HALF_OPEN
+}
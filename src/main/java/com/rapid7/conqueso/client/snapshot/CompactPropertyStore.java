@@ -0,0 +1,609 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.snapshot;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.SortedMap;
+
+import com.google.common.collect.ImmutableList;
+import com.rapid7.conqueso.client.change.PropertyChange;
+
+/**
+ * Property store packing the keys and values of all the properties into a single byte array, for roles with very
+ * large numbers of properties. The heap holds two arrays whatever the number of properties, rather than the strings,
+ * parsed values and map entries of every property held by the {@link HeapPropertyStore} - shrinking the retained 
+ * heap and leaving the garbage collector almost nothing to trace.
+ * <p>
+ * The keys and values are encoded one UTF-16 char at a time in one to three bytes, as in CESU-8, so the byte order 
+ * of the encoded keys is the natural order of the key strings. The keys are held in that order and found by a 
+ * binary search, comparing the key being looked up with the encoded keys in place. Values are decoded lazily: 
+ * integers and booleans are parsed directly from their bytes without allocating, while strings and doubles are 
+ * decoded from their bytes on each read. The maps returned by the store are views, decoding their entries as 
+ * they're read. The changes from another compact store are found by walking both stores' keys in order, comparing
+ * the encoded keys and values, so only the properties that changed are decoded.
+ */
+public final class CompactPropertyStore implements PropertyStore {
+    
+    /**
+     * Factory of compact property stores.
+     */
+    public static final PropertyStore.Factory FACTORY = new PropertyStore.Factory() {
+        @Override
+        public PropertyStore create(Map<String, String> properties) {
+            return new CompactPropertyStore(properties);
+        }
+        
+        @Override
+        public String toString() {
+            return "CompactPropertyStore.FACTORY";
+        }
+    };
+    
+    private static final String TRUE = "true";
+    private static final String FALSE = "false";
+    
+    private final byte[] data;
+    // The key of property i is held in data[offsets[2i], offsets[2i + 1]), and its value in
+    // data[offsets[2i + 1], offsets[2i + 2])
+    private final int[] offsets;
+    private final int size;
+    private final RangeView all;
+    
+    /**
+     * @param properties the property values, keyed by property key
+     */
+    public CompactPropertyStore(Map<String, String> properties) {
+        String[] keys = properties.keySet().toArray(new String[properties.size()]);
+        Arrays.sort(keys);
+        
+        long length = 0;
+        for (String key : keys) {
+            length += getEncodedLength(checkNotNull(key, "key")) + 
+                    getEncodedLength(checkNotNull(properties.get(key), "value"));
+        }
+        checkArgument(length <= Integer.MAX_VALUE, "Properties too large to store: %s bytes", length);
+        
+        this.size = keys.length;
+        this.data = new byte[(int)length];
+        this.offsets = new int[2 * size + 1];
+        int position = 0;
+        for (int i = 0; i < size; i++) {
+            offsets[2 * i] = position;
+            position = encode(keys[i], data, position);
+            offsets[2 * i + 1] = position;
+            position = encode(properties.get(keys[i]), data, position);
+        }
+        offsets[2 * size] = position;
+        this.all = new RangeView(0, size);
+    }
+    
+    @Override
+    public int size() {
+        return size;
+    }
+    
+    @Override
+    public boolean contains(String key) {
+        return indexOf(key, 0, size) >= 0;
+    }
+    
+    @Override
+    public String getString(String key, String defaultValue) {
+        int index = indexOf(key, 0, size);
+        return index < 0 ? defaultValue : getValue(index);
+    }
+    
+    @Override
+    public int getInt(String key, int defaultValue) {
+        int index = indexOf(key, 0, size);
+        if (index < 0) {
+            return defaultValue;
+        }
+        // Long.MIN_VALUE is outside the range of ints, so also marks a value that isn't a long
+        long value = parseLong(index, Long.MIN_VALUE);
+        return value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE ? (int)value : defaultValue;
+    }
+    
+    @Override
+    public long getLong(String key, long defaultValue) {
+        int index = indexOf(key, 0, size);
+        return index < 0 ? defaultValue : parseLong(index, defaultValue);
+    }
+    
+    @Override
+    public double getDouble(String key, double defaultValue) {
+        int index = indexOf(key, 0, size);
+        if (index < 0) {
+            return defaultValue;
+        }
+        // Parse integers without decoding, as the heap store does, falling back to parsing other numbers. Only a 
+        // value of Long.MIN_VALUE parses as both sentinels.
+        long longValue = parseLong(index, Long.MIN_VALUE);
+        if (longValue != Long.MIN_VALUE || parseLong(index, Long.MAX_VALUE) == Long.MIN_VALUE) {
+            return longValue;
+        }
+        try {
+            return Double.parseDouble(getValue(index).trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+    
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        int index = indexOf(key, 0, size);
+        if (index < 0) {
+            return defaultValue;
+        }
+        int start = getTrimmedStart(index);
+        int end = getTrimmedEnd(index, start);
+        if (!isAscii(start, end)) {
+            // Non-ASCII chars may also equal the ASCII letters ignoring case, so leave the comparison to String
+            String value = getValue(index).trim();
+            if (value.equalsIgnoreCase(TRUE) || value.equalsIgnoreCase(FALSE)) {
+                return value.equalsIgnoreCase(TRUE);
+            }
+            return defaultValue;
+        }
+        if (equalsIgnoreCase(start, end, TRUE) || equalsIgnoreCase(start, end, FALSE)) {
+            return equalsIgnoreCase(start, end, TRUE);
+        }
+        return defaultValue;
+    }
+    
+    @Override
+    public SortedMap<String, String> getPropertiesWithPrefix(String prefix) {
+        if (checkNotNull(prefix, "prefix").isEmpty()) {
+            return all;
+        }
+        return new RangeView(lowerBound(prefix, 0, size), upperBound(prefix, 0, size));
+    }
+    
+    @Override
+    public SortedMap<String, String> asMap() {
+        return all;
+    }
+    
+    @Override
+    public boolean matches(Map<String, String> properties) {
+        if (properties.size() != size) {
+            return false;
+        }
+        for (Map.Entry<String, String> entry : properties.entrySet()) {
+            if (entry.getKey() == null || entry.getValue() == null) {
+                return false;
+            }
+            int index = indexOf(entry.getKey(), 0, size);
+            if (index < 0 || compare(entry.getValue(), offsets[2 * index + 1], offsets[2 * index + 2], false) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Compute the changes from a previous store in key order. The changes from another compact store are found by 
+     * merging the encoded keys of both stores, only decoding the keys and values of the changed properties.
+     */
+    @Override
+    public ImmutableList<PropertyChange> changesSince(PropertyStore previous) {
+        if (!(previous instanceof CompactPropertyStore)) {
+            return PropertyChange.between(previous.asMap(), asMap());
+        }
+        CompactPropertyStore other = (CompactPropertyStore) previous;
+        ImmutableList.Builder<PropertyChange> changes = ImmutableList.builder();
+        int previousIndex = 0;
+        int index = 0;
+        while (previousIndex < other.size || index < size) {
+            int order;
+            if (previousIndex == other.size) {
+                order = 1;
+            } else if (index == size) {
+                order = -1;
+            } else {
+                order = compare(other.data, other.offsets[2 * previousIndex], other.offsets[2 * previousIndex + 1], 
+                        data, offsets[2 * index], offsets[2 * index + 1]);
+            }
+            
+            if (order < 0) {
+                changes.add(new PropertyChange(other.getKey(previousIndex), other.getValue(previousIndex), null));
+                previousIndex++;
+            } else if (order > 0) {
+                changes.add(new PropertyChange(getKey(index), null, getValue(index)));
+                index++;
+            } else {
+                if (compare(other.data, other.offsets[2 * previousIndex + 1], other.offsets[2 * previousIndex + 2], 
+                        data, offsets[2 * index + 1], offsets[2 * index + 2]) != 0) {
+                    changes.add(new PropertyChange(getKey(index), other.getValue(previousIndex), getValue(index)));
+                }
+                previousIndex++;
+                index++;
+            }
+        }
+        return changes.build();
+    }
+    
+    /**
+     * @return the number of bytes holding the encoded keys and values of the properties
+     */
+    public int getDataLength() {
+        return data.length;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactPropertyStore [size=" + size + ", dataLength=" + data.length + "]";
+    }
+    
+    private String getKey(int index) {
+        return decode(offsets[2 * index], offsets[2 * index + 1]);
+    }
+    
+    private String getValue(int index) {
+        return decode(offsets[2 * index + 1], offsets[2 * index + 2]);
+    }
+    
+    /**
+     * @return the index of the key within [from, to), or a negative number if it isn't found
+     */
+    private int indexOf(String key, int from, int to) {
+        int index = lowerBound(key, from, to);
+        return index < to && compare(key, offsets[2 * index], offsets[2 * index + 1], false) == 0 ? index : -1;
+    }
+    
+    /**
+     * @return the index of the first key within [from, to) not less than the given key
+     */
+    private int lowerBound(String key, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(key, offsets[2 * middle], offsets[2 * middle + 1], false) > 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * @return the index of the first key within [from, to) greater than the given prefix and not starting with it
+     */
+    private int upperBound(String prefix, int from, int to) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compare(prefix, offsets[2 * middle], offsets[2 * middle + 1], true) >= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+    
+    /**
+     * Compare a string with the string encoded in data[start, end), without decoding it.
+     * @param prefix whether to compare the string with only the same number of leading chars of the encoded string
+     * @return a negative number, zero or a positive number as the string is less than, equal to, or greater than 
+     * the encoded string
+     */
+    private int compare(String string, int start, int end, boolean prefix) {
+        int position = start;
+        for (int i = 0; i < string.length(); i++) {
+            if (position >= end) {
+                return 1;
+            }
+            int b = data[position] & 0xff;
+            char c;
+            if (b < 0x80) {
+                c = (char)b;
+                position++;
+            } else if (b < 0xe0) {
+                c = (char)(((b & 0x1f) << 6) | (data[position + 1] & 0x3f));
+                position += 2;
+            } else {
+                c = (char)(((b & 0x0f) << 12) | ((data[position + 1] & 0x3f) << 6) | (data[position + 2] & 0x3f));
+                position += 3;
+            }
+            if (string.charAt(i) != c) {
+                return string.charAt(i) - c;
+            }
+        }
+        return prefix || position == end ? 0 : -1;
+    }
+    
+    /**
+     * Compare the strings encoded in a[aStart, aEnd) and b[bStart, bEnd) by their unsigned bytes, which orders them 
+     * as the strings themselves.
+     * @return a negative number, zero or a positive number as the first string is less than, equal to, or greater 
+     * than the second
+     */
+    private static int compare(byte[] a, int aStart, int aEnd, byte[] b, int bStart, int bEnd) {
+        int length = Math.min(aEnd - aStart, bEnd - bStart);
+        for (int i = 0; i < length; i++) {
+            int difference = (a[aStart + i] & 0xff) - (b[bStart + i] & 0xff);
+            if (difference != 0) {
+                return difference;
+            }
+        }
+        return (aEnd - aStart) - (bEnd - bStart);
+    }
+    
+    /**
+     * Parse the value of the property as a decimal long, with the same results as {@link Long#parseLong(String)} 
+     * of the trimmed value.
+     * @return the parsed value, or the invalid value if the value isn't a long
+     */
+    private long parseLong(int index, long invalid) {
+        int start = getTrimmedStart(index);
+        int end = getTrimmedEnd(index, start);
+        if (!isAscii(start, end)) {
+            // Long.parseLong also accepts non-ASCII digits, so leave their parsing to it
+            try {
+                return Long.parseLong(getValue(index).trim());
+            } catch (NumberFormatException e) {
+                return invalid;
+            }
+        }
+        if (start == end) {
+            return invalid;
+        }
+        
+        // Accumulate negatively, as Long.parseLong does, since Long.MIN_VALUE has no positive counterpart
+        boolean negative = data[start] == '-';
+        int position = data[start] == '-' || data[start] == '+' ? start + 1 : start;
+        if (position == end) {
+            return invalid;
+        }
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; position < end; position++) {
+            int digit = data[position] - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                return invalid;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return invalid;
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+    
+    /**
+     * @return the start of the value of the property, skipping leading whitespace as {@link String#trim()} does
+     */
+    private int getTrimmedStart(int index) {
+        int start = offsets[2 * index + 1];
+        int end = offsets[2 * index + 2];
+        // Chars up to a space are encoded as single bytes, and no byte of a longer encoding is in that range
+        while (start < end && (data[start] & 0xff) <= ' ') {
+            start++;
+        }
+        return start;
+    }
+    
+    /**
+     * @return the end of the value of the property, skipping trailing whitespace as {@link String#trim()} does
+     */
+    private int getTrimmedEnd(int index, int start) {
+        int end = offsets[2 * index + 2];
+        while (end > start && (data[end - 1] & 0xff) <= ' ') {
+            end--;
+        }
+        return end;
+    }
+    
+    private boolean isAscii(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (data[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * @return true if the ASCII bytes in data[start, end) equal the lower case ASCII string, ignoring case
+     */
+    private boolean equalsIgnoreCase(int start, int end, String lowerCase) {
+        if (end - start != lowerCase.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            int b = data[start + i];
+            if (b >= 'A' && b <= 'Z') {
+                b += 'a' - 'A';
+            }
+            if (b != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private String decode(int start, int end) {
+        char[] chars = new char[end - start];
+        int length = 0;
+        int position = start;
+        while (position < end) {
+            int b = data[position] & 0xff;
+            if (b < 0x80) {
+                chars[length++] = (char)b;
+                position++;
+            } else if (b < 0xe0) {
+                chars[length++] = (char)(((b & 0x1f) << 6) | (data[position + 1] & 0x3f));
+                position += 2;
+            } else {
+                chars[length++] = (char)(((b & 0x0f) << 12) | ((data[position + 1] & 0x3f) << 6) | 
+                        (data[position + 2] & 0x3f));
+                position += 3;
+            }
+        }
+        return new String(chars, 0, length);
+    }
+    
+    private static int getEncodedLength(String string) {
+        int length = 0;
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            length += c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+        }
+        return length;
+    }
+    
+    /**
+     * Encode each UTF-16 char of the string independently, so surrogate pairs and unpaired surrogates are both
+     * preserved, and the byte order of encoded strings matches the natural order of the strings.
+     * @return the position in the data after the encoded string
+     */
+    private static int encode(String string, byte[] data, int position) {
+        for (int i = 0; i < string.length(); i++) {
+            char c = string.charAt(i);
+            if (c < 0x80) {
+                data[position++] = (byte)c;
+            } else if (c < 0x800) {
+                data[position++] = (byte)(0xc0 | (c >> 6));
+                data[position++] = (byte)(0x80 | (c & 0x3f));
+            } else {
+                data[position++] = (byte)(0xe0 | (c >> 12));
+                data[position++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+                data[position++] = (byte)(0x80 | (c & 0x3f));
+            }
+        }
+        return position;
+    }
+    
+    /**
+     * Sorted map view of the properties within [from, to), decoding the keys and values as they're read.
+     */
+    private final class RangeView extends AbstractMap<String, String> implements SortedMap<String, String> {
+        
+        private final int from;
+        private final int to;
+        
+        RangeView(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        public int size() {
+            return to - from;
+        }
+        
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String && indexOf((String)key, from, to) >= 0;
+        }
+        
+        @Override
+        public String get(Object key) {
+            int index = key instanceof String ? indexOf((String)key, from, to) : -1;
+            return index < 0 ? null : getValue(index);
+        }
+        
+        @Override
+        public Comparator<? super String> comparator() {
+            return null;
+        }
+        
+        @Override
+        public SortedMap<String, String> subMap(String fromKey, String toKey) {
+            checkArgument(fromKey.compareTo(toKey) <= 0, "fromKey > toKey");
+            return new RangeView(lowerBound(fromKey, from, to), lowerBound(toKey, from, to));
+        }
+        
+        @Override
+        public SortedMap<String, String> headMap(String toKey) {
+            return new RangeView(from, lowerBound(toKey, from, to));
+        }
+        
+        @Override
+        public SortedMap<String, String> tailMap(String fromKey) {
+            return new RangeView(lowerBound(fromKey, from, to), to);
+        }
+        
+        @Override
+        public String firstKey() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return getKey(from);
+        }
+        
+        @Override
+        public String lastKey() {
+            if (from == to) {
+                throw new NoSuchElementException();
+            }
+            return getKey(to - 1);
+        }
+        
+        @Override
+        public Set<Map.Entry<String, String>> entrySet() {
+            return new AbstractSet<Map.Entry<String, String>>() {
+                @Override
+                public int size() {
+                    return to - from;
+                }
+                
+                @Override
+                public Iterator<Map.Entry<String, String>> iterator() {
+                    return new Iterator<Map.Entry<String, String>>() {
+                        private int index = from;
+                        
+                        @Override
+                        public boolean hasNext() {
+                            return index < to;
+                        }
+                        
+                        @Override
+                        public Map.Entry<String, String> next() {
+                            if (index >= to) {
+                                throw new NoSuchElementException();
+                            }
+                            Map.Entry<String, String> entry = 
+                                    new SimpleImmutableEntry<String, String>(getKey(index), getValue(index));
+                            index++;
+                            return entry;
+                        }
+                        
+                        @Override
+                        public void remove() {
+                            throw new UnsupportedOperationException();
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
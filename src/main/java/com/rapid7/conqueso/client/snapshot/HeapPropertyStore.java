@@ -0,0 +1,292 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.snapshot;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSortedMap;
+import com.rapid7.conqueso.client.change.PropertyChange;
+
+/**
+ * Property store holding the property values as strings, with their values parsed as numbers and booleans once, 
+ * when the store is created. The typed getters neither box, parse nor allocate - a lookup is a single hash map 
+ * read. The keys are also held in sorted order, so the properties under a key prefix are found by a binary search
+ * and returned as a view, without copying the matching properties.
+ */
+public final class HeapPropertyStore implements PropertyStore {
+    
+    /**
+     * Factory of heap property stores, used by default.
+     */
+    public static final PropertyStore.Factory FACTORY = new PropertyStore.Factory() {
+        @Override
+        public PropertyStore create(Map<String, String> properties) {
+            return new HeapPropertyStore(properties);
+        }
+        
+        @Override
+        public String toString() {
+            return "HeapPropertyStore.FACTORY";
+        }
+    };
+    
+    private final ImmutableSortedMap<String, String> properties;
+    private final ImmutableMap<String, Value> values;
+    
+    /**
+     * @param properties the property values, keyed by property key
+     */
+    public HeapPropertyStore(Map<String, String> properties) {
+        this.properties = ImmutableSortedMap.copyOf(properties);
+        
+        ImmutableMap.Builder<String, Value> builder = ImmutableMap.builder();
+        for (Map.Entry<String, String> entry : this.properties.entrySet()) {
+            builder.put(entry.getKey(), new Value(entry.getValue()));
+        }
+        this.values = builder.build();
+    }
+    
+    @Override
+    public int size() {
+        return properties.size();
+    }
+    
+    @Override
+    public boolean contains(String key) {
+        return values.containsKey(key);
+    }
+    
+    @Override
+    public String getString(String key, String defaultValue) {
+        Value value = values.get(key);
+        return value == null ? defaultValue : value.string;
+    }
+    
+    @Override
+    public int getInt(String key, int defaultValue) {
+        Value value = values.get(key);
+        return value != null && value.isInt() ? (int)value.longValue : defaultValue;
+    }
+    
+    @Override
+    public long getLong(String key, long defaultValue) {
+        Value value = values.get(key);
+        return value != null && value.isLong() ? value.longValue : defaultValue;
+    }
+    
+    @Override
+    public double getDouble(String key, double defaultValue) {
+        Value value = values.get(key);
+        return value != null && value.isDouble() ? value.doubleValue : defaultValue;
+    }
+    
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Value value = values.get(key);
+        return value != null && value.isBoolean() ? value.booleanValue : defaultValue;
+    }
+    
+    @Override
+    public SortedMap<String, String> getPropertiesWithPrefix(String prefix) {
+        if (checkNotNull(prefix, "prefix").isEmpty()) {
+            return properties;
+        }
+        String end = getPrefixEnd(prefix);
+        return end == null ? properties.tailMap(prefix) : properties.subMap(prefix, end);
+    }
+    
+    /**
+     * @return the least string greater than all strings starting with the prefix, or null if there's none
+     */
+    private static String getPrefixEnd(String prefix) {
+        for (int i = prefix.length() - 1; i >= 0; i--) {
+            char last = prefix.charAt(i);
+            if (last != Character.MAX_VALUE) {
+                return prefix.substring(0, i) + (char)(last + 1);
+            }
+        }
+        return null;
+    }
+    
+    @Override
+    public SortedMap<String, String> asMap() {
+        return properties;
+    }
+    
+    @Override
+    public boolean matches(Map<String, String> properties) {
+        return this.properties.equals(properties);
+    }
+
+    @Override
+    public ImmutableList<PropertyChange> changesSince(PropertyStore previous) {
+        return PropertyChange.between(previous.asMap(), asMap());
+    }
+    
+    @Override
+    public String toString() {
+        return "HeapPropertyStore [size=" + properties.size() + "]";
+    }
+    
+    /**
+     * A property value, with its parsed number and boolean values.
+     */
+    private static final class Value {
+        private static final int LONG = 1;
+        private static final int INT = 2;
+        private static final int DOUBLE = 4;
+        private static final int BOOLEAN = 8;
+        
+        private final String string;
+        private final int types;
+        private final long longValue;
+        private final double doubleValue;
+        private final boolean booleanValue;
+        
+        Value(String value) {
+            String trimmed = value.trim();
+            int parsedTypes = 0;
+            long parsedLong = 0;
+            double parsedDouble = 0;
+            
+            // Check the characters before parsing, so the common non-numeric values don't each throw exceptions
+            boolean parsed = false;
+            if (isLongSyntax(trimmed)) {
+                try {
+                    parsedLong = Long.parseLong(trimmed);
+                    parsedDouble = parsedLong;
+                    parsedTypes |= LONG | DOUBLE;
+                    if (parsedLong >= Integer.MIN_VALUE && parsedLong <= Integer.MAX_VALUE) {
+                        parsedTypes |= INT;
+                    }
+                    parsed = true;
+                } catch (NumberFormatException e) {
+                    // Out of the range of a long, so parsed as a double
+                }
+            }
+            if (!parsed && isDoubleSyntax(trimmed)) {
+                try {
+                    parsedDouble = Double.parseDouble(trimmed);
+                    parsedTypes |= DOUBLE;
+                } catch (NumberFormatException e) {
+                    // Only reached by hexadecimal values, which aren't checked before parsing
+                }
+            }
+            
+            boolean parsedBoolean = trimmed.equalsIgnoreCase("true");
+            if (parsedBoolean || trimmed.equalsIgnoreCase("false")) {
+                parsedTypes |= BOOLEAN;
+            }
+            
+            this.string = value;
+            this.types = parsedTypes;
+            this.longValue = parsedLong;
+            this.doubleValue = parsedDouble;
+            this.booleanValue = parsedBoolean;
+        }
+        
+        /**
+         * @return true if the value is a sign followed by decimal digits, as accepted by {@link Long#parseLong(String)}
+         * if in range
+         */
+        private static boolean isLongSyntax(String value) {
+            int start = value.startsWith("-") || value.startsWith("+") ? 1 : 0;
+            if (start == value.length()) {
+                return false;
+            }
+            for (int i = start; i < value.length(); i++) {
+                if (Character.digit(value.charAt(i), 10) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        /**
+         * @return true if the value may be accepted by {@link Double#parseDouble(String)}. Decimal values, 
+         * <code>NaN</code> and <code>Infinity</code> are checked exactly, while any value starting with 
+         * <code>0x</code> is left to be parsed as a hexadecimal.
+         */
+        private static boolean isDoubleSyntax(String value) {
+            int position = value.startsWith("-") || value.startsWith("+") ? 1 : 0;
+            String unsigned = value.substring(position);
+            if (unsigned.equals("NaN") || unsigned.equals("Infinity") || unsigned.startsWith("0x") || 
+                    unsigned.startsWith("0X")) {
+                return true;
+            }
+            int length = value.length();
+            if (length > position && "fFdD".indexOf(value.charAt(length - 1)) >= 0) {
+                length--;
+            }
+            
+            int digits = 0;
+            while (position < length && isAsciiDigit(value.charAt(position))) {
+                position++;
+                digits++;
+            }
+            if (position < length && value.charAt(position) == '.') {
+                position++;
+                while (position < length && isAsciiDigit(value.charAt(position))) {
+                    position++;
+                    digits++;
+                }
+            }
+            if (digits == 0) {
+                return false;
+            }
+            if (position < length && (value.charAt(position) == 'e' || value.charAt(position) == 'E')) {
+                position++;
+                if (position < length && (value.charAt(position) == '-' || value.charAt(position) == '+')) {
+                    position++;
+                }
+                int exponentDigits = 0;
+                while (position < length && isAsciiDigit(value.charAt(position))) {
+                    position++;
+                    exponentDigits++;
+                }
+                if (exponentDigits == 0) {
+                    return false;
+                }
+            }
+            return position == length;
+        }
+        
+        private static boolean isAsciiDigit(char c) {
+            return c >= '0' && c <= '9';
+        }
+        
+        boolean isLong() {
+            return (types & LONG) != 0;
+        }
+        
+        boolean isInt() {
+            return (types & INT) != 0;
+        }
+        
+        boolean isDouble() {
+            return (types & DOUBLE) != 0;
+        }
+        
+        boolean isBoolean() {
+            return (types & BOOLEAN) != 0;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.snapshot;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Group of related properties read together from a single {@link PropertySnapshot}, so a reader never sees some of
+ * the group's properties updated by a poll and others not - such as a new <code>db.host</code> with the previous
+ * <code>db.port</code>.
+ * <p>
+ * Each {@link #read()} returns the values of the group from the latest snapshot, along with the group's version:
+ * the version of the snapshot in which any of the group's properties last changed. The version only increases, and
+ * is unchanged by polls changing other properties, so a reader can cheaply check whether it needs to reconfigure:
+ * <pre>
+ * PropertyGroup.Values db = dbGroup.read();
+ * if (db.getVersion() != configuredVersion) {
+ *     reconnect(db.getString("db.host", null), db.getInt("db.port", 5432));
+ *     configuredVersion = db.getVersion();
+ * }
+ * </pre>
+ * Reading the group takes no locks, and doesn't allocate unless a new snapshot has been published since the 
+ * previous read.
+ */
+public final class PropertyGroup {
+    
+    private final ImmutableSet<String> keys;
+    private final Supplier<PropertySnapshot> snapshots;
+    private final AtomicReference<Values> latest;
+    
+    /**
+     * @param snapshots the supplier of the latest property snapshot, such as 
+     * {@link com.rapid7.conqueso.client.ConquesoClient#getPropertySnapshot()}
+     * @param keys the keys of the properties in the group
+     */
+    public PropertyGroup(Supplier<PropertySnapshot> snapshots, String...keys) {
+        checkArgument(keys.length > 0, "keys");
+        this.keys = ImmutableSet.copyOf(keys);
+        this.snapshots = checkNotNull(snapshots, "snapshots");
+        PropertySnapshot snapshot = snapshots.get();
+        this.latest = new AtomicReference<Values>(new Values(this.keys, snapshot, snapshot.getVersion()));
+    }
+    
+    /**
+     * @return the keys of the properties in the group
+     */
+    public ImmutableSet<String> getKeys() {
+        return keys;
+    }
+    
+    /**
+     * Read the values of the group's properties from the latest property snapshot.
+     * @return the values of the group, all from the same snapshot
+     */
+    public Values read() {
+        PropertySnapshot snapshot = snapshots.get();
+        Values current = latest.get();
+        if (snapshot.getVersion() <= current.snapshot.getVersion()) {
+            return current;
+        }
+        
+        long version = hasChanged(current.snapshot, snapshot) ? snapshot.getVersion() : current.version;
+        Values next = new Values(keys, snapshot, version);
+        // A failed update means another reader has already recorded the same or a later snapshot
+        latest.compareAndSet(current, next);
+        return next;
+    }
+    
+    private boolean hasChanged(PropertySnapshot previous, PropertySnapshot snapshot) {
+        for (String key : keys) {
+            if (!Objects.equal(previous.getString(key, null), snapshot.getString(key, null))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "PropertyGroup [keys=" + keys + ", version=" + latest.get().version + "]";
+    }
+    
+    /**
+     * The values of a group's properties, read from a single property snapshot. The typed getters behave as those
+     * of {@link PropertySnapshot}, but only accept the keys of the group.
+     */
+    public static final class Values {
+        private final ImmutableSet<String> keys;
+        private final PropertySnapshot snapshot;
+        private final long version;
+        
+        private Values(ImmutableSet<String> keys, PropertySnapshot snapshot, long version) {
+            this.keys = keys;
+            this.snapshot = snapshot;
+            this.version = version;
+        }
+        
+        /**
+         * @return the version of the snapshot in which any of the group's properties last changed
+         */
+        public long getVersion() {
+            return version;
+        }
+        
+        /**
+         * @return the version of the snapshot the values were read from
+         */
+        public long getSnapshotVersion() {
+            return snapshot.getVersion();
+        }
+        
+        public String getString(String key, String defaultValue) {
+            return snapshot.getString(checkKey(key), defaultValue);
+        }
+        
+        public int getInt(String key, int defaultValue) {
+            return snapshot.getInt(checkKey(key), defaultValue);
+        }
+        
+        public long getLong(String key, long defaultValue) {
+            return snapshot.getLong(checkKey(key), defaultValue);
+        }
+        
+        public double getDouble(String key, double defaultValue) {
+            return snapshot.getDouble(checkKey(key), defaultValue);
+        }
+        
+        public boolean getBoolean(String key, boolean defaultValue) {
+            return snapshot.getBoolean(checkKey(key), defaultValue);
+        }
+        
+        private String checkKey(String key) {
+            checkArgument(keys.contains(key), "Property not in group");
+            return key;
+        }
+
+        @Override
+        public String toString() {
+            return "Values [keys=" + keys + ", version=" + version + ", snapshotVersion=" + snapshot.getVersion() + 
+                    "]";
+        }
+    }
+}
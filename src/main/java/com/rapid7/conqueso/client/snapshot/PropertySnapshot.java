@@ -0,0 +1,171 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.snapshot;
+
+import static com.google.common.base.Preconditions.*;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Immutable, versioned snapshot of the property values polled from the Conqueso server. A new snapshot is 
+ * published through a single volatile reference each time a poll returns changed properties, so readers always 
+ * see a consistent set of values without locking.
+ * <p>
+ * The values are held by a {@link PropertyStore}, by default a {@link HeapPropertyStore}. Its values are parsed as
+ * numbers and booleans once, when the snapshot is created, so the typed getters neither box, parse nor allocate - 
+ * a lookup is a single hash map read. A value that can't be parsed as the requested type is treated as missing, 
+ * returning the default value. Integers are parsed as decimals, with surrounding whitespace ignored, and booleans 
+ * from <code>true</code> or <code>false</code>, ignoring case.
+ * <p>
+ * The keys are also held in sorted order, so all the properties under a key prefix, such as 
+ * <code>tenant.42.</code>, are found by a binary search and returned as a view of the snapshot, in 
+ * <code>O(log n)</code> time and without copying the matching properties.
+ */
+public final class PropertySnapshot {
+    
+    /**
+     * The snapshot before any properties have been polled.
+     */
+    public static final PropertySnapshot EMPTY = new PropertySnapshot(0, ImmutableMap.<String, String>of());
+    
+    private final long version;
+    private final PropertyStore store;
+    
+    /**
+     * Create a snapshot holding the properties in a {@link HeapPropertyStore}.
+     * @param version the version of the snapshot, increasing with each published snapshot
+     * @param properties the property values, keyed by property key
+     */
+    public PropertySnapshot(long version, Map<String, String> properties) {
+        this(version, new HeapPropertyStore(properties));
+    }
+    
+    /**
+     * @param version the version of the snapshot, increasing with each published snapshot
+     * @param store the store holding the property values
+     */
+    public PropertySnapshot(long version, PropertyStore store) {
+        checkArgument(version >= 0, "version");
+        this.version = version;
+        this.store = checkNotNull(store, "store");
+    }
+    
+    /**
+     * @return the version of the snapshot, increasing with each published snapshot
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * @return the store holding the property values
+     */
+    public PropertyStore getStore() {
+        return store;
+    }
+    
+    /**
+     * @return the number of properties in the snapshot
+     */
+    public int size() {
+        return store.size();
+    }
+    
+    /**
+     * @param key the property key
+     * @return true if the property is set in the snapshot
+     */
+    public boolean contains(String key) {
+        return store.contains(key);
+    }
+    
+    /**
+     * @param key the property key
+     * @param defaultValue the value to return if the property isn't set
+     * @return the value of the property, or the default value
+     */
+    public String getString(String key, String defaultValue) {
+        return store.getString(key, defaultValue);
+    }
+    
+    /**
+     * @param key the property key
+     * @param defaultValue the value to return if the property isn't set or isn't an int
+     * @return the value of the property, or the default value
+     */
+    public int getInt(String key, int defaultValue) {
+        return store.getInt(key, defaultValue);
+    }
+    
+    /**
+     * @param key the property key
+     * @param defaultValue the value to return if the property isn't set or isn't a long
+     * @return the value of the property, or the default value
+     */
+    public long getLong(String key, long defaultValue) {
+        return store.getLong(key, defaultValue);
+    }
+    
+    /**
+     * @param key the property key
+     * @param defaultValue the value to return if the property isn't set or isn't a number
+     * @return the value of the property, or the default value
+     */
+    public double getDouble(String key, double defaultValue) {
+        return store.getDouble(key, defaultValue);
+    }
+    
+    /**
+     * @param key the property key
+     * @param defaultValue the value to return if the property isn't set or isn't a boolean
+     * @return the value of the property, or the default value
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return store.getBoolean(key, defaultValue);
+    }
+    
+    /**
+     * Retrieve the properties with keys starting with the given prefix, as a view of the snapshot.
+     * @param prefix the key prefix - an empty prefix matches all properties
+     * @return the matching property values, keyed by property key in sorted order
+     */
+    public SortedMap<String, String> getPropertiesWithPrefix(String prefix) {
+        return store.getPropertiesWithPrefix(prefix);
+    }
+    
+    /**
+     * @return a view of the property values of the snapshot, keyed by property key in sorted order
+     */
+    public SortedMap<String, String> asMap() {
+        return store.asMap();
+    }
+    
+    /**
+     * @param properties the property values to compare, keyed by property key
+     * @return true if the snapshot holds exactly the given property values
+     */
+    public boolean matches(Map<String, String> properties) {
+        return store.matches(properties);
+    }
+
+    @Override
+    public String toString() {
+        return "PropertySnapshot [version=" + version + ", store=" + store + "]";
+    }
+}
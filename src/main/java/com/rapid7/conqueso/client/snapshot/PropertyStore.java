@@ -0,0 +1,93 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.snapshot;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+import com.google.common.collect.ImmutableList;
+import com.rapid7.conqueso.client.change.PropertyChange;
+
+/**
+ * Immutable storage of the property values held by a {@link PropertySnapshot}. The layout of the properties in 
+ * memory is up to the implementation - the {@link HeapPropertyStore} holds them as strings with their pre-parsed 
+ * typed values for the fastest reads, while the {@link CompactPropertyStore} packs them into a byte array for the
+ * smallest heap footprint.
+ * <p>
+ * The typed getters treat a value that can't be parsed as the requested type as missing, returning the default 
+ * value. Integers are parsed as decimals, with surrounding whitespace ignored, and booleans from <code>true</code> 
+ * or <code>false</code>, ignoring case.
+ */
+public interface PropertyStore {
+    
+    /**
+     * @return the number of properties in the store
+     */
+    int size();
+    
+    /**
+     * @param key the property key
+     * @return true if the property is set in the store
+     */
+    boolean contains(String key);
+    
+    String getString(String key, String defaultValue);
+    
+    int getInt(String key, int defaultValue);
+    
+    long getLong(String key, long defaultValue);
+    
+    double getDouble(String key, double defaultValue);
+    
+    boolean getBoolean(String key, boolean defaultValue);
+    
+    /**
+     * Retrieve the properties with keys starting with the given prefix, as a view of the store.
+     * @param prefix the key prefix - an empty prefix matches all properties
+     * @return the matching property values, keyed by property key in sorted order
+     */
+    SortedMap<String, String> getPropertiesWithPrefix(String prefix);
+    
+    /**
+     * @return a view of all the property values of the store, keyed by property key in sorted order
+     */
+    SortedMap<String, String> asMap();
+    
+    /**
+     * @param properties the property values to compare, keyed by property key
+     * @return true if the store holds exactly the given property values
+     */
+    boolean matches(Map<String, String> properties);
+    
+    /**
+     * Compute the changes from the properties of a previous store to the properties of this store.
+     * @param previous the store of the previous property values
+     * @return the changes of the properties added, changed or removed
+     */
+    ImmutableList<PropertyChange> changesSince(PropertyStore previous);
+    
+    /**
+     * Factory creating the stores of published property snapshots.
+     */
+    interface Factory {
+        
+        /**
+         * @param properties the property values to store, keyed by property key
+         * @return the store of the properties
+         */
+        PropertyStore create(Map<String, String> properties);
+    }
+}
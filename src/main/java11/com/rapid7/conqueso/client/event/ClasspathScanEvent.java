@@ -0,0 +1,93 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event recording the discovery of the configuration classes marked with an annotation, by scanning the classpath or
+ * reading the configuration index. Emitted to Flight Recorder as <code>com.rapid7.conqueso.ClasspathScan</code>.
+ */
+public final class ClasspathScanEvent {
+    
+    private static final ClasspathScanEvent DISABLED = new ClasspathScanEvent(null);
+    
+    private final FlightRecorderEvent event;
+    
+    private ClasspathScanEvent(FlightRecorderEvent event) {
+        this.event = event;
+    }
+    
+    /**
+     * Start timing the discovery of configuration classes.
+     * @param markerAnnotation the name of the marker annotation
+     * @param scanPackages the packages searched, separated by commas
+     * @param method how the classes are found - <code>scan</code>, <code>cached scan</code> or <code>index</code>
+     * @return the started event, to end when the classes have been found
+     */
+    public static ClasspathScanEvent start(String markerAnnotation, String scanPackages, String method) {
+        FlightRecorderEvent event = new FlightRecorderEvent();
+        if (!event.isEnabled()) {
+            return DISABLED;
+        }
+        event.markerAnnotation = markerAnnotation;
+        event.scanPackages = scanPackages;
+        event.method = method;
+        event.begin();
+        return new ClasspathScanEvent(event);
+    }
+    
+    /**
+     * End the discovery.
+     * @param classCount the number of configuration classes found
+     */
+    public void end(int classCount) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.classCount = classCount;
+            event.commit();
+        }
+    }
+    
+    @Name("com.rapid7.conqueso.ClasspathScan")
+    @Label("Conqueso Classpath Scan")
+    @Category("Conqueso")
+    @Description("Discovery of the configuration classes marked with an annotation")
+    @StackTrace(false)
+    private static final class FlightRecorderEvent extends Event {
+        
+        @Label("Marker Annotation")
+        private String markerAnnotation;
+        
+        @Label("Scan Packages")
+        private String scanPackages;
+        
+        @Label("Method")
+        @Description("How the classes are found - scan, cached scan or index")
+        private String method;
+        
+        @Label("Class Count")
+        private int classCount;
+    }
+}
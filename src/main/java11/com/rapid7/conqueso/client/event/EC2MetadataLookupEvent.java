@@ -0,0 +1,88 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event recording a lookup from the Amazon EC2 Instance Metadata Service, emitted to Flight Recorder as 
+ * <code>com.rapid7.conqueso.EC2MetadataLookup</code>.
+ */
+public final class EC2MetadataLookupEvent {
+    
+    private static final EC2MetadataLookupEvent DISABLED = new EC2MetadataLookupEvent(null);
+    
+    private final FlightRecorderEvent event;
+    
+    private EC2MetadataLookupEvent(FlightRecorderEvent event) {
+        this.event = event;
+    }
+    
+    /**
+     * Start timing a metadata lookup.
+     * @param resourcePath the path of the metadata resource
+     * @return the started event, to end when the lookup completes
+     */
+    public static EC2MetadataLookupEvent start(String resourcePath) {
+        FlightRecorderEvent event = new FlightRecorderEvent();
+        if (!event.isEnabled()) {
+            return DISABLED;
+        }
+        event.resourcePath = resourcePath;
+        event.begin();
+        return new EC2MetadataLookupEvent(event);
+    }
+    
+    /**
+     * End the lookup.
+     * @param status the HTTP response status, or -1 if no response was received
+     * @param found whether the metadata was found
+     */
+    public void end(int status, boolean found) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.status = status;
+            event.found = found;
+            event.commit();
+        }
+    }
+    
+    @Name("com.rapid7.conqueso.EC2MetadataLookup")
+    @Label("Conqueso EC2 Metadata Lookup")
+    @Category("Conqueso")
+    @Description("Lookup from the Amazon EC2 Instance Metadata Service")
+    @StackTrace(false)
+    private static final class FlightRecorderEvent extends Event {
+        
+        @Label("Resource Path")
+        private String resourcePath;
+        
+        @Label("Status")
+        @Description("HTTP response status, or -1 if no response was received")
+        private int status;
+        
+        @Label("Found")
+        private boolean found;
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event recording an HTTP request made to the Conqueso server, emitted to Flight Recorder as
+ * <code>com.rapid7.conqueso.HttpRequest</code>.
+ */
+public final class HttpRequestEvent {
+    
+    private static final HttpRequestEvent DISABLED = new HttpRequestEvent(null);
+    
+    private final FlightRecorderEvent event;
+    
+    private HttpRequestEvent(FlightRecorderEvent event) {
+        this.event = event;
+    }
+    
+    /**
+     * Start timing an HTTP request.
+     * @param method the HTTP method
+     * @param endpoint the name of the endpoint requested
+     * @param urlTemplate the path of the endpoint, with placeholders for its variable parts
+     * @return the started event, to end when the response has been read
+     */
+    public static HttpRequestEvent start(String method, String endpoint, String urlTemplate) {
+        FlightRecorderEvent event = new FlightRecorderEvent();
+        if (!event.isEnabled()) {
+            return DISABLED;
+        }
+        event.method = method;
+        event.endpoint = endpoint;
+        event.urlTemplate = urlTemplate;
+        event.begin();
+        return new HttpRequestEvent(event);
+    }
+    
+    /**
+     * End the request.
+     * @param status the HTTP response status, or -1 if no response was received
+     * @param requestBytes the size of the request body transmitted
+     * @param responseBytes the size of the response body read
+     */
+    public void end(int status, long requestBytes, long responseBytes) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.status = status;
+            event.requestBytes = requestBytes;
+            event.responseBytes = responseBytes;
+            event.commit();
+        }
+    }
+    
+    @Name("com.rapid7.conqueso.HttpRequest")
+    @Label("Conqueso HTTP Request")
+    @Category("Conqueso")
+    @Description("HTTP request made to the Conqueso server")
+    @StackTrace(false)
+    private static final class FlightRecorderEvent extends Event {
+        
+        @Label("Method")
+        private String method;
+        
+        @Label("Endpoint")
+        private String endpoint;
+        
+        @Label("URL Template")
+        private String urlTemplate;
+        
+        @Label("Status")
+        @Description("HTTP response status, or -1 if no response was received")
+        private int status;
+        
+        @Label("Request Bytes")
+        @DataAmount
+        private long requestBytes;
+        
+        @Label("Response Bytes")
+        @DataAmount
+        private long responseBytes;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event recording the parsing of a Conqueso server response or a property definitions file, emitted to Flight 
+ * Recorder as <code>com.rapid7.conqueso.Parse</code>.
+ */
+public final class ParseEvent {
+    
+    private static final ParseEvent DISABLED = new ParseEvent(null);
+    
+    private final FlightRecorderEvent event;
+    
+    private ParseEvent(FlightRecorderEvent event) {
+        this.event = event;
+    }
+    
+    /**
+     * Start timing a parse.
+     * @param source the endpoint name or file URL parsed
+     * @return the started event, to end when parsing is complete
+     */
+    public static ParseEvent start(String source) {
+        FlightRecorderEvent event = new FlightRecorderEvent();
+        if (!event.isEnabled()) {
+            return DISABLED;
+        }
+        event.source = source;
+        event.begin();
+        return new ParseEvent(event);
+    }
+    
+    /**
+     * End the parse.
+     * @param bytes the size of the parsed data, or -1 if unknown
+     * @param success whether the data was parsed successfully
+     */
+    public void end(long bytes, boolean success) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.bytes = bytes;
+            event.success = success;
+            event.commit();
+        }
+    }
+    
+    @Name("com.rapid7.conqueso.Parse")
+    @Label("Conqueso Parse")
+    @Category("Conqueso")
+    @Description("Parsing of a Conqueso server response or a property definitions file")
+    @StackTrace(false)
+    private static final class FlightRecorderEvent extends Event {
+        
+        @Label("Source")
+        @Description("Endpoint name or file URL parsed")
+        private String source;
+        
+        @Label("Bytes")
+        @Description("Size of the parsed data, or -1 if unknown")
+        @DataAmount
+        private long bytes;
+        
+        @Label("Success")
+        private boolean success;
+    }
+}
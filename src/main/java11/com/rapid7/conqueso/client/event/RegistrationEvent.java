@@ -0,0 +1,92 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.event;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Event recording the registration of the instance metadata and property definitions with the Conqueso server, 
+ * including every HTTP request it makes. Emitted to Flight Recorder as <code>com.rapid7.conqueso.Registration</code>.
+ */
+public final class RegistrationEvent {
+    
+    private static final RegistrationEvent DISABLED = new RegistrationEvent(null);
+    
+    private final FlightRecorderEvent event;
+    
+    private RegistrationEvent(FlightRecorderEvent event) {
+        this.event = event;
+    }
+    
+    /**
+     * Start timing a registration.
+     * @param propertyCount the number of property definitions registered
+     * @param fingerprinted whether the definitions are registered by their hash
+     * @param compressed whether the registration is compressed
+     * @return the started event, to end when the registration completes
+     */
+    public static RegistrationEvent start(int propertyCount, boolean fingerprinted, boolean compressed) {
+        FlightRecorderEvent event = new FlightRecorderEvent();
+        if (!event.isEnabled()) {
+            return DISABLED;
+        }
+        event.propertyCount = propertyCount;
+        event.fingerprinted = fingerprinted;
+        event.compressed = compressed;
+        event.begin();
+        return new RegistrationEvent(event);
+    }
+    
+    /**
+     * End the registration.
+     * @param success whether the Conqueso server accepted the registration
+     */
+    public void end(boolean success) {
+        if (event == null) {
+            return;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.success = success;
+            event.commit();
+        }
+    }
+    
+    @Name("com.rapid7.conqueso.Registration")
+    @Label("Conqueso Registration")
+    @Category("Conqueso")
+    @Description("Registration of the instance metadata and property definitions with the Conqueso server")
+    @StackTrace(false)
+    private static final class FlightRecorderEvent extends Event {
+        
+        @Label("Property Count")
+        private int propertyCount;
+        
+        @Label("Fingerprinted")
+        private boolean fingerprinted;
+        
+        @Label("Compressed")
+        private boolean compressed;
+        
+        @Label("Success")
+        private boolean success;
+    }
+}
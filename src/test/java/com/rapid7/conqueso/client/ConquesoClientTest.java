@@ -17,22 +17,59 @@ package com.rapid7.conqueso.client;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.net.ConnectException;
 import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
 import java.text.ParseException;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.type.TypeReference;
 import org.junit.Test;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
+import com.google.common.net.HttpHeaders;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.rapid7.conqueso.client.StubConquesoServer.RecordedRequest;
+import com.rapid7.conqueso.client.change.PropertyChange;
+import com.rapid7.conqueso.client.change.PropertyChangeListener;
+import com.rapid7.conqueso.client.metadata.CompositeInstanceMetadataProvider;
+import com.rapid7.conqueso.client.metadata.CustomInstanceMetadataProvider;
+import com.rapid7.conqueso.client.metadata.SystemPropertiesInstanceMetadataProvider;
+import com.rapid7.conqueso.client.metrics.ConquesoMetricsListener;
+import com.rapid7.conqueso.client.metrics.Endpoint;
+import com.rapid7.conqueso.client.metrics.EndpointMetrics;
+import com.rapid7.conqueso.client.metrics.Outcome;
+import com.rapid7.conqueso.client.property.CompositePropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.CustomPropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.IntrospectorPropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.JsonFilePropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.property.PropertyFileOverridePropertyDefinitionsProvider;
+import com.rapid7.conqueso.client.resilience.CircuitBreakerPolicy;
+import com.rapid7.conqueso.client.resilience.CircuitOpenException;
+import com.rapid7.conqueso.client.resilience.CircuitState;
+import com.rapid7.conqueso.client.snapshot.CompactPropertyStore;
+import com.rapid7.conqueso.client.snapshot.PropertySnapshot;
 
 public class ConquesoClientTest {
     
@@ -178,6 +215,639 @@ public class ConquesoClientTest {
         return calendar.getTime();
     }
     
+    @Test
+    public void initializeStreamsRegistration() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        try {
+            createInitializer(server).initialize();
+            
+            List<RecordedRequest> requests = server.getRequests();
+            assertEquals(1, requests.size());
+            RecordedRequest request = requests.get(0);
+            assertEquals("POST", request.getMethod());
+            assertEquals("/api/roles/test-role/properties", request.getPath());
+            assertEquals("chunked", request.getHeader(HttpHeaders.TRANSFER_ENCODING));
+            assertNull(request.getHeader(HttpHeaders.CONTENT_ENCODING));
+            assertRegistrationBody(request.getBody());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void initializeWithCompressedRegistration() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        try {
+            createInitializer(server).withCompressedRegistration().initialize();
+            
+            RecordedRequest request = server.getRequests().get(0);
+            assertEquals("gzip", request.getHeader(HttpHeaders.CONTENT_ENCODING));
+            // The stub server decompresses the body
+            assertRegistrationBody(request.getBody());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void toTruncatedJson() throws IOException {
+        ConquesoClient client = new ConquesoClient(new URL("file:/tmp/foo"));
+        
+        assertEquals("\"short\"", client.toTruncatedJson("short", 100));
+        
+        String truncated = client.toTruncatedJson(Strings.repeat("x", 100), 10);
+        assertEquals("\"xxxxxxxxx... (92 more characters)", truncated);
+    }
+    
+    @Test
+    public void fingerprintedRegistrationSkipsKnownDefinitions() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new FingerprintingResponder());
+        try {
+            // The first instance of the role uploads the definitions after the server rejects the unknown hash
+            createInitializer(server).withDefinitionFingerprinting().initialize();
+            
+            List<RecordedRequest> requests = server.getRequests();
+            assertEquals(2, requests.size());
+            Map<String, Object> first = readJsonMap(requests.get(0).getBody());
+            Map<String, Object> second = readJsonMap(requests.get(1).getBody());
+            assertFalse(first.containsKey("properties"));
+            assertNotNull(first.get("propertiesHash"));
+            assertEquals(first.get("propertiesHash"), second.get("propertiesHash"));
+            assertRegistrationBody(requests.get(1).getBody());
+            
+            // The second instance only sends its metadata and the hash
+            createInitializer(server).withDefinitionFingerprinting().initialize();
+            
+            requests = server.getRequests();
+            assertEquals(3, requests.size());
+            Map<String, Object> third = readJsonMap(requests.get(2).getBody());
+            assertFalse(third.containsKey("properties"));
+            assertEquals(first.get("propertiesHash"), third.get("propertiesHash"));
+            assertEquals(ImmutableMap.of("ami-id", "ami-12345"), third.get("instanceMetadata"));
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void updatedInstanceMetadataTransmitted() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        try {
+            ConquesoClient client = createInitializer(server).initialize();
+            
+            client.updateInstanceMetadata(ImmutableMap.of("conqueso.poll.interval", "120000"));
+            
+            Map<String, String> expected = ImmutableMap.of("ami-id", "ami-12345", "conqueso.poll.interval", "120000");
+            assertEquals(expected, client.getInstanceMetadata());
+            List<RecordedRequest> requests = server.getRequests();
+            assertEquals(2, requests.size());
+            assertEquals(expected, readJsonMap(requests.get(1).getBody()).get("instanceMetadata"));
+            
+            // Unchanged metadata isn't transmitted again
+            client.updateInstanceMetadata(ImmutableMap.of("conqueso.poll.interval", "120000"));
+            assertEquals(2, server.getRequests().size());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void subscribedListenersNotifiedOfPolledChanges() throws IOException {
+        final AtomicReference<String> properties = new AtomicReference<String>("foo=1\nbar=1\n");
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                return new StubConquesoServer.Response(200, request.getMethod().equals("GET") ? properties.get() : "");
+            }
+        });
+        try {
+            ConquesoClient client = createInitializer(server).initialize();
+            final List<PropertyChange> changes = Lists.newArrayList();
+            client.subscribe("foo", new PropertyChangeListener() {
+                @Override
+                public void propertyChanged(PropertyChange change) {
+                    changes.add(change);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+            client.getLatestProperties();
+            
+            properties.set("foo=2\nbar=2\n");
+            client.getLatestProperties();
+            
+            assertEquals(ImmutableList.of(new PropertyChange("foo", "1", "2")), changes);
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void propertySnapshotPublishedOnChange() throws IOException {
+        final AtomicReference<String> properties = new AtomicReference<String>("foo=1\n");
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                return new StubConquesoServer.Response(200, request.getMethod().equals("GET") ? properties.get() : "");
+            }
+        });
+        try {
+            ConquesoClient client = createInitializer(server).initialize();
+            assertSame(PropertySnapshot.EMPTY, client.getPropertySnapshot());
+            
+            client.getLatestProperties();
+            PropertySnapshot first = client.getPropertySnapshot();
+            assertEquals(1, first.getVersion());
+            assertEquals(1, first.getInt("foo", 0));
+            
+            // Unchanged properties keep the same snapshot
+            client.getLatestProperties();
+            assertSame(first, client.getPropertySnapshot());
+            
+            properties.set("foo=2\n");
+            client.getLatestProperties();
+            assertEquals(2, client.getPropertySnapshot().getVersion());
+            assertEquals(2, client.getPropertySnapshot().getInt("foo", 0));
+            assertEquals(1, first.getInt("foo", 0));
+            assertEquals(2, client.getPropertyGroup("foo").read().getVersion());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void propertySnapshotWithCompactStore() throws IOException {
+        final AtomicReference<String> properties = new AtomicReference<String>("foo=1\ntenant.1.name=a\n");
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                return new StubConquesoServer.Response(200, request.getMethod().equals("GET") ? properties.get() : "");
+            }
+        });
+        try {
+            ConquesoClient client = createInitializer(server)
+                    .withPropertyStore(CompactPropertyStore.FACTORY)
+                    .initialize();
+            final List<PropertyChange> changes = new CopyOnWriteArrayList<PropertyChange>();
+            client.subscribe("foo", new PropertyChangeListener() {
+                @Override
+                public void propertyChanged(PropertyChange change) {
+                    changes.add(change);
+                }
+            }, MoreExecutors.sameThreadExecutor());
+            
+            client.getLatestProperties();
+            PropertySnapshot first = client.getPropertySnapshot();
+            assertTrue(first.getStore() instanceof CompactPropertyStore);
+            assertEquals(1, first.getInt("foo", 0));
+            assertEquals(ImmutableMap.of("tenant.1.name", "a"), client.getPropertiesWithPrefix("tenant."));
+            
+            client.getLatestProperties();
+            assertSame(first, client.getPropertySnapshot());
+            
+            properties.set("foo=2\ntenant.1.name=a\n");
+            client.getLatestProperties();
+            assertEquals(2, client.getPropertySnapshot().getVersion());
+            assertEquals(ImmutableList.of(new PropertyChange("foo", "1", "2")), changes);
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test(expected=ConquesoCommunicationException.class)
+    public void registrationFailureStatus() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                return new StubConquesoServer.Response(500, "");
+            }
+        });
+        try {
+            createInitializer(server).initialize();
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void computePropertiesHash() {
+        PropertyDefinition string1 = new PropertyDefinition("string1", PropertyType.STRING, "foo", "desc");
+        PropertyDefinition int1 = new PropertyDefinition("int1", PropertyType.INT, "42", null);
+        
+        String hash = ConquesoClient.computePropertiesHash(ImmutableList.of(string1, int1));
+        
+        assertEquals(64, hash.length());
+        assertEquals(hash, ConquesoClient.computePropertiesHash(ImmutableList.of(int1, string1)));
+        assertFalse(hash.equals(ConquesoClient.computePropertiesHash(ImmutableList.of(string1, 
+                new PropertyDefinition("int1", PropertyType.INT, "43", null)))));
+        // Field boundaries are part of the hash
+        assertFalse(hash.equals(ConquesoClient.computePropertiesHash(ImmutableList.of(int1,
+                new PropertyDefinition("string1", PropertyType.STRING, "foode", "sc")))));
+    }
+    
+    @Test
+    public void watchedPropertyFilesReloaded() throws IOException {
+        File tempDir = Files.createTempDir();
+        File jsonFile = new File(tempDir, "definitions.json");
+        File overrideFile = new File(tempDir, "override.properties");
+        Files.write("[{\"name\":\"string1\",\"type\":\"STRING\",\"value\":\"foo\"}]", jsonFile, Charsets.UTF_8);
+        Files.write("", overrideFile, Charsets.UTF_8);
+        
+        final List<PropertyDefinitionsChange> changes = new CopyOnWriteArrayList<PropertyDefinitionsChange>();
+        StubConquesoServer server = new StubConquesoServer();
+        ConquesoClient client = null;
+        try {
+            client = ConquesoClient.initializer()
+                    .withConquesoUrl(server.getUrl("/api/roles/test-role/properties").toExternalForm())
+                    .withInstanceData(ImmutableMap.of("ami-id", "ami-12345"))
+                    .withPropertyDefinitions(new CompositePropertyDefinitionsProvider(
+                            new JsonFilePropertyDefinitionsProvider(jsonFile.toURI().toURL()),
+                            new PropertyFileOverridePropertyDefinitionsProvider(overrideFile.toURI().toURL())))
+                    // Checked explicitly by the test rather than on schedule
+                    .withPropertyFileWatch(1, TimeUnit.HOURS)
+                    .withPropertyDefinitionsListener(new PropertyDefinitionsListener() {
+                        @Override
+                        public void propertyDefinitionsChanged(PropertyDefinitionsChange change) {
+                            changes.add(change);
+                        }
+                    })
+                    .initialize();
+            
+            assertTrue(client.reloadPropertyDefinitions().isEmpty());
+            assertEquals(1, server.getRequests().size());
+            
+            Files.write("string1=bar", overrideFile, Charsets.UTF_8);
+            overrideFile.setLastModified(overrideFile.lastModified() + 2000);
+            
+            PropertyDefinitionsChange change = client.reloadPropertyDefinitions();
+            
+            PropertyDefinition changed = new PropertyDefinition("string1", PropertyType.STRING, "bar", null);
+            assertEquals(ImmutableSet.of(changed), change.getChanged());
+            assertTrue(change.getAdded().isEmpty());
+            assertTrue(change.getRemoved().isEmpty());
+            assertEquals(ImmutableList.of(change), changes);
+            assertEquals(ImmutableSet.of(changed), client.getPropertyDefinitions());
+            
+            List<RecordedRequest> requests = server.getRequests();
+            assertEquals(2, requests.size());
+            List<?> properties = (List<?>)readJsonMap(requests.get(1).getBody()).get("properties");
+            assertEquals("bar", ((Map<?, ?>)properties.get(0)).get("value"));
+            
+            // No further change once the files have been reloaded
+            assertTrue(client.reloadPropertyDefinitions().isEmpty());
+            assertEquals(2, server.getRequests().size());
+        } finally {
+            if (client != null) {
+                client.shutdown();
+            }
+            server.stop();
+            jsonFile.delete();
+            overrideFile.delete();
+            tempDir.delete();
+        }
+    }
+    
+    @Test
+    public void binaryWireFormatRegistration() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        try {
+            createInitializer(server).withBinaryWireFormat().initialize();
+            
+            RecordedRequest request = server.getRequests().get(0);
+            assertEquals(WireFormat.SMILE.getContentType(), request.getHeader(HttpHeaders.CONTENT_TYPE));
+            assertTrue(request.getBody().startsWith(":)\n"));
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void binaryWireFormatFallsBackToJson() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                if (request.getMethod().equals("POST") && 
+                        !WireFormat.JSON.getContentType().equals(request.getHeader(HttpHeaders.CONTENT_TYPE))) {
+                    return new StubConquesoServer.Response(415, "");
+                }
+                return new StubConquesoServer.Response(200, "[{\"name\":\"test-role\",\"instances\":2}]", 
+                        ImmutableMap.of(HttpHeaders.CONTENT_TYPE, WireFormat.JSON.getContentType()));
+            }
+        });
+        try {
+            ConquesoClient client = createInitializer(server).withBinaryWireFormat().initialize();
+            
+            List<RecordedRequest> requests = server.getRequests();
+            assertEquals(2, requests.size());
+            assertEquals(WireFormat.SMILE.getContentType(), requests.get(0).getHeader(HttpHeaders.CONTENT_TYPE));
+            assertEquals(WireFormat.JSON.getContentType(), requests.get(1).getHeader(HttpHeaders.CONTENT_TYPE));
+            assertRegistrationBody(requests.get(1).getBody());
+            
+            // Queries also use JSON after falling back
+            assertEquals(ImmutableList.of(new RoleInfo("test-role", 2)), client.getRoles());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void binaryWireFormatQueryAcceptsJson() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                return new StubConquesoServer.Response(200, "[{\"name\":\"test-role\",\"instances\":2}]", 
+                        ImmutableMap.of(HttpHeaders.CONTENT_TYPE, "application/json; charset=utf-8"));
+            }
+        });
+        try {
+            ConquesoClient client = new ConquesoClient(server.getUrl("/api/roles/test-role/properties"));
+            client.useWireFormat(WireFormat.SMILE);
+            
+            assertEquals(ImmutableList.of(new RoleInfo("test-role", 2)), client.getRoles());
+            
+            RecordedRequest request = server.getRequests().get(0);
+            assertEquals("/api/roles", request.getPath());
+            assertTrue(request.getHeader(HttpHeaders.ACCEPT).startsWith(WireFormat.SMILE.getContentType()));
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void queryMetricsRecorded() throws IOException {
+        final String rolesJson = "[{\"name\":\"test-role\",\"instances\":2}]";
+        final List<StubConquesoServer.Response> responses = new CopyOnWriteArrayList<StubConquesoServer.Response>(
+                ImmutableList.of(new StubConquesoServer.Response(200, rolesJson), 
+                        new StubConquesoServer.Response(500, ""), 
+                        new StubConquesoServer.Response(200, "not json")));
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                return responses.remove(0);
+            }
+        });
+        try {
+            ConquesoClient client = new ConquesoClient(server.getUrl("/api/roles/test-role/properties"));
+            client.getRoles();
+            for (int i = 0; i < 2; i++) {
+                try {
+                    client.getRoles();
+                    fail("Expected ConquesoCommunicationException");
+                } catch (ConquesoCommunicationException e) {
+                    // Expected
+                }
+            }
+            
+            EndpointMetrics metrics = client.getMetrics().get(Endpoint.ROLES);
+            assertEquals(3, metrics.getRequestCount());
+            assertEquals(2, metrics.getRequestCount(Outcome.SUCCESS));
+            assertEquals(1, metrics.getRequestCount(Outcome.HTTP_ERROR));
+            assertEquals(rolesJson.length() + "not json".length(), metrics.getResponseBytes());
+            assertEquals(3, metrics.getLatency().getCount());
+            assertTrue(metrics.getLatency().getMin() > 0);
+            assertEquals(2, metrics.getParseTime().getCount());
+            assertEquals(1, metrics.getParseErrorCount());
+            assertEquals(0, client.getMetrics().get(Endpoint.INSTANCES).getRequestCount());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void registrationMetricsReported() throws IOException {
+        final List<Long> requestBytes = new CopyOnWriteArrayList<Long>();
+        StubConquesoServer server = new StubConquesoServer();
+        try {
+            ConquesoClient client = createInitializer(server).withMetricsListener(new ConquesoMetricsListener() {
+                @Override
+                public void requestCompleted(Endpoint endpoint, Outcome outcome, long latencyNanos, 
+                        long requestBytesSent, long responseBytes) {
+                    assertEquals(Endpoint.REGISTRATION, endpoint);
+                    assertEquals(Outcome.SUCCESS, outcome);
+                    requestBytes.add(requestBytesSent);
+                }
+                
+                @Override
+                public void responseParsed(Endpoint endpoint, Outcome outcome, long parseNanos) {
+                    fail("Registration response isn't parsed");
+                }
+            }).withCompressedRegistration().initialize();
+            
+            assertEquals(1, requestBytes.size());
+            assertTrue(requestBytes.get(0) > 0);
+            // The compressed size is recorded, smaller than the body received by the server
+            assertTrue(requestBytes.get(0) < server.getRequests().get(0).getBody().length());
+            
+            EndpointMetrics metrics = client.getMetrics().get(Endpoint.REGISTRATION);
+            assertEquals(1, metrics.getRequestCount(Outcome.SUCCESS));
+            assertEquals(requestBytes.get(0).longValue(), metrics.getRequestBytes());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void serviceUnavailableOpensCircuit() throws IOException {
+        final String rolesJson = "[{\"name\":\"test-role\",\"instances\":2}]";
+        final List<StubConquesoServer.Response> responses = new CopyOnWriteArrayList<StubConquesoServer.Response>(
+                ImmutableList.of(new StubConquesoServer.Response(200, rolesJson), 
+                        new StubConquesoServer.Response(503, "", ImmutableMap.of(HttpHeaders.RETRY_AFTER, "120"))));
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                return responses.remove(0);
+            }
+        });
+        try {
+            ConquesoClient client = new ConquesoClient(server.getUrl("/api/roles/test-role/properties"));
+            client.getRoles();
+            try {
+                client.getRoles();
+                fail("Expected ConquesoCommunicationException");
+            } catch (ConquesoCommunicationException e) {
+                // Expected
+            }
+            assertEquals(CircuitState.OPEN, client.getCircuitState(Endpoint.ROLES));
+            assertEquals(CircuitState.CLOSED, client.getCircuitState(Endpoint.INSTANCES));
+            
+            // Served from the cached response without contacting the server
+            assertEquals("test-role", client.getRoles().get(0).getName());
+            assertEquals(2, server.getRequests().size());
+            assertEquals(1, client.getMetrics().get(Endpoint.ROLES).getRequestCount(Outcome.REJECTED));
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void openCircuitFailsFastWithoutCachedResponse() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                return new StubConquesoServer.Response(503, "");
+            }
+        });
+        try {
+            ConquesoClient client = new ConquesoClient(server.getUrl("/api/roles/test-role/properties"));
+            try {
+                client.getInstances();
+                fail("Expected ConquesoCommunicationException");
+            } catch (ConquesoCommunicationException e) {
+                assertFalse(e instanceof CircuitOpenException);
+            }
+            try {
+                client.getInstances();
+                fail("Expected CircuitOpenException");
+            } catch (CircuitOpenException e) {
+                assertEquals(Endpoint.INSTANCES, e.getEndpoint());
+                assertTrue(e.getRetryAfterMillis() > 0);
+            }
+            assertEquals(1, server.getRequests().size());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void unexpectedProbeFailureReleasesCircuit() throws Exception {
+        final AtomicReference<RuntimeException> unexpected = new AtomicReference<RuntimeException>();
+        URL url = new URL(null, "http://localhost:1/api/roles/test-role/properties", new URLStreamHandler() {
+            @Override
+            protected URLConnection openConnection(URL u) throws IOException {
+                if (unexpected.get() != null) {
+                    throw unexpected.get();
+                }
+                throw new ConnectException("Connection refused");
+            }
+        });
+        ConquesoClient client = new ConquesoClient(url);
+        client.useCircuitBreakerPolicy(CircuitBreakerPolicy.builder()
+                .withWindow(1, 1)
+                .withOpenDuration(20, 20, TimeUnit.MILLISECONDS)
+                .withProbeRequests(1)
+                .build());
+        try {
+            client.getRoles();
+            fail("Expected ConquesoCommunicationException");
+        } catch (ConquesoCommunicationException e) {
+            assertFalse(e instanceof CircuitOpenException);
+        }
+        assertEquals(CircuitState.OPEN, client.getCircuitState(Endpoint.ROLES));
+        
+        Thread.sleep(50);
+        assertEquals(CircuitState.HALF_OPEN, client.getCircuitState(Endpoint.ROLES));
+        unexpected.set(new IllegalStateException("Unexpected"));
+        try {
+            client.getRoles();
+            fail("Expected IllegalStateException");
+        } catch (IllegalStateException e) {
+            // Expected
+        }
+        
+        // The probe's permit is released as a failure, rather than leaving the circuit half open forever
+        assertEquals(CircuitState.OPEN, client.getCircuitState(Endpoint.ROLES));
+        assertEquals(2, client.getMetrics().get(Endpoint.ROLES).getRequestCount(Outcome.COMMUNICATION_ERROR));
+        Thread.sleep(50);
+        unexpected.set(null);
+        try {
+            client.getRoles();
+            fail("Expected ConquesoCommunicationException");
+        } catch (ConquesoCommunicationException e) {
+            assertFalse(e instanceof CircuitOpenException);
+        }
+    }
+    
+    @Test
+    public void startupProfileRecorded() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        try {
+            ConquesoClient client = ConquesoClient.initializer()
+                    .withConquesoUrl(server.getUrl("/api/roles/test-role/properties").toExternalForm())
+                    .withInstanceData(new CompositeInstanceMetadataProvider(
+                            new CustomInstanceMetadataProvider(ImmutableMap.of("ami-id", "ami-12345")), 
+                            new SystemPropertiesInstanceMetadataProvider()))
+                    .withPropertyDefinitions(new CompositePropertyDefinitionsProvider(
+                            new IntrospectorPropertyDefinitionsProvider(ExampleConfigClass.class), 
+                            new JsonFilePropertyDefinitionsProvider()))
+                    .withDefinitionFingerprinting()
+                    .initialize();
+            
+            StartupProfile profile = client.getStartupProfile();
+            List<String> phaseNames = Lists.newArrayList();
+            for (StartupProfile.Phase phase : profile.getPhases()) {
+                phaseNames.add(phase.getName());
+            }
+            assertEquals(ImmutableList.of("conquesoUrl", "instanceMetadata", "propertyDefinitions", "registration"), 
+                    phaseNames);
+            
+            assertNotNull(profile.getPhase("instanceMetadata", "CustomInstanceMetadataProvider"));
+            assertNotNull(profile.getPhase("instanceMetadata", "SystemPropertiesInstanceMetadataProvider"));
+            assertNotNull(profile.getPhase("propertyDefinitions", "IntrospectorPropertyDefinitionsProvider", 
+                    "introspection"));
+            assertNotNull(profile.getPhase("propertyDefinitions", "JsonFilePropertyDefinitionsProvider"));
+            assertNotNull(profile.getPhase("registration", "fingerprint"));
+            // The stub server accepts the fingerprinted registration, so the definitions aren't sent
+            StartupProfile.Phase registration = profile.getPhase("registration");
+            assertEquals(2, registration.getPhases().size());
+            assertNotNull(registration.getPhase("post", "send"));
+            assertNotNull(registration.getPhase("post", "response"));
+            assertNull(profile.getPhase("registration", "missing"));
+            
+            long phasesNanos = 0;
+            for (StartupProfile.Phase phase : profile.getPhases()) {
+                assertTrue(phase.getDurationNanos() >= 0);
+                phasesNanos += phase.getDurationNanos();
+            }
+            assertTrue(profile.getTotalNanos() >= phasesNanos);
+            assertTrue(profile.toString(), profile.toString().contains("registration "));
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void startupProfileNotRecordedOutsideInitialization() {
+        StartupProfiler phase = StartupProfiler.start("outside");
+        phase.stop();
+        
+        assertNull(new ConquesoClient(null).getStartupProfile().getPhase("outside"));
+        assertEquals(0, new ConquesoClient(null).getStartupProfile().getTotalNanos());
+    }
+    
+    private ConquesoClient.Initializer createInitializer(StubConquesoServer server) {
+        return ConquesoClient.initializer()
+                .withConquesoUrl(server.getUrl("/api/roles/test-role/properties").toExternalForm())
+                .withInstanceData(ImmutableMap.of("ami-id", "ami-12345"))
+                .withPropertyDefinitions(new CustomPropertyDefinitionsProvider(
+                        new PropertyDefinition("string1", PropertyType.STRING, "foo", "This is string1"),
+                        new PropertyDefinition("int1", PropertyType.INT, "42", null)));
+    }
+    
+    private static Map<String, Object> readJsonMap(String json) throws IOException {
+        return new ObjectMapper().readValue(json, new TypeReference<Map<String, Object>>() { });
+    }
+    
+    private void assertRegistrationBody(String body) throws IOException {
+        Map<String, Object> info = readJsonMap(body);
+        assertEquals(ImmutableMap.of("ami-id", "ami-12345"), info.get("instanceMetadata"));
+        
+        List<?> properties = (List<?>)info.get("properties");
+        assertEquals(2, properties.size());
+        ImmutableSet.Builder<Object> names = ImmutableSet.builder();
+        for (Object property : properties) {
+            names.add(((Map<?, ?>)property).get("name"));
+        }
+        assertEquals(ImmutableSet.of("string1", "int1"), names.build());
+    }
+    
     private String readFileAsString(String resourcePath) throws IOException {
         InputStream stream = ConquesoClientTest.class.getResourceAsStream(resourcePath);
         try {
@@ -194,7 +864,7 @@ public class ConquesoClientTest {
     private ConquesoClient createClientReturningString(final Map<String, String> relativeUrlToResponseMap) throws IOException {
         return new ConquesoClient(new URL("file:/tmp/foo")) {
             @Override
-            String readStringFromUrl(String relativeUrl, String errorMessage) {
+            String readStringFromUrl(Endpoint endpoint, String relativeUrl, String errorMessage) {
                 String result = relativeUrlToResponseMap.get(relativeUrl);
                 if (result == null) {
                     throw new ConquesoCommunicationException(errorMessage);
@@ -203,5 +873,28 @@ public class ConquesoClientTest {
             }            
         };
     }
-
+    
+    /**
+     * Responds like a Conqueso server supporting definition fingerprinting, rejecting registrations with an
+     * unknown properties hash.
+     */
+    private static class FingerprintingResponder implements StubConquesoServer.Responder {
+        private final Set<Object> knownHashes = Sets.newHashSet();
+        
+        @Override
+        public synchronized StubConquesoServer.Response respond(RecordedRequest request) {
+            try {
+                Map<String, Object> info = readJsonMap(request.getBody());
+                Object hash = info.get("propertiesHash");
+                if (info.containsKey("properties")) {
+                    knownHashes.add(hash);
+                } else if (!knownHashes.contains(hash)) {
+                    return new StubConquesoServer.Response(409, "");
+                }
+                return new StubConquesoServer.Response(200, "");
+            } catch (IOException e) {
+                return new StubConquesoServer.Response(400, "");
+            }
+        }
+    }
 }
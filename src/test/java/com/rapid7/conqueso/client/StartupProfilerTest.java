@@ -0,0 +1,94 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class StartupProfilerTest {
+
+    @Test
+    public void nestedPhasesRecorded() {
+        StartupProfiler profiler = StartupProfiler.startProfile();
+        StartupProfiler outer = StartupProfiler.start("outer");
+        StartupProfiler inner = StartupProfiler.start("inner");
+        inner.stop();
+        outer.stop();
+        StartupProfiler.start("second").stop();
+        StartupProfile profile = profiler.toProfile();
+        
+        assertEquals(2, profile.getPhases().size());
+        StartupProfile.Phase outerPhase = profile.getPhase("outer");
+        assertEquals(1, outerPhase.getPhases().size());
+        assertSame(outerPhase.getPhase("inner"), profile.getPhase("outer", "inner"));
+        assertTrue(outerPhase.getDurationNanos() >= outerPhase.getPhase("inner").getDurationNanos());
+        assertNotNull(profile.getPhase("second"));
+        assertSame(StartupProfiler.current(), StartupProfiler.start("after"));
+    }
+    
+    @Test
+    public void phasesOnOtherThreadsRecorded() throws InterruptedException {
+        StartupProfiler profiler = StartupProfiler.startProfile();
+        final StartupProfiler parent = StartupProfiler.start("parent");
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                StartupProfiler phase = StartupProfiler.start(parent, "child");
+                StartupProfiler.start("grandchild").stop();
+                phase.stop();
+            }
+        };
+        thread.start();
+        thread.join();
+        parent.stop();
+        StartupProfile profile = profiler.toProfile();
+        
+        assertNotNull(profile.getPhase("parent", "child", "grandchild"));
+    }
+    
+    @Test
+    public void runningPhasesStoppedWithParent() {
+        StartupProfiler profiler = StartupProfiler.startProfile();
+        StartupProfiler.start("outer");
+        StartupProfiler.start("inner");
+        StartupProfile profile = profiler.toProfile();
+        
+        long innerNanos = profile.getPhase("outer", "inner").getDurationNanos();
+        assertTrue(innerNanos <= profile.getPhase("outer").getDurationNanos());
+        assertEquals(innerNanos, profiler.toProfile().getPhase("outer", "inner").getDurationNanos());
+        // No phase is left current on the thread
+        StartupProfiler.start("after").stop();
+        assertNull(profiler.toProfile().getPhase("after"));
+    }
+    
+    @Test
+    public void summary() {
+        StartupProfile profile = new StartupProfile(TimeUnit.MILLISECONDS.toNanos(12), 
+                Arrays.asList(new StartupProfile.Phase("first", 1500000, 
+                        Arrays.asList(new StartupProfile.Phase("child", 250000, 
+                                Collections.<StartupProfile.Phase>emptyList()))),
+                        new StartupProfile.Phase("second", 0, 
+                                Collections.<StartupProfile.Phase>emptyList())));
+        
+        assertEquals("12.0ms [first 1.5ms [child 0.3ms], second 0.0ms]", profile.toString());
+        assertEquals(12, profile.getTotal(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,175 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.io.CharStreams;
+import com.google.common.net.HttpHeaders;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the Conqueso server, recording the requests it receives. By default every request is answered
+ * with an empty 200 response - a {@link Responder} can be set to answer requests differently.
+ */
+public class StubConquesoServer {
+
+    private final HttpServer server;
+    private final List<RecordedRequest> requests = new CopyOnWriteArrayList<RecordedRequest>();
+    private volatile Responder responder = new Responder() {
+        @Override
+        public Response respond(RecordedRequest request) {
+            return new Response(200, "");
+        }
+    };
+
+    public StubConquesoServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleExchange(exchange);
+            }
+        });
+        // Handle requests concurrently, so tests can exercise concurrent clients
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public URL getUrl(String path) {
+        try {
+            return new URL("http", "localhost", server.getAddress().getPort(), path);
+        } catch (MalformedURLException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    public void setResponder(Responder responder) {
+        this.responder = responder;
+    }
+
+    public List<RecordedRequest> getRequests() {
+        return ImmutableList.copyOf(requests);
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handleExchange(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> headers = Maps.newHashMap();
+            for (String header : exchange.getRequestHeaders().keySet()) {
+                headers.put(header.toLowerCase(), exchange.getRequestHeaders().getFirst(header));
+            }
+
+            InputStream body = exchange.getRequestBody();
+            if ("gzip".equals(headers.get(HttpHeaders.CONTENT_ENCODING.toLowerCase()))) {
+                body = new GZIPInputStream(body);
+            }
+
+            RecordedRequest request = new RecordedRequest(exchange.getRequestMethod(),
+                    exchange.getRequestURI().toString(), ImmutableMap.copyOf(headers),
+                    CharStreams.toString(new InputStreamReader(body, Charsets.UTF_8)));
+            requests.add(request);
+
+            Response response = responder.respond(request);
+            // Avoid clients reusing pooled connections to a stopped server that was listening on the same port
+            exchange.getResponseHeaders().set(HttpHeaders.CONNECTION, "close");
+            for (Map.Entry<String, String> header : response.headers.entrySet()) {
+                exchange.getResponseHeaders().set(header.getKey(), header.getValue());
+            }
+            byte[] responseBody = response.body.getBytes(Charsets.UTF_8);
+            exchange.sendResponseHeaders(response.status, responseBody.length == 0 ? -1 : responseBody.length);
+            OutputStream output = exchange.getResponseBody();
+            output.write(responseBody);
+            output.close();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    public interface Responder {
+        Response respond(RecordedRequest request);
+    }
+
+    public static class Response {
+        private final int status;
+        private final String body;
+        private final Map<String, String> headers;
+
+        public Response(int status, String body) {
+            this(status, body, ImmutableMap.<String, String>of());
+        }
+
+        public Response(int status, String body, Map<String, String> headers) {
+            this.status = status;
+            this.body = body;
+            this.headers = headers;
+        }
+    }
+
+    public static class RecordedRequest {
+        private final String method;
+        private final String path;
+        private final Map<String, String> headers;
+        private final String body;
+
+        RecordedRequest(String method, String path, Map<String, String> headers, String body) {
+            this.method = method;
+            this.path = path;
+            this.headers = headers;
+            this.body = body;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * @param name the header name, matched case-insensitively
+         * @return the first value of the header, or null if it wasn't sent
+         */
+        public String getHeader(String name) {
+            return headers.get(name.toLowerCase());
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class WireFormatTest {
+
+    @Test
+    public void forContentType() {
+        assertEquals(WireFormat.JSON, WireFormat.forContentType("application/json"));
+        assertEquals(WireFormat.JSON, WireFormat.forContentType("Application/JSON; charset=UTF-8"));
+        assertEquals(WireFormat.SMILE, WireFormat.forContentType("application/x-jackson-smile"));
+        assertNull(WireFormat.forContentType("text/plain"));
+        assertNull(WireFormat.forContentType(null));
+    }
+    
+    @Test
+    public void availability() {
+        assertTrue(WireFormat.JSON.isAvailable());
+        // jackson-smile is an optional dependency, available to the tests
+        assertTrue(WireFormat.SMILE.isAvailable());
+        assertNotNull(WireFormat.SMILE.createJsonFactory());
+    }
+}
@@ -0,0 +1,243 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.change;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.rapid7.conqueso.client.ConquesoClient;
+import com.rapid7.conqueso.client.StubConquesoServer;
+import com.rapid7.conqueso.client.StubConquesoServer.RecordedRequest;
+
+public class CoalescingPropertyChangeListenerTest {
+    
+    private ScheduledExecutorService scheduler;
+    private ExecutorService executor;
+    
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        executor = Executors.newSingleThreadExecutor();
+    }
+    
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void burstDeliveredAsOneBatch() throws InterruptedException {
+        BatchRecorder recorder = new BatchRecorder();
+        CoalescingPropertyChangeListener listener = new CoalescingPropertyChangeListener(recorder, executor, 
+                100, TimeUnit.MILLISECONDS, scheduler);
+        
+        for (int i = 0; i < 500; i++) {
+            listener.propertyChanged(new PropertyChange("key" + i, "1", "2"));
+        }
+        
+        assertEquals(500, recorder.batches.poll(5, TimeUnit.SECONDS).size());
+        assertNull(recorder.batches.poll(200, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    public void successiveChangesMerged() throws InterruptedException {
+        BatchRecorder recorder = new BatchRecorder();
+        CoalescingPropertyChangeListener listener = new CoalescingPropertyChangeListener(recorder, executor, 
+                50, TimeUnit.MILLISECONDS, scheduler);
+        
+        listener.propertyChanged(new PropertyChange("a", "1", "2"));
+        listener.propertyChanged(new PropertyChange("b", "1", "2"));
+        listener.propertyChanged(new PropertyChange("a", "2", "3"));
+        listener.propertyChanged(new PropertyChange("b", "2", "1"));
+        listener.propertyChanged(new PropertyChange("c", null, "1"));
+        listener.propertyChanged(new PropertyChange("c", "1", null));
+        listener.propertyChanged(new PropertyChange("d", "1", null));
+        
+        assertEquals(ImmutableList.of(new PropertyChange("a", "1", "3"), new PropertyChange("d", "1", null)), 
+                recorder.batches.poll(5, TimeUnit.SECONDS));
+    }
+    
+    @Test
+    public void flappingPropertyDeliveredAfterMaxDelay() throws InterruptedException {
+        BatchRecorder recorder = new BatchRecorder();
+        CoalescingPropertyChangeListener listener = new CoalescingPropertyChangeListener(recorder, executor, 
+                100, 300, TimeUnit.MILLISECONDS, CoalescingPropertyChangeListener.DEFAULT_QUEUE_CAPACITY, scheduler);
+        
+        // Changing more often than the debounce window, which alone would never deliver the changes
+        long start = System.nanoTime();
+        for (int i = 1; System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(1000); i++) {
+            listener.propertyChanged(new PropertyChange("flapping", String.valueOf(i - 1), String.valueOf(i)));
+            Thread.sleep(10);
+        }
+        
+        assertTrue(recorder.batches.size() >= 2);
+        assertEquals("0", recorder.batches.poll().get(0).getPreviousValue());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void maxDelayBelowDebounceWindowRejected() {
+        new CoalescingPropertyChangeListener(new BatchRecorder(), executor, 100, 50, TimeUnit.MILLISECONDS, 1, 
+                scheduler);
+    }
+    
+    @Test
+    public void queueBoundedForSlowListener() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final BatchRecorder recorder = new BatchRecorder();
+        CoalescingPropertyChangeListener listener = new CoalescingPropertyChangeListener(
+                new PropertyChangeBatchListener() {
+                    @Override
+                    public void propertiesChanged(List<PropertyChange> changes) {
+                        recorder.propertiesChanged(changes);
+                        awaitUninterruptibly(release);
+                    }
+                }, executor, 1, TimeUnit.MILLISECONDS, 2, scheduler);
+        
+        // The first batch blocks the listener, while each following batch is queued
+        for (int i = 1; i <= 10; i++) {
+            listener.propertyChanged(new PropertyChange("a", String.valueOf(i - 1), String.valueOf(i)));
+            // Let the debounce window pass, for the scheduler to move the change to the queue
+            Thread.sleep(20);
+            assertTrue(listener.getQueuedBatchCount() <= 2);
+        }
+        assertTrue(listener.getMergedBatchCount() > 0);
+        
+        release.countDown();
+        
+        List<PropertyChange> last = null;
+        for (List<PropertyChange> batch = recorder.batches.poll(5, TimeUnit.SECONDS); batch != null; 
+                batch = recorder.batches.poll(200, TimeUnit.MILLISECONDS)) {
+            last = batch;
+        }
+        assertEquals("10", last.get(0).getValue());
+        assertEquals(0, listener.getQueuedBatchCount());
+    }
+    
+    @Test
+    public void stressWithStubServer() throws IOException, InterruptedException {
+        final int polls = 200;
+        final int keysPerPoll = 50;
+        final AtomicInteger version = new AtomicInteger(0);
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                if (!request.getMethod().equals("GET")) {
+                    return new StubConquesoServer.Response(200, "");
+                }
+                // Each version changes a different slice of the keys, with a bulk edit of every key at the end
+                int current = version.get();
+                StringBuilder body = new StringBuilder();
+                for (int key = 0; key < keysPerPoll * 4; key++) {
+                    int value = current == polls || key / keysPerPoll == current % 4 ? current : 0;
+                    body.append("key").append(key).append('=').append(value).append('\n');
+                }
+                return new StubConquesoServer.Response(200, body.toString());
+            }
+        });
+        
+        final Map<String, String> applied = Maps.newConcurrentMap();
+        final AtomicInteger batches = new AtomicInteger();
+        final AtomicInteger maxQueued = new AtomicInteger();
+        final AtomicReference<CoalescingPropertyChangeListener> listener = 
+                new AtomicReference<CoalescingPropertyChangeListener>();
+        listener.set(new CoalescingPropertyChangeListener(new PropertyChangeBatchListener() {
+            @Override
+            public void propertiesChanged(List<PropertyChange> changes) {
+                batches.incrementAndGet();
+                maxQueued.set(Math.max(maxQueued.get(), listener.get().getQueuedBatchCount()));
+                for (PropertyChange change : changes) {
+                    applied.put(change.getKey(), change.getValue());
+                }
+                // An expensive reconfiguration
+                sleepUninterruptibly(5);
+            }
+        }, executor, 2, TimeUnit.MILLISECONDS, 2, scheduler));
+        
+        try {
+            ConquesoClient client = ConquesoClient.initializer()
+                    .withConquesoUrl(server.getUrl("/api/roles/test-role/properties").toExternalForm())
+                    .skipReportingInstanceData()
+                    .withNoProperties()
+                    .initialize();
+            client.subscribePrefix("key", listener.get(), MoreExecutors.sameThreadExecutor());
+            
+            int changes = 0;
+            Map<String, String> previous = Maps.fromProperties(client.getLatestProperties());
+            applied.putAll(previous);
+            while (version.incrementAndGet() <= polls) {
+                Map<String, String> latest = Maps.fromProperties(client.getLatestProperties());
+                changes += PropertyChange.between(previous, latest).size();
+                previous = latest;
+            }
+            
+            long deadline = System.currentTimeMillis() + 10000;
+            while (!applied.equals(previous) && System.currentTimeMillis() < deadline) {
+                sleepUninterruptibly(10);
+            }
+            assertEquals(previous, applied);
+            assertTrue(batches.get() + " batches", batches.get() < changes / 10);
+            assertTrue(maxQueued.get() <= 2);
+        } finally {
+            server.stop();
+        }
+    }
+    
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void sleepUninterruptibly(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static class BatchRecorder implements PropertyChangeBatchListener {
+        private final BlockingQueue<List<PropertyChange>> batches = new LinkedBlockingQueue<List<PropertyChange>>();
+        
+        @Override
+        public void propertiesChanged(List<PropertyChange> changes) {
+            batches.add(changes);
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.change;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+
+public class PropertyChangeDispatcherTest {
+    
+    private static final Executor SAME_THREAD = MoreExecutors.sameThreadExecutor();
+
+    @Test
+    public void changesBetweenProperties() {
+        List<PropertyChange> changes = PropertyChange.between(ImmutableMap.of("a", "1", "b", "2", "c", "3"), 
+                ImmutableMap.of("a", "1", "b", "20", "d", "4"));
+        
+        assertEquals(3, changes.size());
+        assertTrue(changes.contains(new PropertyChange("b", "2", "20")));
+        assertTrue(changes.contains(new PropertyChange("d", null, "4")));
+        assertTrue(changes.contains(new PropertyChange("c", "3", null)));
+        assertTrue(new PropertyChange("d", null, "4").isAdded());
+        assertTrue(new PropertyChange("c", "3", null).isRemoved());
+    }
+    
+    @Test
+    public void onlyChangedKeysDispatched() {
+        PropertyChangeDispatcher dispatcher = new PropertyChangeDispatcher();
+        RecordingListener changed = new RecordingListener();
+        RecordingListener unchanged = new RecordingListener();
+        dispatcher.subscribe("feature.enabled", changed, SAME_THREAD);
+        dispatcher.subscribe("feature.limit", unchanged, SAME_THREAD);
+        
+        dispatcher.dispatch(PropertyChange.between(ImmutableMap.of("feature.enabled", "false", "feature.limit", "10"), 
+                ImmutableMap.of("feature.enabled", "true", "feature.limit", "10")));
+        
+        assertEquals(ImmutableList.of(new PropertyChange("feature.enabled", "false", "true")), changed.changes);
+        assertTrue(unchanged.changes.isEmpty());
+    }
+    
+    @Test
+    public void computedChangesDispatched() {
+        PropertyChangeDispatcher dispatcher = new PropertyChangeDispatcher();
+        RecordingListener feature = new RecordingListener();
+        RecordingListener other = new RecordingListener();
+        dispatcher.subscribePrefix("feature.", feature, SAME_THREAD);
+        dispatcher.subscribe("other", other, SAME_THREAD);
+        
+        dispatcher.dispatch(ImmutableList.of(new PropertyChange("feature.enabled", "false", "true"), 
+                new PropertyChange("feature.limit", null, "10")));
+        
+        assertEquals(ImmutableList.of(new PropertyChange("feature.enabled", "false", "true"), 
+                new PropertyChange("feature.limit", null, "10")), feature.changes);
+        assertTrue(other.changes.isEmpty());
+    }
+    
+    @Test
+    public void prefixSubscriptionsMatched() {
+        PropertyChangeDispatcher dispatcher = new PropertyChangeDispatcher();
+        RecordingListener feature = new RecordingListener();
+        RecordingListener featureLimits = new RecordingListener();
+        RecordingListener other = new RecordingListener();
+        RecordingListener all = new RecordingListener();
+        dispatcher.subscribePrefix("feature.", feature, SAME_THREAD);
+        dispatcher.subscribePrefix("feature.limit.", featureLimits, SAME_THREAD);
+        dispatcher.subscribePrefix("other.", other, SAME_THREAD);
+        dispatcher.subscribePrefix("", all, SAME_THREAD);
+        
+        dispatcher.dispatch(PropertyChange.between(ImmutableMap.of("feature.enabled", "false"), 
+                ImmutableMap.of("feature.enabled", "true", "feature.limit.max", "10")));
+        
+        assertEquals(2, feature.changes.size());
+        assertEquals(ImmutableList.of(new PropertyChange("feature.limit.max", null, "10")), featureLimits.changes);
+        assertTrue(other.changes.isEmpty());
+        assertEquals(2, all.changes.size());
+    }
+    
+    @Test
+    public void cancelledSubscriptionNotNotified() {
+        PropertyChangeDispatcher dispatcher = new PropertyChangeDispatcher();
+        RecordingListener listener = new RecordingListener();
+        PropertySubscription keySubscription = dispatcher.subscribe("a", listener, SAME_THREAD);
+        PropertySubscription prefixSubscription = dispatcher.subscribePrefix("a", listener, SAME_THREAD);
+        assertEquals(2, dispatcher.getSubscriptionCount());
+        
+        keySubscription.cancel();
+        prefixSubscription.cancel();
+        dispatcher.dispatch(ImmutableList.of(new PropertyChange("a", "1", "2")));
+        
+        assertTrue(listener.changes.isEmpty());
+        assertEquals(0, dispatcher.getSubscriptionCount());
+    }
+    
+    @Test
+    public void failingListenerDoesNotAffectOthers() {
+        PropertyChangeDispatcher dispatcher = new PropertyChangeDispatcher();
+        RecordingListener listener = new RecordingListener();
+        dispatcher.subscribe("a", new PropertyChangeListener() {
+            @Override
+            public void propertyChanged(PropertyChange change) {
+                throw new IllegalStateException("Listener failure");
+            }
+        }, SAME_THREAD);
+        dispatcher.subscribe("a", listener, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        dispatcher.subscribe("a", listener, SAME_THREAD);
+        
+        dispatcher.dispatch(ImmutableList.of(new PropertyChange("a", "1", "2")));
+        
+        assertEquals(ImmutableList.of(new PropertyChange("a", "1", "2")), listener.changes);
+    }
+    
+    private static class RecordingListener implements PropertyChangeListener {
+        private final List<PropertyChange> changes = Lists.newArrayList();
+        
+        @Override
+        public void propertyChanged(PropertyChange change) {
+            changes.add(change);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.index;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+
+public class ConquesoConfigIndexProcessorTest {
+    
+    private static final String CONFIG_SOURCE = 
+            "package com.example;\n" +
+            "import com.netflix.config.*;\n" +
+            "import com.rapid7.conqueso.client.*;\n" +
+            "@ConquesoConfig\n" +
+            "public class IndexedConfig {\n" +
+            "    @ConquesoDescription(\"This is string1\")\n" +
+            "    private static final DynamicStringProperty STRING1 =\n" +
+            "            DynamicPropertyFactory.getInstance().getStringProperty(\"string1\", \"foo\");\n" +
+            "    static final DynamicIntProperty INT1 =\n" +
+            "            DynamicPropertyFactory.getInstance().getIntProperty(\"int1\", 42);\n" +
+            "    private static final String NOT_A_PROPERTY = \"bar\";\n" +
+            "    private final DynamicStringProperty instanceProperty = null;\n" +
+            "    public @interface CustomMarker { }\n" +
+            "    @CustomMarker\n" +
+            "    public static class Nested {\n" +
+            "        static final DynamicLongProperty LONG1 =\n" +
+            "                DynamicPropertyFactory.getInstance().getLongProperty(\"long1\", 1L);\n" +
+            "    }\n" +
+            "}\n";
+    
+    private File tempDir;
+    
+    @Before
+    public void setUp() {
+        tempDir = Files.createTempDir();
+    }
+    
+    @After
+    public void tearDown() {
+        delete(tempDir);
+    }
+    
+    @Test
+    public void indexesMarkedClasses() throws IOException {
+        ConquesoConfigIndex index = compile();
+        
+        assertEquals(ImmutableList.of("com.example.IndexedConfig"), 
+                index.getClassNames("com.rapid7.conqueso.client.ConquesoConfig"));
+        
+        Map<String, String> fields = index.getFields("com.example.IndexedConfig");
+        assertEquals(ImmutableMap.of("STRING1", "This is string1", "INT1", ""), fields);
+        // In declaration order rather than sorted
+        assertEquals(ImmutableList.of("STRING1", "INT1"), ImmutableList.copyOf(fields.keySet()));
+    }
+    
+    @Test
+    public void writtenIndexReproducible() throws IOException {
+        ConquesoConfigIndex index = new ConquesoConfigIndex();
+        index.addClass("com.example.Config$Nested", ImmutableList.of("com.example.Marker"));
+        index.addField("com.example.Config$Nested", "ZETA", " padded: #1 = caf\u00e9\n\\ ");
+        index.addField("com.example.Config$Nested", "ALPHA", null);
+        
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        index.write(first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        index.write(second);
+        
+        String written = new String(first.toByteArray(), Charsets.ISO_8859_1);
+        assertArrayEquals(first.toByteArray(), second.toByteArray());
+        int commentLines = 0;
+        for (String line : written.split("\n")) {
+            if (line.startsWith("#")) {
+                commentLines++;
+            }
+        }
+        // Only the generator comment, without a timestamp
+        assertEquals(1, commentLines);
+        
+        ConquesoConfigIndex read = new ConquesoConfigIndex();
+        read.read(new ByteArrayInputStream(first.toByteArray()));
+        assertEquals(ImmutableList.of("com.example.Config$Nested"), read.getClassNames("com.example.Marker"));
+        assertEquals(ImmutableList.of("ZETA", "ALPHA"), 
+                ImmutableList.copyOf(read.getFields("com.example.Config$Nested").keySet()));
+        assertEquals(index.getFields("com.example.Config$Nested"), read.getFields("com.example.Config$Nested"));
+    }
+    
+    @Test
+    public void indexesCustomMarkerClasses() throws IOException {
+        ConquesoConfigIndex index = compile("-A" + ConquesoConfigIndexProcessor.MARKER_ANNOTATIONS_OPTION + 
+                "=com.example.IndexedConfig.CustomMarker");
+        
+        assertEquals(ImmutableList.of("com.example.IndexedConfig$Nested"), 
+                index.getClassNames("com.example.IndexedConfig.CustomMarker"));
+        assertEquals(ImmutableMap.of("LONG1", ""), index.getFields("com.example.IndexedConfig$Nested"));
+    }
+    
+    private ConquesoConfigIndex compile(String...options) throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assumeNotNull(compiler);
+        
+        File sourceFile = new File(tempDir, "com/example/IndexedConfig.java");
+        Files.createParentDirs(sourceFile);
+        Files.write(CONFIG_SOURCE, sourceFile, Charsets.UTF_8);
+        
+        ImmutableList.Builder<String> arguments = ImmutableList.builder();
+        arguments.add("-proc:only", "-processor", ConquesoConfigIndexProcessor.class.getName(),
+                "-classpath", System.getProperty("java.class.path"),
+                "-d", tempDir.getAbsolutePath());
+        arguments.add(options);
+        arguments.add(sourceFile.getAbsolutePath());
+        
+        int result = compiler.run(null, null, null, arguments.build().toArray(new String[0]));
+        assertEquals("Compilation failed", 0, result);
+        
+        ConquesoConfigIndex index = new ConquesoConfigIndex();
+        InputStream input = new FileInputStream(new File(tempDir, ConquesoConfigIndex.INDEX_RESOURCE));
+        try {
+            index.read(input);
+        } finally {
+            input.close();
+        }
+        return index;
+    }
+    
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
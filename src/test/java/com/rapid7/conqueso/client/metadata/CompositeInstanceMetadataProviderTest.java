@@ -18,11 +18,17 @@ package com.rapid7.conqueso.client.metadata;
 import static org.junit.Assert.*;
 
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Maps;
+import com.rapid7.conqueso.client.CacheableInstanceMetadataProvider;
+import com.rapid7.conqueso.client.InstanceMetadataProvider;
 import com.rapid7.conqueso.client.metadata.CompositeInstanceMetadataProvider;
 import com.rapid7.conqueso.client.metadata.CustomInstanceMetadataProvider;
 
@@ -69,4 +75,104 @@ public class CompositeInstanceMetadataProviderTest {
        assertEquals(expected, result);
     }
     
+    @Test
+    public void queriesProvidersConcurrently() {
+        // Each provider waits for the other to start, so this only completes if they run concurrently
+        final CountDownLatch latch = new CountDownLatch(2);
+        InstanceMetadataProvider provider1 = new LatchedProvider(latch, ImmutableMap.of("k1", "v1", "k2", "v2"));
+        InstanceMetadataProvider provider2 = new LatchedProvider(latch, ImmutableMap.of("k2", "v22"));
+        
+        CompositeInstanceMetadataProvider provider = new CompositeInstanceMetadataProvider(
+                ImmutableList.of(provider1, provider2), 5000);
+        
+        assertEquals(ImmutableMap.of("k1", "v1", "k2", "v22"), provider.getInstanceMetadata());
+    }
+    
+    @Test
+    public void skipsTimedOutProvider() {
+        InstanceMetadataProvider slowProvider = new LatchedProvider(new CountDownLatch(2), 
+                ImmutableMap.of("slow", "value"));
+        
+        CompositeInstanceMetadataProvider provider = new CompositeInstanceMetadataProvider(
+                ImmutableList.of(new CustomInstanceMetadataProvider(ImmutableMap.of("k1", "v1")), slowProvider), 
+                200);
+        
+        long start = System.nanoTime();
+        Map<String, String> result = provider.getInstanceMetadata();
+        
+        assertEquals(ImmutableMap.of("k1", "v1"), result);
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+    }
+    
+    @Test
+    public void cachesCacheableProviders() {
+        CountingProvider cacheable = new CacheableCountingProvider(ImmutableMap.of("k1", "v1"));
+        CountingProvider uncached = new CountingProvider(ImmutableMap.of("k2", "v2"));
+        
+        CompositeInstanceMetadataProvider provider = new CompositeInstanceMetadataProvider(cacheable, uncached);
+        
+        Map<String, String> expected = ImmutableMap.of("k1", "v1", "k2", "v2");
+        assertEquals(expected, provider.getInstanceMetadata());
+        assertEquals(expected, provider.getInstanceMetadata());
+        assertEquals(expected, provider.getInstanceMetadata());
+        
+        assertEquals(1, cacheable.calls.get());
+        assertEquals(3, uncached.calls.get());
+    }
+    
+    @Test
+    public void nullMetadataSkipped() {
+        CountingProvider cacheable = new CacheableCountingProvider(null);
+        
+        CompositeInstanceMetadataProvider provider = new CompositeInstanceMetadataProvider(cacheable, 
+                new CountingProvider(null), new CustomInstanceMetadataProvider(ImmutableMap.of("k1", "v1")));
+        
+        assertEquals(ImmutableMap.of("k1", "v1"), provider.getInstanceMetadata());
+        assertEquals(ImmutableMap.of("k1", "v1"), provider.getInstanceMetadata());
+        assertEquals(2, cacheable.calls.get());
+    }
+    
+    private static class LatchedProvider implements InstanceMetadataProvider {
+        private final CountDownLatch latch;
+        private final Map<String, String> metadata;
+        
+        LatchedProvider(CountDownLatch latch, Map<String, String> metadata) {
+            this.latch = latch;
+            this.metadata = metadata;
+        }
+        
+        @Override
+        public Map<String, String> getInstanceMetadata() {
+            latch.countDown();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return metadata;
+        }
+    }
+    
+    private static class CountingProvider implements InstanceMetadataProvider {
+        private final AtomicInteger calls = new AtomicInteger();
+        private final Map<String, String> metadata;
+        
+        CountingProvider(Map<String, String> metadata) {
+            this.metadata = metadata;
+        }
+        
+        @Override
+        public Map<String, String> getInstanceMetadata() {
+            calls.incrementAndGet();
+            return metadata;
+        }
+    }
+    
+    private static class CacheableCountingProvider extends CountingProvider 
+            implements CacheableInstanceMetadataProvider {
+        CacheableCountingProvider(Map<String, String> metadata) {
+            super(metadata);
+        }
+    }
+    
 }
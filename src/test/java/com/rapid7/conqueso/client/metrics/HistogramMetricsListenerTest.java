@@ -0,0 +1,99 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
+public class HistogramMetricsListenerTest {
+    
+    @Test
+    public void recordsPerEndpoint() {
+        HistogramMetricsListener listener = new HistogramMetricsListener();
+        listener.requestCompleted(Endpoint.INSTANCES, Outcome.SUCCESS, 2000, 0, 300);
+        listener.responseParsed(Endpoint.INSTANCES, Outcome.SUCCESS, 500);
+        listener.requestCompleted(Endpoint.INSTANCES, Outcome.COMMUNICATION_ERROR, 1000, 0, 0);
+        listener.requestCompleted(Endpoint.REGISTRATION, Outcome.HTTP_ERROR, 4000, 1200, 10);
+        
+        EndpointMetrics instances = listener.getSnapshot(Endpoint.INSTANCES);
+        assertEquals(Endpoint.INSTANCES, instances.getEndpoint());
+        assertEquals(2, instances.getRequestCount());
+        assertEquals(1, instances.getRequestCount(Outcome.SUCCESS));
+        assertEquals(1, instances.getRequestCount(Outcome.COMMUNICATION_ERROR));
+        assertEquals(300, instances.getResponseBytes());
+        assertEquals(0, instances.getRequestBytes());
+        assertEquals(1000, instances.getLatency().getMin());
+        assertEquals(2000, instances.getLatency().getMax());
+        assertEquals(1, instances.getParseTime().getCount());
+        assertEquals(0, instances.getParseErrorCount());
+        
+        EndpointMetrics registration = listener.getSnapshot(Endpoint.REGISTRATION);
+        assertEquals(1, registration.getRequestCount(Outcome.HTTP_ERROR));
+        assertEquals(1200, registration.getRequestBytes());
+    }
+    
+    @Test
+    public void snapshotIncludesEveryEndpoint() {
+        HistogramMetricsListener listener = new HistogramMetricsListener();
+        listener.responseParsed(Endpoint.ROLES, Outcome.PARSE_ERROR, 100);
+        
+        ImmutableMap<Endpoint, EndpointMetrics> snapshot = listener.getSnapshot();
+        assertEquals(ImmutableList.copyOf(Endpoint.values()), snapshot.keySet().asList());
+        assertEquals(1, snapshot.get(Endpoint.ROLES).getParseErrorCount());
+        assertEquals(0, snapshot.get(Endpoint.PROPERTY).getRequestCount());
+        assertEquals(0, snapshot.get(Endpoint.PROPERTY).getLatency().getCount());
+    }
+    
+    @Test
+    public void concurrentRecording() throws InterruptedException {
+        final HistogramMetricsListener listener = new HistogramMetricsListener();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 10000; j++) {
+                        listener.requestCompleted(Endpoint.LATEST_PROPERTIES, Outcome.SUCCESS, j, 0, 1);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        
+        EndpointMetrics metrics = listener.getSnapshot(Endpoint.LATEST_PROPERTIES);
+        assertEquals(40000, metrics.getRequestCount());
+        assertEquals(40000, metrics.getLatency().getCount());
+        assertEquals(40000, metrics.getResponseBytes());
+        assertEquals(0, metrics.getLatency().getMin());
+        assertEquals(9999, metrics.getLatency().getMax());
+    }
+}
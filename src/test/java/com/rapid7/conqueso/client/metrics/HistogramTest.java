@@ -0,0 +1,80 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.metrics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class HistogramTest {
+    
+    @Test
+    public void smallValuesExact() {
+        for (int value = 0; value < 64; value++) {
+            assertEquals(value, Histogram.bucketIndex(value));
+            assertEquals(value, Histogram.bucketHighestValue(value));
+        }
+    }
+    
+    @Test
+    public void bucketsContiguous() {
+        long previousHighest = -1;
+        for (int index = 0; index < Histogram.BUCKET_COUNT - 1; index++) {
+            long highest = Histogram.bucketHighestValue(index);
+            assertEquals(index, Histogram.bucketIndex(previousHighest + 1));
+            assertEquals(index, Histogram.bucketIndex(highest));
+            // Each bucket is within about 3% of its values
+            assertTrue(highest - previousHighest - 1 <= highest / 32);
+            previousHighest = highest;
+        }
+    }
+    
+    @Test
+    public void largeValuesInLastBucket() {
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketIndex(Long.MAX_VALUE));
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketIndex(1L << 50));
+    }
+    
+    @Test
+    public void snapshot() {
+        Histogram histogram = new Histogram();
+        for (int value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000L);
+        }
+        histogram.record(-5);
+        
+        HistogramSnapshot snapshot = histogram.snapshot();
+        assertEquals(1001, snapshot.getCount());
+        assertEquals(500500000L, snapshot.getTotal());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(1000000, snapshot.getMax());
+        assertEquals(500000.0, snapshot.getMean(), 1000);
+        assertEquals(500000.0, snapshot.getValueAtPercentile(50), 500000 * 0.04);
+        assertEquals(990000.0, snapshot.getValueAtPercentile(99), 990000 * 0.04);
+        assertEquals(0, snapshot.getValueAtPercentile(0));
+        assertEquals(1000000, snapshot.getValueAtPercentile(100));
+    }
+    
+    @Test
+    public void emptySnapshot() {
+        HistogramSnapshot snapshot = new Histogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMin());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0.0, snapshot.getMean(), 0);
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+}
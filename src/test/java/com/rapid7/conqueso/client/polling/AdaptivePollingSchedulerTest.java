@@ -0,0 +1,159 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.polling;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.rapid7.conqueso.client.ConquesoClient;
+import com.rapid7.conqueso.client.StubConquesoServer;
+
+public class AdaptivePollingSchedulerTest {
+    
+    private static final Map<String, Object> PROPERTIES = ImmutableMap.<String, Object>of("foo", "bar");
+    private static final Map<String, Object> CHANGED_PROPERTIES = ImmutableMap.<String, Object>of("foo", "baz");
+
+    @Test
+    public void backsOffWhileUnchanged() {
+        AdaptivePollingScheduler scheduler = new AdaptivePollingScheduler(null, 1000, 5000, 0, "host-1");
+        assertEquals(1000, scheduler.getIntervalMillis());
+        
+        scheduler.pollCompleted(PROPERTIES);
+        assertEquals(1000, scheduler.getIntervalMillis());
+        scheduler.pollCompleted(PROPERTIES);
+        assertEquals(2000, scheduler.getIntervalMillis());
+        scheduler.pollCompleted(PROPERTIES);
+        assertEquals(4000, scheduler.getIntervalMillis());
+        scheduler.pollCompleted(PROPERTIES);
+        assertEquals(5000, scheduler.getIntervalMillis());
+        assertEquals(5000, scheduler.getNextDelayMillis());
+    }
+    
+    @Test
+    public void minimumIntervalAfterChange() {
+        AdaptivePollingScheduler scheduler = new AdaptivePollingScheduler(null, 1000, 5000, 0, "host-1");
+        scheduler.pollCompleted(PROPERTIES);
+        scheduler.pollCompleted(PROPERTIES);
+        scheduler.pollCompleted(PROPERTIES);
+        
+        scheduler.pollCompleted(CHANGED_PROPERTIES);
+        
+        assertEquals(1000, scheduler.getIntervalMillis());
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void maximumBelowMinimumRejected() {
+        new AdaptivePollingScheduler(null, 5000, 1000, 0, "host-1");
+    }
+    
+    @Test
+    public void settledIntervalReportedAsInstanceMetadata() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        try {
+            ConquesoClient client = createClient(server, true);
+            AdaptivePollingScheduler scheduler = new AdaptivePollingScheduler(client, 1000, 4000, 0, "host-1", 
+                    MoreExecutors.sameThreadExecutor());
+            
+            scheduler.pollCompleted(PROPERTIES);
+            assertEquals("1000", client.getInstanceMetadata().get(AdaptivePollingScheduler.POLL_INTERVAL_METADATA_KEY));
+            assertEquals(2, server.getRequests().size());
+            
+            // Backing off through 2000ms isn't reported, only reaching the maximum
+            scheduler.pollCompleted(PROPERTIES);
+            assertEquals(2, server.getRequests().size());
+            scheduler.pollCompleted(PROPERTIES);
+            assertEquals("4000", client.getInstanceMetadata().get(AdaptivePollingScheduler.POLL_INTERVAL_METADATA_KEY));
+            assertEquals(3, server.getRequests().size());
+            
+            // Already backed off to the maximum, so nothing further to report
+            scheduler.pollCompleted(PROPERTIES);
+            assertEquals(3, server.getRequests().size());
+            
+            scheduler.pollCompleted(CHANGED_PROPERTIES);
+            assertEquals("1000", client.getInstanceMetadata().get(AdaptivePollingScheduler.POLL_INTERVAL_METADATA_KEY));
+            assertEquals(4, server.getRequests().size());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void intervalReportedOffPollThread() throws Exception {
+        StubConquesoServer server = new StubConquesoServer();
+        try {
+            ConquesoClient client = createClient(server, true);
+            AdaptivePollingScheduler scheduler = new AdaptivePollingScheduler(client, 1000, 2000, 0, "host-1");
+            
+            // The poll completes while the client is busy, with the report following once it's released
+            synchronized (client) {
+                scheduler.pollCompleted(PROPERTIES);
+                assertEquals(1, server.getRequests().size());
+            }
+            
+            long deadline = System.currentTimeMillis() + 5000;
+            while (server.getRequests().size() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            synchronized (client) {
+                // Wait for the report to finish with the client
+            }
+            assertEquals(2, server.getRequests().size());
+            assertEquals("1000", client.getInstanceMetadata().get(AdaptivePollingScheduler.POLL_INTERVAL_METADATA_KEY));
+            assertTrue(scheduler.isReportExecutorRunning());
+            
+            scheduler.stop();
+            assertFalse(scheduler.isReportExecutorRunning());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void intervalDeferredWithoutFingerprinting() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        try {
+            ConquesoClient client = createClient(server, false);
+            AdaptivePollingScheduler scheduler = new AdaptivePollingScheduler(client, 1000, 2000, 0, "host-1", 
+                    MoreExecutors.sameThreadExecutor());
+            
+            scheduler.pollCompleted(PROPERTIES);
+            scheduler.pollCompleted(PROPERTIES);
+            
+            // Held for the next registration, rather than uploading the property definitions again
+            assertEquals("2000", client.getInstanceMetadata().get(AdaptivePollingScheduler.POLL_INTERVAL_METADATA_KEY));
+            assertEquals(1, server.getRequests().size());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    private static ConquesoClient createClient(StubConquesoServer server, boolean fingerprinting) {
+        ConquesoClient.Initializer initializer = ConquesoClient.initializer()
+                .withConquesoUrl(server.getUrl("/api/roles/test-role/properties").toExternalForm())
+                .skipReportingInstanceData()
+                .withNoProperties();
+        if (fingerprinting) {
+            initializer.withDefinitionFingerprinting();
+        }
+        return initializer.initialize();
+    }
+}
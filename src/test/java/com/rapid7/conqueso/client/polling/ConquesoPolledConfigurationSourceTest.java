@@ -0,0 +1,57 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.polling;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.netflix.config.PollResult;
+import com.rapid7.conqueso.client.ConquesoClient;
+import com.rapid7.conqueso.client.StubConquesoServer;
+import com.rapid7.conqueso.client.StubConquesoServer.RecordedRequest;
+
+public class ConquesoPolledConfigurationSourceTest {
+
+    @Test
+    public void pollReadsLatestProperties() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                return new StubConquesoServer.Response(200, "string1=bar\nint1=7\n");
+            }
+        });
+        try {
+            ConquesoClient client = ConquesoClient.initializer()
+                    .withConquesoUrl(server.getUrl("/api/roles/test-role/properties").toExternalForm())
+                    .skipReportingInstanceData()
+                    .withNoProperties()
+                    .initialize();
+            
+            PollResult result = new ConquesoPolledConfigurationSource(client).poll(true, null);
+            
+            assertFalse(result.isIncremental());
+            assertEquals(ImmutableMap.of("string1", "bar", "int1", "7"), result.getComplete());
+            assertEquals("GET", server.getRequests().get(server.getRequests().size() - 1).getMethod());
+        } finally {
+            server.stop();
+        }
+    }
+}
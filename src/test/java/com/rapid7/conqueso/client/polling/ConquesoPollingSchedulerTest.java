@@ -0,0 +1,208 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.polling;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.google.common.collect.Sets;
+import com.rapid7.conqueso.client.ConquesoClient;
+import com.rapid7.conqueso.client.StubConquesoServer;
+import com.rapid7.conqueso.client.StubConquesoServer.RecordedRequest;
+
+public class ConquesoPollingSchedulerTest {
+    
+    private static final String INSTANCES_JSON = "[{\"role\":\"test-role\",\"ip\":\"%s\",\"pollInterval\":%d," +
+            "\"offline\":false,\"createdAt\":\"2014-02-05T17:05:39.000Z\"," +
+            "\"updatedAt\":\"2014-02-05T18:46:48.000Z\",\"metadata\":{}}]";
+
+    @Test
+    public void phaseOffsetStablePerInstance() {
+        ConquesoPollingScheduler scheduler = new ConquesoPollingScheduler(null, 60000, 0, "host-1");
+        
+        long phaseOffset = scheduler.getPhaseOffsetMillis();
+        assertTrue(phaseOffset >= 0 && phaseOffset < 60000);
+        assertEquals(phaseOffset, new ConquesoPollingScheduler(null, 60000, 0.5, "host-1").getPhaseOffsetMillis());
+    }
+    
+    @Test
+    public void phaseOffsetsSpreadOverInterval() {
+        int[] buckets = new int[10];
+        for (int i = 0; i < 1000; i++) {
+            long phaseOffset = new ConquesoPollingScheduler(null, 60000, 0, "host-" + i).getPhaseOffsetMillis();
+            buckets[(int)(phaseOffset / 6000)]++;
+        }
+        
+        // Each tenth of the interval should have roughly a tenth of the instances
+        for (int bucket : buckets) {
+            assertTrue(bucket > 50 && bucket < 150);
+        }
+    }
+    
+    @Test
+    public void nextDelayJittered() {
+        ConquesoPollingScheduler scheduler = new ConquesoPollingScheduler(null, 10000, 0.1, "host-1");
+        
+        Set<Long> delays = Sets.newHashSet();
+        for (int i = 0; i < 100; i++) {
+            long delay = scheduler.getNextDelayMillis();
+            assertTrue(delay >= 9000 && delay <= 11000);
+            delays.add(delay);
+        }
+        assertTrue(delays.size() > 1);
+    }
+    
+    @Test
+    public void nextDelayWithoutJitter() {
+        assertEquals(10000, new ConquesoPollingScheduler(null, 10000, 0, "host-1").getNextDelayMillis());
+    }
+    
+    @Test
+    public void instanceIntervalTakesPrecedence() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                if (request.getPath().equals("/api/roles/test-role/instances")) {
+                    return new StubConquesoServer.Response(200, String.format(INSTANCES_JSON, "127.0.0.1", 5000));
+                }
+                return new StubConquesoServer.Response(200, "");
+            }
+        });
+        try {
+            ConquesoPollingScheduler scheduler = new ConquesoPollingScheduler(createClient(server), 60000, 0, 
+                    "host-1", true);
+            scheduler.refreshInstanceInterval();
+            
+            assertEquals(5000, scheduler.getIntervalMillis());
+            assertEquals(5000, scheduler.getNextDelayMillis());
+            assertTrue(scheduler.getPhaseOffsetMillis() < 5000);
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void configuredIntervalUsedForUnknownInstance() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                if (request.getMethod().equals("GET")) {
+                    return new StubConquesoServer.Response(200, String.format(INSTANCES_JSON, "192.0.2.1", 5000));
+                }
+                return new StubConquesoServer.Response(200, "");
+            }
+        });
+        try {
+            ConquesoPollingScheduler scheduler = new ConquesoPollingScheduler(createClient(server), 60000, 0, 
+                    "host-1", true);
+            scheduler.refreshInstanceInterval();
+            
+            assertEquals(60000, scheduler.getIntervalMillis());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void configuredIntervalUsedWhenServerUnavailable() throws IOException {
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                return new StubConquesoServer.Response(request.getMethod().equals("GET") ? 500 : 200, "");
+            }
+        });
+        try {
+            ConquesoPollingScheduler scheduler = new ConquesoPollingScheduler(createClient(server), 60000, 0, 
+                    "host-1", true);
+            scheduler.refreshInstanceInterval();
+            
+            assertEquals(60000, scheduler.getIntervalMillis());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void roleIntervalReadFromPolledProperties() throws Exception {
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                return new StubConquesoServer.Response(200, request.getMethod().equals("GET") ? 
+                        ConquesoPollingScheduler.SERVER_INTERVAL_PROPERTY + "=5\n" : "");
+            }
+        });
+        try {
+            final ConquesoClient client = createClient(server);
+            ConquesoPollingScheduler scheduler = new ConquesoPollingScheduler(client, 10, 0, "host-1");
+            final CountDownLatch polls = new CountDownLatch(2 * ConquesoPollingScheduler.SERVER_INTERVAL_REFRESH_POLLS);
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    client.getLatestProperties();
+                    polls.countDown();
+                }
+            });
+            try {
+                assertTrue(polls.await(5, TimeUnit.SECONDS));
+            } finally {
+                scheduler.stop();
+            }
+            
+            assertEquals(5, scheduler.getIntervalMillis());
+            // Read from the polled properties, without looking the instance up
+            for (RecordedRequest request : server.getRequests()) {
+                assertFalse(request.getPath().endsWith("/instances"));
+            }
+        } finally {
+            server.stop();
+        }
+    }
+    
+    @Test
+    public void pollsRepeatedUntilStopped() throws InterruptedException {
+        final CountDownLatch polls = new CountDownLatch(3);
+        ConquesoPollingScheduler scheduler = new ConquesoPollingScheduler(null, 10, 0.5, "host-1");
+        scheduler.schedule(new Runnable() {
+            @Override
+            public void run() {
+                polls.countDown();
+            }
+        });
+        try {
+            assertTrue(polls.await(5, TimeUnit.SECONDS));
+        } finally {
+            scheduler.stop();
+        }
+    }
+    
+    private static ConquesoClient createClient(StubConquesoServer server) {
+        return ConquesoClient.initializer()
+                .withConquesoUrl(server.getUrl("/api/roles/test-role/properties").toExternalForm())
+                .skipReportingInstanceData()
+                .withNoProperties()
+                .initialize();
+    }
+}
@@ -0,0 +1,184 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.property;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reflections.util.ClasspathHelper;
+import org.reflections.util.FilterBuilder;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.io.Files;
+import com.rapid7.conqueso.client.ConquesoConfig;
+import com.rapid7.conqueso.client.ConquesoTestHelper;
+import com.rapid7.conqueso.client.ExampleConfigClass;
+import com.rapid7.conqueso.client.PropertyDefinition;
+
+public class ClasspathScanCacheTest {
+
+    private File tempDir;
+    private File cacheFile;
+    private List<URL> classpathUrls;
+    private FilterBuilder inputFilter;
+
+    @Before
+    public void setUp() {
+        tempDir = Files.createTempDir();
+        cacheFile = new File(tempDir, "scan.properties");
+        classpathUrls = Collections.singletonList(ClasspathHelper.forClass(ExampleConfigClass.class));
+        inputFilter = new FilterBuilder().include(FilterBuilder.prefix("com.rapid7.conqueso"));
+    }
+
+    @After
+    public void tearDown() {
+        delete(tempDir);
+    }
+
+    @Test
+    public void scanResultsCached() throws Exception {
+        ClasspathScanCache cache = new ClasspathScanCache(cacheFile);
+
+        Set<String> results = cache.findAnnotatedClassNames(classpathUrls, inputFilter,
+                ConquesoConfig.class.getName());
+
+        assertTrue(results.contains(ExampleConfigClass.class.getName()));
+
+        Properties cached = readCacheFile();
+        String key = classpathUrls.get(0).toExternalForm();
+        assertTrue(cached.getProperty(key).startsWith(ClasspathScanCache.fingerprint(classpathUrls.get(0)) + "|"));
+        assertTrue(cached.getProperty(key).contains(ExampleConfigClass.class.getName()));
+    }
+
+    @Test
+    public void unchangedEntryReadFromCache() throws Exception {
+        // Record a fake class name against the current fingerprint, so it's only returned if the scan is skipped
+        URL classpathUrl = classpathUrls.get(0);
+        writeCacheFile(classpathUrl.toExternalForm(),
+                ClasspathScanCache.fingerprint(classpathUrl) + "|com.example.CachedConfig");
+
+        Set<String> results = new ClasspathScanCache(cacheFile).findAnnotatedClassNames(classpathUrls, inputFilter,
+                ConquesoConfig.class.getName());
+
+        assertEquals(ImmutableSet.of("com.example.CachedConfig"), results);
+    }
+
+    @Test
+    public void changedEntryRescanned() throws Exception {
+        URL classpathUrl = classpathUrls.get(0);
+        writeCacheFile(classpathUrl.toExternalForm(), "dir:0:0:0|com.example.CachedConfig");
+
+        Set<String> results = new ClasspathScanCache(cacheFile).findAnnotatedClassNames(classpathUrls, inputFilter,
+                ConquesoConfig.class.getName());
+
+        assertTrue(results.contains(ExampleConfigClass.class.getName()));
+        assertFalse(results.contains("com.example.CachedConfig"));
+        assertFalse(readCacheFile().getProperty(classpathUrl.toExternalForm()).contains("com.example.CachedConfig"));
+    }
+
+    @Test
+    public void malformedEntryRescanned() throws Exception {
+        writeCacheFile(classpathUrls.get(0).toExternalForm(), "garbage");
+
+        Set<String> results = new ClasspathScanCache(cacheFile).findAnnotatedClassNames(classpathUrls, inputFilter,
+                ConquesoConfig.class.getName());
+
+        assertTrue(results.contains(ExampleConfigClass.class.getName()));
+    }
+
+    @Test
+    public void jarFingerprintChangesWithContent() throws Exception {
+        File jar = new File(tempDir, "config.jar");
+        Files.write("first", jar, Charsets.UTF_8);
+        URL jarUrl = jar.toURI().toURL();
+        String original = ClasspathScanCache.fingerprint(jarUrl);
+
+        Files.write("second version", jar, Charsets.UTF_8);
+
+        assertNotNull(original);
+        assertFalse(original.equals(ClasspathScanCache.fingerprint(jarUrl)));
+    }
+
+    @Test
+    public void missingEntryHasNoFingerprint() throws Exception {
+        assertNull(ClasspathScanCache.fingerprint(new File(tempDir, "missing.jar").toURI().toURL()));
+    }
+
+    @Test
+    public void providerWithScanCache() {
+        AnnotationScanPropertyDefinitionsProvider provider = new AnnotationScanPropertyDefinitionsProvider(
+                ConquesoConfig.class, Collections.singletonList("com.rapid7.conqueso"), ",", tempDir);
+
+        Map<String, PropertyDefinition> results = Maps.newHashMap();
+        provider.addPropertyDefinitions(results);
+        ConquesoTestHelper.assertExampleConfigProperties(results);
+
+        // Second run is served from the cache file written by the first
+        assertEquals(1, tempDir.listFiles().length);
+        results = Maps.newHashMap();
+        provider.addPropertyDefinitions(results);
+        ConquesoTestHelper.assertExampleConfigProperties(results);
+    }
+
+    private Properties readCacheFile() throws IOException {
+        Properties properties = new Properties();
+        InputStream input = new FileInputStream(cacheFile);
+        try {
+            properties.load(input);
+        } finally {
+            input.close();
+        }
+        return properties;
+    }
+
+    private void writeCacheFile(String key, String value) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+        OutputStream output = new FileOutputStream(cacheFile);
+        try {
+            properties.store(output, null);
+        } finally {
+            output.close();
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
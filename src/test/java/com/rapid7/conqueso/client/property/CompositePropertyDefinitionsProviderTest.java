@@ -18,12 +18,18 @@ package com.rapid7.conqueso.client.property;
 import static org.junit.Assert.*;
 
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.rapid7.conqueso.client.PropertyDefinition;
+import com.rapid7.conqueso.client.PropertyDefinitionsProvider;
 import com.rapid7.conqueso.client.PropertyType;
+import com.rapid7.conqueso.client.StubConquesoServer;
+import com.rapid7.conqueso.client.StubConquesoServer.RecordedRequest;
 
 public class CompositePropertyDefinitionsProviderTest {
     
@@ -43,5 +49,100 @@ public class CompositePropertyDefinitionsProviderTest {
         assertEquals(prop1, results.get("foo"));
         assertEquals(prop2, results.get("the-answer"));
     }
+    
+    @Test
+    public void prefetchesChildrenConcurrently() {
+        // Each child waits for the other to start prefetching, so this only completes if they run concurrently
+        CountDownLatch latch = new CountDownLatch(2);
+        PropertyDefinition prop1 = new PropertyDefinition("foo", PropertyType.STRING, "bar", null);
+        PropertyDefinition prop2 = new PropertyDefinition("foo", PropertyType.STRING, "baz", null);
+        
+        CompositePropertyDefinitionsProvider composite = new CompositePropertyDefinitionsProvider(
+                ImmutableList.<PropertyDefinitionsProvider>of(new LatchedProvider(latch, prop1), 
+                        new LatchedProvider(latch, prop2)), 5000);
+        
+        Map<String, PropertyDefinition> results = Maps.newHashMap();
+        composite.addPropertyDefinitions(results);
+        
+        // Later children still override earlier ones
+        assertEquals(prop2, results.get("foo"));
+    }
+    
+    @Test(expected=IllegalStateException.class)
+    public void prefetchTimeout() {
+        // Neither child can complete, as the latch needs three prefetches
+        CountDownLatch latch = new CountDownLatch(3);
+        PropertyDefinition prop1 = new PropertyDefinition("foo", PropertyType.STRING, "bar", null);
+        
+        CompositePropertyDefinitionsProvider composite = new CompositePropertyDefinitionsProvider(
+                ImmutableList.<PropertyDefinitionsProvider>of(new LatchedProvider(latch, prop1), 
+                        new LatchedProvider(latch, prop1)), 100);
+        
+        composite.addPropertyDefinitions(Maps.<String, PropertyDefinition>newHashMap());
+    }
+    
+    @Test
+    public void remoteUrlsFetchedConcurrently() throws Exception {
+        StubConquesoServer server = new StubConquesoServer();
+        server.setResponder(new StubConquesoServer.Responder() {
+            @Override
+            public StubConquesoServer.Response respond(RecordedRequest request) {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                String value = request.getPath().substring(1);
+                return new StubConquesoServer.Response(200, 
+                        "[{\"name\":\"foo\",\"type\":\"STRING\",\"value\":\"" + value + "\"}," +
+                        "{\"name\":\"" + value + "\",\"type\":\"STRING\",\"value\":\"" + value + "\"}]");
+            }
+        });
+        try {
+            CompositePropertyDefinitionsProvider composite = new CompositePropertyDefinitionsProvider(
+                    new JsonFilePropertyDefinitionsProvider(ImmutableList.of(server.getUrl("/one"), 
+                            server.getUrl("/two"), server.getUrl("/three"))),
+                    new JsonFilePropertyDefinitionsProvider(ImmutableList.of(server.getUrl("/four"), 
+                            server.getUrl("/five"))));
+            
+            long start = System.nanoTime();
+            Map<String, PropertyDefinition> results = Maps.newHashMap();
+            composite.addPropertyDefinitions(results);
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            
+            assertEquals(5, server.getRequests().size());
+            assertTrue("Fetches took " + elapsedMillis + "ms", elapsedMillis < 2000);
+            assertEquals(6, results.size());
+            // Merged in declared order regardless of which fetch completed last
+            assertEquals("five", results.get("foo").getValue());
+        } finally {
+            server.stop();
+        }
+    }
+    
+    private static class LatchedProvider implements PrefetchingPropertyDefinitionsProvider {
+        private final CountDownLatch latch;
+        private final PropertyDefinition definition;
+        
+        LatchedProvider(CountDownLatch latch, PropertyDefinition definition) {
+            this.latch = latch;
+            this.definition = definition;
+        }
+        
+        @Override
+        public void prefetch() {
+            latch.countDown();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        
+        @Override
+        public void addPropertyDefinitions(Map<String, PropertyDefinition> targetPropertyDefinitionMap) {
+            targetPropertyDefinitionMap.put(definition.getName(), definition);
+        }
+    }
 
 }
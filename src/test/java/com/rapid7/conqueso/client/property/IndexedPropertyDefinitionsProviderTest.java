@@ -0,0 +1,92 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.property;
+
+import static com.rapid7.conqueso.client.ConquesoTestHelper.*;
+import static org.junit.Assert.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+import com.rapid7.conqueso.client.ConquesoConfig;
+import com.rapid7.conqueso.client.PropertyDefinition;
+import com.rapid7.conqueso.client.PropertyType;
+import com.rapid7.conqueso.client.property.AnnotationScanPropertyDefinitionsProviderTest.DummyAnnotation;
+
+public class IndexedPropertyDefinitionsProviderTest {
+    
+    @Test
+    public void standardSuccessfulRead() {
+        // This test relies on the META-INF/conqueso/config-index.properties test resource
+        IndexedPropertyDefinitionsProvider provider = new IndexedPropertyDefinitionsProvider(
+                ConquesoConfig.class, 
+                Collections.singletonList("com.rapid7.conqueso"));
+        
+        Map<String, PropertyDefinition> results = Maps.newHashMap();
+        provider.addPropertyDefinitions(results);
+        
+        assertExampleConfigProperties(results);
+    }
+    
+    @Test
+    public void readWithCustomDelimiter() {
+        IndexedPropertyDefinitionsProvider provider = new IndexedPropertyDefinitionsProvider(
+                ConquesoConfig.class, 
+                Collections.singletonList("com.rapid7.conqueso"), ";;");
+        Map<String, PropertyDefinition> results = Maps.newHashMap();
+        provider.addPropertyDefinitions(results);
+        
+        assertContainsProperty("stringList1", PropertyType.STRING_LIST, "foo;;bar;;baz", "This is stringList1", results);
+        assertContainsProperty("stringSet1",  PropertyType.STRING_SET, "baz;;foo;;bar", null, results);
+        assertContainsProperty("stringMap1", PropertyType.STRING_MAP, "k3=v3;;k1=v1;;k2=v2", null, results);
+    }
+    
+    @Test
+    public void indexedDefinitionsCached() {
+        IndexedPropertyDefinitionsProvider provider = new IndexedPropertyDefinitionsProvider(
+                ConquesoConfig.class, 
+                Collections.singletonList("com.rapid7.conqueso"));
+        Map<String, PropertyDefinition> first = Maps.newHashMap();
+        provider.addPropertyDefinitions(first);
+        Map<String, PropertyDefinition> second = Maps.newHashMap();
+        provider.addPropertyDefinitions(second);
+        
+        assertSame(first.get("string1"), second.get("string1"));
+        assertEquals(first, second);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void readWithNoClassesWithAnnotationFound() {
+        IndexedPropertyDefinitionsProvider provider = new IndexedPropertyDefinitionsProvider(
+                DummyAnnotation.class, 
+                Collections.singletonList("com.rapid7.conqueso"));
+        Map<String, PropertyDefinition> results = Maps.newHashMap();
+        provider.addPropertyDefinitions(results);
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void readWithNoClassesWithBadPackageFound() {
+        IndexedPropertyDefinitionsProvider provider = new IndexedPropertyDefinitionsProvider(
+                ConquesoConfig.class, 
+                Collections.singletonList("com.bad.package"));
+        Map<String, PropertyDefinition> results = Maps.newHashMap();
+        provider.addPropertyDefinitions(results);
+    }
+
+}
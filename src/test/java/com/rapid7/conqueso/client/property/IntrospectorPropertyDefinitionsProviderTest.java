@@ -16,13 +16,20 @@
 package com.rapid7.conqueso.client.property;
 
 import static com.rapid7.conqueso.client.ConquesoTestHelper.*;
+import static org.junit.Assert.*;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Test;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
+import com.netflix.config.DynamicIntProperty;
+import com.netflix.config.DynamicPropertyFactory;
+import com.netflix.config.DynamicStringProperty;
+import com.rapid7.conqueso.client.ConquesoDescription;
 import com.rapid7.conqueso.client.ExampleConfigClass;
 import com.rapid7.conqueso.client.PropertyDefinition;
 import com.rapid7.conqueso.client.PropertyType;
@@ -52,4 +59,70 @@ public class IntrospectorPropertyDefinitionsProviderTest {
         assertContainsProperty("stringSet1",  PropertyType.STRING_SET, "baz;;foo;;bar", null, results);
         assertContainsProperty("stringMap1", PropertyType.STRING_MAP, "k3=v3;;k1=v1;;k2=v2", null, results);
     }
+    
+    @Test
+    public void parallelIntrospection() {
+        List<Class<?>> targetClasses = ImmutableList.<Class<?>>of(ExampleConfigClass.class, 
+                SecondConfigClass.class, ThirdConfigClass.class);
+        IntrospectorPropertyDefinitionsProvider introspector = 
+                new IntrospectorPropertyDefinitionsProvider(targetClasses, ",", 4);
+        Map<String, PropertyDefinition> results = Maps.newHashMap();
+        introspector.addPropertyDefinitions(results);
+        
+        assertEquals(ExampleConfigClass.EXPECTED_PROPERTIES.size() + 2, results.size());
+        assertContainsProperty("string1", PropertyType.STRING, "foo", "This is string1", results);
+        assertContainsProperty("second.string", PropertyType.STRING, "second", "Second string", results);
+        assertContainsProperty("third.int", PropertyType.INT, "3", null, results);
+    }
+    
+    @Test
+    public void parallelIntrospectionReportsDuplicateInClassOrder() {
+        List<Class<?>> targetClasses = ImmutableList.<Class<?>>of(SecondConfigClass.class, 
+                ThirdConfigClass.class, DuplicateConfigClass.class);
+        IntrospectorPropertyDefinitionsProvider introspector = 
+                new IntrospectorPropertyDefinitionsProvider(targetClasses, ",", 3);
+        try {
+            introspector.addPropertyDefinitions(Maps.<String, PropertyDefinition>newHashMap());
+            fail("Expected duplicate property name");
+        } catch (IllegalArgumentException e) {
+            assertEquals("Duplicate property name second.string - " + DuplicateConfigClass.class.getName() + 
+                    ".DUPLICATE", e.getMessage());
+        }
+    }
+    
+    @Test
+    public void classDefinitionsCached() {
+        Map<String, PropertyDefinition> first = Maps.newHashMap();
+        new IntrospectorPropertyDefinitionsProvider(SecondConfigClass.class).addPropertyDefinitions(first);
+        Map<String, PropertyDefinition> second = Maps.newHashMap();
+        new IntrospectorPropertyDefinitionsProvider(SecondConfigClass.class).addPropertyDefinitions(second);
+        
+        assertSame(first.get("second.string"), second.get("second.string"));
+        
+        IntrospectorPropertyDefinitionsProvider.clearClassDefinitionCache();
+        Map<String, PropertyDefinition> third = Maps.newHashMap();
+        new IntrospectorPropertyDefinitionsProvider(SecondConfigClass.class).addPropertyDefinitions(third);
+        
+        assertNotSame(first.get("second.string"), third.get("second.string"));
+        assertEquals(first, third);
+    }
+    
+    @SuppressWarnings("unused")
+    private static class SecondConfigClass {
+        @ConquesoDescription("Second string")
+        private static final DynamicStringProperty STRING = 
+                DynamicPropertyFactory.getInstance().getStringProperty("second.string", "second");
+    }
+    
+    @SuppressWarnings("unused")
+    private static class ThirdConfigClass {
+        private static final DynamicIntProperty INT = 
+                DynamicPropertyFactory.getInstance().getIntProperty("third.int", 3);
+    }
+    
+    @SuppressWarnings("unused")
+    private static class DuplicateConfigClass {
+        private static final DynamicStringProperty DUPLICATE = 
+                DynamicPropertyFactory.getInstance().getStringProperty("second.string", "duplicate");
+    }
 }
@@ -16,15 +16,22 @@
 package com.rapid7.conqueso.client.property;
 
 import static com.rapid7.conqueso.client.ConquesoTestHelper.*;
+import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Map;
 
+import org.codehaus.jackson.map.ObjectMapper;
+import org.codehaus.jackson.smile.SmileFactory;
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
+import com.google.common.io.Files;
 import com.rapid7.conqueso.client.PropertyDefinition;
 import com.rapid7.conqueso.client.PropertyType;
 
@@ -129,5 +136,77 @@ public class JsonFilePropertyDefinitionsProviderTest {
         Map<String, PropertyDefinition> results = Maps.newHashMap();
         provider.addPropertyDefinitions(results);
     }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void notAnArray() throws IOException {
+        addPropertyDefinitionsFromJson("{\"name\":\"string1\",\"type\":\"STRING\",\"value\":\"foo\"}");
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void arrayOfNonObjects() throws IOException {
+        addPropertyDefinitionsFromJson("[\"string1\"]");
+    }
+    
+    @Test
+    public void largeFileStreamed() throws IOException {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 20000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"name\":\"prop").append(i).append("\",\"type\":\"INT\",\"value\":\"")
+                .append(i).append("\",\"description\":\"Property ").append(i).append("\"}");
+        }
+        json.append(']');
+        // Large enough to be read through a memory mapping
+        assertTrue(json.length() >= AbstractUrlBasedPropertyDefinitionsProvider.MEMORY_MAPPED_FILE_MIN_BYTES);
+        
+        Map<String, PropertyDefinition> results = addPropertyDefinitionsFromJson(json.toString());
+        
+        assertEquals(20000, results.size());
+        assertContainsProperty("prop19999", PropertyType.INT, "19999", "Property 19999", results);
+    }
+    
+    @Test
+    public void smileEncoded() throws IOException {
+        byte[] smile = new ObjectMapper(new SmileFactory()).writeValueAsBytes(ImmutableList.of(
+                new PropertyDefinition("string1", PropertyType.STRING, "foo", "This is string1"),
+                new PropertyDefinition("int1", PropertyType.INT, "42", null)));
+        
+        File file = File.createTempFile("definitions", ".smile");
+        try {
+            Files.write(smile, file);
+            JsonFilePropertyDefinitionsProvider provider = new JsonFilePropertyDefinitionsProvider(
+                    file.toURI().toURL());
+            Map<String, PropertyDefinition> results = Maps.newHashMap();
+            provider.addPropertyDefinitions(results);
+            
+            assertEquals(2, results.size());
+            assertContainsProperty("string1", PropertyType.STRING, "foo", "This is string1", results);
+            assertContainsProperty("int1", PropertyType.INT, "42", null, results);
+            
+            // Merged again from the recorded definitions while unchanged
+            assertFalse(provider.isModified());
+            results = Maps.newHashMap();
+            provider.addPropertyDefinitions(results);
+            assertEquals(2, results.size());
+        } finally {
+            file.delete();
+        }
+    }
+    
+    private static Map<String, PropertyDefinition> addPropertyDefinitionsFromJson(String json) throws IOException {
+        File file = File.createTempFile("definitions", ".json");
+        try {
+            Files.write(json, file, Charsets.UTF_8);
+            JsonFilePropertyDefinitionsProvider provider = new JsonFilePropertyDefinitionsProvider(
+                    file.toURI().toURL());
+            Map<String, PropertyDefinition> results = Maps.newHashMap();
+            provider.addPropertyDefinitions(results);
+            return results;
+        } finally {
+            file.delete();
+        }
+    }
 
 }
@@ -0,0 +1,72 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.property;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.junit.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+
+public class MappedFileInputStreamTest {
+
+    @Test
+    public void readsMappedFile() throws IOException {
+        File file = File.createTempFile("mapped", ".txt");
+        try {
+            Files.write("abcdefghij", file, Charsets.UTF_8);
+            
+            InputStream input = MappedFileInputStream.map(file);
+            try {
+                assertEquals(10, input.available());
+                assertEquals('a', input.read());
+                assertEquals(2, input.skip(2));
+                
+                byte[] bytes = new byte[4];
+                assertEquals(4, input.read(bytes, 0, 4));
+                assertEquals("defg", new String(bytes, Charsets.UTF_8));
+                
+                assertEquals("hij", new String(ByteStreams.toByteArray(input), Charsets.UTF_8));
+                assertEquals(-1, input.read());
+                assertEquals(-1, input.read(bytes, 0, 4));
+                assertEquals(0, input.skip(5));
+            } finally {
+                input.close();
+            }
+        } finally {
+            file.delete();
+        }
+    }
+    
+    @Test
+    public void emptyFile() throws IOException {
+        File file = File.createTempFile("mapped", ".txt");
+        try {
+            InputStream input = MappedFileInputStream.map(file);
+            assertEquals(0, input.available());
+            assertEquals(-1, input.read());
+            input.close();
+        } finally {
+            file.delete();
+        }
+    }
+}
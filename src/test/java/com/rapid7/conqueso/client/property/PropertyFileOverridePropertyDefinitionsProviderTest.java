@@ -18,15 +18,21 @@ package com.rapid7.conqueso.client.property;
 import static com.rapid7.conqueso.client.ConquesoTestHelper.*;
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
 import java.net.URL;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 import org.junit.Test;
 
+import com.google.common.base.Charsets;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.io.Files;
 import com.rapid7.conqueso.client.PropertyDefinition;
 import com.rapid7.conqueso.client.PropertyDefinitionsProvider;
 import com.rapid7.conqueso.client.PropertyType;
@@ -140,6 +146,136 @@ public class PropertyFileOverridePropertyDefinitionsProviderTest {
         assertFalse(results.containsKey("baz"));
     }
     
+    @Test
+    public void rereadsOnlyModifiedFiles() throws IOException {
+        File tempDir = Files.createTempDir();
+        File file1 = new File(tempDir, "override1.properties");
+        File file2 = new File(tempDir, "override2.properties");
+        Files.write("foo=bar", file1, Charsets.UTF_8);
+        Files.write("baz=84", file2, Charsets.UTF_8);
+        try {
+            final List<Properties> reads = Lists.newArrayList();
+            PropertyFileOverridePropertyDefinitionsProvider provider = new PropertyFileOverridePropertyDefinitionsProvider(
+                    ImmutableList.of(file1.toURI().toURL(), file2.toURI().toURL())) {
+                @Override
+                protected Properties readModelFromReader(Reader reader) throws IOException {
+                    Properties properties = super.readModelFromReader(reader);
+                    reads.add(properties);
+                    return properties;
+                }
+            };
+            PropertyDefinitionsProvider testProvider = compose(provider);
+            
+            Map<String, PropertyDefinition> results = Maps.newHashMap();
+            testProvider.addPropertyDefinitions(results);
+            assertFalse(provider.isModified());
+            
+            // Adding again merges the recorded definitions of both files
+            testProvider.addPropertyDefinitions(Maps.<String, PropertyDefinition>newHashMap());
+            reads.clear();
+            
+            Files.write("baz=168", file2, Charsets.UTF_8);
+            file2.setLastModified(file2.lastModified() + 2000);
+            assertTrue(provider.isModified());
+            
+            results = Maps.newHashMap();
+            testProvider.addPropertyDefinitions(results);
+            
+            assertEquals(1, reads.size());
+            assertFalse(provider.isModified());
+            assertContainsProperty("foo", PropertyType.STRING, "bar", "foo description", results);
+            assertContainsProperty("baz", PropertyType.INT, "168", null, results);
+        } finally {
+            file1.delete();
+            file2.delete();
+            tempDir.delete();
+        }
+    }
+    
+    @Test
+    public void unchangedFileNotRereadOnFirstReload() throws IOException {
+        File tempDir = Files.createTempDir();
+        File file1 = new File(tempDir, "override1.properties");
+        File file2 = new File(tempDir, "override2.properties");
+        Files.write("foo=bar", file1, Charsets.UTF_8);
+        Files.write("baz=84", file2, Charsets.UTF_8);
+        try {
+            final List<Properties> reads = Lists.newArrayList();
+            PropertyFileOverridePropertyDefinitionsProvider provider = new PropertyFileOverridePropertyDefinitionsProvider(
+                    ImmutableList.of(file1.toURI().toURL(), file2.toURI().toURL())) {
+                @Override
+                protected Properties readModelFromReader(Reader reader) throws IOException {
+                    Properties properties = super.readModelFromReader(reader);
+                    reads.add(properties);
+                    return properties;
+                }
+            };
+            PropertyDefinitionsProvider testProvider = compose(provider);
+            
+            testProvider.addPropertyDefinitions(Maps.<String, PropertyDefinition>newHashMap());
+            assertEquals(2, reads.size());
+            
+            Files.write("foo=qux", file1, Charsets.UTF_8);
+            file1.setLastModified(file1.lastModified() + 2000);
+            assertTrue(provider.isModified());
+            
+            Map<String, PropertyDefinition> results = Maps.newHashMap();
+            testProvider.addPropertyDefinitions(results);
+            
+            // Only the changed file is read again, with the unchanged file's recorded values merged
+            assertEquals(3, reads.size());
+            assertEquals("qux", reads.get(2).getProperty("foo"));
+            assertContainsProperty("foo", PropertyType.STRING, "qux", "foo description", results);
+            assertContainsProperty("baz", PropertyType.INT, "84", null, results);
+        } finally {
+            file1.delete();
+            file2.delete();
+            tempDir.delete();
+        }
+    }
+    
+    @Test
+    public void overrideOfDefinitionAddedAfterFirstReadMergedOnReload() throws IOException {
+        File tempDir = Files.createTempDir();
+        File file = new File(tempDir, "override.properties");
+        Files.write("foo=bar\nadded=overridden", file, Charsets.UTF_8);
+        try {
+            final List<Properties> reads = Lists.newArrayList();
+            PropertyFileOverridePropertyDefinitionsProvider provider = new PropertyFileOverridePropertyDefinitionsProvider(
+                    file.toURI().toURL()) {
+                @Override
+                protected Properties readModelFromReader(Reader reader) throws IOException {
+                    Properties properties = super.readModelFromReader(reader);
+                    reads.add(properties);
+                    return properties;
+                }
+            };
+            provider.addPropertyDefinitions(definitionMap(
+                    new PropertyDefinition("foo", PropertyType.STRING, "foo", null)));
+            
+            // A reload adds the definition of a property the unchanged file already overrides
+            Map<String, PropertyDefinition> results = definitionMap(
+                    new PropertyDefinition("foo", PropertyType.STRING, "foo", null), 
+                    new PropertyDefinition("added", PropertyType.STRING, "default", "added description"));
+            provider.addPropertyDefinitions(results);
+            
+            assertEquals(1, reads.size());
+            assertContainsProperty("foo", PropertyType.STRING, "bar", null, results);
+            assertContainsProperty("added", PropertyType.STRING, "overridden", "added description", results);
+        } finally {
+            file.delete();
+            tempDir.delete();
+        }
+    }
+    
+    private static Map<String, PropertyDefinition> definitionMap(PropertyDefinition... definitions) {
+        Map<String, PropertyDefinition> results = Maps.newHashMap();
+        for (PropertyDefinition definition : definitions) {
+            results.put(definition.getName(), definition);
+        }
+        return results;
+    }
+    
     private PropertyDefinitionsProvider compose(PropertyFileOverridePropertyDefinitionsProvider testProvider) {
         List<PropertyDefinition> originalProperties = Lists.newArrayList();
         originalProperties.add(new PropertyDefinition("foo", PropertyType.STRING, "foo", "foo description"));
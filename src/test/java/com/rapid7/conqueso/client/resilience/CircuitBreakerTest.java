@@ -0,0 +1,211 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.resilience;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+public class CircuitBreakerTest {
+    
+    private static final long SLOW_NANOS = TimeUnit.SECONDS.toNanos(2);
+    
+    private FakeTicker ticker;
+    private CircuitBreaker breaker;
+    
+    @Before
+    public void setUp() {
+        ticker = new FakeTicker();
+        breaker = createBreaker(CircuitBreakerPolicy.builder()
+                .withWindow(4, 4)
+                .withSlowRequestThreshold(2, TimeUnit.SECONDS)
+                .withOpenDuration(1, 60, TimeUnit.SECONDS)
+                .withProbeRequests(2)
+                .build());
+    }
+    
+    @Test
+    public void opensWhenFailureRateReached() {
+        recordSuccesses(2);
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+        assertTrue(breaker.getRemainingOpenMillis() >= 500);
+        assertTrue(breaker.getRemainingOpenMillis() <= 1000);
+    }
+    
+    @Test
+    public void staysClosedBelowMinimumRequests() {
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+    }
+    
+    @Test
+    public void oldOutcomesLeaveWindow() {
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        recordSuccesses(3);
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        
+        // The first failure has left the window of 4 requests
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+    }
+    
+    @Test
+    public void slowRequestsCountAsFailures() {
+        recordSuccesses(2);
+        for (int i = 0; i < 2; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.recordSuccess(SLOW_NANOS);
+        }
+        
+        assertEquals(CircuitState.OPEN, breaker.getState());
+    }
+    
+    @Test
+    public void successfulProbesClose() {
+        open();
+        ticker.advance(1, TimeUnit.SECONDS);
+        
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+        // Only the policy's number of probes are sent at once
+        assertFalse(breaker.tryAcquire());
+        
+        breaker.recordSuccess(0);
+        assertEquals(CircuitState.HALF_OPEN, breaker.getState());
+        breaker.recordSuccess(0);
+        
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+    
+    @Test
+    public void failedProbeReopensWithLongerBackoff() {
+        open();
+        ticker.advance(1, TimeUnit.SECONDS);
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertTrue(breaker.getRemainingOpenMillis() >= 1000);
+        assertTrue(breaker.getRemainingOpenMillis() <= 2000);
+        
+        ticker.advance(2, TimeUnit.SECONDS);
+        assertTrue(breaker.tryAcquire());
+        breaker.recordFailure();
+        assertTrue(breaker.getRemainingOpenMillis() >= 2000);
+        assertTrue(breaker.getRemainingOpenMillis() <= 4000);
+    }
+    
+    @Test
+    public void backoffLimitedToMaximum() {
+        open();
+        for (int i = 0; i < 10; i++) {
+            ticker.advance(60, TimeUnit.SECONDS);
+            assertTrue(breaker.tryAcquire());
+            breaker.recordFailure();
+        }
+        
+        assertTrue(breaker.getRemainingOpenMillis() >= 30000);
+        assertTrue(breaker.getRemainingOpenMillis() <= 60000);
+    }
+    
+    @Test
+    public void overloadedOpensForRetryAfter() {
+        assertTrue(breaker.tryAcquire());
+        breaker.recordOverloaded(TimeUnit.SECONDS.toNanos(10));
+        
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertEquals(10000, breaker.getRemainingOpenMillis());
+        ticker.advance(9, TimeUnit.SECONDS);
+        assertFalse(breaker.tryAcquire());
+        ticker.advance(1, TimeUnit.SECONDS);
+        assertTrue(breaker.tryAcquire());
+    }
+    
+    @Test
+    public void overloadedWithoutRetryAfterUsesBackoff() {
+        assertTrue(breaker.tryAcquire());
+        breaker.recordOverloaded(-1);
+        
+        assertEquals(CircuitState.OPEN, breaker.getState());
+        assertTrue(breaker.getRemainingOpenMillis() <= 1000);
+    }
+    
+    @Test
+    public void disabledPolicyAlwaysAllows() {
+        breaker = createBreaker(CircuitBreakerPolicy.DISABLED);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.recordFailure();
+        }
+        breaker.recordOverloaded(TimeUnit.SECONDS.toNanos(10));
+        
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitState.CLOSED, breaker.getState());
+    }
+    
+    private CircuitBreaker createBreaker(CircuitBreakerPolicy policy) {
+        return new CircuitBreaker("test", policy, ticker, new Random(0));
+    }
+    
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.recordFailure();
+        }
+        assertEquals(CircuitState.OPEN, breaker.getState());
+    }
+    
+    private void recordSuccesses(int count) {
+        for (int i = 0; i < count; i++) {
+            assertTrue(breaker.tryAcquire());
+            breaker.recordSuccess(0);
+        }
+    }
+    
+    private static class FakeTicker extends Ticker {
+        private long nanos = 0;
+        
+        @Override
+        public long read() {
+            return nanos;
+        }
+        
+        void advance(long duration, TimeUnit unit) {
+            nanos += unit.toNanos(duration);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.snapshot;
+
+import static com.rapid7.conqueso.client.snapshot.AllocationTestHelper.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.rapid7.conqueso.client.change.PropertyChange;
+
+public class CompactPropertyStoreTest {
+    
+    private static final Map<String, String> VALUES = ImmutableMap.<String, String>builder()
+            .put("int", "42")
+            .put("padded", " \t7 \n")
+            .put("negative", "-17")
+            .put("plus", "+5")
+            .put("longMin", "-9223372036854775808")
+            .put("longMax", "9223372036854775807")
+            .put("longOverflow", "9223372036854775808")
+            .put("longUnderflow", "-9223372036854775809")
+            .put("intOverflow", "2147483648")
+            .put("intMin", "-2147483648")
+            .put("sign", "-")
+            .put("empty", "")
+            .put("spaced", "- 1")
+            .put("hex", "0x10")
+            .put("double", "1.5")
+            .put("exponent", "1e3")
+            .put("nan", "NaN")
+            .put("upperTrue", "TRUE")
+            .put("paddedFalse", " false ")
+            .put("yes", "yes")
+            .put("arabicDigits", "\u0661\u0662")
+            .put("longS", "fal\u017fe")
+            .put("accented", "caf\u00e9")
+            .build();
+    
+    private static final Map<String, String> KEYS = ImmutableMap.<String, String>builder()
+            .put("tenant.1.name", "a")
+            .put("tenant.1.size", "1")
+            .put("tenant.10.name", "b")
+            .put("tenant.2.name", "c")
+            .put("tenant", "d")
+            .put("service.cache.size", "100")
+            .put("caf\u00e9", "e")
+            .put("\u4e2d\u6587", "f")
+            .put("smile\ud83d\ude00", "g")
+            .put("unpaired\ud800", "h")
+            .put("private\ue000", "i")
+            .put("\uffff\uffff", "j")
+            .build();
+    
+    @Test
+    public void typedGettersMatchHeapStore() {
+        PropertyStore heap = new HeapPropertyStore(VALUES);
+        PropertyStore compact = new CompactPropertyStore(VALUES);
+        
+        for (String key : ImmutableList.<String>builder().addAll(VALUES.keySet()).add("missing").build()) {
+            assertEquals(key, heap.contains(key), compact.contains(key));
+            assertEquals(key, heap.getString(key, "default"), compact.getString(key, "default"));
+            assertEquals(key, heap.getInt(key, -1), compact.getInt(key, -1));
+            assertEquals(key, heap.getLong(key, -1), compact.getLong(key, -1));
+            assertEquals(key, heap.getDouble(key, -1), compact.getDouble(key, -1), 0);
+            assertEquals(key, heap.getBoolean(key, true), compact.getBoolean(key, true));
+            assertEquals(key, heap.getBoolean(key, false), compact.getBoolean(key, false));
+        }
+        
+        assertEquals(Long.MIN_VALUE, compact.getLong("longMin", 0));
+        assertEquals(-1, compact.getLong("longOverflow", -1));
+        assertEquals(Integer.MIN_VALUE, compact.getInt("intMin", 0));
+        assertEquals(-1, compact.getInt("intOverflow", -1));
+        assertEquals(7, compact.getInt("padded", 0));
+        assertEquals(12, compact.getInt("arabicDigits", 0));
+        assertEquals(1.5, compact.getDouble("double", 0), 0);
+        assertFalse(compact.getBoolean("paddedFalse", true));
+        assertEquals("caf\u00e9", compact.getString("accented", null));
+    }
+    
+    @Test
+    public void keysInNaturalOrder() {
+        PropertyStore compact = new CompactPropertyStore(KEYS);
+        
+        assertEquals(KEYS.size(), compact.size());
+        assertEquals(ImmutableList.copyOf(new HeapPropertyStore(KEYS).asMap().keySet()), 
+                ImmutableList.copyOf(compact.asMap().keySet()));
+        assertEquals(KEYS, compact.asMap());
+        assertEquals(compact.asMap(), KEYS);
+        assertEquals("h", compact.getString("unpaired\ud800", null));
+        assertFalse(compact.contains("tenant.1"));
+        assertFalse(compact.contains("tenant.1.name.x"));
+    }
+    
+    @Test
+    public void prefixQueriesMatchHeapStore() {
+        PropertyStore heap = new HeapPropertyStore(KEYS);
+        PropertyStore compact = new CompactPropertyStore(KEYS);
+        
+        for (String prefix : ImmutableList.of("", "tenant", "tenant.1", "tenant.1.", "tenant.3", "service.", 
+                "caf", "\u4e2d", "smile\ud83d", "unpaired", "\uffff", "\uffff\uffff\uffff", "z")) {
+            assertEquals(prefix, ImmutableList.copyOf(heap.getPropertiesWithPrefix(prefix).entrySet()), 
+                    ImmutableList.copyOf(compact.getPropertiesWithPrefix(prefix).entrySet()));
+        }
+    }
+    
+    @Test
+    public void prefixViewIsSortedMap() {
+        SortedMap<String, String> tenants = new CompactPropertyStore(KEYS).getPropertiesWithPrefix("tenant");
+        
+        assertEquals("tenant", tenants.firstKey());
+        assertEquals("tenant.2.name", tenants.lastKey());
+        assertEquals("a", tenants.get("tenant.1.name"));
+        assertNull(tenants.get("service.cache.size"));
+        assertFalse(tenants.containsKey("service.cache.size"));
+        assertEquals(ImmutableList.of("tenant.1.name", "tenant.1.size"), 
+                ImmutableList.copyOf(tenants.subMap("tenant.1", "tenant.10").keySet()));
+        assertEquals(ImmutableList.of("tenant", "tenant.1.name"), 
+                ImmutableList.copyOf(tenants.headMap("tenant.1.size").keySet()));
+        assertEquals(ImmutableMap.of("tenant.2.name", "c"), tenants.tailMap("tenant.2"));
+        assertTrue(tenants.tailMap("tenant.3").isEmpty());
+    }
+    
+    @Test
+    public void matches() {
+        PropertyStore compact = new CompactPropertyStore(KEYS);
+        
+        assertTrue(compact.matches(KEYS));
+        assertTrue(compact.matches(Maps.newHashMap(KEYS)));
+        
+        Map<String, String> changed = Maps.newHashMap(KEYS);
+        changed.put("tenant", "dd");
+        assertFalse(compact.matches(changed));
+        
+        Map<String, String> renamed = Maps.newHashMap(KEYS);
+        renamed.put("tenant.3.name", renamed.remove("tenant.2.name"));
+        assertFalse(compact.matches(renamed));
+        
+        Map<String, String> removed = Maps.newHashMap(KEYS);
+        removed.remove("tenant");
+        assertFalse(compact.matches(removed));
+    }
+    
+    @Test
+    public void storedInSingleArray() {
+        CompactPropertyStore compact = new CompactPropertyStore(ImmutableMap.of("a", "1", "caf\u00e9", "\u4e2d"));
+        
+        assertEquals(2 + 5 + 3, compact.getDataLength());
+        assertEquals(0, new CompactPropertyStore(ImmutableMap.<String, String>of()).getDataLength());
+    }
+    
+    @Test
+    public void typedReadsDoNotAllocate() {
+        assumeTrue(isThreadAllocatedMemoryEnabled());
+        PropertyStore compact = new CompactPropertyStore(VALUES);
+        
+        long sum = readAll(compact, 1000);
+        long start = getAllocatedBytes();
+        sum += readAll(compact, 100000);
+        long allocated = getAllocatedBytes() - start;
+        
+        assertTrue(sum != 0);
+        // Allocating even once per read would be several megabytes
+        assertTrue(allocated + " bytes allocated", allocated < 1024);
+    }
+    
+    @Test
+    public void changesSinceMatchBetween() {
+        Map<String, String> latest = Maps.newHashMap(KEYS);
+        latest.remove("tenant");
+        latest.remove("smile\ud83d\ude00");
+        latest.put("smile\ud83d", "g");
+        latest.put("tenant.3.name", "k");
+        latest.put("caf\u00e9", "\u00e9");
+        latest.put("\uffff\uffff", "j2");
+        latest.put("service.cache.size", "10");
+        ImmutableSet<PropertyChange> expected = ImmutableSet.copyOf(PropertyChange.between(KEYS, latest));
+        
+        ImmutableList<PropertyChange> changes = 
+                new CompactPropertyStore(latest).changesSince(new CompactPropertyStore(KEYS));
+        
+        assertEquals(7, changes.size());
+        assertEquals(expected, ImmutableSet.copyOf(changes));
+        for (int i = 1; i < changes.size(); i++) {
+            assertTrue(changes.get(i - 1).getKey().compareTo(changes.get(i).getKey()) < 0);
+        }
+        assertEquals(expected, ImmutableSet.copyOf(
+                new CompactPropertyStore(latest).changesSince(new HeapPropertyStore(KEYS))));
+        assertEquals(expected, ImmutableSet.copyOf(
+                new HeapPropertyStore(latest).changesSince(new CompactPropertyStore(KEYS))));
+    }
+    
+    @Test
+    public void noChangesSinceEqualStore() {
+        assertTrue(new CompactPropertyStore(KEYS).changesSince(new CompactPropertyStore(KEYS)).isEmpty());
+        assertEquals(KEYS.size(), new CompactPropertyStore(KEYS).changesSince(
+                new CompactPropertyStore(ImmutableMap.<String, String>of())).size());
+    }
+    
+    @Test
+    public void snapshotWithCompactStore() {
+        PropertySnapshot snapshot = new PropertySnapshot(3, CompactPropertyStore.FACTORY.create(VALUES));
+        
+        assertEquals(3, snapshot.getVersion());
+        assertEquals(42, snapshot.getInt("int", 0));
+        assertEquals(VALUES, snapshot.asMap());
+        assertTrue(snapshot.matches(VALUES));
+    }
+    
+    private static long readAll(PropertyStore store, int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            sum += store.getInt("int", 0);
+            sum += store.getLong("longMax", 0);
+            sum += store.getBoolean("paddedFalse", true) ? 0 : 1;
+            sum += store.getInt("missing", 0);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.snapshot;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.google.common.base.Supplier;
+import com.google.common.collect.ImmutableMap;
+
+public class PropertyGroupTest {
+    
+    private final AtomicReference<PropertySnapshot> latest = new AtomicReference<PropertySnapshot>(
+            new PropertySnapshot(1, ImmutableMap.of("db.host", "db1", "db.port", "5432", "other", "a")));
+    
+    private final Supplier<PropertySnapshot> snapshots = new Supplier<PropertySnapshot>() {
+        @Override
+        public PropertySnapshot get() {
+            return latest.get();
+        }
+    };
+
+    @Test
+    public void valuesReadFromOneSnapshot() {
+        PropertyGroup group = new PropertyGroup(snapshots, "db.host", "db.port");
+        PropertyGroup.Values values = group.read();
+        
+        latest.set(new PropertySnapshot(2, ImmutableMap.of("db.host", "db2", "db.port", "6543", "other", "a")));
+        
+        assertEquals("db1", values.getString("db.host", null));
+        assertEquals(5432, values.getInt("db.port", 0));
+        assertEquals(1, values.getSnapshotVersion());
+        
+        PropertyGroup.Values updated = group.read();
+        assertEquals("db2", updated.getString("db.host", null));
+        assertEquals(6543, updated.getInt("db.port", 0));
+        assertEquals(2, updated.getVersion());
+    }
+    
+    @Test
+    public void versionUnchangedByOtherProperties() {
+        PropertyGroup group = new PropertyGroup(snapshots, "db.host", "db.port");
+        assertEquals(1, group.read().getVersion());
+        
+        latest.set(new PropertySnapshot(2, ImmutableMap.of("db.host", "db1", "db.port", "5432", "other", "b")));
+        PropertyGroup.Values values = group.read();
+        assertEquals(1, values.getVersion());
+        assertEquals(2, values.getSnapshotVersion());
+        assertSame(values, group.read());
+        
+        latest.set(new PropertySnapshot(3, ImmutableMap.of("db.host", "db1", "other", "b")));
+        assertEquals(3, group.read().getVersion());
+        assertEquals(1, group.read().getInt("db.port", 1));
+    }
+    
+    @Test(expected=IllegalArgumentException.class)
+    public void keysOutsideGroupRejected() {
+        new PropertyGroup(snapshots, "db.host", "db.port").read().getString("other", null);
+    }
+}
@@ -0,0 +1,177 @@
+/**
+ * COPYRIGHT (C) 2014, Rapid7 LLC, Boston, MA, USA.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.rapid7.conqueso.client.snapshot;
+
+import static com.rapid7.conqueso.client.snapshot.AllocationTestHelper.*;
+import static org.junit.Assert.*;
+import static org.junit.Assume.*;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+public class PropertySnapshotTest {
+    
+    private final PropertySnapshot snapshot = new PropertySnapshot(3, ImmutableMap.<String, String>builder()
+            .put("int", "42")
+            .put("padded", " -7 ")
+            .put("long", "9000000000")
+            .put("double", "1.5")
+            .put("true", "TRUE")
+            .put("false", "false")
+            .put("string", "foo")
+            .build());
+
+    @Test
+    public void typedValues() {
+        assertEquals(3, snapshot.getVersion());
+        assertEquals(7, snapshot.size());
+        assertEquals(42, snapshot.getInt("int", 0));
+        assertEquals(-7, snapshot.getInt("padded", 0));
+        assertEquals(42L, snapshot.getLong("int", 0));
+        assertEquals(9000000000L, snapshot.getLong("long", 0));
+        assertEquals(1.5, snapshot.getDouble("double", 0), 0);
+        assertEquals(42.0, snapshot.getDouble("int", 0), 0);
+        assertTrue(snapshot.getBoolean("true", false));
+        assertFalse(snapshot.getBoolean("false", true));
+        assertEquals("foo", snapshot.getString("string", null));
+        assertEquals(" -7 ", snapshot.getString("padded", null));
+    }
+    
+    @Test
+    public void defaultsForMissingOrMismatchedValues() {
+        assertFalse(snapshot.contains("missing"));
+        assertEquals(5, snapshot.getInt("missing", 5));
+        assertEquals(5, snapshot.getInt("string", 5));
+        assertEquals(5, snapshot.getInt("long", 5));
+        assertEquals(5, snapshot.getInt("double", 5));
+        assertEquals(5L, snapshot.getLong("double", 5));
+        assertEquals(0.5, snapshot.getDouble("string", 0.5), 0);
+        assertTrue(snapshot.getBoolean("string", true));
+        assertTrue(snapshot.getBoolean("int", true));
+        assertEquals("bar", snapshot.getString("missing", "bar"));
+    }
+    
+    @Test
+    public void numbersParsedAsJava() {
+        List<String> values = ImmutableList.of("1e3", "-.5", "5.", "+2", "1d", "2.5F", "0x1p3", "NaN", "-Infinity", 
+                "9223372036854775808", "\u0661\u0662", "1e", "1e+", ".", "-", "e5", "1.2.3", "10.0.0.1", "0x", 
+                "Infinityx", "1f5", "abc");
+        Map<String, String> properties = Maps.newHashMap();
+        for (int i = 0; i < values.size(); i++) {
+            properties.put(String.valueOf(i), values.get(i));
+        }
+        PropertySnapshot parsed = new PropertySnapshot(1, properties);
+        
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i);
+            Long expectedLong = null;
+            Double expectedDouble = null;
+            try {
+                expectedLong = Long.parseLong(value);
+                expectedDouble = Double.valueOf(expectedLong);
+            } catch (NumberFormatException e) {
+                try {
+                    expectedDouble = Double.parseDouble(value);
+                } catch (NumberFormatException notNumber) {
+                    // Not a number
+                }
+            }
+            assertEquals(value, expectedLong == null ? -1 : expectedLong, parsed.getLong(String.valueOf(i), -1));
+            assertEquals(value, expectedDouble == null ? -1 : expectedDouble, 
+                    parsed.getDouble(String.valueOf(i), -1), 0);
+        }
+    }
+    
+    @Test
+    public void emptySnapshot() {
+        assertEquals(0, PropertySnapshot.EMPTY.getVersion());
+        assertEquals(0, PropertySnapshot.EMPTY.size());
+        assertEquals(1, PropertySnapshot.EMPTY.getInt("int", 1));
+    }
+    
+    @Test
+    public void propertiesWithPrefix() {
+        PropertySnapshot tenants = new PropertySnapshot(1, ImmutableMap.<String, String>builder()
+                .put("tenant.1.name", "a")
+                .put("tenant.1.size", "1")
+                .put("tenant.10.name", "b")
+                .put("tenant.2.name", "c")
+                .put("tenant", "d")
+                .put("service.cache.size", "100")
+                .put("\uffff\uffff", "e")
+                .build());
+        
+        assertEquals(ImmutableList.of("tenant.1.name", "tenant.1.size"), 
+                ImmutableList.copyOf(tenants.getPropertiesWithPrefix("tenant.1.").keySet()));
+        assertEquals(3, tenants.getPropertiesWithPrefix("tenant.1").size());
+        assertEquals(5, tenants.getPropertiesWithPrefix("tenant").size());
+        assertEquals(ImmutableMap.of("service.cache.size", "100"), tenants.getPropertiesWithPrefix("service."));
+        assertTrue(tenants.getPropertiesWithPrefix("tenant.3").isEmpty());
+        assertEquals(ImmutableMap.of("\uffff\uffff", "e"), tenants.getPropertiesWithPrefix("\uffff"));
+        assertEquals(7, tenants.getPropertiesWithPrefix("").size());
+    }
+    
+    @Test
+    public void propertiesWithPrefixNotCopied() {
+        assumeTrue(isThreadAllocatedMemoryEnabled());
+        Map<String, String> properties = Maps.newHashMap();
+        for (int i = 0; i < 50000; i++) {
+            properties.put("tenant." + i + ".name", String.valueOf(i));
+        }
+        PropertySnapshot tenants = new PropertySnapshot(1, properties);
+        tenants.getPropertiesWithPrefix("tenant.2");
+        
+        long start = getAllocatedBytes();
+        int size = tenants.getPropertiesWithPrefix("tenant.1").size();
+        long allocated = getAllocatedBytes() - start;
+        
+        assertEquals(11111, size);
+        // Copying the matching properties would take hundreds of kilobytes
+        assertTrue(allocated + " bytes allocated", allocated < 4096);
+    }
+    
+    @Test
+    public void typedReadsDoNotAllocate() {
+        assumeTrue(isThreadAllocatedMemoryEnabled());
+        
+        long sum = readAll(20000);
+        long start = getAllocatedBytes();
+        sum += readAll(100000);
+        long allocated = getAllocatedBytes() - start;
+        
+        assertTrue(sum != 0);
+        // Allocating even once per read would be several megabytes
+        assertTrue(allocated + " bytes allocated", allocated < 1024);
+    }
+    
+    private long readAll(int iterations) {
+        long sum = 0;
+        for (int i = 0; i < iterations; i++) {
+            sum += snapshot.getInt("int", 0);
+            sum += snapshot.getLong("long", 0);
+            sum += (long)snapshot.getDouble("double", 0);
+            sum += snapshot.getBoolean("true", false) ? 1 : 0;
+            sum += snapshot.getInt("missing", 0);
+        }
+        return sum;
+    }
+}